@@ -0,0 +1,230 @@
+package com.warehouse.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.warehouse.exception.ErrorResponse;
+import com.warehouse.service.IdempotencyStore;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import java.io.*;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Set;
+
+/**
+ * Makes mutating inventory and purchase order requests idempotent when the
+ * client sends an {@code Idempotency-Key} header.
+ * <p>
+ * The key is scoped to the user, method and path. The first request with a
+ * key runs and its response is stored in the {@link IdempotencyStore}; a
+ * retry with the same key gets the stored response back with an
+ * {@code Idempotent-Replayed} header, and a duplicate sent while the first is
+ * still running, on this or another instance, waits for it. Reusing a key for a different request body is
+ * rejected with 422. Server errors are not stored, so they can be retried.
+ */
+@Component
+public class IdempotencyFilter extends OncePerRequestFilter {
+
+    public static final String HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+
+    private static final Set<String> METHODS = Set.of("POST", "PUT", "PATCH", "DELETE");
+    private static final int MAX_KEY_LENGTH = 255;
+
+    @Autowired
+    private IdempotencyStore idempotencyStore;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${inventory.idempotency.wait-timeout-ms:30000}")
+    private long waitTimeoutMs;
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        if (!METHODS.contains(request.getMethod()) || request.getHeader(HEADER) == null) {
+            return true;
+        }
+        String path = path(request);
+        return !path.startsWith("/inventory/") && !path.equals("/purchase-orders")
+                && !path.startsWith("/purchase-orders/");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String clientKey = request.getHeader(HEADER);
+        if (!StringUtils.hasText(clientKey) || clientKey.length() > MAX_KEY_LENGTH) {
+            reject(request, response, HttpStatus.BAD_REQUEST,
+                    HEADER + " must be between 1 and " + MAX_KEY_LENGTH + " characters");
+            return;
+        }
+
+        boolean multipart = request.getContentType() != null
+                && request.getContentType().startsWith(MediaType.MULTIPART_FORM_DATA_VALUE);
+        // Multipart uploads are streamed to the controller, so only their URI is fingerprinted
+        CachedBodyRequest cached = multipart ? null : new CachedBodyRequest(request);
+        HttpServletRequest body = cached != null ? cached : request;
+        String key = sha256(user() + "\n" + request.getMethod() + " " + path(request) + "\n" + clientKey);
+        String fingerprint = sha256(request.getMethod() + " " + request.getRequestURI() + "?"
+                + request.getQueryString() + "\n", cached != null ? cached.body : new byte[0]);
+
+        IdempotencyStore.Claim claim;
+        try {
+            claim = idempotencyStore.claim(key, fingerprint, waitTimeoutMs);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            reject(request, response, HttpStatus.SERVICE_UNAVAILABLE, "Interrupted while waiting for a duplicate");
+            return;
+        }
+        if (claim.busy()) {
+            reject(request, response, HttpStatus.CONFLICT,
+                    "A request with this " + HEADER + " is still in progress; retry later");
+            return;
+        }
+        if (!claim.owner()) {
+            replay(request, response, claim.response(), fingerprint);
+            return;
+        }
+
+        ContentCachingResponseWrapper captured = new ContentCachingResponseWrapper(response);
+        boolean stored = false;
+        try {
+            chain.doFilter(body, captured);
+            if (captured.getStatus() < 500) {
+                idempotencyStore.complete(key, fingerprint, captured.getStatus(), captured.getContentType(),
+                        captured.getContentAsByteArray());
+                stored = true;
+            }
+        } finally {
+            if (!stored) {
+                idempotencyStore.abandon(key);
+            }
+            captured.copyBodyToResponse();
+        }
+    }
+
+    private void replay(HttpServletRequest request, HttpServletResponse response,
+            IdempotencyStore.Response stored, String fingerprint) throws IOException {
+        if (!stored.fingerprint().equals(fingerprint)) {
+            reject(request, response, HttpStatus.UNPROCESSABLE_ENTITY,
+                    HEADER + " was already used for a different request");
+            return;
+        }
+        response.setStatus(stored.status());
+        response.setHeader(REPLAYED_HEADER, "true");
+        if (stored.contentType() != null) {
+            response.setContentType(stored.contentType());
+        }
+        if (stored.body() != null) {
+            response.setContentLength(stored.body().length);
+            response.getOutputStream().write(stored.body());
+        }
+    }
+
+    private void reject(HttpServletRequest request, HttpServletResponse response, HttpStatus status, String message)
+            throws IOException {
+        response.setStatus(status.value());
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        objectMapper.writeValue(response.getOutputStream(),
+                new ErrorResponse(status.value(), status.getReasonPhrase(), message, request.getRequestURI()));
+    }
+
+    private static String user() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        return authentication != null ? authentication.getName() : "";
+    }
+
+    private static String path(HttpServletRequest request) {
+        return request.getRequestURI().substring(request.getContextPath().length());
+    }
+
+    private static String sha256(String text, byte[]... more) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(text.getBytes(StandardCharsets.UTF_8));
+            for (byte[] bytes : more) {
+                digest.update(bytes);
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    /**
+     * Request whose body was read up front, for the fingerprint, and can be
+     * read again by the controller.
+     */
+    private static final class CachedBodyRequest extends HttpServletRequestWrapper {
+        final byte[] body;
+
+        CachedBodyRequest(HttpServletRequest request) throws IOException {
+            super(request);
+            this.body = request.getInputStream().readAllBytes();
+        }
+
+        @Override
+        public ServletInputStream getInputStream() {
+            ByteArrayInputStream in = new ByteArrayInputStream(body);
+            return new ServletInputStream() {
+                @Override
+                public int read() {
+                    return in.read();
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) {
+                    return in.read(b, off, len);
+                }
+
+                @Override
+                public boolean isFinished() {
+                    return in.available() == 0;
+                }
+
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                @Override
+                public void setReadListener(ReadListener listener) {
+                    // The whole body is already buffered, so it is all available now
+                    try {
+                        if (!isFinished()) {
+                            listener.onDataAvailable();
+                        }
+                        listener.onAllDataRead();
+                    } catch (IOException ex) {
+                        listener.onError(ex);
+                    }
+                }
+            };
+        }
+
+        @Override
+        public BufferedReader getReader() {
+            String encoding = getCharacterEncoding() != null ? getCharacterEncoding() : StandardCharsets.UTF_8.name();
+            return new BufferedReader(new InputStreamReader(getInputStream(), Charset.forName(encoding)));
+        }
+    }
+}
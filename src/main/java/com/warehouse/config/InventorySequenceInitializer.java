@@ -0,0 +1,66 @@
+package com.warehouse.config;
+
+import jakarta.persistence.EntityManagerFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.dialect.Dialect;
+import org.hibernate.dialect.sequence.SequenceSupport;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Advances the inventory id sequence past the ids already in the inventory
+ * table. Inventory ids used to come from AUTO_INCREMENT; when Hibernate
+ * creates {@code inventory_seq} itself (ddl-auto) the sequence starts at 1
+ * and the pooled optimizer would hand out ids that already exist. Runs once
+ * every singleton (and with it the schema) is ready, before the web server
+ * accepts requests.
+ *
+ * On MySQL the sequence is a one-row table; on databases with native
+ * sequences it is restarted.
+ */
+@Slf4j
+@Component
+public class InventorySequenceInitializer implements SmartInitializingSingleton {
+
+    static final String SEQUENCE = "inventory_seq";
+
+    // Must match the allocationSize of Inventory's @SequenceGenerator
+    static final int ALLOCATION_SIZE = 50;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        Long maxId = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(id), 0) FROM inventory", Long.class);
+        // The pooled optimizer hands out (value - allocationSize, value], so the next
+        // value must leave a whole block above the highest existing id
+        long floor = maxId + ALLOCATION_SIZE + 1;
+
+        Dialect dialect = entityManagerFactory.unwrap(SessionFactoryImplementor.class).getJdbcServices().getDialect();
+        SequenceSupport sequences = dialect.getSequenceSupport();
+        if (sequences.supportsSequences()) {
+            Long next = jdbcTemplate.queryForObject(sequences.getSequenceNextValString(SEQUENCE), Long.class);
+            if (next < floor) {
+                jdbcTemplate.execute("ALTER SEQUENCE " + SEQUENCE + " RESTART WITH " + floor);
+                log.info("Restarted {} at {} past inventory id {}", SEQUENCE, floor, maxId);
+            }
+            return;
+        }
+
+        int updated = jdbcTemplate.update("UPDATE " + SEQUENCE + " SET next_val = ? WHERE next_val < ?", floor, floor);
+        if (updated == 0) {
+            updated = jdbcTemplate.update("INSERT INTO " + SEQUENCE + " (next_val) SELECT ? FROM DUAL "
+                    + "WHERE NOT EXISTS (SELECT 1 FROM " + SEQUENCE + ")", floor);
+        }
+        if (updated > 0) {
+            log.info("Advanced {} to {} past inventory id {}", SEQUENCE, floor, maxId);
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package com.warehouse.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Enables scheduled background jobs (expiry roll-forward, reconciliation).
+ */
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
@@ -0,0 +1,46 @@
+package com.warehouse.controller;
+
+import com.warehouse.dto.CycleCountRequest;
+import com.warehouse.dto.CycleCountResponse;
+import com.warehouse.service.CycleCountService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.validation.Valid;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.web.bind.annotation.*;
+
+/**
+ * Controller for cycle count endpoints.
+ */
+@RestController
+@RequestMapping("/inventory/cycle-counts")
+@SecurityRequirement(name = "bearerAuth")
+@Tag(name = "Cycle Counts", description = "Physical count reconciliation endpoints")
+public class CycleCountController {
+
+    @Autowired
+    private CycleCountService cycleCountService;
+
+    @Autowired
+    private com.warehouse.repository.UserRepository userRepository;
+
+    @Operation(summary = "Submit cycle count", description = "Reconcile counted quantities against stock at the count time and record the differences as adjustments")
+    @PostMapping
+    public ResponseEntity<CycleCountResponse> submit(
+            @Valid @RequestBody CycleCountRequest request,
+            Authentication authentication) {
+        Long userId = getUserId(authentication);
+        return ResponseEntity.ok(cycleCountService.reconcile(request, userId));
+    }
+
+    private Long getUserId(Authentication authentication) {
+        UserDetails userDetails = (UserDetails) authentication.getPrincipal();
+        return userRepository.findByEmail(userDetails.getUsername())
+                .orElseThrow(() -> new RuntimeException("User not found"))
+                .getId();
+    }
+}
@@ -1,20 +1,41 @@
 package com.warehouse.controller;
 
+import com.warehouse.dto.BatchStockOperationRequest;
+import com.warehouse.dto.BatchStockOperationResponse;
+import com.warehouse.dto.BatchStockTransferRequest;
+import com.warehouse.dto.CursorPage;
 import com.warehouse.dto.InventoryDTO;
+import com.warehouse.dto.InventoryTransactionDTO;
+import com.warehouse.dto.StockAllocationRequest;
+import com.warehouse.dto.StockAllocationResponse;
 import com.warehouse.dto.StockOperationRequest;
+import com.warehouse.dto.StockSummaryDTO;
+import com.warehouse.dto.StockTransferRequest;
+import com.warehouse.dto.StockTransferResponse;
+import com.warehouse.entity.ZoneType;
+import com.warehouse.service.AlertBroadcaster;
+import com.warehouse.service.InventoryExportService;
 import com.warehouse.service.InventoryService;
+import com.warehouse.service.StockAvailabilityCache;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.io.IOException;
 import java.util.List;
+import java.util.zip.GZIPOutputStream;
 
 /**
  * Controller for inventory management endpoints.
@@ -28,9 +49,21 @@ public class InventoryController {
     @Autowired
     private InventoryService inventoryService;
 
+    @Autowired
+    private InventoryExportService inventoryExportService;
+
+    @Autowired
+    private StockAvailabilityCache stockAvailabilityCache;
+
+    @Autowired
+    private AlertBroadcaster alertBroadcaster;
+
     @Autowired
     private com.warehouse.repository.UserRepository userRepository;
 
+    @Value("${inventory.stock-cache.max-lookup:1000}")
+    private int maxLookup;
+
     @Operation(summary = "Stock in", description = "Receive stock into warehouse")
     @PostMapping("/stock-in")
     public ResponseEntity<InventoryDTO> stockIn(
@@ -51,30 +84,158 @@ public class InventoryController {
         return ResponseEntity.ok(result);
     }
 
-    @Operation(summary = "Get inventory by warehouse", description = "Get all inventory for a warehouse")
+    @Operation(summary = "Allocated stock out", description = "Remove stock of a product from a warehouse, picking lots by FEFO or FIFO")
+    @PostMapping("/stock-out/allocate")
+    public ResponseEntity<StockAllocationResponse> allocateStockOut(
+            @Valid @RequestBody StockAllocationRequest request,
+            Authentication authentication) {
+        Long userId = getUserId(authentication);
+        StockAllocationResponse result = inventoryService.allocateStockOut(request, userId);
+        return ResponseEntity.ok(result);
+    }
+
+    @Operation(summary = "Transfer stock", description = "Move stock of a lot to another warehouse or zone in one atomic step")
+    @PostMapping("/transfer")
+    public ResponseEntity<StockTransferResponse> transfer(
+            @Valid @RequestBody StockTransferRequest request,
+            Authentication authentication) {
+        Long userId = getUserId(authentication);
+        StockTransferResponse result = inventoryService.transfer(request, userId);
+        return ResponseEntity.ok(result);
+    }
+
+    @Operation(summary = "Batch transfer", description = "Move stock of many lots as one atomic unit")
+    @PostMapping("/transfer/batch")
+    public ResponseEntity<List<StockTransferResponse>> transferBatch(
+            @Valid @RequestBody BatchStockTransferRequest request,
+            Authentication authentication) {
+        Long userId = getUserId(authentication);
+        List<StockTransferResponse> result = inventoryService.transferBatch(request, userId);
+        return ResponseEntity.ok(result);
+    }
+
+    @Operation(summary = "Batch stock in", description = "Receive many stock lines in a single request")
+    @PostMapping("/stock-in/batch")
+    public ResponseEntity<BatchStockOperationResponse> stockInBatch(
+            @Valid @RequestBody BatchStockOperationRequest request,
+            Authentication authentication) {
+        Long userId = getUserId(authentication);
+        BatchStockOperationResponse result = inventoryService.stockInBatch(request, userId);
+        return ResponseEntity.status(batchStatus(result, HttpStatus.CREATED)).body(result);
+    }
+
+    @Operation(summary = "Batch stock out", description = "Issue many stock lines in a single request")
+    @PostMapping("/stock-out/batch")
+    public ResponseEntity<BatchStockOperationResponse> stockOutBatch(
+            @Valid @RequestBody BatchStockOperationRequest request,
+            Authentication authentication) {
+        Long userId = getUserId(authentication);
+        BatchStockOperationResponse result = inventoryService.stockOutBatch(request, userId);
+        return ResponseEntity.status(batchStatus(result, HttpStatus.OK)).body(result);
+    }
+
+    @Operation(summary = "Get inventory by warehouse", description = "Get a warehouse's inventory one page at a time, optionally filtered")
     @GetMapping
-    public ResponseEntity<List<InventoryDTO>> getInventory(
-            @RequestParam Long warehouseId) {
-        List<InventoryDTO> inventory = inventoryService.getInventoryByWarehouse(warehouseId);
+    public ResponseEntity<CursorPage<InventoryDTO>> getInventory(
+            @RequestParam Long warehouseId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size,
+            @RequestParam(required = false) Long zoneId,
+            @RequestParam(required = false) ZoneType zoneType,
+            @RequestParam(required = false) String category,
+            @RequestParam(defaultValue = "false") boolean lowStock,
+            @RequestParam(required = false) Integer expiringWithinDays) {
+        CursorPage<InventoryDTO> inventory = inventoryService.getInventoryPage(warehouseId, cursor, size, zoneId,
+                zoneType, category, lowStock, expiringWithinDays);
         return ResponseEntity.ok(inventory);
     }
 
+    @Operation(summary = "Get stock summary", description = "Total, reserved and available stock of many products by id or SKU, across an organization and per warehouse")
+    @GetMapping("/stock-summary")
+    public ResponseEntity<List<StockSummaryDTO>> getStockSummary(
+            @RequestParam(required = false) List<Long> productIds,
+            @RequestParam(required = false) List<String> skus,
+            @RequestParam(required = false) Long organizationId) {
+        List<Long> ids = productIds != null ? productIds : List.of();
+        List<String> codes = skus != null ? skus : List.of();
+        if (ids.isEmpty() && codes.isEmpty()) {
+            throw new IllegalArgumentException("At least one product id or SKU is required");
+        }
+        if (ids.size() + codes.size() > maxLookup) {
+            throw new IllegalArgumentException("At most " + maxLookup + " products can be looked up at once");
+        }
+        return ResponseEntity.ok(stockAvailabilityCache.lookup(ids, codes, organizationId));
+    }
+
+    @Operation(summary = "Export inventory", description = "Stream an organization's inventory as NDJSON or CSV, optionally gzipped. Resume an interrupted download with the last id received as afterId")
+    @GetMapping("/export")
+    public void exportInventory(
+            @RequestParam Long organizationId,
+            @RequestParam(defaultValue = "NDJSON") InventoryExportService.Format format,
+            @RequestParam(defaultValue = "0") long afterId,
+            @RequestParam(defaultValue = "false") boolean gzip,
+            HttpServletResponse response) throws IOException {
+        boolean csv = format == InventoryExportService.Format.CSV;
+        String filename = "inventory-" + organizationId + (csv ? ".csv" : ".ndjson") + (gzip ? ".gz" : "");
+        response.setContentType(gzip ? "application/gzip" : csv ? "text/csv;charset=UTF-8" : "application/x-ndjson");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"");
+
+        if (gzip) {
+            GZIPOutputStream out = new GZIPOutputStream(response.getOutputStream(), 64 * 1024);
+            inventoryExportService.export(organizationId, format, afterId, out);
+            out.finish();
+        } else {
+            inventoryExportService.export(organizationId, format, afterId, response.getOutputStream());
+        }
+    }
+
+    @Operation(summary = "Get stock movements", description = "Get the most recent movements of an inventory lot")
+    @GetMapping("/{inventoryId}/transactions")
+    public ResponseEntity<List<InventoryTransactionDTO>> getTransactions(
+            @PathVariable Long inventoryId,
+            @RequestParam(defaultValue = "50") int limit) {
+        List<InventoryTransactionDTO> transactions = inventoryService.getTransactions(inventoryId, limit);
+        return ResponseEntity.ok(transactions);
+    }
+
     @Operation(summary = "Get low stock alerts", description = "Get items with low stock levels")
     @GetMapping("/alerts/low-stock")
     public ResponseEntity<List<InventoryDTO>> getLowStockAlerts(
-            @RequestParam(required = false) Long warehouseId) {
-        List<InventoryDTO> alerts = inventoryService.getLowStockAlerts(warehouseId);
+            @RequestParam(required = false) Long warehouseId,
+            @RequestParam(required = false) Long organizationId) {
+        List<InventoryDTO> alerts = inventoryService.getLowStockAlerts(warehouseId, organizationId);
         return ResponseEntity.ok(alerts);
     }
 
-    @Operation(summary = "Get expiring items", description = "Get items expiring within specified days")
+    @Operation(summary = "Get expiring items", description = "Get items expiring within specified days, earliest first, optionally filtered by warehouse or organization")
     @GetMapping("/alerts/expiring")
     public ResponseEntity<List<InventoryDTO>> getExpiringItems(
-            @RequestParam(defaultValue = "30") int daysAhead) {
-        List<InventoryDTO> expiring = inventoryService.getExpiringItems(daysAhead);
+            @RequestParam(defaultValue = "30") int daysAhead,
+            @RequestParam(required = false) Long warehouseId,
+            @RequestParam(required = false) Long organizationId,
+            @RequestParam(defaultValue = "false") boolean includeExpired,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(required = false) Integer size) {
+        List<InventoryDTO> expiring = inventoryService.getExpiringItems(daysAhead, warehouseId, organizationId,
+                includeExpired, page, size);
         return ResponseEntity.ok(expiring);
     }
 
+    @Operation(summary = "Stream alerts", description = "Server-Sent Events stream of low-stock and expiry alert changes for a warehouse, or for an organization when no warehouse is given")
+    @GetMapping(value = "/alerts/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamAlerts(
+            @RequestParam(required = false) Long warehouseId,
+            @RequestParam(required = false) Long organizationId) {
+        return alertBroadcaster.subscribe(organizationId, warehouseId);
+    }
+
+    private HttpStatus batchStatus(BatchStockOperationResponse result, HttpStatus allApplied) {
+        if (result.getFailed() == 0) {
+            return allApplied;
+        }
+        return result.getSucceeded() > 0 ? HttpStatus.MULTI_STATUS : HttpStatus.CONFLICT;
+    }
+
     private Long getUserId(Authentication authentication) {
         UserDetails userDetails = (UserDetails) authentication.getPrincipal();
         return userRepository.findByEmail(userDetails.getUsername())
@@ -0,0 +1,66 @@
+package com.warehouse.controller;
+
+import com.warehouse.dto.ImportJobDTO;
+import com.warehouse.service.InventoryImportService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+
+/**
+ * Controller for bulk inventory import endpoints.
+ */
+@RestController
+@RequestMapping("/inventory/import")
+@SecurityRequirement(name = "bearerAuth")
+@Tag(name = "Inventory Import", description = "Bulk inventory import endpoints")
+public class InventoryImportController {
+
+    @Autowired
+    private InventoryImportService inventoryImportService;
+
+    @Autowired
+    private com.warehouse.repository.UserRepository userRepository;
+
+    @Operation(summary = "Start import", description = "Upload a CSV file (sku,quantity,batchNumber,expiryDate,zone) as the request body and import it into a warehouse in the background")
+    @PostMapping
+    public ResponseEntity<ImportJobDTO> startImport(
+            @RequestParam Long warehouseId,
+            HttpServletRequest request,
+            Authentication authentication) throws IOException {
+        Long userId = getUserId(authentication);
+        ImportJobDTO job = inventoryImportService.start(warehouseId, request.getInputStream(), userId);
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(job);
+    }
+
+    @Operation(summary = "Get import job", description = "Get the progress and row errors of an import job")
+    @GetMapping("/{jobId}")
+    public ResponseEntity<ImportJobDTO> getJob(@PathVariable String jobId) {
+        return ResponseEntity.ok(inventoryImportService.getJob(jobId));
+    }
+
+    @Operation(summary = "Resume import job", description = "Continue a failed import job from its last checkpoint")
+    @PostMapping("/{jobId}/resume")
+    public ResponseEntity<ImportJobDTO> resume(
+            @PathVariable String jobId,
+            Authentication authentication) {
+        Long userId = getUserId(authentication);
+        ImportJobDTO job = inventoryImportService.resume(jobId, userId);
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(job);
+    }
+
+    private Long getUserId(Authentication authentication) {
+        UserDetails userDetails = (UserDetails) authentication.getPrincipal();
+        return userRepository.findByEmail(userDetails.getUsername())
+                .orElseThrow(() -> new RuntimeException("User not found"))
+                .getId();
+    }
+}
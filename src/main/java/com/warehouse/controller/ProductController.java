@@ -37,6 +37,15 @@ public class ProductController {
         return ResponseEntity.ok(products);
     }
 
+    @Operation(summary = "Search products", description = "Top matches for a search box among an organization's active products, by SKU, name, category and description prefixes")
+    @GetMapping("/search")
+    public ResponseEntity<List<ProductDTO>> searchProducts(
+            @RequestParam Long organizationId,
+            @RequestParam String q,
+            @RequestParam(defaultValue = "20") int limit) {
+        return ResponseEntity.ok(productService.searchProducts(organizationId, q, limit));
+    }
+
     @Operation(summary = "Get product by ID", description = "Get product details by ID")
     @GetMapping("/{id}")
     public ResponseEntity<ProductDTO> getProduct(@PathVariable Long id) {
@@ -54,6 +63,17 @@ public class ProductController {
         return ResponseEntity.status(HttpStatus.CREATED).body(created);
     }
 
+    @Operation(summary = "Update product", description = "Update a product's details")
+    @PutMapping("/{id}")
+    public ResponseEntity<ProductDTO> updateProduct(
+            @PathVariable Long id,
+            @Valid @RequestBody ProductDTO dto,
+            Authentication authentication) {
+        Long userId = getUserId(authentication);
+        ProductDTO updated = productService.updateProduct(id, dto, userId);
+        return ResponseEntity.ok(updated);
+    }
+
     private Long getUserId(Authentication authentication) {
         UserDetails userDetails = (UserDetails) authentication.getPrincipal();
         return userRepository.findByEmail(userDetails.getUsername())
@@ -2,7 +2,10 @@ package com.warehouse.controller;
 
 import com.warehouse.dto.CreatePurchaseOrderRequest;
 import com.warehouse.dto.PurchaseOrderDTO;
+import com.warehouse.dto.ReplenishmentRunDTO;
+import com.warehouse.entity.User;
 import com.warehouse.service.PurchaseOrderService;
+import com.warehouse.service.ReplenishmentService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
@@ -10,6 +13,7 @@ import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.web.bind.annotation.*;
@@ -28,6 +32,9 @@ public class PurchaseOrderController {
     @Autowired
     private PurchaseOrderService purchaseOrderService;
 
+    @Autowired
+    private ReplenishmentService replenishmentService;
+
     @Autowired
     private com.warehouse.repository.UserRepository userRepository;
 
@@ -51,6 +58,15 @@ public class PurchaseOrderController {
         return ResponseEntity.ok(approved);
     }
 
+    @Operation(summary = "Replenish low stock", description = "Create one DRAFT purchase order per vendor for the caller's organization's stock at or below its reorder point, net of quantities already on open orders (Admin or Ops Manager only)")
+    @PreAuthorize("hasAnyRole('SUPER_ADMIN', 'COMPANY_ADMIN', 'OPS_MANAGER')")
+    @PostMapping("/replenish")
+    public ResponseEntity<ReplenishmentRunDTO> replenish(Authentication authentication) {
+        User user = getUser(authentication);
+        ReplenishmentRunDTO run = replenishmentService.replenish(user.getOrganization().getId(), user.getId());
+        return ResponseEntity.status(HttpStatus.CREATED).body(run);
+    }
+
     @Operation(summary = "Get purchase orders by organization", description = "Get all purchase orders for an organization")
     @GetMapping
     public ResponseEntity<List<PurchaseOrderDTO>> getPurchaseOrders(
@@ -67,9 +83,12 @@ public class PurchaseOrderController {
     }
 
     private Long getUserId(Authentication authentication) {
+        return getUser(authentication).getId();
+    }
+
+    private User getUser(Authentication authentication) {
         UserDetails userDetails = (UserDetails) authentication.getPrincipal();
         return userRepository.findByEmail(userDetails.getUsername())
-                .orElseThrow(() -> new RuntimeException("User not found"))
-                .getId();
+                .orElseThrow(() -> new RuntimeException("User not found"));
     }
 }
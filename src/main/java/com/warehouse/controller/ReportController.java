@@ -0,0 +1,51 @@
+package com.warehouse.controller;
+
+import com.warehouse.dto.StockHistoryDTO;
+import com.warehouse.dto.ValuationReportDTO;
+import com.warehouse.entity.RollupResolution;
+import com.warehouse.service.StockRollupService;
+import com.warehouse.service.ValuationReportService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Controller for reporting endpoints.
+ */
+@RestController
+@RequestMapping("/reports")
+@SecurityRequirement(name = "bearerAuth")
+@Tag(name = "Reports", description = "Inventory reporting endpoints")
+public class ReportController {
+
+    @Autowired
+    private ValuationReportService valuationReportService;
+
+    @Autowired
+    private StockRollupService stockRollupService;
+
+    @Operation(summary = "Inventory valuation", description = "Inventory value (quantity × unit price) of an organization by warehouse, category and vendor. Served from cache until stock changes unless useCache is false")
+    @GetMapping("/valuation")
+    public ResponseEntity<ValuationReportDTO> getValuation(
+            @RequestParam Long organizationId,
+            @RequestParam(defaultValue = "true") boolean useCache) {
+        return ResponseEntity.ok(valuationReportService.getValuation(organizationId, useCache));
+    }
+
+    @Operation(summary = "Stock history", description = "Hourly or daily stock in, stock out, net change and closing balance of a product, in one warehouse or all of them")
+    @GetMapping("/stock-history")
+    public ResponseEntity<StockHistoryDTO> getStockHistory(
+            @RequestParam Long productId,
+            @RequestParam(required = false) Long warehouseId,
+            @RequestParam(defaultValue = "DAY") RollupResolution resolution,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to) {
+        return ResponseEntity.ok(stockRollupService.getHistory(productId, warehouseId, resolution, from, to));
+    }
+}
@@ -0,0 +1,76 @@
+package com.warehouse.controller;
+
+import com.warehouse.dto.AvailableToPromiseDTO;
+import com.warehouse.dto.ReservationDTO;
+import com.warehouse.dto.ReservationRequest;
+import com.warehouse.service.ReservationService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.validation.Valid;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.web.bind.annotation.*;
+
+/**
+ * Controller for stock reservation and available-to-promise endpoints.
+ */
+@RestController
+@RequestMapping("/inventory")
+@SecurityRequirement(name = "bearerAuth")
+@Tag(name = "Reservations", description = "Stock reservation endpoints")
+public class ReservationController {
+
+    @Autowired
+    private ReservationService reservationService;
+
+    @Autowired
+    private com.warehouse.repository.UserRepository userRepository;
+
+    @Operation(summary = "Reserve stock", description = "Hold stock of a product in a warehouse until committed, released or expired")
+    @PostMapping("/reservations")
+    public ResponseEntity<ReservationDTO> reserve(@Valid @RequestBody ReservationRequest request) {
+        ReservationDTO reservation = reservationService.reserve(request);
+        return ResponseEntity.status(HttpStatus.CREATED).body(reservation);
+    }
+
+    @Operation(summary = "Get reservation", description = "Get an active reservation by ID")
+    @GetMapping("/reservations/{id}")
+    public ResponseEntity<ReservationDTO> getReservation(@PathVariable String id) {
+        return ResponseEntity.ok(reservationService.getReservation(id));
+    }
+
+    @Operation(summary = "Commit reservation", description = "Convert a reservation into an allocated stock out")
+    @PostMapping("/reservations/{id}/commit")
+    public ResponseEntity<ReservationDTO> commit(
+            @PathVariable String id,
+            Authentication authentication) {
+        Long userId = getUserId(authentication);
+        ReservationDTO reservation = reservationService.commit(id, userId);
+        return ResponseEntity.ok(reservation);
+    }
+
+    @Operation(summary = "Release reservation", description = "Release the stock held by a reservation")
+    @DeleteMapping("/reservations/{id}")
+    public ResponseEntity<ReservationDTO> release(@PathVariable String id) {
+        return ResponseEntity.ok(reservationService.release(id));
+    }
+
+    @Operation(summary = "Get available to promise", description = "On-hand, reserved and available stock of a product in a warehouse")
+    @GetMapping("/atp")
+    public ResponseEntity<AvailableToPromiseDTO> getAvailableToPromise(
+            @RequestParam Long productId,
+            @RequestParam Long warehouseId) {
+        return ResponseEntity.ok(reservationService.getAvailableToPromise(productId, warehouseId));
+    }
+
+    private Long getUserId(Authentication authentication) {
+        UserDetails userDetails = (UserDetails) authentication.getPrincipal();
+        return userRepository.findByEmail(userDetails.getUsername())
+                .orElseThrow(() -> new RuntimeException("User not found"))
+                .getId();
+    }
+}
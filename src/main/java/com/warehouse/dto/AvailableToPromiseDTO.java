@@ -0,0 +1,20 @@
+package com.warehouse.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * DTO for available-to-promise stock of a product in a warehouse.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AvailableToPromiseDTO {
+
+    private Long productId;
+    private Long warehouseId;
+    private int onHand;
+    private int reserved;
+    private int available;
+}
@@ -0,0 +1,30 @@
+package com.warehouse.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * DTO for batch stock operation requests (stock in/out of many lines at once).
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchStockOperationRequest {
+
+    @NotEmpty(message = "At least one item is required")
+    @Valid
+    private List<StockOperationRequest> items = new ArrayList<>();
+
+    private Mode mode = Mode.ALL_OR_NOTHING;
+
+    public enum Mode {
+        ALL_OR_NOTHING, // Apply every item or none of them
+        BEST_EFFORT // Apply the valid items and report the rest
+    }
+}
@@ -0,0 +1,32 @@
+package com.warehouse.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * DTO for batch stock operation results, one result per requested item.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchStockOperationResponse {
+
+    private BatchStockOperationRequest.Mode mode;
+    private int succeeded;
+    private int failed;
+    private List<ItemResult> results = new ArrayList<>();
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class ItemResult {
+        private int index;
+        private boolean success;
+        private InventoryDTO inventory;
+        private String error;
+    }
+}
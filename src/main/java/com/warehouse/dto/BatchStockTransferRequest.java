@@ -0,0 +1,23 @@
+package com.warehouse.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * DTO for bulk transfers, applied as one atomic unit.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchStockTransferRequest {
+
+    @NotEmpty(message = "At least one item is required")
+    @Valid
+    private List<StockTransferRequest> items = new ArrayList<>();
+}
@@ -0,0 +1,22 @@
+package com.warehouse.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * DTO for one page of a keyset-paginated listing. Pass {@code nextCursor}
+ * back as {@code cursor} to fetch the following page.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CursorPage<T> {
+
+    private List<T> items = new ArrayList<>();
+    private String nextCursor;
+    private boolean hasMore;
+}
@@ -0,0 +1,54 @@
+package com.warehouse.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.PositiveOrZero;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * DTO for a cycle count sheet: the quantities physically counted per lot.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CycleCountRequest {
+
+    private LocalDateTime countedAt; // When the count was taken; defaults to now
+
+    @Size(max = 50, message = "Reason code must be at most 50 characters")
+    private String reasonCode;
+
+    @Size(max = 500, message = "Notes must be at most 500 characters")
+    private String notes;
+
+    @NotEmpty(message = "At least one line is required")
+    @Valid
+    private List<Line> lines = new ArrayList<>();
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Line {
+
+        @NotNull(message = "Product ID is required")
+        private Long productId;
+
+        @NotNull(message = "Warehouse ID is required")
+        private Long warehouseId;
+
+        private Long zoneId;
+        private String batchNumber;
+
+        @NotNull(message = "Counted quantity is required")
+        @PositiveOrZero(message = "Counted quantity must not be negative")
+        private Integer countedQuantity;
+    }
+}
@@ -0,0 +1,49 @@
+package com.warehouse.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * DTO for cycle count results: the lots whose count differed from stock and
+ * the lines that could not be reconciled.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CycleCountResponse {
+
+    private LocalDateTime countedAt;
+    private int linesCounted;
+    private int lotsAdjusted;
+    private long netAdjustment;
+    private List<Variance> variances = new ArrayList<>();
+    private List<LineError> errors = new ArrayList<>();
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Variance {
+        private int index;
+        private Long inventoryId;
+        private Long productId;
+        private Long warehouseId;
+        private Long zoneId;
+        private String batchNumber;
+        private int expectedQuantity; // System stock at countedAt
+        private int countedQuantity;
+        private int adjustment; // Applied to current stock
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class LineError {
+        private int index;
+        private String error;
+    }
+}
@@ -0,0 +1,46 @@
+package com.warehouse.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * DTO for the progress of a bulk inventory import job.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ImportJobDTO {
+
+    private String id;
+    private Long warehouseId;
+    private Status status;
+    private long totalBytes;
+    private long committedBytes;
+    private double percentComplete;
+    private long importedRows;
+    private long failedRows;
+    private String message;
+    private LocalDateTime startedAt;
+    private LocalDateTime finishedAt;
+    private List<RowError> errors = new ArrayList<>(); // The first inventory.import.max-errors row errors
+
+    public enum Status {
+        QUEUED,
+        RUNNING,
+        COMPLETED, // Every line processed; failed rows are listed in errors
+        FAILED // Stopped early; resume to continue from the last checkpoint
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class RowError {
+        private long line;
+        private String message;
+    }
+}
@@ -0,0 +1,27 @@
+package com.warehouse.dto;
+
+import com.warehouse.entity.TransactionType;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * DTO for InventoryTransaction (stock movement) data transfer.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class InventoryTransactionDTO {
+
+    private Long id;
+    private Long inventoryId;
+    private TransactionType transactionType;
+    private Integer quantity;
+    private String reasonCode;
+    private Long performedById;
+    private String performedByName;
+    private LocalDateTime timestamp;
+    private String notes;
+}
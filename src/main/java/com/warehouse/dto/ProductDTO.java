@@ -1,5 +1,6 @@
 package com.warehouse.dto;
 
+import com.warehouse.entity.ZoneType;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -23,4 +24,5 @@ public class ProductDTO {
     private String category;
     private BigDecimal unitPrice;
     private Boolean active;
+    private ZoneType storageType; // COLD_STORAGE, HAZMAT or QUARANTINE; null for general storage
 }
@@ -0,0 +1,38 @@
+package com.warehouse.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * DTO for a replenishment run: the DRAFT purchase orders it created, one per
+ * vendor, for the stock below reorder point that open orders did not cover.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReplenishmentRunDTO {
+
+    private Long organizationId;
+    private LocalDateTime runAt;
+    private int lowStockLines; // (product, warehouse) pairs at or below their reorder point
+    private int productsOrdered;
+    private int productsCoveredByOpenOrders;
+    private List<Order> purchaseOrders = new ArrayList<>();
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Order {
+        private Long purchaseOrderId;
+        private String poNumber;
+        private Long vendorId;
+        private int lines;
+        private BigDecimal totalAmount;
+    }
+}
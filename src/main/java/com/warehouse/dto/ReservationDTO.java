@@ -0,0 +1,33 @@
+package com.warehouse.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * DTO for stock reservations.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReservationDTO {
+
+    private String id;
+    private Long productId;
+    private Long warehouseId;
+    private Integer quantity;
+    private String reference;
+    private Status status;
+    private LocalDateTime createdAt;
+    private LocalDateTime expiresAt;
+    private StockAllocationResponse allocation;
+
+    public enum Status {
+        ACTIVE, // Holding stock
+        COMMITTED, // Converted into a stock-out
+        RELEASED, // Released by the caller
+        EXPIRED // Released by the TTL
+    }
+}
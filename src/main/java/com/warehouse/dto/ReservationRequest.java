@@ -0,0 +1,35 @@
+package com.warehouse.dto;
+
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * DTO for stock reservation requests.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReservationRequest {
+
+    @NotNull(message = "Product ID is required")
+    private Long productId;
+
+    @NotNull(message = "Warehouse ID is required")
+    private Long warehouseId;
+
+    @NotNull(message = "Quantity is required")
+    @Positive(message = "Quantity must be positive")
+    private Integer quantity;
+
+    // Falls back to inventory.reservation.default-ttl-seconds when not given
+    @Positive(message = "TTL must be positive")
+    private Integer ttlSeconds;
+
+    // Caller's own reference, e.g. the order or cart id
+    @Size(max = 100, message = "Reference must be at most 100 characters")
+    private String reference;
+}
@@ -0,0 +1,34 @@
+package com.warehouse.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * DTO for an alert change pushed to alert stream subscribers.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class StockAlertDTO {
+
+    private Type type;
+    private Long organizationId;
+    private Long warehouseId;
+    private Long inventoryId; // LOW_STOCK and RESTOCKED
+    private Long productId;
+    private Integer quantity;
+    private Integer minStockLevel;
+    private List<Long> inventoryIds = new ArrayList<>(); // EXPIRED
+    private LocalDateTime timestamp;
+
+    public enum Type {
+        LOW_STOCK, // Lot fell to or below its minStockLevel
+        RESTOCKED, // Lot rose back above its minStockLevel
+        EXPIRED // Lots passed their expiry date
+    }
+}
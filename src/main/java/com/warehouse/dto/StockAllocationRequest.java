@@ -0,0 +1,38 @@
+package com.warehouse.dto;
+
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * DTO for stock-out requests that are allocated across lots automatically.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class StockAllocationRequest {
+
+    @NotNull(message = "Product ID is required")
+    private Long productId;
+
+    @NotNull(message = "Warehouse ID is required")
+    private Long warehouseId;
+
+    @NotNull(message = "Quantity is required")
+    @Positive(message = "Quantity must be positive")
+    private Integer quantity;
+
+    // Falls back to inventory.allocation.policy when not given
+    private Policy policy;
+
+    @Size(max = 500, message = "Notes must be at most 500 characters")
+    private String notes;
+
+    public enum Policy {
+        FEFO, // First expired, first out: earliest expiry date first, undated lots last
+        FIFO // First in, first out: earliest received lot first
+    }
+}
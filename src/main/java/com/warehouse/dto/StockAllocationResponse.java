@@ -0,0 +1,36 @@
+package com.warehouse.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * DTO for allocated stock-out results, one allocation per lot picked from.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class StockAllocationResponse {
+
+    private Long productId;
+    private Long warehouseId;
+    private StockAllocationRequest.Policy policy;
+    private int quantity;
+    private List<LotAllocation> allocations = new ArrayList<>();
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class LotAllocation {
+        private Long inventoryId;
+        private Long zoneId;
+        private String batchNumber;
+        private LocalDate expiryDate;
+        private int quantity;
+        private int remainingQuantity;
+    }
+}
@@ -0,0 +1,39 @@
+package com.warehouse.dto;
+
+import com.warehouse.entity.RollupResolution;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * DTO for the on-hand history of a product, in one warehouse or summed over
+ * all of them. Only buckets with movements are listed.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class StockHistoryDTO {
+
+    private Long productId;
+    private Long warehouseId; // Null when summed over every warehouse
+    private RollupResolution resolution;
+    private LocalDateTime from;
+    private LocalDateTime to;
+    private long openingBalance;
+    private List<Point> points = new ArrayList<>();
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Point {
+        private LocalDateTime bucketStart;
+        private long stockIn;
+        private long stockOut;
+        private long netChange;
+        private long closingBalance;
+    }
+}
@@ -2,6 +2,7 @@ package com.warehouse.dto;
 
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Positive;
+import jakarta.validation.constraints.Size;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -30,5 +31,7 @@ public class StockOperationRequest {
 
     private String batchNumber;
     private LocalDate expiryDate;
+
+    @Size(max = 500, message = "Notes must be at most 500 characters")
     private String notes;
 }
@@ -0,0 +1,36 @@
+package com.warehouse.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * DTO for the total, reserved and available stock of a product, across an
+ * organization and per warehouse.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class StockSummaryDTO {
+
+    private Long productId;
+    private String sku;
+    private Long organizationId; // Null when summed over every organization
+    private long total;
+    private long reserved;
+    private long available;
+    private List<WarehouseStock> warehouses = new ArrayList<>();
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class WarehouseStock {
+        private Long warehouseId;
+        private long total;
+        private long reserved;
+        private long available;
+    }
+}
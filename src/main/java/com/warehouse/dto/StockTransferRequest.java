@@ -0,0 +1,40 @@
+package com.warehouse.dto;
+
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * DTO for moving stock of one lot between warehouses or between zones of a
+ * warehouse. The lot keeps its batch number and expiry date at the destination.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class StockTransferRequest {
+
+    @NotNull(message = "Product ID is required")
+    private Long productId;
+
+    @NotNull(message = "Source warehouse ID is required")
+    private Long fromWarehouseId;
+
+    private Long fromZoneId;
+
+    @NotNull(message = "Destination warehouse ID is required")
+    private Long toWarehouseId;
+
+    private Long toZoneId;
+
+    private String batchNumber;
+
+    @NotNull(message = "Quantity is required")
+    @Positive(message = "Quantity must be positive")
+    private Integer quantity;
+
+    @Size(max = 500, message = "Notes must be at most 500 characters")
+    private String notes;
+}
@@ -0,0 +1,17 @@
+package com.warehouse.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * DTO for transfer results: the source and destination lots after the move.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class StockTransferResponse {
+
+    private InventoryDTO source;
+    private InventoryDTO destination;
+}
@@ -0,0 +1,39 @@
+package com.warehouse.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * DTO for an organization's inventory valuation (quantity × unit price),
+ * grouped by warehouse, category and vendor.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ValuationReportDTO {
+
+    private Long organizationId;
+    private LocalDateTime generatedAt;
+    private long totalQuantity;
+    private BigDecimal totalValue;
+    private List<Group> warehouses = new ArrayList<>();
+    private List<Group> categories = new ArrayList<>();
+    private List<Group> vendors = new ArrayList<>();
+    private boolean cached; // Served from the cache; stock has not changed since generatedAt
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Group {
+        private Long id; // Null for categories
+        private String name;
+        private long quantity;
+        private BigDecimal value;
+    }
+}
@@ -26,5 +26,7 @@ public class WarehouseDTO {
     private String managerName;
     private Boolean active;
     private LocalDateTime createdAt;
+    private Long occupancy;
+    private Double occupancyPercentage;
     private List<StorageZoneDTO> zones = new ArrayList<>();
 }
@@ -0,0 +1,42 @@
+package com.warehouse.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Idempotency record entity holding the stored response of a mutating
+ * request sent with an Idempotency-Key, replayed to retries of the request.
+ */
+@Entity
+@Table(name = "idempotency_keys", indexes = @Index(name = "idx_idempotency_expires", columnList = "expires_at"))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class IdempotencyRecord {
+
+    @Id
+    @Column(length = 64)
+    private String idempotencyKey; // SHA-256 of user, method, path and the client's key
+
+    @Column(nullable = false, length = 64)
+    private String fingerprint; // SHA-256 of the request, to detect a key reused for another request
+
+    @Column(nullable = false)
+    private Integer status;
+
+    @Column(length = 100)
+    private String contentType;
+
+    @Column(length = 16777215)
+    private byte[] body;
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(nullable = false)
+    private LocalDateTime expiresAt;
+}
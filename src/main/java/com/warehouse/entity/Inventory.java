@@ -4,6 +4,8 @@ import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.ColumnDefault;
+import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.annotation.LastModifiedDate;
 import org.springframework.data.jpa.domain.support.AuditingEntityListener;
 
@@ -17,7 +19,8 @@ import java.time.LocalDateTime;
 @Table(name = "inventory", uniqueConstraints = @UniqueConstraint(columnNames = { "product_id", "warehouse_id",
         "zone_id", "batch_number" }), indexes = {
                 @Index(name = "idx_inventory_warehouse", columnList = "warehouse_id"),
-                @Index(name = "idx_inventory_product", columnList = "product_id")
+                @Index(name = "idx_inventory_product", columnList = "product_id"),
+                @Index(name = "idx_inventory_expiry", columnList = "expiry_date")
         })
 @EntityListeners(AuditingEntityListener.class)
 @Data
@@ -25,8 +28,10 @@ import java.time.LocalDateTime;
 @AllArgsConstructor
 public class Inventory {
 
+    // Pooled sequence rather than IDENTITY so inserts can be JDBC-batched
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "inventory_seq")
+    @SequenceGenerator(name = "inventory_seq", sequenceName = "inventory_seq", allocationSize = 50)
     private Long id;
 
     @ManyToOne(fetch = FetchType.LAZY)
@@ -50,16 +55,33 @@ public class Inventory {
     @Column
     private LocalDate expiryDate;
 
+    // Number of movements applied to the lot, bumped in the same transaction as the quantity.
+    // Movement log rows record it, so a reader can tell whether the log holds every movement.
+    @ColumnDefault("0")
+    @Column(nullable = false)
+    private Long movementSeq = 0L;
+
     @Column(nullable = false)
     private Integer minStockLevel = 0;
 
     @Column(nullable = false)
     private Integer maxStockLevel = 1000;
 
+    // Receipt time of the lot, used for FIFO allocation; lastUpdated changes on every pick
+    @CreatedDate
+    @Column(updatable = false)
+    private LocalDateTime receivedAt;
+
     @LastModifiedDate
     @Column(nullable = false)
     private LocalDateTime lastUpdated;
 
+    // Helper method to apply a stock movement and count it
+    public void move(int delta) {
+        quantity += delta;
+        movementSeq++;
+    }
+
     // Helper method to check if stock is low
     public boolean isLowStock() {
         return quantity <= minStockLevel;
@@ -0,0 +1,42 @@
+package com.warehouse.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Import batch entity recording one committed slice of a bulk inventory
+ * import file. It is written in the same transaction as the slice's rows, so
+ * a restarted import knows exactly which slices are already in the table.
+ */
+@Entity
+@Table(name = "inventory_import_batches", uniqueConstraints = @UniqueConstraint(columnNames = { "job_id",
+        "start_offset" }))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class InventoryImportBatch {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "job_id", nullable = false, length = 36)
+    private String jobId;
+
+    @Column(name = "start_offset", nullable = false)
+    private Long startOffset; // Byte offset of the slice's first line
+
+    @Column(nullable = false)
+    private Long endOffset; // Byte offset just past the slice's last line
+
+    @Column(nullable = false)
+    private Long endLine; // Line number of the slice's last line
+
+    @Column(nullable = false)
+    private Integer importedRows;
+
+    @Column(nullable = false)
+    private Integer failedRows;
+}
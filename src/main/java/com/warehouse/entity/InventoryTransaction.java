@@ -38,6 +38,9 @@ public class InventoryTransaction {
     @Column(nullable = false)
     private Integer quantity; // Can be negative for stock out
 
+    @Column
+    private Long movementSeq; // The lot's movement sequence after this movement; null before it was tracked
+
     @Column(length = 50)
     private String reasonCode; // Required for adjustments
 
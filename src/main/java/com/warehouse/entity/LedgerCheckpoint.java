@@ -0,0 +1,24 @@
+package com.warehouse.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Ledger checkpoint entity recording the last journal sequence of a stock
+ * ledger shard that has been persisted to the inventory table.
+ */
+@Entity
+@Table(name = "inventory_ledger_checkpoints")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class LedgerCheckpoint {
+
+    @Id
+    private Integer shard;
+
+    @Column(nullable = false)
+    private Long lastSequence = 0L;
+}
@@ -45,6 +45,10 @@ public class Product {
     @Column(length = 50)
     private String category;
 
+    @Enumerated(EnumType.STRING)
+    @Column(length = 20)
+    private ZoneType storageType; // Zone type the product must be put away in; null means GENERAL
+
     @Column(nullable = false, precision = 10, scale = 2)
     private BigDecimal unitPrice;
 
@@ -0,0 +1,9 @@
+package com.warehouse.entity;
+
+/**
+ * Bucket sizes of the stock level rollups.
+ */
+public enum RollupResolution {
+    HOUR, // One bucket per clock hour
+    DAY // One bucket per calendar day
+}
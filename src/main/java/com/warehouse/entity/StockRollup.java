@@ -0,0 +1,54 @@
+package com.warehouse.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Pre-aggregated stock movements of a product in a warehouse over one hour
+ * or day. Buckets only exist for periods with movements; the closing balance
+ * carries over unchanged through the periods in between.
+ */
+@Entity
+@Table(name = "stock_rollups", uniqueConstraints = @UniqueConstraint(columnNames = { "product_id", "warehouse_id",
+        "resolution", "bucket_start" }), indexes = {
+                @Index(name = "idx_rollup_product_range", columnList = "product_id, resolution, bucket_start")
+        })
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class StockRollup {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // Plain ids rather than associations: rollups are read in bulk and never navigated
+    @Column(name = "product_id", nullable = false)
+    private Long productId;
+
+    @Column(name = "warehouse_id", nullable = false)
+    private Long warehouseId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 5)
+    private RollupResolution resolution;
+
+    @Column(name = "bucket_start", nullable = false)
+    private LocalDateTime bucketStart;
+
+    @Column(nullable = false)
+    private Long stockIn; // Units received in the bucket
+
+    @Column(nullable = false)
+    private Long stockOut; // Units issued in the bucket, as a positive number
+
+    @Column(nullable = false)
+    private Long netChange;
+
+    @Column(nullable = false)
+    private Long closingBalance; // On-hand quantity at the end of the bucket
+}
@@ -0,0 +1,24 @@
+package com.warehouse.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Application event published by the daily expiry roll-forward with the lots
+ * of one warehouse that expired since the previous run.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class LotsExpiredEvent {
+
+    private Long warehouseId;
+    private Long organizationId;
+    private LocalDate asOf;
+    private List<Long> inventoryIds = new ArrayList<>();
+}
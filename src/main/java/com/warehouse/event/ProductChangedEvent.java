@@ -0,0 +1,26 @@
+package com.warehouse.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Application event published when a product is created or updated, with
+ * the fields the in-memory product caches keep. {@code previousOrganizationId}
+ * is the organization of the product's former vendor, or null for a new
+ * product.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductChangedEvent {
+
+    private Long productId;
+    private Long organizationId;
+    private Long previousOrganizationId;
+    private String sku;
+    private String name;
+    private String description;
+    private String category;
+    private boolean active;
+}
@@ -0,0 +1,55 @@
+package com.warehouse.event;
+
+import com.warehouse.entity.Inventory;
+import com.warehouse.entity.TransactionType;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Application event published for every stock movement, carrying the lot's
+ * state after the movement was applied. Listeners that maintain derived
+ * state should react after commit.
+ */
+@Data
+@NoArgsConstructor
+public class StockMovementEvent {
+
+    private Long inventoryId;
+    private Long productId;
+    private Long warehouseId;
+    private Long organizationId;
+    private Long zoneId;
+    private String batchNumber;
+    private LocalDate expiryDate;
+    private TransactionType transactionType;
+    private int quantity; // Signed delta, negative for stock leaving the lot
+    private int resultingQuantity;
+    private Long movementSeq; // The lot's sequence number after this movement; null from the stock ledger
+    private int minStockLevel;
+    private Long performedBy;
+    private String reasonCode;
+    private String notes;
+    private LocalDateTime timestamp;
+
+    public static StockMovementEvent of(Inventory inventory, TransactionType type, int quantity, Long userId) {
+        StockMovementEvent event = new StockMovementEvent();
+        event.setInventoryId(inventory.getId());
+        event.setProductId(inventory.getProduct().getId());
+        event.setWarehouseId(inventory.getWarehouse().getId());
+        event.setOrganizationId(inventory.getWarehouse().getOrganization().getId());
+        event.setZoneId(inventory.getZone() != null ? inventory.getZone().getId() : null);
+        event.setBatchNumber(inventory.getBatchNumber());
+        event.setExpiryDate(inventory.getExpiryDate());
+        event.setTransactionType(type);
+        event.setQuantity(quantity);
+        event.setResultingQuantity(inventory.getQuantity());
+        event.setMovementSeq(inventory.getMovementSeq());
+        event.setMinStockLevel(inventory.getMinStockLevel());
+        event.setPerformedBy(userId);
+        event.setTimestamp(LocalDateTime.now());
+        return event;
+    }
+}
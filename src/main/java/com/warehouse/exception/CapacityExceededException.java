@@ -0,0 +1,16 @@
+package com.warehouse.exception;
+
+/**
+ * Exception thrown when stock would be placed beyond a storage capacity.
+ */
+public class CapacityExceededException extends RuntimeException {
+
+    public CapacityExceededException(String message) {
+        super(message);
+    }
+
+    public CapacityExceededException(String resourceName, Long id, long capacity, long used, long requested) {
+        super(String.format("%s %d is full. Capacity: %d, in use: %d, requested: %d",
+                resourceName, id, capacity, used, requested));
+    }
+}
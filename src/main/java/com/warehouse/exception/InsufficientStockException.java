@@ -0,0 +1,15 @@
+package com.warehouse.exception;
+
+/**
+ * Exception thrown when a stock operation asks for more than is available.
+ */
+public class InsufficientStockException extends RuntimeException {
+
+    public InsufficientStockException(String message) {
+        super(message);
+    }
+
+    public InsufficientStockException(int available) {
+        super("Insufficient stock. Available: " + available);
+    }
+}
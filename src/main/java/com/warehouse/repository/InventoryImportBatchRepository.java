@@ -0,0 +1,16 @@
+package com.warehouse.repository;
+
+import com.warehouse.entity.InventoryImportBatch;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+/**
+ * Repository for InventoryImportBatch entity operations.
+ */
+@Repository
+public interface InventoryImportBatchRepository extends JpaRepository<InventoryImportBatch, Long> {
+
+    List<InventoryImportBatch> findByJobIdOrderByStartOffset(String jobId);
+}
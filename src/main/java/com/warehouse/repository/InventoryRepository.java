@@ -1,12 +1,19 @@
 package com.warehouse.repository;
 
+import com.warehouse.dto.InventoryDTO;
 import com.warehouse.entity.Inventory;
+import com.warehouse.entity.ZoneType;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -18,21 +25,85 @@ public interface InventoryRepository extends JpaRepository<Inventory, Long> {
 
     List<Inventory> findByWarehouseId(Long warehouseId);
 
+    // One keyset page of a warehouse's inventory, projected straight into DTOs with the names
+    // joined in. The (warehouse_id, id) order of idx_inventory_warehouse serves the seek and sort.
+    @Query("SELECT new com.warehouse.dto.InventoryDTO(i.id, p.id, p.name, p.sku, w.id, w.name, z.id, z.name, "
+            + "i.quantity, i.batchNumber, i.expiryDate, i.minStockLevel, i.maxStockLevel, i.lastUpdated, "
+            + "CASE WHEN i.quantity <= i.minStockLevel THEN true ELSE false END, "
+            + "CASE WHEN i.expiryDate < :expiringSoon THEN true ELSE false END) "
+            + "FROM Inventory i JOIN i.product p JOIN i.warehouse w LEFT JOIN i.zone z "
+            + "WHERE w.id = :warehouseId AND i.id > :afterId "
+            + "AND (:zoneId IS NULL OR z.id = :zoneId) "
+            + "AND (:zoneType IS NULL OR z.zoneType = :zoneType) "
+            + "AND (:category IS NULL OR p.category = :category) "
+            + "AND (:lowStock = false OR i.quantity <= i.minStockLevel) "
+            + "AND (:expiringBefore IS NULL OR i.expiryDate <= :expiringBefore) "
+            + "ORDER BY i.id")
+    List<InventoryDTO> findPage(@Param("warehouseId") Long warehouseId, @Param("afterId") Long afterId,
+            @Param("zoneId") Long zoneId, @Param("zoneType") ZoneType zoneType,
+            @Param("category") String category, @Param("lowStock") boolean lowStock,
+            @Param("expiringBefore") LocalDate expiringBefore, @Param("expiringSoon") LocalDate expiringSoon,
+            Pageable pageable);
+
     List<Inventory> findByProductId(Long productId);
 
     Optional<Inventory> findByProductIdAndWarehouseIdAndBatchNumber(
             Long productId, Long warehouseId, String batchNumber);
 
-    // Low stock alerts
-    @Query("SELECT i FROM Inventory i WHERE i.quantity <= i.minStockLevel")
-    List<Inventory> findLowStockItems();
+    // Single lot by its natural key, with everything convertToDTO renders
+    @Query("SELECT i FROM Inventory i JOIN FETCH i.product JOIN FETCH i.warehouse LEFT JOIN FETCH i.zone "
+            + "WHERE i.product.id = :productId AND i.warehouse.id = :warehouseId "
+            + "AND (i.zone.id = :zoneId OR (:zoneId IS NULL AND i.zone IS NULL)) "
+            + "AND (i.batchNumber = :batchNumber OR (:batchNumber IS NULL AND i.batchNumber IS NULL))")
+    Optional<Inventory> findLot(@Param("productId") Long productId, @Param("warehouseId") Long warehouseId,
+            @Param("zoneId") Long zoneId, @Param("batchNumber") String batchNumber);
+
+    // Rows by id with everything convertToDTO renders, for index-backed reads
+    @Query("SELECT i FROM Inventory i JOIN FETCH i.product JOIN FETCH i.warehouse LEFT JOIN FETCH i.zone "
+            + "WHERE i.id IN :ids")
+    List<Inventory> findAllWithDetailsByIdIn(@Param("ids") Collection<Long> ids);
+
+    // Atomic stock movements: a single conditional UPDATE, no read-modify-write
+    @Modifying
+    @Query("UPDATE Inventory i SET i.quantity = i.quantity + :quantity, i.movementSeq = i.movementSeq + 1, "
+            + "i.lastUpdated = CURRENT_TIMESTAMP "
+            + "WHERE i.product.id = :productId AND i.warehouse.id = :warehouseId "
+            + "AND (i.zone.id = :zoneId OR (:zoneId IS NULL AND i.zone IS NULL)) "
+            + "AND (i.batchNumber = :batchNumber OR (:batchNumber IS NULL AND i.batchNumber IS NULL))")
+    int incrementLot(@Param("productId") Long productId, @Param("warehouseId") Long warehouseId,
+            @Param("zoneId") Long zoneId, @Param("batchNumber") String batchNumber,
+            @Param("quantity") int quantity);
+
+    @Modifying
+    @Query("UPDATE Inventory i SET i.quantity = i.quantity - :quantity, i.movementSeq = i.movementSeq + 1, "
+            + "i.lastUpdated = CURRENT_TIMESTAMP "
+            + "WHERE i.product.id = :productId AND i.warehouse.id = :warehouseId "
+            + "AND (i.zone.id = :zoneId OR (:zoneId IS NULL AND i.zone IS NULL)) "
+            + "AND (i.batchNumber = :batchNumber OR (:batchNumber IS NULL AND i.batchNumber IS NULL)) "
+            + "AND i.quantity >= :quantity")
+    int decrementLotIfAvailable(@Param("productId") Long productId, @Param("warehouseId") Long warehouseId,
+            @Param("zoneId") Long zoneId, @Param("batchNumber") String batchNumber,
+            @Param("quantity") int quantity);
+
+    // All lots for a set of products across a set of warehouses, for batch operations.
+    // Rows are locked in id order so concurrent batches cannot deadlock.
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT i FROM Inventory i "
+            + "WHERE i.product.id IN :productIds AND i.warehouse.id IN :warehouseIds ORDER BY i.id")
+    List<Inventory> findLots(@Param("productIds") Collection<Long> productIds,
+            @Param("warehouseIds") Collection<Long> warehouseIds);
 
-    @Query("SELECT i FROM Inventory i WHERE i.warehouse.id = :warehouseId AND i.quantity <= i.minStockLevel")
-    List<Inventory> findLowStockItemsByWarehouse(@Param("warehouseId") Long warehouseId);
+    // Ids and lot keys only, so no entities enter the persistence context before they are locked.
+    // Each row is { id, productId, warehouseId, zoneId, batchNumber }.
+    @Query("SELECT i.id, i.product.id, i.warehouse.id, z.id, i.batchNumber FROM Inventory i LEFT JOIN i.zone z "
+            + "WHERE i.product.id IN :productIds AND i.warehouse.id IN :warehouseIds")
+    List<Object[]> findLotKeys(@Param("productIds") Collection<Long> productIds,
+            @Param("warehouseIds") Collection<Long> warehouseIds);
 
-    // Expiring items
-    @Query("SELECT i FROM Inventory i WHERE i.expiryDate IS NOT NULL AND i.expiryDate <= :date")
-    List<Inventory> findExpiringBefore(@Param("date") LocalDate date);
+    // Lots by id, locked in ascending id order: the canonical lock order for multi-row updates
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT i FROM Inventory i WHERE i.id IN :ids ORDER BY i.id")
+    List<Inventory> findAllByIdInForUpdate(@Param("ids") Collection<Long> ids);
 
     @Query("SELECT i FROM Inventory i WHERE i.warehouse.organization.id = :orgId")
     List<Inventory> findByOrganizationId(@Param("orgId") Long organizationId);
@@ -0,0 +1,35 @@
+package com.warehouse.repository;
+
+import com.warehouse.entity.InventoryTransaction;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Repository for InventoryTransaction entity operations.
+ */
+@Repository
+public interface InventoryTransactionRepository extends JpaRepository<InventoryTransaction, Long> {
+
+    @Query("SELECT t FROM InventoryTransaction t JOIN FETCH t.performedBy "
+            + "WHERE t.inventory.id = :inventoryId ORDER BY t.timestamp DESC, t.id DESC")
+    List<InventoryTransaction> findRecentByInventoryId(@Param("inventoryId") Long inventoryId, Pageable pageable);
+
+    // Movements of each lot logged after a point in time: [inventoryId, sequenced movements, net quantity
+    // of the movements that are not adjustments]
+    @Query("SELECT t.inventory.id, COUNT(t.movementSeq), SUM(CASE WHEN t.transactionType = "
+            + "com.warehouse.entity.TransactionType.ADJUSTMENT THEN 0 ELSE t.quantity END) FROM InventoryTransaction t "
+            + "WHERE t.inventory.id IN :ids AND t.timestamp > :since GROUP BY t.inventory.id")
+    List<Object[]> summarizeMovementsSince(@Param("ids") Collection<Long> ids, @Param("since") LocalDateTime since);
+
+    // Each lot's movement sequence as of the last movement logged at or before a point in time: [inventoryId, seq]
+    @Query("SELECT t.inventory.id, MAX(t.movementSeq) FROM InventoryTransaction t "
+            + "WHERE t.inventory.id IN :ids AND t.timestamp <= :at GROUP BY t.inventory.id")
+    List<Object[]> findMovementSeqAt(@Param("ids") Collection<Long> ids, @Param("at") LocalDateTime at);
+}
@@ -0,0 +1,19 @@
+package com.warehouse.repository;
+
+import com.warehouse.entity.LedgerCheckpoint;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Repository for LedgerCheckpoint entity operations.
+ */
+@Repository
+public interface LedgerCheckpointRepository extends JpaRepository<LedgerCheckpoint, Integer> {
+
+    @Modifying
+    @Query("UPDATE LedgerCheckpoint c SET c.lastSequence = :sequence WHERE c.shard = :shard AND c.lastSequence < :sequence")
+    int advance(@Param("shard") Integer shard, @Param("sequence") Long sequence);
+}
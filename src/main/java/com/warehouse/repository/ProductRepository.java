@@ -1,9 +1,14 @@
 package com.warehouse.repository;
 
 import com.warehouse.entity.Product;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -17,9 +22,28 @@ public interface ProductRepository extends JpaRepository<Product, Long> {
 
     List<Product> findByVendorId(Long vendorId);
 
+    // Products with their vendor, which mapToDTO renders
+    @Query("SELECT p FROM Product p JOIN FETCH p.vendor ORDER BY p.id")
+    List<Product> findAllWithVendor();
+
+    @Query("SELECT p FROM Product p JOIN FETCH p.vendor WHERE p.id = :id")
+    Optional<Product> findWithVendorById(@Param("id") Long id);
+
+    @Query("SELECT p FROM Product p JOIN FETCH p.vendor WHERE p.id IN :ids")
+    List<Product> findAllWithVendorByIdIn(@Param("ids") Collection<Long> ids);
+
+    // Locks the product row; creating a new lot takes it so first receipts of one lot run in turn
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT p FROM Product p WHERE p.id = :id")
+    Optional<Product> findByIdForUpdate(@Param("id") Long id);
+
     List<Product> findByCategory(String category);
 
     List<Product> findByActiveTrue();
 
     boolean existsBySku(String sku);
+
+    // SKU and id of every active product of an organization, as { sku, id } rows
+    @Query("SELECT p.sku, p.id FROM Product p WHERE p.vendor.organization.id = :organizationId AND p.active = true")
+    List<Object[]> findSkusByOrganizationId(@Param("organizationId") Long organizationId);
 }
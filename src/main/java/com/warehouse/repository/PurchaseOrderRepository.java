@@ -3,6 +3,8 @@ package com.warehouse.repository;
 import com.warehouse.entity.PurchaseOrder;
 import com.warehouse.entity.PurchaseOrderStatus;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
@@ -19,6 +21,17 @@ public interface PurchaseOrderRepository extends JpaRepository<PurchaseOrder, Lo
 
     List<PurchaseOrder> findByOrganizationId(Long organizationId);
 
+    // Orders with everything convertToDTO renders, in one query: vendor, creator, approver and items with products
+    @Query("SELECT DISTINCT po FROM PurchaseOrder po JOIN FETCH po.vendor JOIN FETCH po.createdBy "
+            + "LEFT JOIN FETCH po.approvedBy LEFT JOIN FETCH po.items it LEFT JOIN FETCH it.product "
+            + "WHERE po.organization.id = :organizationId ORDER BY po.id")
+    List<PurchaseOrder> findWithDetailsByOrganizationId(@Param("organizationId") Long organizationId);
+
+    @Query("SELECT po FROM PurchaseOrder po JOIN FETCH po.vendor JOIN FETCH po.createdBy "
+            + "LEFT JOIN FETCH po.approvedBy LEFT JOIN FETCH po.items it LEFT JOIN FETCH it.product "
+            + "WHERE po.id = :id")
+    Optional<PurchaseOrder> findWithDetailsById(@Param("id") Long id);
+
     List<PurchaseOrder> findByStatus(PurchaseOrderStatus status);
 
     List<PurchaseOrder> findByVendorId(Long vendorId);
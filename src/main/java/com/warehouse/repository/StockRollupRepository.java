@@ -0,0 +1,34 @@
+package com.warehouse.repository;
+
+import com.warehouse.entity.RollupResolution;
+import com.warehouse.entity.StockRollup;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Repository for StockRollup entity operations.
+ */
+@Repository
+public interface StockRollupRepository extends JpaRepository<StockRollup, Long> {
+
+    // Buckets of a product in [from, to), in one warehouse or all of them when warehouseId is null
+    @Query("SELECT r FROM StockRollup r WHERE r.productId = :productId AND r.resolution = :resolution "
+            + "AND (:warehouseId IS NULL OR r.warehouseId = :warehouseId) "
+            + "AND r.bucketStart >= :from AND r.bucketStart < :to ORDER BY r.bucketStart, r.warehouseId")
+    List<StockRollup> findRange(@Param("productId") Long productId, @Param("warehouseId") Long warehouseId,
+            @Param("resolution") RollupResolution resolution, @Param("from") LocalDateTime from,
+            @Param("to") LocalDateTime to);
+
+    // Each warehouse's last bucket before a point in time, whose closing balance is the opening balance there
+    @Query("SELECT r FROM StockRollup r WHERE r.productId = :productId AND r.resolution = :resolution "
+            + "AND (:warehouseId IS NULL OR r.warehouseId = :warehouseId) "
+            + "AND r.bucketStart = (SELECT MAX(p.bucketStart) FROM StockRollup p WHERE p.productId = r.productId "
+            + "AND p.warehouseId = r.warehouseId AND p.resolution = r.resolution AND p.bucketStart < :before)")
+    List<StockRollup> findLatestBefore(@Param("productId") Long productId, @Param("warehouseId") Long warehouseId,
+            @Param("resolution") RollupResolution resolution, @Param("before") LocalDateTime before);
+}
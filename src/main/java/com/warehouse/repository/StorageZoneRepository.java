@@ -0,0 +1,16 @@
+package com.warehouse.repository;
+
+import com.warehouse.entity.StorageZone;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+/**
+ * Repository for StorageZone entity operations.
+ */
+@Repository
+public interface StorageZoneRepository extends JpaRepository<StorageZone, Long> {
+
+    List<StorageZone> findByWarehouseId(Long warehouseId);
+}
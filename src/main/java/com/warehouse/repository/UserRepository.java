@@ -3,6 +3,8 @@ package com.warehouse.repository;
 import com.warehouse.entity.User;
 import com.warehouse.entity.UserRole;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -18,6 +20,13 @@ public interface UserRepository extends JpaRepository<User, Long> {
 
     List<User> findByOrganizationId(Long organizationId);
 
+    // Users with their organization, which convertToDTO renders
+    @Query("SELECT u FROM User u JOIN FETCH u.organization WHERE u.organization.id = :organizationId ORDER BY u.id")
+    List<User> findWithOrganizationByOrganizationId(@Param("organizationId") Long organizationId);
+
+    @Query("SELECT u FROM User u JOIN FETCH u.organization WHERE u.id = :id")
+    Optional<User> findWithOrganizationById(@Param("id") Long id);
+
     List<User> findByRole(UserRole role);
 
     boolean existsByEmail(String email);
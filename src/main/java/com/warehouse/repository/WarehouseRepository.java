@@ -2,9 +2,12 @@ package com.warehouse.repository;
 
 import com.warehouse.entity.Warehouse;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
+import java.util.Optional;
 
 /**
  * Repository for Warehouse entity operations.
@@ -14,6 +17,15 @@ public interface WarehouseRepository extends JpaRepository<Warehouse, Long> {
 
     List<Warehouse> findByOrganizationId(Long organizationId);
 
+    // Warehouses with everything convertToDTO renders, in one query: organization, manager and zones
+    @Query("SELECT DISTINCT w FROM Warehouse w JOIN FETCH w.organization LEFT JOIN FETCH w.manager "
+            + "LEFT JOIN FETCH w.zones WHERE w.organization.id = :organizationId ORDER BY w.id")
+    List<Warehouse> findWithDetailsByOrganizationId(@Param("organizationId") Long organizationId);
+
+    @Query("SELECT w FROM Warehouse w JOIN FETCH w.organization LEFT JOIN FETCH w.manager "
+            + "LEFT JOIN FETCH w.zones WHERE w.id = :id")
+    Optional<Warehouse> findWithDetailsById(@Param("id") Long id);
+
     List<Warehouse> findByManagerId(Long managerId);
 
     List<Warehouse> findByActiveTrue();
@@ -0,0 +1,307 @@
+package com.warehouse.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.warehouse.dto.StockAlertDTO;
+import com.warehouse.event.LotsExpiredEvent;
+import com.warehouse.event.StockMovementEvent;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pushes low-stock and expiry alert changes to Server-Sent Events
+ * subscribers of an organization or a warehouse.
+ * <p>
+ * Subscribers are asynchronous responses, not threads: they are held in
+ * per-organization and per-warehouse sets and written to by a small shared
+ * sender pool. An alert is serialized once and the same frame is queued for
+ * every subscriber in scope; each subscriber's queue is bounded and drained
+ * by one sender task at a time, so a client that stops reading holds at most
+ * one sender thread and never delays the others. Low-stock alerts fire only
+ * when a committed movement takes a lot across its minStockLevel, and expiry
+ * alerts when the daily roll-forward expires lots. Subscribers that fail a
+ * write, fall {@code subscriber-queue} frames behind or stay blocked in a
+ * write for {@code send-timeout-ms} are dropped; clients load the current
+ * alerts from the REST endpoints and then apply the stream.
+ */
+@Slf4j
+@Service
+public class AlertBroadcaster {
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${inventory.alerts.emitter-timeout-ms:1800000}")
+    private long emitterTimeoutMs;
+
+    @Value("${inventory.alerts.max-subscribers:10000}")
+    private int maxSubscribers;
+
+    @Value("${inventory.alerts.sender-threads:2}")
+    private int senderThreads;
+
+    @Value("${inventory.alerts.subscriber-queue:256}")
+    private int subscriberQueue;
+
+    @Value("${inventory.alerts.send-timeout-ms:10000}")
+    private long sendTimeoutMs;
+
+    private final Map<Long, Set<Subscriber>> byOrganization = new ConcurrentHashMap<>();
+    private final Map<Long, Set<Subscriber>> byWarehouse = new ConcurrentHashMap<>();
+    private final AtomicInteger subscribers = new AtomicInteger();
+    private final AtomicLong sequence = new AtomicLong();
+    private ExecutorService sender;
+
+    @PostConstruct
+    public void start() {
+        AtomicInteger count = new AtomicInteger();
+        sender = Executors.newFixedThreadPool(senderThreads, runnable -> {
+            Thread thread = new Thread(runnable, "alert-broadcaster-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void stop() {
+        sender.shutdownNow();
+        byOrganization.values().forEach(emitters -> emitters.forEach(SseEmitter::complete));
+        byWarehouse.values().forEach(emitters -> emitters.forEach(SseEmitter::complete));
+    }
+
+    /**
+     * Open a stream of the alerts of one warehouse, or of a whole
+     * organization when no warehouse is given.
+     */
+    public SseEmitter subscribe(Long organizationId, Long warehouseId) {
+        if (organizationId == null && warehouseId == null) {
+            throw new IllegalArgumentException("Either organizationId or warehouseId is required");
+        }
+        if (subscribers.incrementAndGet() > maxSubscribers) {
+            subscribers.decrementAndGet();
+            throw new IllegalStateException("Too many alert subscribers");
+        }
+        Map<Long, Set<Subscriber>> scope = warehouseId != null ? byWarehouse : byOrganization;
+        Long key = warehouseId != null ? warehouseId : organizationId;
+
+        Subscriber emitter = new Subscriber(emitterTimeoutMs, subscriberQueue);
+        scope.computeIfAbsent(key, k -> ConcurrentHashMap.newKeySet()).add(emitter);
+        emitter.unsubscribe = () -> {
+            Set<Subscriber> emitters = scope.get(key);
+            if (emitters != null && emitters.remove(emitter)) {
+                subscribers.decrementAndGet();
+            }
+        };
+        emitter.onCompletion(emitter.unsubscribe);
+        emitter.onTimeout(emitter.unsubscribe);
+        emitter.onError(error -> emitter.unsubscribe.run());
+        try {
+            emitter.send(SseEmitter.event().comment("subscribed"));
+        } catch (IOException ex) {
+            emitter.unsubscribe.run();
+            emitter.completeWithError(ex);
+        }
+        return emitter;
+    }
+
+    public int getSubscriberCount() {
+        return subscribers.get();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onStockMovement(StockMovementEvent event) {
+        int min = event.getMinStockLevel();
+        boolean low = event.getResultingQuantity() <= min;
+        boolean wasLow = event.getResultingQuantity() - event.getQuantity() <= min;
+        if (low == wasLow || !hasSubscribers(event.getOrganizationId(), event.getWarehouseId())) {
+            return;
+        }
+        StockAlertDTO alert = new StockAlertDTO();
+        alert.setType(low ? StockAlertDTO.Type.LOW_STOCK : StockAlertDTO.Type.RESTOCKED);
+        alert.setOrganizationId(event.getOrganizationId());
+        alert.setWarehouseId(event.getWarehouseId());
+        alert.setInventoryId(event.getInventoryId());
+        alert.setProductId(event.getProductId());
+        alert.setQuantity(event.getResultingQuantity());
+        alert.setMinStockLevel(min);
+        alert.setTimestamp(event.getTimestamp() != null ? event.getTimestamp() : LocalDateTime.now());
+        publish(alert);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onLotsExpired(LotsExpiredEvent event) {
+        if (!hasSubscribers(event.getOrganizationId(), event.getWarehouseId())) {
+            return;
+        }
+        StockAlertDTO alert = new StockAlertDTO();
+        alert.setType(StockAlertDTO.Type.EXPIRED);
+        alert.setOrganizationId(event.getOrganizationId());
+        alert.setWarehouseId(event.getWarehouseId());
+        alert.setInventoryIds(event.getInventoryIds());
+        alert.setTimestamp(event.getAsOf().atStartOfDay());
+        publish(alert);
+    }
+
+    /**
+     * Keep idle streams open through proxies and drop the ones whose client
+     * has gone away or has been stuck in a write for longer than
+     * send-timeout-ms.
+     */
+    @Scheduled(fixedDelayString = "${inventory.alerts.heartbeat-ms:15000}")
+    public void heartbeat() {
+        if (subscribers.get() == 0) {
+            return;
+        }
+        Set<ResponseBodyEmitter.DataWithMediaType> frame = SseEmitter.event().comment("heartbeat").build();
+        List<Subscriber> all = new ArrayList<>();
+        byOrganization.values().forEach(all::addAll);
+        byWarehouse.values().forEach(all::addAll);
+        long now = System.nanoTime();
+        long timeout = TimeUnit.MILLISECONDS.toNanos(sendTimeoutMs);
+        for (Subscriber emitter : all) {
+            long since = emitter.sendingSince;
+            if (since != 0 && now - since >= timeout) {
+                close(emitter, "stalled in a write");
+            }
+        }
+        deliver(all, frame);
+    }
+
+    private void publish(StockAlertDTO alert) {
+        String json;
+        try {
+            json = objectMapper.writeValueAsString(alert);
+        } catch (JsonProcessingException ex) {
+            log.warn("Failed to serialize {} alert", alert.getType(), ex);
+            return;
+        }
+        Set<ResponseBodyEmitter.DataWithMediaType> frame = SseEmitter.event()
+                .id(Long.toString(sequence.incrementAndGet()))
+                .name("alert")
+                .data(json)
+                .build();
+        List<Subscriber> targets = new ArrayList<>();
+        Set<Subscriber> warehouse = byWarehouse.get(alert.getWarehouseId());
+        if (warehouse != null) {
+            targets.addAll(warehouse);
+        }
+        Set<Subscriber> organization = alert.getOrganizationId() != null
+                ? byOrganization.get(alert.getOrganizationId()) : null;
+        if (organization != null) {
+            targets.addAll(organization);
+        }
+        deliver(targets, frame);
+    }
+
+    private void deliver(List<Subscriber> targets, Set<ResponseBodyEmitter.DataWithMediaType> frame) {
+        for (Subscriber emitter : targets) {
+            if (emitter.closedReason != null) {
+                continue;
+            }
+            if (emitter.pending.offer(frame)) {
+                schedule(emitter);
+            } else {
+                // Too far behind to catch up; the client reconnects and reloads the current alerts
+                close(emitter, "fell behind");
+            }
+        }
+    }
+
+    private void schedule(Subscriber emitter) {
+        if (emitter.draining.compareAndSet(false, true)) {
+            try {
+                sender.execute(() -> drain(emitter));
+            } catch (RejectedExecutionException ex) {
+                emitter.draining.set(false); // Shutting down
+            }
+        }
+    }
+
+    /**
+     * Write a subscriber's queued frames in order. Only one drain of a
+     * subscriber runs at a time, and it leaves draining set once the
+     * subscriber is closed so no further drain is scheduled.
+     */
+    private void drain(Subscriber emitter) {
+        do {
+            Set<ResponseBodyEmitter.DataWithMediaType> frame;
+            while (emitter.closedReason == null && (frame = emitter.pending.poll()) != null) {
+                if (!write(emitter, frame)) {
+                    return;
+                }
+            }
+            if (emitter.closedReason != null) {
+                emitter.pending.clear();
+                emitter.completeWithError(new IOException("Alert subscriber " + emitter.closedReason));
+                return;
+            }
+            emitter.draining.set(false);
+        } while (!emitter.pending.isEmpty() && emitter.draining.compareAndSet(false, true));
+    }
+
+    private boolean hasSubscribers(Long organizationId, Long warehouseId) {
+        Set<Subscriber> warehouse = byWarehouse.get(warehouseId);
+        Set<Subscriber> organization = organizationId != null ? byOrganization.get(organizationId) : null;
+        return (warehouse != null && !warehouse.isEmpty()) || (organization != null && !organization.isEmpty());
+    }
+
+    private static boolean write(Subscriber emitter, Set<ResponseBodyEmitter.DataWithMediaType> frame) {
+        emitter.sendingSince = System.nanoTime();
+        try {
+            emitter.send(frame);
+            return true;
+        } catch (IOException | IllegalStateException ex) {
+            // Client went away or the stream already completed
+            emitter.unsubscribe.run();
+            emitter.pending.clear();
+            emitter.completeWithError(ex);
+            return false;
+        } finally {
+            emitter.sendingSince = 0;
+        }
+    }
+
+    /**
+     * Stop sending to a subscriber. The emitter's send and complete share a
+     * lock, so while a write is blocked the subscriber is only unsubscribed
+     * here and its drain completes it once the write returns.
+     */
+    private static void close(Subscriber emitter, String reason) {
+        emitter.closedReason = reason;
+        emitter.unsubscribe.run();
+        emitter.pending.clear();
+        if (emitter.draining.compareAndSet(false, true)) {
+            emitter.completeWithError(new IOException("Alert subscriber " + reason));
+        }
+        log.debug("Dropped alert subscriber: {}", reason);
+    }
+
+    private static final class Subscriber extends SseEmitter {
+        final BlockingQueue<Set<ResponseBodyEmitter.DataWithMediaType>> pending;
+        final AtomicBoolean draining = new AtomicBoolean();
+        volatile long sendingSince; // System.nanoTime() of the write in progress, 0 when idle
+        volatile String closedReason;
+        Runnable unsubscribe;
+
+        Subscriber(long timeoutMs, int queueSize) {
+            super(timeoutMs);
+            this.pending = new ArrayBlockingQueue<>(queueSize);
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package com.warehouse.service;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Usage counters against a capacity, one independent atomic per key, so
+ * updates to different keys never contend and updates to the same key are a
+ * compare-and-set rather than a lock. Keys whose usage changed since the last
+ * {@link #drainDirty()} are tracked for write-behind, and every change bumps
+ * the key's version so readers can tell whether usage moved under them.
+ */
+final class CapacityCounters {
+
+    static final long UNLIMITED = Long.MAX_VALUE;
+
+    private final Map<Long, Counter> counters = new ConcurrentHashMap<>();
+    private final Set<Long> dirty = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Start tracking a key. A capacity of zero or less means unlimited.
+     */
+    void register(Long id, long capacity, long used) {
+        counters.put(id, new Counter(capacity > 0 ? capacity : UNLIMITED, used));
+        dirty.add(id);
+    }
+
+    /**
+     * Change a key's capacity, keeping its usage.
+     */
+    void setCapacity(Long id, long capacity) {
+        counter(id).capacity = capacity > 0 ? capacity : UNLIMITED;
+    }
+
+    boolean contains(Long id) {
+        return counters.containsKey(id);
+    }
+
+    /**
+     * Add to a key's usage unless that would take it past its capacity.
+     * Decreases always succeed.
+     */
+    boolean tryAdd(Long id, long delta) {
+        Counter counter = counter(id);
+        if (delta <= 0) {
+            counter.used.addAndGet(delta);
+            counter.version.incrementAndGet();
+            dirty.add(id);
+            return true;
+        }
+        long used;
+        do {
+            used = counter.used.get();
+            if (used + delta > counter.capacity) {
+                return false;
+            }
+        } while (!counter.used.compareAndSet(used, used + delta));
+        counter.version.incrementAndGet();
+        dirty.add(id);
+        return true;
+    }
+
+    void add(Long id, long delta) {
+        Counter counter = counter(id);
+        counter.used.addAndGet(delta);
+        counter.version.incrementAndGet();
+        dirty.add(id);
+    }
+
+    boolean hasRoom(Long id, long amount) {
+        Counter counter = counters.get(id);
+        return counter == null || counter.used.get() + amount <= counter.capacity;
+    }
+
+    long used(Long id) {
+        Counter counter = counters.get(id);
+        return counter != null ? counter.used.get() : 0;
+    }
+
+    long version(Long id) {
+        Counter counter = counters.get(id);
+        return counter != null ? counter.version.get() : 0;
+    }
+
+    /**
+     * Version of every tracked key.
+     */
+    Map<Long, Long> versions() {
+        Map<Long, Long> versions = new HashMap<>();
+        counters.forEach((id, counter) -> versions.put(id, counter.version.get()));
+        return versions;
+    }
+
+    long capacity(Long id) {
+        Counter counter = counters.get(id);
+        return counter != null ? counter.capacity : UNLIMITED;
+    }
+
+    /**
+     * Current usage of every key that changed since the previous call.
+     */
+    Map<Long, Long> drainDirty() {
+        Map<Long, Long> changed = new HashMap<>();
+        for (Iterator<Long> it = dirty.iterator(); it.hasNext();) {
+            Long id = it.next();
+            it.remove();
+            Counter counter = counters.get(id);
+            if (counter != null) {
+                changed.put(id, counter.used.get());
+            }
+        }
+        return changed;
+    }
+
+    void markDirty(Collection<Long> ids) {
+        dirty.addAll(ids);
+    }
+
+    void clear() {
+        counters.clear();
+        dirty.clear();
+    }
+
+    private Counter counter(Long id) {
+        return counters.computeIfAbsent(id, k -> new Counter(UNLIMITED, 0));
+    }
+
+    private static final class Counter {
+        volatile long capacity;
+        final AtomicLong used;
+        final AtomicLong version = new AtomicLong();
+
+        Counter(long capacity, long used) {
+            this.capacity = capacity;
+            this.used = new AtomicLong(used);
+        }
+    }
+}
@@ -0,0 +1,344 @@
+package com.warehouse.service;
+
+import com.warehouse.dto.CycleCountRequest;
+import com.warehouse.dto.CycleCountResponse;
+import com.warehouse.entity.Inventory;
+import com.warehouse.entity.TransactionType;
+import com.warehouse.event.StockMovementEvent;
+import com.warehouse.repository.InventoryRepository;
+import com.warehouse.repository.InventoryTransactionRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveTask;
+import java.util.stream.Collectors;
+
+/**
+ * Reconciles physical cycle counts against system stock.
+ * <p>
+ * A count sheet is split per warehouse and then, at product boundaries, into
+ * batches of about {@code batch-size} lines, which a fork/join pool reconciles
+ * in parallel, one transaction per batch. Counts are compared with stock as it
+ * was at {@code countedAt}: the batch locks the counted lots and subtracts every
+ * movement logged since the count from the current quantity. The log is written
+ * after commit, so each lot's movement sequence, which moves with its quantity,
+ * tells whether the log already holds all of the lot's movements; lots it does
+ * not are retried once the log has caught up, with no locks held while waiting.
+ * The difference is applied to current stock as an ADJUSTMENT movement, so picks
+ * and receipts can carry on while the count is taken and reconciled. Adjustments
+ * are left out of the snapshot, which makes submitting the same sheet twice harmless.
+ */
+@Slf4j
+@Service
+public class CycleCountService {
+
+    private static final String DEFAULT_REASON_CODE = "CYCLE_COUNT";
+    private static final long LOG_WAIT_MS = 10_000;
+    private static final int LOG_ATTEMPTS = 3;
+
+    @Autowired
+    private InventoryRepository inventoryRepository;
+
+    @Autowired
+    private InventoryTransactionRepository inventoryTransactionRepository;
+
+    @Autowired
+    private InventoryMovementLog inventoryMovementLog;
+
+    @Autowired(required = false)
+    private StockLedger stockLedger;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${inventory.cycle-count.parallelism:4}")
+    private int parallelism;
+
+    @Value("${inventory.cycle-count.batch-size:500}")
+    private int batchSize;
+
+    private ForkJoinPool pool;
+    private TransactionTemplate transactionTemplate;
+
+    @PostConstruct
+    public void init() {
+        pool = new ForkJoinPool(parallelism, forkJoinPool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(forkJoinPool);
+            thread.setName("cycle-count-" + thread.getPoolIndex());
+            return thread;
+        }, null, false);
+        transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @PreDestroy
+    public void stop() {
+        pool.shutdownNow();
+    }
+
+    public CycleCountResponse reconcile(CycleCountRequest request, Long userId) {
+        if (stockLedger != null) {
+            throw new IllegalStateException("Cycle counts are not available while the stock ledger is enabled");
+        }
+        LocalDateTime countedAt = request.getCountedAt() != null ? request.getCountedAt() : LocalDateTime.now();
+        if (countedAt.isAfter(LocalDateTime.now())) {
+            throw new IllegalArgumentException("Count time must not be in the future");
+        }
+        String reasonCode = request.getReasonCode() != null && !request.getReasonCode().isBlank()
+                ? request.getReasonCode() : DEFAULT_REASON_CODE;
+
+        Outcome outcome = new Outcome();
+        Set<List<Object>> seen = new HashSet<>();
+        List<Counted> lines = new ArrayList<>();
+        for (int i = 0; i < request.getLines().size(); i++) {
+            CycleCountRequest.Line line = request.getLines().get(i);
+            if (seen.add(lotKey(line))) {
+                lines.add(new Counted(i, line));
+            } else {
+                outcome.errors.add(new CycleCountResponse.LineError(i, "Lot is counted more than once"));
+            }
+        }
+
+        // A product's lines stay together when a warehouse's lines are split into batches
+        lines.sort(Comparator.comparing(c -> c.line().getProductId(), Comparator.nullsFirst(Comparator.naturalOrder())));
+        Sheet sheet = new Sheet(new Count(countedAt, reasonCode, request.getNotes(), userId), lines);
+        outcome.merge(pool.invoke(sheet));
+        outcome.variances.sort(Comparator.comparingInt(CycleCountResponse.Variance::getIndex));
+        outcome.errors.sort(Comparator.comparingInt(CycleCountResponse.LineError::getIndex));
+
+        long net = outcome.variances.stream().mapToLong(CycleCountResponse.Variance::getAdjustment).sum();
+        log.info("Cycle count at {}: {} lines, {} lots adjusted by {} units net, {} errors", countedAt,
+                request.getLines().size(), outcome.variances.size(), net, outcome.errors.size());
+        return new CycleCountResponse(countedAt, request.getLines().size(), outcome.variances.size(), net,
+                outcome.variances, outcome.errors);
+    }
+
+    /**
+     * Reconcile one batch of lines from a single warehouse, one transaction
+     * per attempt. The counted lots stay locked from the snapshot until the
+     * adjustments commit, so no movement can slip in between; other lots of
+     * the same products are never locked. Lots whose movements are not all
+     * logged yet are left for another attempt.
+     */
+    private Outcome reconcileBatch(Long warehouseId, List<Counted> lines, Count count) {
+        Outcome outcome = new Outcome();
+        Map<Counted, Long> pending = null;
+        try {
+            pending = findLots(warehouseId, lines, outcome);
+            for (int attempt = 1; !pending.isEmpty(); attempt++) {
+                Map<Counted, Long> lots = pending;
+                Map<Counted, Long> unlogged = new LinkedHashMap<>();
+                outcome.merge(transactionTemplate.execute(status -> adjust(warehouseId, lots, count, unlogged)));
+                pending = unlogged;
+                if (!pending.isEmpty() && (attempt == LOG_ATTEMPTS || !awaitMovementLog())) {
+                    pending.keySet().forEach(counted -> outcome.errors.add(new CycleCountResponse.LineError(
+                            counted.index(), "Not reconciled: movements of the lot are not logged yet")));
+                    break;
+                }
+            }
+        } catch (RuntimeException ex) {
+            log.error("Cycle count batch of {} lines in warehouse {} failed", lines.size(), warehouseId, ex);
+            Collection<Counted> failed = pending != null ? pending.keySet() : lines;
+            for (Counted counted : failed) {
+                outcome.errors.add(new CycleCountResponse.LineError(counted.index(), "Not reconciled: " + ex.getMessage()));
+            }
+        }
+        return outcome;
+    }
+
+    private Map<Counted, Long> findLots(Long warehouseId, List<Counted> lines, Outcome outcome) {
+        Set<Long> productIds = lines.stream().map(c -> c.line().getProductId()).collect(Collectors.toSet());
+        Map<List<Object>, Long> lotIds = new HashMap<>();
+        for (Object[] key : inventoryRepository.findLotKeys(productIds, List.of(warehouseId))) {
+            lotIds.put(Arrays.asList(key[1], key[2], key[3], key[4]), (Long) key[0]);
+        }
+
+        Map<Counted, Long> countedLots = new LinkedHashMap<>();
+        for (Counted counted : lines) {
+            Long id = lotIds.get(lotKey(counted.line()));
+            if (id == null) {
+                outcome.errors.add(new CycleCountResponse.LineError(counted.index(), "Inventory not found"));
+            } else {
+                countedLots.put(counted, id);
+            }
+        }
+        return countedLots;
+    }
+
+    private Outcome adjust(Long warehouseId, Map<Counted, Long> countedLots, Count count,
+            Map<Counted, Long> unlogged) {
+        Outcome outcome = new Outcome();
+        Map<Long, Inventory> locked = new HashMap<>();
+        for (Inventory inventory : inventoryRepository.findAllByIdInForUpdate(countedLots.values())) {
+            locked.put(inventory.getId(), inventory);
+        }
+        Map<Counted, Inventory> matched = new LinkedHashMap<>();
+        countedLots.forEach((counted, id) -> {
+            Inventory inventory = locked.get(id);
+            if (inventory == null) {
+                outcome.errors.add(new CycleCountResponse.LineError(counted.index(), "Inventory not found"));
+            } else {
+                matched.put(counted, inventory);
+            }
+        });
+        if (matched.isEmpty()) {
+            return outcome;
+        }
+
+        List<Long> ids = matched.values().stream().map(Inventory::getId).collect(Collectors.toList());
+        Map<Long, Long> seqAtCount = new HashMap<>();
+        for (Object[] row : inventoryTransactionRepository.findMovementSeqAt(ids, count.countedAt())) {
+            if (row[1] != null) {
+                seqAtCount.put((Long) row[0], ((Number) row[1]).longValue());
+            }
+        }
+        Map<Long, Object[]> movedSince = new HashMap<>();
+        for (Object[] row : inventoryTransactionRepository.summarizeMovementsSince(ids, count.countedAt())) {
+            movedSince.put((Long) row[0], row);
+        }
+
+        for (Map.Entry<Counted, Inventory> entry : matched.entrySet()) {
+            CycleCountRequest.Line line = entry.getKey().line();
+            Inventory inventory = entry.getValue();
+            Object[] moved = movedSince.get(inventory.getId());
+            long logged = moved != null ? ((Number) moved[1]).longValue() : 0;
+            // Every movement after the last one logged by count time must be in the log,
+            // including one from before the count that is still on its way
+            if (logged != inventory.getMovementSeq() - seqAtCount.getOrDefault(inventory.getId(), 0L)) {
+                unlogged.put(entry.getKey(), inventory.getId());
+                continue;
+            }
+            long net = moved != null && moved[2] != null ? ((Number) moved[2]).longValue() : 0;
+            int expected = (int) (inventory.getQuantity() - net);
+            // Never below zero: stock issued since the count cannot be taken back
+            int adjustment = Math.max(line.getCountedQuantity() - expected, -inventory.getQuantity());
+            if (adjustment == 0) {
+                continue;
+            }
+            inventory.move(adjustment);
+
+            StockMovementEvent event = StockMovementEvent.of(inventory, TransactionType.ADJUSTMENT, adjustment,
+                    count.userId());
+            event.setReasonCode(count.reasonCode());
+            event.setNotes(count.notes());
+            eventPublisher.publishEvent(event);
+
+            outcome.variances.add(new CycleCountResponse.Variance(entry.getKey().index(), inventory.getId(),
+                    line.getProductId(), warehouseId, line.getZoneId(), line.getBatchNumber(), expected,
+                    line.getCountedQuantity(), adjustment));
+        }
+        return outcome;
+    }
+
+    /**
+     * Wait, holding no locks, until the movement log has written what was
+     * queued so far. Returns false if it does not catch up in time.
+     */
+    private boolean awaitMovementLog() {
+        try {
+            inventoryMovementLog.awaitWritten(LOG_WAIT_MS);
+            return true;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (IllegalStateException ex) {
+            log.warn("Movement log is behind: {}", ex.getMessage());
+            return false;
+        }
+    }
+
+    private static List<Object> lotKey(CycleCountRequest.Line line) {
+        return Arrays.asList(line.getProductId(), line.getWarehouseId(), line.getZoneId(), line.getBatchNumber());
+    }
+
+    /**
+     * Where to cut a warehouse's lines, sorted by product, in two: the
+     * product boundary nearest the middle, or the middle itself when every
+     * line is for one product.
+     */
+    private static int split(List<Counted> lines) {
+        int middle = lines.size() / 2;
+        for (int offset = 0; offset < middle; offset++) {
+            if (productBoundary(lines, middle - offset)) {
+                return middle - offset;
+            }
+            if (productBoundary(lines, middle + offset)) {
+                return middle + offset;
+            }
+        }
+        return middle;
+    }
+
+    private static boolean productBoundary(List<Counted> lines, int index) {
+        return index > 0 && index < lines.size()
+                && !Objects.equals(lines.get(index - 1).line().getProductId(), lines.get(index).line().getProductId());
+    }
+
+    /**
+     * Part of a count sheet. A sheet spanning several warehouses forks one
+     * task per warehouse, and a warehouse's lines are cut in two, between
+     * products where possible, until a part fits in one batch.
+     */
+    private final class Sheet extends RecursiveTask<Outcome> {
+
+        private final Count count;
+        private final List<Counted> lines;
+
+        Sheet(Count count, List<Counted> lines) {
+            this.count = count;
+            this.lines = lines;
+        }
+
+        @Override
+        protected Outcome compute() {
+            Map<Long, List<Counted>> byWarehouse = lines.stream()
+                    .collect(Collectors.groupingBy(c -> c.line().getWarehouseId(), TreeMap::new, Collectors.toList()));
+            List<Sheet> parts = new ArrayList<>();
+            if (byWarehouse.size() > 1) {
+                byWarehouse.values().forEach(warehouseLines -> parts.add(new Sheet(count, warehouseLines)));
+            } else if (lines.size() > batchSize) {
+                int cut = split(lines);
+                parts.add(new Sheet(count, lines.subList(0, cut)));
+                parts.add(new Sheet(count, lines.subList(cut, lines.size())));
+            } else if (lines.isEmpty()) {
+                return new Outcome();
+            } else {
+                return reconcileBatch(lines.get(0).line().getWarehouseId(), lines, count);
+            }
+
+            Outcome outcome = new Outcome();
+            ForkJoinTask.invokeAll(parts).forEach(part -> outcome.merge(part.join()));
+            return outcome;
+        }
+    }
+
+    private record Count(LocalDateTime countedAt, String reasonCode, String notes, Long userId) {
+    }
+
+    private record Counted(int index, CycleCountRequest.Line line) {
+    }
+
+    private static final class Outcome {
+        final List<CycleCountResponse.Variance> variances = new ArrayList<>();
+        final List<CycleCountResponse.LineError> errors = new ArrayList<>();
+
+        void merge(Outcome other) {
+            variances.addAll(other.variances);
+            errors.addAll(other.errors);
+        }
+    }
+}
@@ -0,0 +1,312 @@
+package com.warehouse.service;
+
+import com.warehouse.entity.TransactionType;
+import com.warehouse.event.StockMovementEvent;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.*;
+
+/**
+ * Streaming demand forecast per (product, warehouse) that sets the reorder
+ * point ({@code minStockLevel}) and the order-up-to level
+ * ({@code maxStockLevel}) of the pair's inventory rows.
+ * <p>
+ * Stock-out quantities are summed per period and each finished period is
+ * folded into an exponentially weighted mean and variance of demand per
+ * period. With lead time L and review period R (in periods), the reorder
+ * point is {@code mean·L + z·sqrt(variance·L)} and the max level adds
+ * {@code mean·R} on top. Every event costs constant work: periods without
+ * demand are folded in closed form when the next event or the daily sweep
+ * arrives. State lives in parallel primitive arrays behind an open-addressing
+ * table keyed by (product, warehouse), so a pair costs a few dozen bytes.
+ * Changed levels are written back in batched updates and the
+ * {@link LowStockIndex} is re-read for the products affected. Forecasts start
+ * empty on startup and levels are only written once a pair has seen
+ * {@code warmup-periods} periods.
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(name = "inventory.forecast.enabled", havingValue = "true", matchIfMissing = true)
+public class DemandForecaster {
+
+    private static final String UPDATE_LEVELS_SQL =
+            "UPDATE inventory SET min_stock_level = ?, max_stock_level = ? WHERE product_id = ? AND warehouse_id = ?";
+
+    private static final int INITIAL_CAPACITY = 1 << 12;
+    private static final int NO_LEVEL = -1;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private LowStockIndex lowStockIndex;
+
+    @Value("${inventory.forecast.period-hours:24}")
+    private int periodHours;
+
+    @Value("${inventory.forecast.alpha:0.2}")
+    private double alpha;
+
+    @Value("${inventory.forecast.service-level-z:1.65}")
+    private double serviceLevelZ;
+
+    @Value("${inventory.forecast.lead-time-days:7}")
+    private double leadTimeDays;
+
+    @Value("${inventory.forecast.review-days:14}")
+    private double reviewDays;
+
+    @Value("${inventory.forecast.warmup-periods:7}")
+    private int warmupPeriods;
+
+    @Value("${inventory.forecast.batch-size:1000}")
+    private int batchSize;
+
+    // Table state, guarded by this
+    private long[] productIds = new long[INITIAL_CAPACITY];
+    private long[] warehouseIds = new long[INITIAL_CAPACITY];
+    private long[] periods = new long[INITIAL_CAPACITY];
+    private double[] current = new double[INITIAL_CAPACITY];
+    private double[] means = new double[INITIAL_CAPACITY];
+    private double[] variances = new double[INITIAL_CAPACITY];
+    private int[] observed = new int[INITIAL_CAPACITY];
+    private int[] minLevels = new int[INITIAL_CAPACITY];
+    private int[] maxLevels = new int[INITIAL_CAPACITY];
+    private BitSet dirty = new BitSet(INITIAL_CAPACITY);
+    private int size;
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onStockMovement(StockMovementEvent event) {
+        if (event.getTransactionType() != TransactionType.STOCK_OUT || event.getQuantity() >= 0) {
+            return;
+        }
+        LocalDateTime at = event.getTimestamp() != null ? event.getTimestamp() : LocalDateTime.now();
+        record(event.getProductId(), event.getWarehouseId(), -event.getQuantity(), periodOf(at));
+    }
+
+    /**
+     * Add demand observed in a period. A period older than the pair's current
+     * one (a late movement) is counted in the current period.
+     */
+    synchronized void record(long productId, long warehouseId, long quantity, long period) {
+        int slot = slot(productId, warehouseId, period);
+        advance(slot, period);
+        current[slot] += quantity;
+    }
+
+    /**
+     * Fold the periods that ended without demand into every pair's forecast,
+     * so the levels of products that stopped selling come down.
+     */
+    @Scheduled(cron = "${inventory.forecast.sweep-cron:0 20 0 * * *}")
+    public synchronized void sweep() {
+        long period = periodOf(LocalDateTime.now());
+        for (int slot = 0; slot < productIds.length; slot++) {
+            if (productIds[slot] != 0) {
+                advance(slot, period);
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${inventory.forecast.flush-interval-ms:60000}")
+    public void flush() {
+        List<Object[]> levels = drain();
+        for (int from = 0; from < levels.size(); from += batchSize) {
+            List<Object[]> batch = levels.subList(from, Math.min(from + batchSize, levels.size()));
+            Set<Long> products = new HashSet<>();
+            try {
+                jdbcTemplate.batchUpdate(UPDATE_LEVELS_SQL, batch);
+                batch.forEach(args -> products.add((Long) args[2]));
+            } catch (DataAccessException ex) {
+                log.warn("Failed to write {} reorder levels, retrying on the next flush", batch.size(), ex);
+                batch.forEach(args -> markUnwritten((Long) args[2], (Long) args[3]));
+            }
+            lowStockIndex.reindexProducts(products);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        flush();
+    }
+
+    /**
+     * Forecast of a pair as {mean, variance, periods observed}, or null when
+     * the pair has no demand on record.
+     */
+    synchronized double[] forecast(long productId, long warehouseId) {
+        int slot = find(productId, warehouseId);
+        return slot < 0 ? null : new double[] { means[slot], variances[slot], observed[slot] };
+    }
+
+    long periodOf(LocalDateTime at) {
+        return Math.floorDiv(at.toEpochSecond(ZoneOffset.UTC), periodHours * 3600L);
+    }
+
+    /**
+     * Levels that changed since they were last written, as update arguments.
+     */
+    private synchronized List<Object[]> drain() {
+        List<Object[]> levels = new ArrayList<>();
+        for (int slot = dirty.nextSetBit(0); slot >= 0; slot = dirty.nextSetBit(slot + 1)) {
+            levels.add(new Object[] { minLevels[slot], maxLevels[slot], productIds[slot], warehouseIds[slot] });
+        }
+        dirty.clear();
+        return levels;
+    }
+
+    private synchronized void markUnwritten(long productId, long warehouseId) {
+        int slot = find(productId, warehouseId);
+        if (slot >= 0) {
+            dirty.set(slot);
+        }
+    }
+
+    /**
+     * Move a pair to {@code period}: fold the demand of its current period,
+     * then the empty periods in between, and recompute its levels.
+     */
+    private void advance(int slot, long period) {
+        long gap = period - periods[slot];
+        if (gap <= 0) {
+            return;
+        }
+        fold(slot, current[slot]);
+        long idle = gap - 1;
+        if (idle > 0 && observed[slot] > 0) {
+            // n zero observations: mean·(1-α)^n, variance by the closed form of the same recurrence
+            double keep = Math.pow(1 - alpha, idle);
+            double mean = means[slot];
+            variances[slot] = keep * variances[slot] + mean * mean * (1 - keep) * keep;
+            means[slot] = mean * keep;
+            observed[slot] = (int) Math.min(Integer.MAX_VALUE, observed[slot] + idle);
+        }
+        periods[slot] = period;
+        current[slot] = 0;
+        updateLevels(slot);
+    }
+
+    private void fold(int slot, double demand) {
+        if (observed[slot] == 0) {
+            means[slot] = demand;
+            variances[slot] = 0;
+        } else {
+            double error = demand - means[slot];
+            means[slot] += alpha * error;
+            variances[slot] = (1 - alpha) * (variances[slot] + alpha * error * error);
+        }
+        observed[slot]++;
+    }
+
+    private void updateLevels(int slot) {
+        if (observed[slot] < warmupPeriods) {
+            return;
+        }
+        double leadPeriods = leadTimeDays * 24 / periodHours;
+        double reviewPeriods = reviewDays * 24 / periodHours;
+        double safetyStock = serviceLevelZ * Math.sqrt(variances[slot] * leadPeriods);
+        int reorderPoint = (int) Math.ceil(means[slot] * leadPeriods + safetyStock);
+        int maxLevel = Math.max(reorderPoint + (int) Math.ceil(means[slot] * reviewPeriods), reorderPoint + 1);
+        if (reorderPoint != minLevels[slot] || maxLevel != maxLevels[slot]) {
+            minLevels[slot] = reorderPoint;
+            maxLevels[slot] = maxLevel;
+            dirty.set(slot);
+        }
+    }
+
+    private int find(long productId, long warehouseId) {
+        int mask = productIds.length - 1;
+        for (int slot = hash(productId, warehouseId) & mask; productIds[slot] != 0; slot = (slot + 1) & mask) {
+            if (productIds[slot] == productId && warehouseIds[slot] == warehouseId) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    private int slot(long productId, long warehouseId, long period) {
+        int slot = find(productId, warehouseId);
+        if (slot >= 0) {
+            return slot;
+        }
+        if ((size + 1) * 4 > productIds.length * 3) {
+            resize();
+        }
+        int mask = productIds.length - 1;
+        slot = hash(productId, warehouseId) & mask;
+        while (productIds[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        productIds[slot] = productId;
+        warehouseIds[slot] = warehouseId;
+        periods[slot] = period;
+        minLevels[slot] = NO_LEVEL;
+        maxLevels[slot] = NO_LEVEL;
+        size++;
+        return slot;
+    }
+
+    private void resize() {
+        long[] oldProducts = productIds;
+        long[] oldWarehouses = warehouseIds;
+        long[] oldPeriods = periods;
+        double[] oldCurrent = current;
+        double[] oldMeans = means;
+        double[] oldVariances = variances;
+        int[] oldObserved = observed;
+        int[] oldMin = minLevels;
+        int[] oldMax = maxLevels;
+        BitSet oldDirty = dirty;
+
+        int capacity = oldProducts.length * 2;
+        productIds = new long[capacity];
+        warehouseIds = new long[capacity];
+        periods = new long[capacity];
+        current = new double[capacity];
+        means = new double[capacity];
+        variances = new double[capacity];
+        observed = new int[capacity];
+        minLevels = new int[capacity];
+        maxLevels = new int[capacity];
+        dirty = new BitSet(capacity);
+
+        int mask = capacity - 1;
+        for (int old = 0; old < oldProducts.length; old++) {
+            if (oldProducts[old] == 0) {
+                continue;
+            }
+            int slot = hash(oldProducts[old], oldWarehouses[old]) & mask;
+            while (productIds[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            productIds[slot] = oldProducts[old];
+            warehouseIds[slot] = oldWarehouses[old];
+            periods[slot] = oldPeriods[old];
+            current[slot] = oldCurrent[old];
+            means[slot] = oldMeans[old];
+            variances[slot] = oldVariances[old];
+            observed[slot] = oldObserved[old];
+            minLevels[slot] = oldMin[old];
+            maxLevels[slot] = oldMax[old];
+            dirty.set(slot, oldDirty.get(old));
+        }
+    }
+
+    private static int hash(long productId, long warehouseId) {
+        long h = productId * 0x9E3779B97F4A7C15L + warehouseId;
+        h ^= h >>> 32;
+        h *= 0xC2B2AE3D27D4EB4FL;
+        return (int) (h ^ (h >>> 29));
+    }
+}
@@ -0,0 +1,286 @@
+package com.warehouse.service;
+
+import com.warehouse.event.LotsExpiredEvent;
+import com.warehouse.event.StockMovementEvent;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * Expiry calendar of inventory lots, bucketed by expiry day and by warehouse.
+ * <p>
+ * Lots with stock and an expiry date live in the upcoming buckets of their
+ * warehouse. A daily roll-forward moves whole buckets that are now in the
+ * past to the expired side in bulk and announces them, so range queries such
+ * as "expiring in the next N days for warehouse W" never rescan the table.
+ * A bucket is dropped as soon as its last lot leaves it. Buckets are created,
+ * emptied and moved under their warehouse calendar's lock; queries read the
+ * concurrent maps without it. After-commit events can arrive out of order,
+ * so a movement that would add a lot to the calendar or take it out is
+ * checked against the row's current quantity first, as in
+ * {@link LowStockIndex}; with the stock ledger enabled events are applied
+ * as they come.
+ */
+@Slf4j
+@Service
+public class ExpiryCalendar {
+
+    private static final String REBUILD_SQL =
+            "SELECT i.id, i.warehouse_id, w.organization_id, i.expiry_date FROM inventory i "
+                    + "JOIN warehouses w ON w.id = i.warehouse_id "
+                    + "WHERE i.expiry_date IS NOT NULL AND i.quantity > 0";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private static final String CURRENT_SQL = "SELECT quantity, expiry_date FROM inventory WHERE id = ?";
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired(required = false)
+    private StockLedger stockLedger;
+
+    private final Map<Long, WarehouseCalendar> calendars = new ConcurrentHashMap<>();
+    private final Map<Long, Set<Long>> organizationWarehouses = new ConcurrentHashMap<>();
+    private final Map<Long, LotRef> lots = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void rebuild() {
+        calendars.clear();
+        organizationWarehouses.clear();
+        lots.clear();
+        LocalDate today = LocalDate.now();
+        jdbcTemplate.query(REBUILD_SQL, rs -> {
+            add(rs.getLong("id"), rs.getLong("warehouse_id"), rs.getLong("organization_id"),
+                    rs.getDate("expiry_date").toLocalDate(), today);
+        });
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onStockMovement(StockMovementEvent event) {
+        if (event.getExpiryDate() == null) {
+            return;
+        }
+        boolean inStock = event.getResultingQuantity() > 0;
+        if (inStock == lots.containsKey(event.getInventoryId())) {
+            return;
+        }
+        if (stockLedger != null) {
+            update(event, inStock ? event.getExpiryDate() : null);
+            return;
+        }
+        // The lot enters or leaves: the event may be older than one already applied, so decide
+        // from the row as it is now. The lock keeps each read together with the change it leads to.
+        synchronized (this) {
+            update(event, expiryIfInStock(event.getInventoryId()));
+        }
+    }
+
+    /**
+     * Move every bucket dated before today to the expired side of its
+     * warehouse and publish the newly expired lots per warehouse.
+     */
+    @Scheduled(cron = "${inventory.expiry.roll-forward-cron:0 5 0 * * *}")
+    public void rollForward() {
+        LocalDate today = LocalDate.now();
+        int expired = 0;
+        for (Map.Entry<Long, WarehouseCalendar> entry : calendars.entrySet()) {
+            WarehouseCalendar calendar = entry.getValue();
+            List<Long> ids = new ArrayList<>();
+            synchronized (calendar) {
+                NavigableMap<LocalDate, Set<Long>> past = calendar.upcoming.headMap(today, false);
+                for (Map.Entry<LocalDate, Set<Long>> bucket : new ArrayList<>(past.entrySet())) {
+                    calendar.upcoming.remove(bucket.getKey());
+                    calendar.expired.merge(bucket.getKey(), bucket.getValue(), (a, b) -> {
+                        a.addAll(b);
+                        return a;
+                    });
+                    ids.addAll(bucket.getValue());
+                }
+            }
+            if (!ids.isEmpty()) {
+                expired += ids.size();
+                eventPublisher.publishEvent(new LotsExpiredEvent(entry.getKey(), calendar.organizationId, today, ids));
+            }
+        }
+        log.info("Expiry roll-forward flagged {} newly expired lots", expired);
+    }
+
+    /**
+     * Inventory ids expiring between today and today + daysAhead (inclusive),
+     * in expiry order, optionally preceded by lots that have already expired.
+     * Scope is one warehouse, one organization, or everything when both are null.
+     */
+    public List<Long> findExpiring(Long warehouseId, Long organizationId, int daysAhead, boolean includeExpired,
+            int offset, int limit) {
+        LocalDate today = LocalDate.now();
+        LocalDate until = today.plusDays(daysAhead);
+
+        List<NavigableMap<LocalDate, Set<Long>>> ranges = new ArrayList<>();
+        for (WarehouseCalendar calendar : scope(warehouseId, organizationId)) {
+            if (includeExpired) {
+                ranges.add(calendar.expired);
+                ranges.add(calendar.upcoming.headMap(today, false));
+            }
+            ranges.add(calendar.upcoming.subMap(today, true, until, true));
+        }
+        return merge(ranges, offset, limit);
+    }
+
+    /**
+     * Number of day buckets held for a warehouse, expired side included.
+     */
+    public int bucketCount(Long warehouseId) {
+        WarehouseCalendar calendar = calendars.get(warehouseId);
+        return calendar != null ? calendar.upcoming.size() + calendar.expired.size() : 0;
+    }
+
+    private List<WarehouseCalendar> scope(Long warehouseId, Long organizationId) {
+        if (warehouseId != null) {
+            WarehouseCalendar calendar = calendars.get(warehouseId);
+            return calendar != null ? List.of(calendar) : List.of();
+        }
+        if (organizationId != null) {
+            List<WarehouseCalendar> scoped = new ArrayList<>();
+            for (Long id : organizationWarehouses.getOrDefault(organizationId, Set.of())) {
+                WarehouseCalendar calendar = calendars.get(id);
+                if (calendar != null) {
+                    scoped.add(calendar);
+                }
+            }
+            return scoped;
+        }
+        return new ArrayList<>(calendars.values());
+    }
+
+    /**
+     * K-way merge of day-bucketed ranges in date order, stopping as soon as
+     * the requested page is filled.
+     */
+    private static List<Long> merge(List<NavigableMap<LocalDate, Set<Long>>> ranges, int offset, int limit) {
+        PriorityQueue<Cursor> queue = new PriorityQueue<>(Comparator.comparing((Cursor c) -> c.current.getKey()));
+        for (NavigableMap<LocalDate, Set<Long>> range : ranges) {
+            Cursor cursor = new Cursor(range.entrySet().iterator());
+            if (cursor.advance()) {
+                queue.add(cursor);
+            }
+        }
+
+        List<Long> page = new ArrayList<>(limit);
+        int skipped = 0;
+        while (!queue.isEmpty() && page.size() < limit) {
+            Cursor cursor = queue.poll();
+            for (Long id : cursor.current.getValue()) {
+                if (skipped < offset) {
+                    skipped++;
+                } else if (page.size() < limit) {
+                    page.add(id);
+                } else {
+                    break;
+                }
+            }
+            if (cursor.advance()) {
+                queue.add(cursor);
+            }
+        }
+        return page;
+    }
+
+    private void update(StockMovementEvent event, LocalDate expiryDate) {
+        if (expiryDate != null) {
+            add(event.getInventoryId(), event.getWarehouseId(), event.getOrganizationId(), expiryDate,
+                    LocalDate.now());
+        } else {
+            remove(event.getInventoryId());
+        }
+    }
+
+    /**
+     * Expiry date of a lot that currently has stock, or null when it is
+     * empty, has no expiry date or was deleted.
+     */
+    private LocalDate expiryIfInStock(Long inventoryId) {
+        List<Map<String, Object>> rows = jdbcTemplate.queryForList(CURRENT_SQL, inventoryId);
+        if (rows.isEmpty()) {
+            return null;
+        }
+        Map<String, Object> row = rows.get(0);
+        Object expiryDate = row.get("expiry_date");
+        if (((Number) row.get("quantity")).intValue() <= 0 || expiryDate == null) {
+            return null;
+        }
+        return expiryDate instanceof java.sql.Date date ? date.toLocalDate() : (LocalDate) expiryDate;
+    }
+
+    private void add(Long inventoryId, Long warehouseId, Long organizationId, LocalDate expiryDate, LocalDate today) {
+        if (lots.putIfAbsent(inventoryId, new LotRef(warehouseId, expiryDate)) != null) {
+            return;
+        }
+        WarehouseCalendar calendar = calendars.computeIfAbsent(warehouseId, k -> new WarehouseCalendar(organizationId));
+        if (organizationId != null) {
+            organizationWarehouses.computeIfAbsent(organizationId, k -> ConcurrentHashMap.newKeySet()).add(warehouseId);
+        }
+        NavigableMap<LocalDate, Set<Long>> side = expiryDate.isBefore(today) ? calendar.expired : calendar.upcoming;
+        synchronized (calendar) {
+            side.computeIfAbsent(expiryDate, k -> new ConcurrentSkipListSet<>()).add(inventoryId);
+        }
+    }
+
+    private void remove(Long inventoryId) {
+        LotRef lot = lots.remove(inventoryId);
+        if (lot == null) {
+            return;
+        }
+        WarehouseCalendar calendar = calendars.get(lot.warehouseId());
+        if (calendar == null) {
+            return;
+        }
+        synchronized (calendar) {
+            for (NavigableMap<LocalDate, Set<Long>> side : List.of(calendar.upcoming, calendar.expired)) {
+                Set<Long> bucket = side.get(lot.expiryDate());
+                if (bucket != null && bucket.remove(inventoryId) && bucket.isEmpty()) {
+                    side.remove(lot.expiryDate());
+                }
+            }
+        }
+    }
+
+    private record LotRef(Long warehouseId, LocalDate expiryDate) {
+    }
+
+    private static final class WarehouseCalendar {
+        final Long organizationId;
+        final ConcurrentSkipListMap<LocalDate, Set<Long>> upcoming = new ConcurrentSkipListMap<>();
+        final ConcurrentSkipListMap<LocalDate, Set<Long>> expired = new ConcurrentSkipListMap<>();
+
+        WarehouseCalendar(Long organizationId) {
+            this.organizationId = organizationId;
+        }
+    }
+
+    private static final class Cursor {
+        final Iterator<Map.Entry<LocalDate, Set<Long>>> iterator;
+        Map.Entry<LocalDate, Set<Long>> current;
+
+        Cursor(Iterator<Map.Entry<LocalDate, Set<Long>>> iterator) {
+            this.iterator = iterator;
+        }
+
+        boolean advance() {
+            current = iterator.hasNext() ? iterator.next() : null;
+            return current != null;
+        }
+    }
+}
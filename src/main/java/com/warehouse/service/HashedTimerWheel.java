@@ -0,0 +1,119 @@
+package com.warehouse.service;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hashed timer wheel for large numbers of timeouts that are usually cancelled
+ * before they fire. Scheduling and cancelling are O(1); a single worker
+ * thread advances one slot per tick and runs the tasks that are due, so
+ * expiry never needs a scan or a query. Tasks run on the worker thread and
+ * must be short.
+ */
+@Slf4j
+final class HashedTimerWheel {
+
+    private final long tickNanos;
+    private final int mask;
+    private final Queue<Timeout>[] wheel;
+    private final Queue<Timeout> incoming = new ConcurrentLinkedQueue<>();
+    private final Thread worker;
+    private final long startTime;
+    private long tick;
+    private volatile boolean running = true;
+
+    @SuppressWarnings("unchecked")
+    HashedTimerWheel(String name, long tickDuration, TimeUnit unit, int wheelSize) {
+        int size = Integer.highestOneBit(Math.max(wheelSize, 2) - 1) << 1;
+        this.tickNanos = unit.toNanos(tickDuration);
+        this.mask = size - 1;
+        this.wheel = new Queue[size];
+        for (int i = 0; i < size; i++) {
+            wheel[i] = new ArrayDeque<>();
+        }
+        this.startTime = System.nanoTime();
+        this.worker = new Thread(this::run, name);
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+        Timeout timeout = new Timeout(task, System.nanoTime() - startTime + unit.toNanos(delay));
+        incoming.add(timeout);
+        return timeout;
+    }
+
+    void stop() {
+        running = false;
+        worker.interrupt();
+    }
+
+    private void run() {
+        while (running) {
+            long deadline = (tick + 1) * tickNanos;
+            long sleepNanos = deadline - (System.nanoTime() - startTime);
+            if (sleepNanos > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(sleepNanos);
+                } catch (InterruptedException ex) {
+                    return;
+                }
+            }
+            transferIncoming();
+            expire(wheel[(int) (tick & mask)], deadline);
+            tick++;
+        }
+    }
+
+    private void transferIncoming() {
+        Timeout timeout;
+        while ((timeout = incoming.poll()) != null) {
+            if (timeout.cancelled) {
+                continue;
+            }
+            long ticks = timeout.deadline / tickNanos;
+            timeout.rounds = (ticks - tick) / wheel.length;
+            // Deadlines already in the past go into the current slot
+            wheel[(int) (Math.max(ticks, tick) & mask)].add(timeout);
+        }
+    }
+
+    private void expire(Queue<Timeout> bucket, long deadline) {
+        for (int i = bucket.size(); i > 0; i--) {
+            Timeout timeout = bucket.poll();
+            if (timeout.cancelled) {
+                continue;
+            }
+            if (timeout.rounds > 0 || timeout.deadline > deadline) {
+                timeout.rounds--;
+                bucket.add(timeout);
+                continue;
+            }
+            try {
+                timeout.task.run();
+            } catch (RuntimeException ex) {
+                log.error("Timer task failed", ex);
+            }
+        }
+    }
+
+    static final class Timeout {
+        private final Runnable task;
+        private final long deadline;
+        private long rounds;
+        private volatile boolean cancelled;
+
+        private Timeout(Runnable task, long deadline) {
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        void cancel() {
+            cancelled = true;
+        }
+    }
+}
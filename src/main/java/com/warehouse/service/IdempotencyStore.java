@@ -0,0 +1,274 @@
+package com.warehouse.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+
+/**
+ * Responses of requests sent with an Idempotency-Key, kept so that a retry
+ * gets the first response instead of running the operation again.
+ * <p>
+ * Completed responses live in a bounded LRU map for {@code ttl-hours} and
+ * are written to the {@code idempotency_keys} table before they are
+ * returned, so retries after a restart or on another instance are answered
+ * from the table. Before a request runs its key is claimed with a pending
+ * row in the same table (and in memory for this instance); a duplicate
+ * arriving meanwhile, here or on another instance, waits for the result
+ * rather than executing a second time. The pending row is a lease of
+ * {@code claim-ttl-ms}, so a key claimed by an instance that died can be
+ * claimed again once it runs out.
+ */
+@Slf4j
+@Service
+public class IdempotencyStore {
+
+    // Status of a claimed key whose request is still running
+    private static final int PENDING = 0;
+
+    private static final long POLL_MS = 100;
+
+    private static final String FIND_SQL =
+            "SELECT fingerprint, status, content_type, body, expires_at FROM idempotency_keys "
+                    + "WHERE idempotency_key = ? AND expires_at > ?";
+
+    private static final String INSERT_SQL =
+            "INSERT INTO idempotency_keys (idempotency_key, fingerprint, status, content_type, body, created_at, "
+                    + "expires_at) VALUES (?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String CLAIM_SQL =
+            "INSERT INTO idempotency_keys (idempotency_key, fingerprint, status, created_at, expires_at) "
+                    + "VALUES (?, ?, " + PENDING + ", ?, ?)";
+
+    private static final String TAKE_OVER_SQL =
+            "UPDATE idempotency_keys SET fingerprint = ?, status = " + PENDING + ", content_type = NULL, "
+                    + "body = NULL, created_at = ?, expires_at = ? WHERE idempotency_key = ? AND expires_at <= ?";
+
+    private static final String COMPLETE_SQL =
+            "UPDATE idempotency_keys SET fingerprint = ?, status = ?, content_type = ?, body = ?, created_at = ?, "
+                    + "expires_at = ? WHERE idempotency_key = ? AND status = " + PENDING;
+
+    private static final String RELEASE_SQL =
+            "DELETE FROM idempotency_keys WHERE idempotency_key = ? AND status = " + PENDING;
+
+    private static final String PURGE_SQL = "DELETE FROM idempotency_keys WHERE expires_at <= ?";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${inventory.idempotency.max-entries:10000}")
+    private int maxEntries;
+
+    @Value("${inventory.idempotency.ttl-hours:24}")
+    private long ttlHours;
+
+    @Value("${inventory.idempotency.claim-ttl-ms:600000}")
+    private long claimTtlMs;
+
+    private final Map<String, CompletableFuture<Response>> inFlight = new ConcurrentHashMap<>();
+    private final Map<String, Response> completed = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Response> eldest) {
+            return size() > maxEntries;
+        }
+    };
+
+    /**
+     * Claim a key. The result is the stored response to replay, an owner
+     * claim when the caller must run the request and then call
+     * {@link #complete} or {@link #abandon}, or busy when a duplicate was
+     * still running after {@code waitMs}.
+     */
+    public Claim claim(String key, String fingerprint, long waitMs) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(waitMs);
+        while (true) {
+            CompletableFuture<Response> mine = new CompletableFuture<>();
+            CompletableFuture<Response> running = inFlight.putIfAbsent(key, mine);
+            if (running == null) {
+                Claim claim;
+                try {
+                    claim = claimStored(key, fingerprint, deadline);
+                } catch (InterruptedException | RuntimeException ex) {
+                    inFlight.remove(key, mine);
+                    mine.complete(null);
+                    throw ex;
+                }
+                if (!claim.owner()) {
+                    // Local duplicates get the same answer; when busy they claim again themselves
+                    inFlight.remove(key, mine);
+                    mine.complete(claim.response());
+                }
+                return claim;
+            }
+            try {
+                Response response = running.get(Math.max(deadline - System.nanoTime(), 0), TimeUnit.NANOSECONDS);
+                if (response != null) {
+                    return Claim.replay(response);
+                }
+                // The first request failed without a response to keep; claim again
+            } catch (TimeoutException ex) {
+                return Claim.inProgress();
+            } catch (ExecutionException ex) {
+                throw new IllegalStateException("Idempotent request failed", ex.getCause());
+            }
+        }
+    }
+
+    /**
+     * Keep the response of a claimed key and hand it to waiting duplicates.
+     */
+    public void complete(String key, String fingerprint, int status, String contentType, byte[] body) {
+        LocalDateTime now = LocalDateTime.now();
+        Response response = new Response(fingerprint, status, contentType, body, now.plusHours(ttlHours));
+        Timestamp createdAt = Timestamp.valueOf(now);
+        Timestamp expiresAt = Timestamp.valueOf(response.expiresAt());
+        try {
+            int updated = jdbcTemplate.update(COMPLETE_SQL, fingerprint, status, contentType, body, createdAt,
+                    expiresAt, key);
+            if (updated == 0) {
+                // The key was claimed in memory only, or its pending row was purged
+                jdbcTemplate.update(INSERT_SQL, key, fingerprint, status, contentType, body, createdAt, expiresAt);
+            }
+        } catch (DuplicateKeyException ex) {
+            // Another instance answered the same key first; this response is kept in memory only
+        } catch (DataAccessException ex) {
+            log.warn("Failed to persist idempotency key, it will not survive a restart", ex);
+        }
+        synchronized (completed) {
+            completed.put(key, response);
+        }
+        CompletableFuture<Response> running = inFlight.remove(key);
+        if (running != null) {
+            running.complete(response);
+        }
+    }
+
+    /**
+     * Release a claimed key without a response, so the next duplicate runs.
+     */
+    public void abandon(String key) {
+        try {
+            jdbcTemplate.update(RELEASE_SQL, key);
+        } catch (DataAccessException ex) {
+            log.warn("Failed to release idempotency key, duplicates wait until its claim expires", ex);
+        }
+        CompletableFuture<Response> running = inFlight.remove(key);
+        if (running != null) {
+            running.complete(null);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${inventory.idempotency.purge-interval-ms:3600000}")
+    public void purge() {
+        LocalDateTime now = LocalDateTime.now();
+        synchronized (completed) {
+            completed.values().removeIf(response -> !response.expiresAt().isAfter(now));
+        }
+        int purged = jdbcTemplate.update(PURGE_SQL, Timestamp.valueOf(now));
+        if (purged > 0) {
+            log.info("Purged {} expired idempotency keys", purged);
+        }
+    }
+
+    /**
+     * Claim a key in the table, or find its response there. A key another
+     * instance has claimed is polled until it completes or the deadline
+     * passes. When the table cannot be reached the key is claimed on this
+     * instance only.
+     */
+    private Claim claimStored(String key, String fingerprint, long deadline) throws InterruptedException {
+        Response cached = cached(key);
+        if (cached != null) {
+            return Claim.replay(cached);
+        }
+        try {
+            while (true) {
+                Response stored = find(key);
+                if (stored == null) {
+                    if (insertClaim(key, fingerprint)) {
+                        return Claim.claimed();
+                    }
+                    // Another instance claimed it first; read its row
+                    continue;
+                }
+                if (stored.status() != PENDING) {
+                    synchronized (completed) {
+                        completed.put(key, stored);
+                    }
+                    return Claim.replay(stored);
+                }
+                long remainingMs = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                if (remainingMs <= 0) {
+                    return Claim.inProgress();
+                }
+                Thread.sleep(Math.min(POLL_MS, remainingMs));
+            }
+        } catch (DataAccessException ex) {
+            log.warn("Failed to claim idempotency key in the table, claiming it on this instance only", ex);
+            return Claim.claimed();
+        }
+    }
+
+    private boolean insertClaim(String key, String fingerprint) {
+        LocalDateTime now = LocalDateTime.now();
+        Timestamp claimedAt = Timestamp.valueOf(now);
+        Timestamp leaseEnd = Timestamp.valueOf(now.plus(claimTtlMs, ChronoUnit.MILLIS));
+        try {
+            jdbcTemplate.update(CLAIM_SQL, key, fingerprint, claimedAt, leaseEnd);
+            return true;
+        } catch (DuplicateKeyException ex) {
+            // Taken meanwhile, or an expired row the purge has not removed yet
+            return jdbcTemplate.update(TAKE_OVER_SQL, fingerprint, claimedAt, leaseEnd, key, claimedAt) > 0;
+        }
+    }
+
+    private Response cached(String key) {
+        synchronized (completed) {
+            Response response = completed.get(key);
+            if (response != null && response.expiresAt().isAfter(LocalDateTime.now())) {
+                return response;
+            }
+        }
+        return null;
+    }
+
+    private Response find(String key) {
+        List<Response> rows = jdbcTemplate.query(FIND_SQL, (rs, rowNum) -> new Response(rs.getString("fingerprint"),
+                rs.getInt("status"), rs.getString("content_type"), rs.getBytes("body"),
+                rs.getTimestamp("expires_at").toLocalDateTime()), key, Timestamp.valueOf(LocalDateTime.now()));
+        return rows.isEmpty() ? null : rows.get(0);
+    }
+
+    public record Response(String fingerprint, int status, String contentType, byte[] body,
+            LocalDateTime expiresAt) {
+    }
+
+    /**
+     * Outcome of {@link #claim}: exactly one of owner, busy or a response.
+     */
+    public record Claim(boolean owner, boolean busy, Response response) {
+        static Claim claimed() {
+            return new Claim(true, false, null);
+        }
+
+        static Claim inProgress() {
+            return new Claim(false, true, null);
+        }
+
+        static Claim replay(Response response) {
+            return new Claim(false, false, response);
+        }
+    }
+}
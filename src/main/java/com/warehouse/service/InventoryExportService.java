@@ -0,0 +1,165 @@
+package com.warehouse.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import javax.sql.DataSource;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+
+/**
+ * Streams an organization's inventory as NDJSON or CSV.
+ * <p>
+ * Rows are read through a forward-only JDBC cursor and written to the output
+ * as they arrive, in id order, so memory use stays flat however many rows are
+ * exported. Every row carries its inventory id; an interrupted download is
+ * resumed by passing the last id received as {@code afterId}. A resumed CSV
+ * export leaves out the header row so its output can be appended to the
+ * partial file as is.
+ */
+@Service
+public class InventoryExportService {
+
+    private static final String EXPORT_SQL =
+            "SELECT i.id, p.sku, p.name AS product_name, w.id AS warehouse_id, w.name AS warehouse_name, "
+                    + "z.name AS zone_name, i.batch_number, i.quantity, i.expiry_date, "
+                    + "i.min_stock_level, i.max_stock_level, i.last_updated "
+                    + "FROM inventory i "
+                    + "JOIN warehouses w ON w.id = i.warehouse_id "
+                    + "JOIN products p ON p.id = i.product_id "
+                    + "LEFT JOIN storage_zones z ON z.id = i.zone_id "
+                    + "WHERE w.organization_id = ? AND i.id > ? "
+                    + "ORDER BY i.id";
+
+    private static final String[] COLUMNS = { "id", "sku", "productName", "warehouseId", "warehouseName",
+            "zoneName", "batchNumber", "quantity", "expiryDate", "minStockLevel", "maxStockLevel", "lastUpdated" };
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    public enum Format {
+        NDJSON, // One JSON object per line
+        CSV // Header row, then one row per lot
+    }
+
+    @Autowired
+    private DataSource dataSource;
+
+    // Integer.MIN_VALUE makes MySQL Connector/J stream rows one at a time instead of buffering the result
+    @Value("${inventory.export.fetch-size:" + Integer.MIN_VALUE + "}")
+    private int fetchSize;
+
+    private final JsonFactory jsonFactory = new JsonFactory();
+    private JdbcTemplate streamingTemplate;
+
+    @PostConstruct
+    public void init() {
+        streamingTemplate = new JdbcTemplate(dataSource);
+        streamingTemplate.setFetchSize(fetchSize);
+    }
+
+    public void export(Long organizationId, Format format, long afterId, OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE);
+        if (format == Format.CSV) {
+            exportCsv(organizationId, afterId, writer);
+        } else {
+            exportNdjson(organizationId, afterId, writer);
+        }
+        writer.flush();
+    }
+
+    private void exportNdjson(Long organizationId, long afterId, Writer writer) throws IOException {
+        JsonGenerator json = jsonFactory.createGenerator(writer);
+        json.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        streamingTemplate.query(EXPORT_SQL, rs -> {
+            try {
+                json.writeStartObject();
+                json.writeNumberField(COLUMNS[0], rs.getLong("id"));
+                json.writeStringField(COLUMNS[1], rs.getString("sku"));
+                json.writeStringField(COLUMNS[2], rs.getString("product_name"));
+                json.writeNumberField(COLUMNS[3], rs.getLong("warehouse_id"));
+                json.writeStringField(COLUMNS[4], rs.getString("warehouse_name"));
+                json.writeStringField(COLUMNS[5], rs.getString("zone_name"));
+                json.writeStringField(COLUMNS[6], rs.getString("batch_number"));
+                json.writeNumberField(COLUMNS[7], rs.getInt("quantity"));
+                json.writeStringField(COLUMNS[8], date(rs));
+                json.writeNumberField(COLUMNS[9], rs.getInt("min_stock_level"));
+                json.writeNumberField(COLUMNS[10], rs.getInt("max_stock_level"));
+                json.writeStringField(COLUMNS[11], timestamp(rs));
+                json.writeEndObject();
+                json.writeRaw('\n');
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        }, organizationId, afterId);
+        json.close();
+    }
+
+    private void exportCsv(Long organizationId, long afterId, Writer writer) throws IOException {
+        if (afterId <= 0) {
+            writer.write(String.join(",", COLUMNS));
+            writer.write('\n');
+        }
+        streamingTemplate.query(EXPORT_SQL, rs -> {
+            try {
+                writer.write(Long.toString(rs.getLong("id")));
+                writer.write(',');
+                writeCsvField(writer, rs.getString("sku"));
+                writer.write(',');
+                writeCsvField(writer, rs.getString("product_name"));
+                writer.write(',');
+                writer.write(Long.toString(rs.getLong("warehouse_id")));
+                writer.write(',');
+                writeCsvField(writer, rs.getString("warehouse_name"));
+                writer.write(',');
+                writeCsvField(writer, rs.getString("zone_name"));
+                writer.write(',');
+                writeCsvField(writer, rs.getString("batch_number"));
+                writer.write(',');
+                writer.write(Integer.toString(rs.getInt("quantity")));
+                writer.write(',');
+                writeCsvField(writer, date(rs));
+                writer.write(',');
+                writer.write(Integer.toString(rs.getInt("min_stock_level")));
+                writer.write(',');
+                writer.write(Integer.toString(rs.getInt("max_stock_level")));
+                writer.write(',');
+                writeCsvField(writer, timestamp(rs));
+                writer.write('\n');
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        }, organizationId, afterId);
+    }
+
+    static void writeCsvField(Writer writer, String value) throws IOException {
+        if (value == null) {
+            return;
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            writer.write(value);
+            return;
+        }
+        writer.write('"');
+        writer.write(value.replace("\"", "\"\""));
+        writer.write('"');
+    }
+
+    private static String date(ResultSet rs) throws SQLException {
+        Date date = rs.getDate("expiry_date");
+        return date != null ? date.toLocalDate().toString() : null;
+    }
+
+    private static String timestamp(ResultSet rs) throws SQLException {
+        Timestamp timestamp = rs.getTimestamp("last_updated");
+        return timestamp != null ? timestamp.toLocalDateTime().toString() : null;
+    }
+}
@@ -0,0 +1,1002 @@
+package com.warehouse.service;
+
+import com.warehouse.dto.ImportJobDTO;
+import com.warehouse.entity.Inventory;
+import com.warehouse.entity.InventoryImportBatch;
+import com.warehouse.entity.Product;
+import com.warehouse.entity.StorageZone;
+import com.warehouse.entity.TransactionType;
+import com.warehouse.entity.Warehouse;
+import com.warehouse.event.StockMovementEvent;
+import com.warehouse.exception.CapacityExceededException;
+import com.warehouse.exception.ResourceNotFoundException;
+import com.warehouse.repository.InventoryImportBatchRepository;
+import com.warehouse.repository.InventoryRepository;
+import com.warehouse.repository.ProductRepository;
+import com.warehouse.repository.StorageZoneRepository;
+import com.warehouse.repository.WarehouseRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bulk inventory import from CSV files with the columns
+ * {@code sku,quantity,batchNumber,expiryDate,zone}. Lines end in LF or CRLF;
+ * a field may be quoted to hold commas or doubled quotes, but not line breaks.
+ * <p>
+ * The uploaded file is spooled to {@code inventory.import.dir} and read back
+ * through memory-mapped windows by a single parser thread, which resolves
+ * SKUs and zone names straight from the mapped bytes and cuts the file into
+ * slices of {@code batch-size} lines. Worker threads insert each slice as new
+ * lots in one transaction together with an {@link InventoryImportBatch}
+ * checkpoint, so a failed or interrupted job resumes with exactly the rows
+ * that are not yet in the table. Import only creates lots; rows for lots that
+ * already exist are reported as row errors.
+ */
+@Slf4j
+@Service
+public class InventoryImportService {
+
+    private static final int FIELDS = 5; // sku, quantity, batchNumber, expiryDate, zone
+    private static final byte[] HEADER = "sku,".getBytes(StandardCharsets.US_ASCII);
+    private static final long POLL_MS = 100;
+
+    @Autowired
+    private WarehouseRepository warehouseRepository;
+
+    @Autowired
+    private StorageZoneRepository storageZoneRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private InventoryRepository inventoryRepository;
+
+    @Autowired
+    private InventoryImportBatchRepository importBatchRepository;
+
+    @Autowired(required = false)
+    private StockLedger stockLedger;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Value("${inventory.import.dir:./data/import}")
+    private String importDir;
+
+    @Value("${inventory.import.workers:4}")
+    private int workers;
+
+    @Value("${inventory.import.batch-size:1000}")
+    private int batchSize;
+
+    @Value("${inventory.import.max-errors:1000}")
+    private int maxErrors;
+
+    @Value("${inventory.import.map-window-mb:64}")
+    private int mapWindowMb;
+
+    @Value("${inventory.import.retain-finished-ms:3600000}")
+    private long retainFinishedMs;
+
+    private final Map<String, ImportJob> jobs = new ConcurrentHashMap<>();
+    private ExecutorService runner;
+    private TransactionTemplate transactionTemplate;
+    private long mapWindowBytes;
+
+    @PostConstruct
+    public void init() {
+        runner = Executors.newCachedThreadPool(daemonThreads("inventory-import-"));
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        mapWindowBytes = (long) mapWindowMb * 1024 * 1024;
+    }
+
+    @PreDestroy
+    public void stop() {
+        runner.shutdownNow();
+    }
+
+    /**
+     * Spool a CSV upload to disk and start importing it into a warehouse in
+     * the background. Returns the queued job; poll {@link #getJob} for progress.
+     */
+    public ImportJobDTO start(Long warehouseId, InputStream body, Long userId) throws IOException {
+        requireDatabaseMode();
+        Warehouse warehouse = warehouseRepository.findById(warehouseId)
+                .orElseThrow(() -> new ResourceNotFoundException("Warehouse", "id", warehouseId));
+
+        ImportJob job = new ImportJob(UUID.randomUUID().toString(), warehouseId,
+                warehouse.getOrganization().getId(), userId);
+        Files.createDirectories(Paths.get(importDir));
+        Path csv = file(job.id, ".csv");
+        Files.copy(body, csv);
+        job.totalBytes = Files.size(csv);
+        if (job.totalBytes == 0) {
+            Files.delete(csv);
+            throw new IllegalArgumentException("Import file is empty");
+        }
+
+        save(job);
+        jobs.put(job.id, job);
+        runner.execute(() -> run(job));
+        return toDTO(job);
+    }
+
+    public ImportJobDTO getJob(String jobId) {
+        return toDTO(job(jobId));
+    }
+
+    /**
+     * Continue a failed or interrupted job from its last checkpoint. Slices
+     * committed by earlier runs are skipped, so no row is imported twice.
+     */
+    public ImportJobDTO resume(String jobId, Long userId) {
+        requireDatabaseMode();
+        ImportJob job = job(jobId);
+        synchronized (job) {
+            if (job.status != ImportJobDTO.Status.FAILED) {
+                throw new IllegalStateException("Only FAILED import jobs can be resumed");
+            }
+            job.userId = userId;
+            job.status = ImportJobDTO.Status.QUEUED;
+            job.message = null;
+            job.failure = null;
+            job.finishedAt = null;
+            // Evicted while it was being resumed; keep it visible to getJob
+            jobs.put(job.id, job);
+        }
+        runner.execute(() -> run(job));
+        return toDTO(job);
+    }
+
+    /**
+     * Drop jobs that finished more than retain-finished-ms ago from memory.
+     * Their files and checkpoints stay, so {@link #getJob} and
+     * {@link #resume} load them again on demand.
+     */
+    @Scheduled(fixedDelayString = "${inventory.import.evict-interval-ms:300000}")
+    public void evictFinished() {
+        LocalDateTime cutoff = LocalDateTime.now().minus(retainFinishedMs, ChronoUnit.MILLIS);
+        jobs.values().removeIf(job -> {
+            synchronized (job) {
+                boolean finished = job.status == ImportJobDTO.Status.COMPLETED
+                        || job.status == ImportJobDTO.Status.FAILED;
+                // A job loaded as interrupted by a restart has no finish time
+                return finished && (job.finishedAt == null || job.finishedAt.isBefore(cutoff));
+            }
+        });
+    }
+
+    private void run(ImportJob job) {
+        job.status = ImportJobDTO.Status.RUNNING;
+        job.startedAt = LocalDateTime.now();
+        saveQuietly(job);
+        try {
+            Map<Long, InventoryImportBatch> committed = new HashMap<>();
+            long bytes = 0;
+            long imported = 0;
+            long failed = 0;
+            for (InventoryImportBatch batch : importBatchRepository.findByJobIdOrderByStartOffset(job.id)) {
+                committed.put(batch.getStartOffset(), batch);
+                bytes += batch.getEndOffset() - batch.getStartOffset();
+                imported += batch.getImportedRows();
+                failed += batch.getFailedRows();
+            }
+            job.committedBytes.set(bytes);
+            job.importedRows.set(imported);
+            job.failedRows.set(failed);
+
+            ImportContext context = context(job);
+            BlockingQueue<Slice> queue = new ArrayBlockingQueue<>(workers * 2);
+            ExecutorService pool = Executors.newFixedThreadPool(workers,
+                    daemonThreads("inventory-import-" + job.id.substring(0, 8) + "-"));
+            job.parsing = true;
+            try {
+                for (int i = 0; i < workers; i++) {
+                    pool.execute(() -> work(job, context, queue));
+                }
+                parse(job, context, committed, queue);
+            } finally {
+                job.parsing = false;
+                pool.shutdown();
+                if (!pool.awaitTermination(1, TimeUnit.HOURS)) {
+                    pool.shutdownNow();
+                }
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            job.fail("Import interrupted");
+        } catch (Exception ex) {
+            log.error("Import job {} failed", job.id, ex);
+            job.fail(ex.getMessage());
+        }
+
+        synchronized (job) {
+            if (job.failure != null) {
+                job.status = ImportJobDTO.Status.FAILED;
+                job.message = job.failure;
+            } else {
+                job.status = ImportJobDTO.Status.COMPLETED;
+                job.committedBytes.set(job.totalBytes);
+            }
+            job.finishedAt = LocalDateTime.now();
+        }
+        saveQuietly(job);
+        log.info("Import job {} {}: {} rows imported, {} rows failed", job.id, job.status,
+                job.importedRows.get(), job.failedRows.get());
+    }
+
+    /**
+     * Cut the file into slices of batch-size lines and queue every slice that
+     * no earlier run committed. Slice boundaries depend only on line numbers,
+     * so a resumed run cuts the same slices as the first one, even when it
+     * starts in the middle of a slice that was imported row by row.
+     */
+    private void parse(ImportJob job, ImportContext context, Map<Long, InventoryImportBatch> committed,
+            BlockingQueue<Slice> queue) throws IOException, InterruptedException {
+        long windowBytes = mapWindowBytes;
+        Fields fields = new Fields();
+        try (FileChannel channel = FileChannel.open(file(job.id, ".csv"), StandardOpenOption.READ)) {
+            long size = channel.size();
+            long position = 0;
+            long line = 0;
+
+            ByteBuffer first = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(windowBytes, size));
+            if (startsWith(first, HEADER)) {
+                int end = indexOf(first, (byte) '\n', 0, first.limit());
+                position = end < 0 ? size : end + 1;
+                line = 1;
+                job.committedBytes.addAndGet(position);
+            }
+            long headerLines = line;
+
+            // Skip the contiguous run of committed slices in one step
+            InventoryImportBatch batch;
+            while ((batch = committed.get(position)) != null) {
+                position = batch.getEndOffset();
+                line = batch.getEndLine();
+            }
+
+            Slice slice = new Slice(position, line + 1);
+            while (position < size && job.failure == null) {
+                int window = (int) Math.min(windowBytes, size - position);
+                ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, window);
+                boolean last = position + window == size;
+                int start = 0;
+                while (start < window) {
+                    int end = indexOf(buffer, (byte) '\n', start, window);
+                    if (end < 0) {
+                        if (!last) {
+                            break; // The line continues past this window: remap from its start
+                        }
+                        end = window;
+                    }
+                    line++;
+                    int lineEnd = end > start && buffer.get(end - 1) == '\r' ? end - 1 : end;
+                    int next = Math.min(end + 1, window);
+                    if (lineEnd > start) {
+                        parseLine(context, buffer, start, lineEnd, line, position + next, fields, slice);
+                    }
+                    slice.lines++;
+                    start = next;
+
+                    if ((line - headerLines) % batchSize == 0) {
+                        slice.endOffset = position + start;
+                        slice.endLine = line;
+                        submit(slice, committed, queue);
+                        slice = new Slice(slice.endOffset, line + 1);
+                    }
+                }
+                if (start == 0) {
+                    throw new IllegalArgumentException("Line " + (line + 1) + " is longer than the "
+                            + windowBytes + " byte map window");
+                }
+                position += start;
+            }
+
+            if (slice.lines > 0 && job.failure == null) {
+                slice.endOffset = size;
+                slice.endLine = line;
+                submit(slice, committed, queue);
+            }
+        }
+    }
+
+    /**
+     * Queue a slice unless an earlier run committed it. When an earlier run
+     * imported only the start of the slice row by row, queue the rest.
+     */
+    private static void submit(Slice slice, Map<Long, InventoryImportBatch> committed, BlockingQueue<Slice> queue)
+            throws InterruptedException {
+        InventoryImportBatch batch;
+        while ((batch = committed.get(slice.startOffset)) != null) {
+            if (batch.getEndOffset() >= slice.endOffset) {
+                return;
+            }
+            slice = slice.after(batch);
+        }
+        queue.put(slice);
+    }
+
+    private void parseLine(ImportContext context, ByteBuffer buffer, int start, int end, long line, long endOffset,
+            Fields fields, Slice slice) {
+        String malformed = fields.split(buffer, start, end);
+        if (malformed != null) {
+            slice.errors.add(new ImportJobDTO.RowError(line, malformed));
+            return;
+        }
+
+        long productId = context.skus.get(fields.buffer(0), fields.start(0), fields.length(0));
+        if (productId < 0) {
+            slice.errors.add(new ImportJobDTO.RowError(line, "Unknown SKU '" + fields.string(0) + "'"));
+            return;
+        }
+
+        int quantity = parseDigits(fields.buffer(1), fields.start(1), fields.end(1));
+        if (quantity <= 0) {
+            slice.errors.add(new ImportJobDTO.RowError(line, "Quantity must be a positive whole number"));
+            return;
+        }
+
+        if (fields.length(2) > 50) {
+            slice.errors.add(new ImportJobDTO.RowError(line, "Batch number is longer than 50 characters"));
+            return;
+        }
+        String batchNumber = fields.length(2) > 0 ? fields.string(2) : null;
+
+        LocalDate expiryDate = null;
+        if (fields.length(3) > 0) {
+            expiryDate = parseDate(fields.buffer(3), fields.start(3), fields.end(3));
+            if (expiryDate == null) {
+                slice.errors.add(new ImportJobDTO.RowError(line, "Expiry date must be yyyy-MM-dd"));
+                return;
+            }
+        }
+
+        Long zoneId = null;
+        if (fields.length(4) > 0) {
+            zoneId = context.zoneId(fields.buffer(4), fields.start(4), fields.length(4));
+            if (zoneId == null) {
+                slice.errors.add(new ImportJobDTO.RowError(line, "Unknown zone '" + fields.string(4) + "'"));
+                return;
+            }
+        }
+
+        slice.rows.add(new Row(line, endOffset, productId, zoneId, batchNumber, expiryDate, quantity));
+    }
+
+    private void work(ImportJob job, ImportContext context, BlockingQueue<Slice> queue) {
+        try {
+            while (true) {
+                Slice slice = queue.poll(POLL_MS, TimeUnit.MILLISECONDS);
+                if (slice == null) {
+                    if (!job.parsing && queue.isEmpty()) {
+                        return;
+                    }
+                    continue;
+                }
+                // After a failure keep draining so the parser never blocks on a full queue
+                if (job.failure == null) {
+                    try {
+                        process(job, context, slice);
+                    } catch (RuntimeException ex) {
+                        log.error("Import job {} failed at line {}", job.id, slice.firstLine, ex);
+                        job.fail("Lines " + slice.firstLine + "-" + slice.endLine + ": " + ex.getMessage());
+                    }
+                }
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            job.fail("Import interrupted");
+        }
+    }
+
+    /**
+     * Insert one slice and its checkpoint in a single transaction. When
+     * another slice of the same file created one of the lots first, or a zone
+     * fills up, fall back to a transaction per row so the rest of the slice
+     * still goes in; each of those transactions advances the checkpoint past
+     * its row, so an interrupted fallback resumes after the last row it wrote.
+     */
+    private void process(ImportJob job, ImportContext context, Slice slice) {
+        List<ImportJobDTO.RowError> errors = new ArrayList<>(slice.errors);
+        List<Row> rows = withoutExistingLots(context, slice.rows, errors);
+        int imported;
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                for (Row row : rows) {
+                    insert(job, context, row);
+                }
+                entityManager.persist(checkpoint(job, slice, rows.size(), errors.size()));
+            });
+            imported = rows.size();
+        } catch (DataIntegrityViolationException | CapacityExceededException ex) {
+            imported = insertRowByRow(job, context, slice, rows, errors);
+        }
+
+        errors.sort(Comparator.comparingLong(ImportJobDTO.RowError::getLine));
+        job.committedBytes.addAndGet(slice.endOffset - slice.startOffset);
+        job.importedRows.addAndGet(imported);
+        job.failedRows.addAndGet(errors.size());
+        recordErrors(job, errors);
+    }
+
+    private int insertRowByRow(ImportJob job, ImportContext context, Slice slice, List<Row> rows,
+            List<ImportJobDTO.RowError> errors) {
+        errors.sort(Comparator.comparingLong(ImportJobDTO.RowError::getLine));
+        List<ImportJobDTO.RowError> rowErrors = new ArrayList<>();
+        Long checkpointId = null;
+        int imported = 0;
+        int earlierErrors = 0;
+        for (Row row : rows) {
+            while (earlierErrors < errors.size() && errors.get(earlierErrors).getLine() < row.line) {
+                earlierErrors++;
+            }
+            int failed = earlierErrors + rowErrors.size();
+            try {
+                int importedRows = imported + 1;
+                Long id = checkpointId;
+                checkpointId = transactionTemplate.execute(status -> {
+                    insert(job, context, row);
+                    return advance(job, slice, id, row.endOffset, row.line, importedRows, failed);
+                });
+                imported = importedRows;
+            } catch (DataIntegrityViolationException duplicate) {
+                rowErrors.add(new ImportJobDTO.RowError(row.line, "Lot already exists"));
+            } catch (CapacityExceededException full) {
+                rowErrors.add(new ImportJobDTO.RowError(row.line, full.getMessage()));
+            }
+        }
+        errors.addAll(rowErrors);
+
+        // Cover the slice's trailing lines that produced no row
+        Long id = checkpointId;
+        int importedRows = imported;
+        transactionTemplate.executeWithoutResult(status ->
+                advance(job, slice, id, slice.endOffset, slice.endLine, importedRows, errors.size()));
+        return imported;
+    }
+
+    /**
+     * Create or move forward the checkpoint of a slice being imported row by
+     * row. Runs inside the caller's transaction and returns the checkpoint id.
+     */
+    private Long advance(ImportJob job, Slice slice, Long checkpointId, long endOffset, long endLine, int imported,
+            int failed) {
+        if (checkpointId == null) {
+            InventoryImportBatch batch = new InventoryImportBatch(null, job.id, slice.startOffset, endOffset, endLine,
+                    imported, failed);
+            entityManager.persist(batch);
+            return batch.getId();
+        }
+        InventoryImportBatch batch = entityManager.find(InventoryImportBatch.class, checkpointId);
+        batch.setEndOffset(endOffset);
+        batch.setEndLine(endLine);
+        batch.setImportedRows(imported);
+        batch.setFailedRows(failed);
+        return checkpointId;
+    }
+
+    private List<Row> withoutExistingLots(ImportContext context, List<Row> rows, List<ImportJobDTO.RowError> errors) {
+        if (rows.isEmpty()) {
+            return rows;
+        }
+        Set<Long> productIds = new HashSet<>();
+        rows.forEach(row -> productIds.add(row.productId));
+        Set<List<Object>> existing = new HashSet<>();
+        for (Object[] key : inventoryRepository.findLotKeys(productIds, List.of(context.warehouseId))) {
+            existing.add(Arrays.asList(key[1], key[3], key[4]));
+        }
+
+        List<Row> accepted = new ArrayList<>(rows.size());
+        for (Row row : rows) {
+            if (existing.add(Arrays.asList(row.productId, row.zoneId, row.batchNumber))) {
+                accepted.add(row);
+            } else {
+                errors.add(new ImportJobDTO.RowError(row.line, "Lot already exists"));
+            }
+        }
+        return accepted;
+    }
+
+    private void insert(ImportJob job, ImportContext context, Row row) {
+        Inventory inventory = new Inventory();
+        inventory.setProduct(entityManager.getReference(Product.class, row.productId));
+        inventory.setWarehouse(entityManager.getReference(Warehouse.class, context.warehouseId));
+        inventory.setZone(row.zoneId != null ? entityManager.getReference(StorageZone.class, row.zoneId) : null);
+        inventory.move(row.quantity);
+        inventory.setBatchNumber(row.batchNumber);
+        inventory.setExpiryDate(row.expiryDate);
+        entityManager.persist(inventory);
+
+        StockMovementEvent event = new StockMovementEvent();
+        event.setInventoryId(inventory.getId());
+        event.setProductId(row.productId);
+        event.setWarehouseId(context.warehouseId);
+        event.setOrganizationId(context.organizationId);
+        event.setZoneId(row.zoneId);
+        event.setBatchNumber(row.batchNumber);
+        event.setExpiryDate(row.expiryDate);
+        event.setTransactionType(TransactionType.STOCK_IN);
+        event.setQuantity(row.quantity);
+        event.setResultingQuantity(row.quantity);
+        event.setMovementSeq(inventory.getMovementSeq());
+        event.setMinStockLevel(inventory.getMinStockLevel());
+        event.setPerformedBy(job.userId);
+        event.setNotes("Import " + job.id);
+        event.setTimestamp(LocalDateTime.now());
+        eventPublisher.publishEvent(event);
+    }
+
+    private static InventoryImportBatch checkpoint(ImportJob job, Slice slice, int imported, int failed) {
+        return new InventoryImportBatch(null, job.id, slice.startOffset, slice.endOffset, slice.endLine,
+                imported, failed);
+    }
+
+    /**
+     * SKUs of the warehouse's organization and the warehouse's zone names,
+     * resolved once per run.
+     */
+    private ImportContext context(ImportJob job) {
+        List<Object[]> skus = productRepository.findSkusByOrganizationId(job.organizationId);
+        SkuTable table = new SkuTable(skus.size());
+        for (Object[] sku : skus) {
+            table.put((String) sku[0], (Long) sku[1]);
+        }
+
+        List<StorageZone> zones = storageZoneRepository.findByWarehouseId(job.warehouseId);
+        byte[][] zoneNames = new byte[zones.size()][];
+        Long[] zoneIds = new Long[zones.size()];
+        for (int i = 0; i < zones.size(); i++) {
+            zoneNames[i] = zones.get(i).getName().getBytes(StandardCharsets.UTF_8);
+            zoneIds[i] = zones.get(i).getId();
+        }
+        return new ImportContext(job.warehouseId, job.organizationId, table, zoneNames, zoneIds);
+    }
+
+    private ImportJob job(String jobId) {
+        try {
+            UUID.fromString(jobId);
+        } catch (IllegalArgumentException ex) {
+            throw new ResourceNotFoundException("ImportJob", "id", jobId);
+        }
+        return jobs.computeIfAbsent(jobId, this::load);
+    }
+
+    /**
+     * Rebuild a job this process did not start from its files and checkpoints.
+     * A job still marked running was cut short by a restart.
+     */
+    private ImportJob load(String jobId) {
+        Path properties = file(jobId, ".properties");
+        if (!Files.exists(properties)) {
+            throw new ResourceNotFoundException("ImportJob", "id", jobId);
+        }
+        try {
+            Properties stored = new Properties();
+            try (InputStream in = Files.newInputStream(properties)) {
+                stored.load(in);
+            }
+            ImportJob job = new ImportJob(jobId, Long.valueOf(stored.getProperty("warehouseId")),
+                    Long.valueOf(stored.getProperty("organizationId")), Long.valueOf(stored.getProperty("userId")));
+            job.totalBytes = Files.size(file(jobId, ".csv"));
+            job.status = ImportJobDTO.Status.valueOf(stored.getProperty("status"));
+            job.message = stored.getProperty("message");
+            job.startedAt = dateTime(stored.getProperty("startedAt"));
+            job.finishedAt = dateTime(stored.getProperty("finishedAt"));
+            if (job.status == ImportJobDTO.Status.QUEUED || job.status == ImportJobDTO.Status.RUNNING) {
+                job.status = ImportJobDTO.Status.FAILED;
+                job.message = "Interrupted by a restart";
+            }
+
+            for (InventoryImportBatch batch : importBatchRepository.findByJobIdOrderByStartOffset(jobId)) {
+                job.committedBytes.addAndGet(batch.getEndOffset() - batch.getStartOffset());
+                job.importedRows.addAndGet(batch.getImportedRows());
+                job.failedRows.addAndGet(batch.getFailedRows());
+            }
+            if (job.status == ImportJobDTO.Status.COMPLETED) {
+                job.committedBytes.set(job.totalBytes);
+            }
+
+            Path errors = file(jobId, ".errors.csv");
+            if (Files.exists(errors)) {
+                try (BufferedReader reader = Files.newBufferedReader(errors, StandardCharsets.UTF_8)) {
+                    String line;
+                    while (job.errors.size() < maxErrors && (line = reader.readLine()) != null) {
+                        int comma = line.indexOf(',');
+                        job.errors.add(new ImportJobDTO.RowError(Long.parseLong(line.substring(0, comma)),
+                                line.substring(comma + 1)));
+                    }
+                }
+            }
+            return job;
+        } catch (IOException ex) {
+            throw new IllegalStateException("Could not read import job " + jobId, ex);
+        }
+    }
+
+    /**
+     * Keep the first max-errors row errors in memory and append every error
+     * to the job's error file.
+     */
+    private void recordErrors(ImportJob job, List<ImportJobDTO.RowError> errors) {
+        if (errors.isEmpty()) {
+            return;
+        }
+        synchronized (job) {
+            for (ImportJobDTO.RowError error : errors) {
+                if (job.errors.size() >= maxErrors) {
+                    break;
+                }
+                job.errors.add(error);
+            }
+            try (Writer writer = Files.newBufferedWriter(file(job.id, ".errors.csv"), StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                for (ImportJobDTO.RowError error : errors) {
+                    writer.write(error.getLine() + "," + error.getMessage() + "\n");
+                }
+            } catch (IOException ex) {
+                log.warn("Could not write row errors of import job {}", job.id, ex);
+            }
+        }
+    }
+
+    private void save(ImportJob job) throws IOException {
+        Properties stored = new Properties();
+        stored.setProperty("warehouseId", job.warehouseId.toString());
+        stored.setProperty("organizationId", job.organizationId.toString());
+        stored.setProperty("userId", job.userId.toString());
+        stored.setProperty("status", job.status.name());
+        if (job.message != null) {
+            stored.setProperty("message", job.message);
+        }
+        if (job.startedAt != null) {
+            stored.setProperty("startedAt", job.startedAt.toString());
+        }
+        if (job.finishedAt != null) {
+            stored.setProperty("finishedAt", job.finishedAt.toString());
+        }
+        try (OutputStream out = Files.newOutputStream(file(job.id, ".properties"))) {
+            stored.store(out, "Inventory import job " + job.id);
+        }
+    }
+
+    private void saveQuietly(ImportJob job) {
+        try {
+            save(job);
+        } catch (IOException ex) {
+            log.warn("Could not save import job {}", job.id, ex);
+        }
+    }
+
+    private ImportJobDTO toDTO(ImportJob job) {
+        ImportJobDTO dto = new ImportJobDTO();
+        dto.setId(job.id);
+        dto.setWarehouseId(job.warehouseId);
+        dto.setStatus(job.status);
+        dto.setTotalBytes(job.totalBytes);
+        dto.setCommittedBytes(job.committedBytes.get());
+        dto.setPercentComplete(job.totalBytes > 0
+                ? Math.round(job.committedBytes.get() * 1000.0 / job.totalBytes) / 10.0
+                : 0);
+        dto.setImportedRows(job.importedRows.get());
+        dto.setFailedRows(job.failedRows.get());
+        dto.setMessage(job.message);
+        dto.setStartedAt(job.startedAt);
+        dto.setFinishedAt(job.finishedAt);
+        synchronized (job) {
+            dto.setErrors(new ArrayList<>(job.errors));
+        }
+        return dto;
+    }
+
+    private void requireDatabaseMode() {
+        if (stockLedger != null) {
+            throw new IllegalStateException("Bulk import is not available while the stock ledger is enabled");
+        }
+    }
+
+    private Path file(String jobId, String suffix) {
+        return Paths.get(importDir, jobId + suffix);
+    }
+
+    private static LocalDateTime dateTime(String value) {
+        return value != null ? LocalDateTime.parse(value) : null;
+    }
+
+    private static boolean startsWith(ByteBuffer buffer, byte[] prefix) {
+        if (buffer.limit() < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (buffer.get(i) != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int indexOf(ByteBuffer buffer, byte value, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (buffer.get(i) == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // Up to nine digits, so the result cannot overflow; -1 when the field is not a number
+    private static int parseDigits(ByteBuffer buffer, int start, int end) {
+        if (start == end || end - start > 9) {
+            return -1;
+        }
+        int value = 0;
+        for (int i = start; i < end; i++) {
+            byte digit = buffer.get(i);
+            if (digit < '0' || digit > '9') {
+                return -1;
+            }
+            value = value * 10 + (digit - '0');
+        }
+        return value;
+    }
+
+    // yyyy-MM-dd read straight from the bytes; null when the field is not a valid date
+    private static LocalDate parseDate(ByteBuffer buffer, int start, int end) {
+        if (end - start != 10 || buffer.get(start + 4) != '-' || buffer.get(start + 7) != '-') {
+            return null;
+        }
+        int year = parseDigits(buffer, start, start + 4);
+        int month = parseDigits(buffer, start + 5, start + 7);
+        int day = parseDigits(buffer, start + 8, end);
+        if (year < 0 || month < 0 || day < 0) {
+            return null;
+        }
+        try {
+            return LocalDate.of(year, month, day);
+        } catch (DateTimeException ex) {
+            return null;
+        }
+    }
+
+    private static ThreadFactory daemonThreads(String prefix) {
+        AtomicInteger count = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private record Row(long line, long endOffset, long productId, Long zoneId, String batchNumber,
+            LocalDate expiryDate, int quantity) {
+    }
+
+    /**
+     * The field bounds of the line being parsed. A quoted field's bounds
+     * leave out its quotes; one with doubled quotes is copied, unescaped, to
+     * a scratch buffer, so every field reads as plain bytes.
+     */
+    private static final class Fields {
+        private final ByteBuffer[] buffers = new ByteBuffer[FIELDS];
+        private final int[] starts = new int[FIELDS];
+        private final int[] ends = new int[FIELDS];
+        private ByteBuffer unescaped = ByteBuffer.allocate(256);
+
+        /**
+         * Split {@code buffer[start, end)} into the five fields. Returns why
+         * the line is malformed, or null.
+         */
+        String split(ByteBuffer buffer, int start, int end) {
+            unescaped.clear();
+            int field = 0;
+            int i = start;
+            while (true) {
+                if (field == FIELDS) {
+                    return "Expected " + FIELDS + " fields";
+                }
+                buffers[field] = buffer;
+                if (i < end && buffer.get(i) == '"') {
+                    int from = ++i;
+                    boolean escaped = false;
+                    while (true) {
+                        if (i == end) {
+                            return "Quoted field is not closed on its line";
+                        }
+                        if (buffer.get(i) == '"') {
+                            if (i + 1 < end && buffer.get(i + 1) == '"') {
+                                escaped = true;
+                                i += 2;
+                                continue;
+                            }
+                            break;
+                        }
+                        i++;
+                    }
+                    starts[field] = from;
+                    ends[field] = i;
+                    if (escaped) {
+                        unescape(field);
+                    }
+                    i++; // Closing quote
+                    if (i < end && buffer.get(i) != ',') {
+                        return "Unexpected character after a quoted field";
+                    }
+                } else {
+                    starts[field] = i;
+                    while (i < end && buffer.get(i) != ',') {
+                        i++;
+                    }
+                    ends[field] = i;
+                }
+                field++;
+                if (i == end) {
+                    return field == FIELDS ? null : "Expected " + FIELDS + " fields";
+                }
+                i++; // Comma
+            }
+        }
+
+        ByteBuffer buffer(int field) {
+            return buffers[field];
+        }
+
+        int start(int field) {
+            return starts[field];
+        }
+
+        int end(int field) {
+            return ends[field];
+        }
+
+        int length(int field) {
+            return ends[field] - starts[field];
+        }
+
+        String string(int field) {
+            byte[] bytes = new byte[length(field)];
+            buffers[field].get(starts[field], bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        private void unescape(int field) {
+            ByteBuffer source = buffers[field];
+            int length = ends[field] - starts[field];
+            if (unescaped.remaining() < length) {
+                // Fields already copied keep pointing at the old buffer
+                unescaped = ByteBuffer.allocate(Math.max(unescaped.capacity() * 2, length));
+            }
+            int from = unescaped.position();
+            for (int i = starts[field]; i < ends[field]; i++) {
+                byte value = source.get(i);
+                unescaped.put(value);
+                if (value == '"') {
+                    i++; // Skip the second quote of the pair
+                }
+            }
+            buffers[field] = unescaped;
+            starts[field] = from;
+            ends[field] = unescaped.position();
+        }
+    }
+
+    private record ImportContext(Long warehouseId, Long organizationId, SkuTable skus, byte[][] zoneNames,
+            Long[] zoneIds) {
+
+        Long zoneId(ByteBuffer buffer, int offset, int length) {
+            for (int i = 0; i < zoneNames.length; i++) {
+                byte[] name = zoneNames[i];
+                if (name.length == length && matches(name, buffer, offset)) {
+                    return zoneIds[i];
+                }
+            }
+            return null;
+        }
+
+        private static boolean matches(byte[] name, ByteBuffer buffer, int offset) {
+            for (int i = 0; i < name.length; i++) {
+                if (name[i] != buffer.get(offset + i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private static final class Slice {
+        final long startOffset;
+        final long firstLine;
+        long endOffset;
+        long endLine;
+        int lines;
+        final List<Row> rows = new ArrayList<>();
+        final List<ImportJobDTO.RowError> errors = new ArrayList<>();
+
+        Slice(long startOffset, long firstLine) {
+            this.startOffset = startOffset;
+            this.firstLine = firstLine;
+        }
+
+        /**
+         * The part of this slice after the rows an earlier run imported.
+         */
+        Slice after(InventoryImportBatch batch) {
+            Slice rest = new Slice(batch.getEndOffset(), batch.getEndLine() + 1);
+            rest.endOffset = endOffset;
+            rest.endLine = endLine;
+            rest.lines = (int) (endLine - batch.getEndLine());
+            rows.stream().filter(row -> row.line > batch.getEndLine()).forEach(rest.rows::add);
+            errors.stream().filter(error -> error.getLine() > batch.getEndLine()).forEach(rest.errors::add);
+            return rest;
+        }
+    }
+
+    private static final class ImportJob {
+        final String id;
+        final Long warehouseId;
+        final Long organizationId;
+        volatile Long userId;
+        volatile long totalBytes;
+        volatile ImportJobDTO.Status status = ImportJobDTO.Status.QUEUED;
+        volatile String message;
+        volatile String failure;
+        volatile boolean parsing;
+        volatile LocalDateTime startedAt;
+        volatile LocalDateTime finishedAt;
+        final AtomicLong committedBytes = new AtomicLong();
+        final AtomicLong importedRows = new AtomicLong();
+        final AtomicLong failedRows = new AtomicLong();
+        final List<ImportJobDTO.RowError> errors = new ArrayList<>();
+
+        ImportJob(String id, Long warehouseId, Long organizationId, Long userId) {
+            this.id = id;
+            this.warehouseId = warehouseId;
+            this.organizationId = organizationId;
+            this.userId = userId;
+        }
+
+        synchronized void fail(String reason) {
+            if (failure == null) {
+                failure = reason != null ? reason : "Import failed";
+            }
+        }
+    }
+}
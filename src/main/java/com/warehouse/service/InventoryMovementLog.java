@@ -0,0 +1,240 @@
+package com.warehouse.service;
+
+import com.warehouse.event.StockMovementEvent;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Append-only movement log that writes {@code inventory_transactions} rows
+ * with group commit. Movements from concurrent requests are queued after their
+ * transaction commits and a single writer thread flushes them as multi-row
+ * inserts once {@code batch-size} records are pending or {@code flush-interval-ms}
+ * has passed since the first pending record, whichever comes first. The flush
+ * interval is the durability window: a crash can lose at most that much of
+ * the audit trail, but stock operations never wait on an INSERT.
+ *
+ * Each batch is inserted in one transaction. A batch that still fails after
+ * {@code max-attempts} tries is split in halves until the rows that fail on
+ * their own are isolated; those are written to the
+ * {@code inventory.movement-log.dead-letter} logger instead, so one bad row
+ * cannot stall the queue and with it every stock operation.
+ */
+@Slf4j
+@Service
+public class InventoryMovementLog {
+
+    private static final String INSERT_SQL =
+            "INSERT INTO inventory_transactions "
+                    + "(inventory_id, transaction_type, quantity, movement_seq, reason_code, performed_by, timestamp, "
+                    + "notes) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+
+    // One line per movement that could not be written, for replay
+    private static final Logger DEAD_LETTER = LoggerFactory.getLogger("inventory.movement-log.dead-letter");
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${inventory.movement-log.flush-interval-ms:5}")
+    private long flushIntervalMs;
+
+    @Value("${inventory.movement-log.batch-size:500}")
+    private int batchSize;
+
+    @Value("${inventory.movement-log.capacity:100000}")
+    private int capacity;
+
+    @Value("${inventory.movement-log.max-attempts:5}")
+    private int maxAttempts;
+
+    @Value("${inventory.movement-log.retry-backoff-ms:1000}")
+    private long retryBackoffMs;
+
+    private TransactionTemplate transactionTemplate;
+    private BlockingQueue<StockMovementEvent> queue;
+    private final List<StockMovementEvent> unwritten = new ArrayList<>();
+    private final AtomicLong queued = new AtomicLong();
+    private final AtomicLong deadLettered = new AtomicLong();
+    private long written; // Guarded by this
+    private Thread writer;
+    private volatile boolean running;
+
+    @PostConstruct
+    public void start() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        queue = new ArrayBlockingQueue<>(capacity);
+        running = true;
+        writer = new Thread(this::run, "inventory-movement-log");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        writer.interrupt();
+        writer.join(TimeUnit.SECONDS.toMillis(10));
+
+        List<StockMovementEvent> remaining = new ArrayList<>(unwritten);
+        queue.drainTo(remaining);
+        if (!remaining.isEmpty()) {
+            writeOrSplit(remaining);
+        }
+    }
+
+    /**
+     * Queue a committed movement for the next group commit. Blocks only when
+     * the queue is full, which applies back-pressure instead of dropping
+     * audit records.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onStockMovement(StockMovementEvent event) throws InterruptedException {
+        queue.put(event);
+        queued.incrementAndGet();
+    }
+
+    /**
+     * Block until every movement queued before this call has been written,
+     * for readers that need the table to include all committed movements.
+     */
+    public void awaitWritten(long timeoutMs) throws InterruptedException {
+        long target = queued.get();
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        synchronized (this) {
+            while (written < target) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    throw new IllegalStateException("Movement log did not catch up within " + timeoutMs + " ms");
+                }
+                wait(remaining);
+            }
+        }
+    }
+
+    /**
+     * Number of movements given up on and sent to the dead-letter log.
+     */
+    public long getDeadLetterCount() {
+        return deadLettered.get();
+    }
+
+    private void run() {
+        List<StockMovementEvent> batch = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                StockMovementEvent first = queue.poll(flushIntervalMs, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+                while (batch.size() < batchSize) {
+                    queue.drainTo(batch, batchSize - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= batchSize || remaining <= 0) {
+                        break;
+                    }
+                    StockMovementEvent next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+
+                writeWithRetry(batch);
+                batch.clear();
+            } catch (InterruptedException ex) {
+                // Shutdown: keep what we have so stop() can write it
+                unwritten.addAll(batch);
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void writeWithRetry(List<StockMovementEvent> batch) throws InterruptedException {
+        for (int attempt = 1; attempt < maxAttempts; attempt++) {
+            try {
+                write(batch);
+                markWritten(batch.size());
+                return;
+            } catch (RuntimeException ex) {
+                log.warn("Failed to write {} inventory movements (attempt {} of {}), retrying",
+                        batch.size(), attempt, maxAttempts, ex);
+                Thread.sleep(retryBackoffMs);
+            }
+        }
+        writeOrSplit(batch);
+    }
+
+    /**
+     * Last attempt at a batch: on failure, bisect it so every row that can
+     * be written still is, and only rows that fail alone are dead-lettered.
+     */
+    private void writeOrSplit(List<StockMovementEvent> batch) {
+        try {
+            write(batch);
+            markWritten(batch.size());
+        } catch (RuntimeException ex) {
+            if (batch.size() == 1) {
+                deadLetter(batch.get(0), ex);
+                markWritten(1);
+                return;
+            }
+            int middle = batch.size() / 2;
+            writeOrSplit(batch.subList(0, middle));
+            writeOrSplit(batch.subList(middle, batch.size()));
+        }
+    }
+
+    private void deadLetter(StockMovementEvent movement, RuntimeException cause) {
+        deadLettered.incrementAndGet();
+        log.error("Giving up on inventory movement of lot {}; see the dead-letter log", movement.getInventoryId(),
+                cause);
+        DEAD_LETTER.error("inventoryId={} type={} quantity={} movementSeq={} reasonCode={} performedBy={} "
+                + "timestamp={} notes={}", movement.getInventoryId(), movement.getTransactionType(),
+                movement.getQuantity(), movement.getMovementSeq(),
+                movement.getReasonCode(), movement.getPerformedBy(), movement.getTimestamp(), movement.getNotes());
+    }
+
+    private synchronized void markWritten(int count) {
+        written += count;
+        notifyAll();
+    }
+
+    private void write(List<StockMovementEvent> batch) {
+        transactionTemplate.executeWithoutResult(status ->
+                jdbcTemplate.batchUpdate(INSERT_SQL, batch, batch.size(), (ps, movement) -> {
+                    ps.setObject(1, movement.getInventoryId(), Types.BIGINT);
+                    ps.setString(2, movement.getTransactionType().name());
+                    ps.setInt(3, movement.getQuantity());
+                    ps.setObject(4, movement.getMovementSeq(), Types.BIGINT);
+                    ps.setObject(5, movement.getReasonCode(), Types.VARCHAR);
+                    ps.setObject(6, movement.getPerformedBy(), Types.BIGINT);
+                    ps.setTimestamp(7, Timestamp.valueOf(movement.getTimestamp()));
+                    ps.setObject(8, movement.getNotes(), Types.VARCHAR);
+                }));
+    }
+}
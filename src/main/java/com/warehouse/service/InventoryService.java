@@ -1,25 +1,48 @@
 package com.warehouse.service;
 
+import com.warehouse.dto.BatchStockOperationRequest;
+import com.warehouse.dto.BatchStockOperationResponse;
 import com.warehouse.dto.InventoryDTO;
+import com.warehouse.dto.InventoryTransactionDTO;
+import com.warehouse.dto.BatchStockTransferRequest;
+import com.warehouse.dto.CursorPage;
+import com.warehouse.dto.StockAllocationRequest;
+import com.warehouse.dto.StockAllocationResponse;
 import com.warehouse.dto.StockOperationRequest;
+import com.warehouse.dto.StockTransferRequest;
+import com.warehouse.dto.StockTransferResponse;
 import com.warehouse.entity.*;
+import com.warehouse.event.StockMovementEvent;
+import com.warehouse.exception.CapacityExceededException;
+import com.warehouse.exception.InsufficientStockException;
 import com.warehouse.exception.ResourceNotFoundException;
 import com.warehouse.repository.*;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.interceptor.TransactionAspectSupport;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.LocalDate;
-import java.util.List;
-import java.util.Optional;
+import java.util.*;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 /**
  * Service for inventory management operations.
  */
+@Slf4j
 @Service
 public class InventoryService {
 
+    private static final int ID_CHUNK_SIZE = 1000;
+
     @Autowired
     private InventoryRepository inventoryRepository;
 
@@ -29,82 +52,778 @@ public class InventoryService {
     @Autowired
     private WarehouseRepository warehouseRepository;
 
+    @Autowired
+    private StorageZoneRepository storageZoneRepository;
+
+    @Autowired
+    private InventoryTransactionRepository inventoryTransactionRepository;
+
+    @Autowired(required = false)
+    private StockLedger stockLedger;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private LowStockIndex lowStockIndex;
+
+    @Autowired
+    private ExpiryCalendar expiryCalendar;
+
+    @Autowired
+    private LotAllocator lotAllocator;
+
+    @Autowired
+    private ZoneUtilizationTracker zoneUtilizationTracker;
+
+    @Autowired
+    private WarehouseOccupancyTracker warehouseOccupancyTracker;
+
+    @Autowired
+    private PutawayEngine putawayEngine;
+
+    @Autowired
+    private ReservationService reservationService;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${application.pagination.default-page-size:20}")
+    private int defaultPageSize;
+
+    @Value("${application.pagination.max-page-size:100}")
+    private int maxPageSize;
+
     @Transactional
     public InventoryDTO stockIn(StockOperationRequest request, Long userId) {
-        Product product = productRepository.findById(request.getProductId())
-                .orElseThrow(() -> new ResourceNotFoundException("Product", "id", request.getProductId()));
+        putaway(request, putawayEngine.getStorageType(request.getProductId()), Map.of());
+        if (stockLedger != null) {
+            return stockLedger.stockIn(request, userId);
+        }
 
-        Warehouse warehouse = warehouseRepository.findById(request.getWarehouseId())
-                .orElseThrow(() -> new ResourceNotFoundException("Warehouse", "id", request.getWarehouseId()));
+        // Atomic increment of an existing lot; only a brand-new lot needs the entity loads
+        int updated = incrementLot(request);
 
-        // Find or create inventory record
-        Optional<Inventory> existingInventory = inventoryRepository
-                .findByProductIdAndWarehouseIdAndBatchNumber(
-                        request.getProductId(),
-                        request.getWarehouseId(),
-                        request.getBatchNumber());
+        if (updated == 0) {
+            // First receipt of the lot. The unique key does not stop two inserts of a lot
+            // without a zone or batch, so lock the product and look again before inserting:
+            // a concurrent first receipt has either committed its row or waits for ours.
+            Product product = productRepository.findByIdForUpdate(request.getProductId())
+                    .orElseThrow(() -> new ResourceNotFoundException("Product", "id", request.getProductId()));
+            updated = incrementLot(request);
+            if (updated == 0) {
+                Warehouse warehouse = warehouseRepository.findById(request.getWarehouseId())
+                        .orElseThrow(() -> new ResourceNotFoundException("Warehouse", "id", request.getWarehouseId()));
 
-        Inventory inventory;
-        if (existingInventory.isPresent()) {
-            inventory = existingInventory.get();
-            inventory.setQuantity(inventory.getQuantity() + request.getQuantity());
-        } else {
-            inventory = new Inventory();
-            inventory.setProduct(product);
-            inventory.setWarehouse(warehouse);
-            inventory.setQuantity(request.getQuantity());
-            inventory.setBatchNumber(request.getBatchNumber());
-            inventory.setExpiryDate(request.getExpiryDate());
-        }
+                Inventory inventory = new Inventory();
+                inventory.setProduct(product);
+                inventory.setWarehouse(warehouse);
+                inventory.setZone(resolveZone(request.getZoneId(), request.getWarehouseId()));
+                inventory.move(request.getQuantity());
+                inventory.setBatchNumber(request.getBatchNumber());
+                inventory.setExpiryDate(request.getExpiryDate());
+                inventory = inventoryRepository.save(inventory);
 
-        inventory = inventoryRepository.save(inventory);
+                publishMovement(inventory, TransactionType.STOCK_IN, request.getQuantity(), userId,
+                        request.getNotes());
+                return convertToDTO(inventory);
+            }
+        }
 
+        if (updated > 1) {
+            throw new IllegalStateException("Duplicate inventory rows for product " + request.getProductId()
+                    + " in warehouse " + request.getWarehouseId() + ", batch " + request.getBatchNumber());
+        }
+        Inventory inventory = findLot(request);
+        publishMovement(inventory, TransactionType.STOCK_IN, request.getQuantity(), userId, request.getNotes());
         return convertToDTO(inventory);
     }
 
     @Transactional
     public InventoryDTO stockOut(StockOperationRequest request, Long userId) {
-        Inventory inventory = inventoryRepository
-                .findByProductIdAndWarehouseIdAndBatchNumber(
-                        request.getProductId(),
-                        request.getWarehouseId(),
-                        request.getBatchNumber())
-                .orElseThrow(() -> new ResourceNotFoundException("Inventory not found"));
-
-        if (inventory.getQuantity() < request.getQuantity()) {
-            throw new IllegalStateException("Insufficient stock. Available: " + inventory.getQuantity());
+        if (stockLedger != null) {
+            return reservationService.holdDuring(request.getProductId(), request.getWarehouseId(),
+                    request.getQuantity(), () -> stockLedger.stockOut(request, userId));
         }
 
-        inventory.setQuantity(inventory.getQuantity() - request.getQuantity());
-        inventory = inventoryRepository.save(inventory);
+        // Units reserved for other orders are not available to a plain stock-out
+        reservationService.holdForTransaction(request.getProductId(), request.getWarehouseId(),
+                request.getQuantity());
+
+        // Conditional decrement: the row only changes when enough stock is available,
+        // so concurrent picks of the same lot can never oversell it
+        int updated = inventoryRepository.decrementLotIfAvailable(
+                request.getProductId(),
+                request.getWarehouseId(),
+                request.getZoneId(),
+                request.getBatchNumber(),
+                request.getQuantity());
+
+        Inventory inventory = findLot(request);
+        if (updated == 0) {
+            throw new InsufficientStockException(inventory.getQuantity());
+        }
 
+        publishMovement(inventory, TransactionType.STOCK_OUT, -request.getQuantity(), userId, request.getNotes());
         return convertToDTO(inventory);
     }
 
-    public List<InventoryDTO> getInventoryByWarehouse(Long warehouseId) {
-        return inventoryRepository.findByWarehouseId(warehouseId).stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+    /**
+     * Issue stock of a product from a warehouse without naming the lots. The
+     * quantity is taken from the lots in policy order (FEFO or FIFO) and all
+     * chosen lots are decremented together or not at all. Units reserved for
+     * other orders are left alone.
+     */
+    @Transactional
+    public StockAllocationResponse allocateStockOut(StockAllocationRequest request, Long userId) {
+        if (stockLedger != null) {
+            return reservationService.holdDuring(request.getProductId(), request.getWarehouseId(),
+                    request.getQuantity(), () -> allocate(request, userId));
+        }
+        reservationService.holdForTransaction(request.getProductId(), request.getWarehouseId(),
+                request.getQuantity());
+        return allocate(request, userId);
     }
 
-    public List<InventoryDTO> getLowStockAlerts(Long warehouseId) {
+    /**
+     * Issue stock a reservation already holds, as {@link #allocateStockOut}
+     * does but without checking it against reservations. Only
+     * {@link ReservationService#commit} may call this.
+     */
+    @Transactional
+    public StockAllocationResponse allocateReservedStockOut(StockAllocationRequest request, Long userId) {
+        return allocate(request, userId);
+    }
+
+    private StockAllocationResponse allocate(StockAllocationRequest request, Long userId) {
+        StockAllocationRequest.Policy policy = lotAllocator.resolvePolicy(request.getPolicy());
+        List<LotAllocator.Lot> candidates = lotAllocator.candidates(request.getProductId(),
+                request.getWarehouseId(), policy);
+
+        if (stockLedger != null) {
+            try {
+                return stockLedger.allocate(request, policy, candidates, userId);
+            } catch (InsufficientStockException ex) {
+                lotAllocator.evict(request.getProductId(), request.getWarehouseId());
+                candidates = lotAllocator.candidates(request.getProductId(), request.getWarehouseId(), policy);
+                return stockLedger.allocate(request, policy, candidates, userId);
+            }
+        }
+
+        List<StockAllocationResponse.LotAllocation> allocations = allocateLocked(request, candidates, true, userId);
+        if (allocations == null) {
+            // The in-memory view was stale; reload it and try every lot that has stock
+            lotAllocator.evict(request.getProductId(), request.getWarehouseId());
+            candidates = lotAllocator.candidates(request.getProductId(), request.getWarehouseId(), policy);
+            allocations = allocateLocked(request, candidates, false, userId);
+        }
+        return new StockAllocationResponse(request.getProductId(), request.getWarehouseId(), policy,
+                request.getQuantity(), allocations);
+    }
+
+    /**
+     * Move stock of one lot to another warehouse or zone. See {@link #transferBatch}.
+     */
+    public StockTransferResponse transfer(StockTransferRequest request, Long userId) {
+        return applyTransfers(List.of(request), userId).get(0);
+    }
+
+    /**
+     * Move stock of many lots as one atomic unit. Missing destination lots are
+     * created first, in a transaction of their own; the move itself then locks
+     * every source and destination row with a single query in ascending id
+     * order, so concurrent transfers in opposite directions never deadlock.
+     */
+    public List<StockTransferResponse> transferBatch(BatchStockTransferRequest request, Long userId) {
+        return applyTransfers(request.getItems(), userId);
+    }
+
+    /**
+     * Receive many stock lines in one transaction. The products are locked in
+     * id order, warehouses and existing lots are resolved with one query each,
+     * and the resulting inserts and updates are written with JDBC batching on
+     * commit.
+     */
+    @Transactional
+    public BatchStockOperationResponse stockInBatch(BatchStockOperationRequest request, Long userId) {
+        return processBatch(request, true, userId);
+    }
+
+    /**
+     * Issue many stock lines in one transaction. See {@link #stockInBatch}.
+     */
+    @Transactional
+    public BatchStockOperationResponse stockOutBatch(BatchStockOperationRequest request, Long userId) {
+        return processBatch(request, false, userId);
+    }
+
+    /**
+     * One page of a warehouse's inventory, in id order after the cursor.
+     * Rows come from a single projection query, so memory use is bounded by
+     * the page size however large the warehouse is.
+     */
+    public CursorPage<InventoryDTO> getInventoryPage(Long warehouseId, String cursor, Integer size, Long zoneId,
+            ZoneType zoneType, String category, boolean lowStock, Integer expiringWithinDays) {
+        int pageSize = size == null || size <= 0 ? defaultPageSize : Math.min(size, maxPageSize);
+        long afterId = 0;
+        if (cursor != null && !cursor.isBlank()) {
+            try {
+                afterId = Long.parseLong(cursor);
+            } catch (NumberFormatException ex) {
+                throw new IllegalArgumentException("Invalid cursor: " + cursor);
+            }
+        }
+        LocalDate today = LocalDate.now();
+        LocalDate expiringBefore = expiringWithinDays != null ? today.plusDays(expiringWithinDays) : null;
+
+        // One extra row tells whether another page follows
+        List<InventoryDTO> items = inventoryRepository.findPage(warehouseId, afterId, zoneId, zoneType, category,
+                lowStock, expiringBefore, today.plusDays(30), PageRequest.ofSize(pageSize + 1));
+        boolean hasMore = items.size() > pageSize;
+        if (hasMore) {
+            items = new ArrayList<>(items.subList(0, pageSize));
+        }
+        String nextCursor = hasMore ? String.valueOf(items.get(items.size() - 1).getId()) : null;
+        return new CursorPage<>(items, nextCursor, hasMore);
+    }
+
+    /**
+     * Low stock alerts are served from {@link LowStockIndex}, so the cost is
+     * proportional to the number of alerts, not the size of the inventory.
+     */
+    public List<InventoryDTO> getLowStockAlerts(Long warehouseId, Long organizationId) {
+        List<Long> ids;
         if (warehouseId != null) {
-            return inventoryRepository.findLowStockItemsByWarehouse(warehouseId).stream()
-                    .map(this::convertToDTO)
-                    .collect(Collectors.toList());
+            ids = lowStockIndex.findByWarehouse(warehouseId);
+        } else if (organizationId != null) {
+            ids = lowStockIndex.findByOrganization(organizationId);
+        } else {
+            ids = lowStockIndex.findAll();
         }
-        return inventoryRepository.findLowStockItems().stream()
+        return findWithDetails(ids).stream()
+                .filter(Inventory::isLowStock)
                 .map(this::convertToDTO)
                 .collect(Collectors.toList());
     }
 
-    public List<InventoryDTO> getExpiringItems(int daysAhead) {
-        LocalDate futureDate = LocalDate.now().plusDays(daysAhead);
-        return inventoryRepository.findExpiringBefore(futureDate).stream()
+    /**
+     * Lots expiring within the next daysAhead days, earliest first, served
+     * from the expiry calendar. Already expired lots are only included on request.
+     */
+    public List<InventoryDTO> getExpiringItems(int daysAhead, Long warehouseId, Long organizationId,
+            boolean includeExpired, int page, Integer size) {
+        int pageSize = size == null || size <= 0 ? defaultPageSize : Math.min(size, maxPageSize);
+        List<Long> ids = expiryCalendar.findExpiring(warehouseId, organizationId, daysAhead, includeExpired,
+                Math.max(page, 0) * pageSize, pageSize);
+
+        Map<Long, Inventory> rows = findWithDetails(ids).stream()
+                .collect(Collectors.toMap(Inventory::getId, Function.identity()));
+        return ids.stream()
+                .map(rows::get)
+                .filter(Objects::nonNull)
                 .map(this::convertToDTO)
                 .collect(Collectors.toList());
     }
 
+    public List<InventoryTransactionDTO> getTransactions(Long inventoryId, int limit) {
+        return inventoryTransactionRepository.findRecentByInventoryId(inventoryId, PageRequest.ofSize(limit)).stream()
+                .map(this::convertTransactionToDTO)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Lock the candidate rows in id order and take the requested quantity from
+     * them in candidate order. With {@code hinted} set, only as many candidates
+     * as the in-memory quantities say are needed get locked, and null is
+     * returned when the locked rows fall short so the caller can retry.
+     */
+    private List<StockAllocationResponse.LotAllocation> allocateLocked(StockAllocationRequest request,
+            List<LotAllocator.Lot> candidates, boolean hinted, Long userId) {
+        List<Long> ids = new ArrayList<>();
+        int hintedQuantity = 0;
+        for (LotAllocator.Lot lot : candidates) {
+            if (hinted && hintedQuantity >= request.getQuantity()) {
+                break;
+            }
+            ids.add(lot.getInventoryId());
+            hintedQuantity += lot.getQuantity();
+        }
+
+        Map<Long, Inventory> rows = inventoryRepository.findAllByIdInForUpdate(ids).stream()
+                .collect(Collectors.toMap(Inventory::getId, Function.identity()));
+
+        List<Inventory> picked = new ArrayList<>();
+        List<StockAllocationResponse.LotAllocation> allocations = new ArrayList<>();
+        int remaining = request.getQuantity();
+        int available = 0;
+        for (Long id : ids) {
+            Inventory inventory = rows.get(id);
+            if (inventory == null || inventory.getQuantity() <= 0) {
+                continue;
+            }
+            available += inventory.getQuantity();
+            if (remaining == 0) {
+                continue;
+            }
+            int taken = Math.min(remaining, inventory.getQuantity());
+            remaining -= taken;
+            picked.add(inventory);
+            allocations.add(new StockAllocationResponse.LotAllocation(inventory.getId(),
+                    inventory.getZone() != null ? inventory.getZone().getId() : null,
+                    inventory.getBatchNumber(), inventory.getExpiryDate(), taken, inventory.getQuantity() - taken));
+        }
+
+        if (remaining > 0) {
+            if (hinted) {
+                return null;
+            }
+            throw new InsufficientStockException(available);
+        }
+
+        for (int i = 0; i < picked.size(); i++) {
+            Inventory inventory = picked.get(i);
+            StockAllocationResponse.LotAllocation allocation = allocations.get(i);
+            inventory.move(-allocation.getQuantity());
+            publishMovement(inventory, TransactionType.STOCK_OUT, -allocation.getQuantity(), userId,
+                    request.getNotes());
+        }
+        return allocations;
+    }
+
+    private List<StockTransferResponse> applyTransfers(List<StockTransferRequest> items, Long userId) {
+        for (StockTransferRequest item : items) {
+            if (item.getFromWarehouseId().equals(item.getToWarehouseId())
+                    && Objects.equals(item.getFromZoneId(), item.getToZoneId())) {
+                throw new IllegalArgumentException("Source and destination of a transfer must differ");
+            }
+        }
+        if (stockLedger != null) {
+            return transferOnLedger(items, 0, userId);
+        }
+
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        Map<List<Object>, Long> lotIds = ensureDestinationLots(items, transactionTemplate);
+        return transactionTemplate.execute(status -> moveLocked(items, lotIds, userId));
+    }
+
+    /**
+     * Hold every item that leaves its warehouse against reservations, from
+     * {@code next} on, for as long as the ledger transfer runs.
+     */
+    private List<StockTransferResponse> transferOnLedger(List<StockTransferRequest> items, int next, Long userId) {
+        if (next == items.size()) {
+            return stockLedger.transfer(items, userId);
+        }
+        StockTransferRequest item = items.get(next);
+        if (item.getFromWarehouseId().equals(item.getToWarehouseId())) {
+            return transferOnLedger(items, next + 1, userId);
+        }
+        return reservationService.holdDuring(item.getProductId(), item.getFromWarehouseId(), item.getQuantity(),
+                () -> transferOnLedger(items, next + 1, userId));
+    }
+
+    private List<StockTransferResponse> moveLocked(List<StockTransferRequest> items, Map<List<Object>, Long> lotIds,
+            Long userId) {
+        Set<Long> ids = new TreeSet<>();
+        for (StockTransferRequest item : items) {
+            ids.add(lotId(lotIds, sourceKey(item)));
+            ids.add(lotId(lotIds, destinationKey(item)));
+        }
+        Map<Long, Inventory> rows = inventoryRepository.findAllByIdInForUpdate(ids).stream()
+                .collect(Collectors.toMap(Inventory::getId, Function.identity()));
+
+        List<Inventory[]> moved = new ArrayList<>();
+        for (StockTransferRequest item : items) {
+            Inventory source = rows.get(lotIds.get(sourceKey(item)));
+            Inventory destination = rows.get(lotIds.get(destinationKey(item)));
+            if (source == null || destination == null) {
+                throw new ResourceNotFoundException("Inventory not found");
+            }
+            if (source.getQuantity() < item.getQuantity()) {
+                throw new InsufficientStockException(source.getQuantity());
+            }
+            // Stock moving within a warehouse stays available to its reservations
+            if (!item.getFromWarehouseId().equals(item.getToWarehouseId())) {
+                reservationService.holdForTransaction(item.getProductId(), item.getFromWarehouseId(),
+                        item.getQuantity());
+            }
+            source.move(-item.getQuantity());
+            destination.move(item.getQuantity());
+            publishMovement(source, TransactionType.TRANSFER, -item.getQuantity(), userId, item.getNotes());
+            publishMovement(destination, TransactionType.TRANSFER, item.getQuantity(), userId, item.getNotes());
+            moved.add(new Inventory[] { source, destination });
+        }
+
+        return moved.stream()
+                .map(pair -> new StockTransferResponse(convertToDTO(pair[0]), convertToDTO(pair[1])))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Resolve the row ids of every source and destination lot, inserting the
+     * destination lots that do not exist yet with zero quantity. Before
+     * inserting, the products concerned are locked in ascending id order and
+     * the lots looked up again, as in {@link #stockIn}, so concurrent
+     * transfers never insert the same lot twice; an insert that still loses
+     * a race on the unique key is simply read back.
+     */
+    private Map<List<Object>, Long> ensureDestinationLots(List<StockTransferRequest> items,
+            TransactionTemplate transactionTemplate) {
+        for (int attempt = 0; ; attempt++) {
+            try {
+                Map<List<Object>, Long> existing = findLotIds(items);
+                if (items.stream().allMatch(item -> existing.containsKey(destinationKey(item)))) {
+                    return existing;
+                }
+                // The lookup after the locks is this transaction's first read, so it sees
+                // every lot committed by a transfer that held them before us
+                return transactionTemplate.execute(status -> {
+                    new TreeSet<>(items.stream().map(StockTransferRequest::getProductId).toList())
+                            .forEach(productRepository::findByIdForUpdate);
+                    Map<List<Object>, Long> lotIds = findLotIds(items);
+                    createDestinationLots(items, lotIds);
+                    return lotIds;
+                });
+            } catch (DataIntegrityViolationException ex) {
+                if (attempt >= 2) {
+                    throw ex;
+                }
+            }
+        }
+    }
+
+    private void createDestinationLots(List<StockTransferRequest> items, Map<List<Object>, Long> lotIds) {
+        Map<List<Object>, Inventory> created = new LinkedHashMap<>();
+        for (StockTransferRequest item : items) {
+            Long sourceId = lotIds.get(sourceKey(item));
+            List<Object> key = destinationKey(item);
+            if (sourceId == null || lotIds.containsKey(key) || created.containsKey(key)) {
+                continue;
+            }
+            Inventory source = inventoryRepository.findById(sourceId)
+                    .orElseThrow(() -> new ResourceNotFoundException("Inventory not found"));
+            Warehouse warehouse = warehouseRepository.findById(item.getToWarehouseId())
+                    .orElseThrow(() -> new ResourceNotFoundException("Warehouse", "id", item.getToWarehouseId()));
+
+            Inventory inventory = new Inventory();
+            inventory.setProduct(source.getProduct());
+            inventory.setWarehouse(warehouse);
+            inventory.setZone(resolveZone(item.getToZoneId(), item.getToWarehouseId()));
+            inventory.setQuantity(0);
+            inventory.setBatchNumber(item.getBatchNumber());
+            inventory.setExpiryDate(source.getExpiryDate());
+            created.put(key, inventory);
+        }
+        if (created.isEmpty()) {
+            return;
+        }
+        inventoryRepository.saveAll(created.values());
+        inventoryRepository.flush();
+        created.forEach((key, inventory) -> lotIds.put(key, inventory.getId()));
+    }
+
+    private Map<List<Object>, Long> findLotIds(List<StockTransferRequest> items) {
+        Set<Long> productIds = new HashSet<>();
+        Set<Long> warehouseIds = new HashSet<>();
+        for (StockTransferRequest item : items) {
+            productIds.add(item.getProductId());
+            warehouseIds.add(item.getFromWarehouseId());
+            warehouseIds.add(item.getToWarehouseId());
+        }
+
+        Map<List<Object>, Long> lotIds = new HashMap<>();
+        for (Object[] row : inventoryRepository.findLotKeys(productIds, warehouseIds)) {
+            lotIds.put(lotKey((Long) row[1], (Long) row[2], (Long) row[3], (String) row[4]), (Long) row[0]);
+        }
+        return lotIds;
+    }
+
+    private static Long lotId(Map<List<Object>, Long> lotIds, List<Object> key) {
+        Long id = lotIds.get(key);
+        if (id == null) {
+            throw new ResourceNotFoundException("Inventory not found");
+        }
+        return id;
+    }
+
+    private static List<Object> sourceKey(StockTransferRequest item) {
+        return lotKey(item.getProductId(), item.getFromWarehouseId(), item.getFromZoneId(), item.getBatchNumber());
+    }
+
+    private static List<Object> destinationKey(StockTransferRequest item) {
+        return lotKey(item.getProductId(), item.getToWarehouseId(), item.getToZoneId(), item.getBatchNumber());
+    }
+
+    private BatchStockOperationResponse processBatch(BatchStockOperationRequest request, boolean stockIn,
+            Long userId) {
+        if (stockLedger != null) {
+            return processLedgerBatch(request, stockIn, userId);
+        }
+
+        List<StockOperationRequest> items = request.getItems();
+        Set<Long> productIds = items.stream().map(StockOperationRequest::getProductId).collect(Collectors.toSet());
+        Set<Long> warehouseIds = items.stream().map(StockOperationRequest::getWarehouseId).collect(Collectors.toSet());
+
+        Map<Long, Product> products = new HashMap<>();
+        if (stockIn) {
+            // The unique key does not stop two inserts of a lot without a zone or batch, so lock
+            // the products in ascending id order, as transfers do, before the lots are looked up:
+            // a concurrent batch creating the same lot has then committed it or waits for ours
+            for (Long productId : new TreeSet<>(productIds)) {
+                productRepository.findByIdForUpdate(productId).ifPresent(product -> products.put(productId, product));
+            }
+        } else {
+            productRepository.findAllById(productIds).forEach(product -> products.put(product.getId(), product));
+        }
+        Map<Long, Warehouse> warehouses = warehouseRepository.findAllById(warehouseIds).stream()
+                .collect(Collectors.toMap(Warehouse::getId, Function.identity()));
+
+        Map<List<Object>, Inventory> lots = new HashMap<>();
+        for (Inventory inventory : inventoryRepository.findLots(productIds, warehouseIds)) {
+            Long zoneId = inventory.getZone() != null ? inventory.getZone().getId() : null;
+            lots.put(lotKey(inventory.getProduct().getId(), inventory.getWarehouse().getId(), zoneId,
+                    inventory.getBatchNumber()), inventory);
+        }
+
+        List<Inventory> applied = new ArrayList<>();
+        List<Inventory> created = new ArrayList<>();
+        Map<Long, Integer> zoneIntake = new HashMap<>();
+        Map<Long, Integer> warehouseIntake = new HashMap<>();
+        List<BatchStockOperationResponse.ItemResult> results = new ArrayList<>();
+        for (int i = 0; i < items.size(); i++) {
+            StockOperationRequest item = items.get(i);
+            try {
+                Inventory inventory = stockIn
+                        ? applyStockIn(item, products, warehouses, lots, created, zoneIntake, warehouseIntake)
+                        : applyStockOut(item, lots);
+                applied.add(inventory);
+                results.add(new BatchStockOperationResponse.ItemResult(i, true, null, null));
+            } catch (ResourceNotFoundException | InsufficientStockException | CapacityExceededException ex) {
+                applied.add(null);
+                results.add(new BatchStockOperationResponse.ItemResult(i, false, null, ex.getMessage()));
+            }
+        }
+
+        BatchStockOperationResponse response = batchResponse(request.getMode(), results);
+        if (response.getFailed() > 0 && request.getMode() == BatchStockOperationRequest.Mode.ALL_OR_NOTHING) {
+            TransactionAspectSupport.currentTransactionStatus().setRollbackOnly();
+            return response;
+        }
+
+        inventoryRepository.saveAll(created);
+        inventoryRepository.flush();
+        for (BatchStockOperationResponse.ItemResult result : results) {
+            if (result.isSuccess()) {
+                Inventory inventory = applied.get(result.getIndex());
+                StockOperationRequest item = request.getItems().get(result.getIndex());
+                publishMovement(inventory, stockIn ? TransactionType.STOCK_IN : TransactionType.STOCK_OUT,
+                        stockIn ? item.getQuantity() : -item.getQuantity(), userId, item.getNotes());
+                result.setInventory(convertToDTO(inventory));
+            }
+        }
+        return response;
+    }
+
+    private Inventory applyStockIn(StockOperationRequest item, Map<Long, Product> products,
+            Map<Long, Warehouse> warehouses, Map<List<Object>, Inventory> lots, List<Inventory> created,
+            Map<Long, Integer> zoneIntake, Map<Long, Integer> warehouseIntake) {
+        Product product = products.get(item.getProductId());
+        if (product == null) {
+            throw new ResourceNotFoundException("Product", "id", item.getProductId());
+        }
+        Warehouse warehouse = warehouses.get(item.getWarehouseId());
+        if (warehouse == null) {
+            throw new ResourceNotFoundException("Warehouse", "id", item.getWarehouseId());
+        }
+        putaway(item, product.getStorageType(), zoneIntake);
+
+        // Fail the item here rather than the whole batch when its movement event is published
+        int warehouseTotal = warehouseIntake.getOrDefault(item.getWarehouseId(), 0) + item.getQuantity();
+        if (!warehouseOccupancyTracker.hasRoom(item.getWarehouseId(), warehouseTotal)) {
+            throw new CapacityExceededException("Warehouse " + item.getWarehouseId()
+                    + " cannot take " + item.getQuantity() + " more units");
+        }
+        if (item.getZoneId() != null) {
+            int intake = zoneIntake.getOrDefault(item.getZoneId(), 0) + item.getQuantity();
+            if (!zoneUtilizationTracker.hasRoom(item.getZoneId(), intake)) {
+                throw new CapacityExceededException("Storage zone " + item.getZoneId()
+                        + " cannot take " + item.getQuantity() + " more units");
+            }
+            zoneIntake.put(item.getZoneId(), intake);
+        }
+        warehouseIntake.put(item.getWarehouseId(), warehouseTotal);
+
+        List<Object> key = lotKey(item.getProductId(), item.getWarehouseId(), item.getZoneId(),
+                item.getBatchNumber());
+        Inventory inventory = lots.get(key);
+        if (inventory != null) {
+            inventory.move(item.getQuantity());
+        } else {
+            inventory = new Inventory();
+            inventory.setProduct(product);
+            inventory.setWarehouse(warehouse);
+            inventory.setZone(resolveZone(item.getZoneId(), item.getWarehouseId()));
+            inventory.move(item.getQuantity());
+            inventory.setBatchNumber(item.getBatchNumber());
+            inventory.setExpiryDate(item.getExpiryDate());
+            lots.put(key, inventory);
+            created.add(inventory);
+        }
+        return inventory;
+    }
+
+    private Inventory applyStockOut(StockOperationRequest item, Map<List<Object>, Inventory> lots) {
+        Inventory inventory = lots.get(lotKey(item.getProductId(), item.getWarehouseId(), item.getZoneId(),
+                item.getBatchNumber()));
+        if (inventory == null) {
+            throw new ResourceNotFoundException("Inventory not found");
+        }
+        if (inventory.getQuantity() < item.getQuantity()) {
+            throw new InsufficientStockException(inventory.getQuantity());
+        }
+        reservationService.holdForTransaction(item.getProductId(), item.getWarehouseId(), item.getQuantity());
+        inventory.move(-item.getQuantity());
+        return inventory;
+    }
+
+    /**
+     * The ledger applies each item on its own shard, so all-or-nothing batches
+     * are honoured by compensating the items that were already applied. An
+     * item whose compensation is refused, such as a receipt already picked,
+     * stays applied and is reported as such.
+     */
+    private BatchStockOperationResponse processLedgerBatch(BatchStockOperationRequest request, boolean stockIn,
+            Long userId) {
+        List<Integer> applied = new ArrayList<>();
+        List<BatchStockOperationResponse.ItemResult> results = new ArrayList<>();
+        for (int i = 0; i < request.getItems().size(); i++) {
+            StockOperationRequest item = request.getItems().get(i);
+            try {
+                // Each ledger stock-in moves the zone counters before it returns, so no intake is pending
+                if (stockIn) {
+                    putaway(item, putawayEngine.getStorageType(item.getProductId()), Map.of());
+                }
+                InventoryDTO dto = stockIn ? stockLedger.stockIn(item, userId) : ledgerStockOut(item, userId);
+                applied.add(i);
+                results.add(new BatchStockOperationResponse.ItemResult(i, true, dto, null));
+            } catch (ResourceNotFoundException | InsufficientStockException | CapacityExceededException ex) {
+                results.add(new BatchStockOperationResponse.ItemResult(i, false, null, ex.getMessage()));
+            }
+        }
+        if (applied.size() == results.size() || request.getMode() != BatchStockOperationRequest.Mode.ALL_OR_NOTHING) {
+            return batchResponse(request.getMode(), results);
+        }
+
+        List<BatchStockOperationResponse.ItemResult> stuck = new ArrayList<>();
+        for (int i = applied.size() - 1; i >= 0; i--) {
+            StockOperationRequest item = request.getItems().get(applied.get(i));
+            try {
+                if (stockIn) {
+                    ledgerStockOut(item, userId);
+                } else {
+                    stockLedger.stockIn(item, userId);
+                }
+            } catch (RuntimeException ex) {
+                log.error("Could not roll back item {} of an all-or-nothing batch", applied.get(i), ex);
+                BatchStockOperationResponse.ItemResult result = results.get(applied.get(i));
+                stuck.add(new BatchStockOperationResponse.ItemResult(result.getIndex(), true, result.getInventory(),
+                        "Applied, could not be rolled back: " + ex.getMessage()));
+            }
+        }
+        BatchStockOperationResponse response = batchResponse(request.getMode(), results);
+        for (BatchStockOperationResponse.ItemResult result : stuck) {
+            results.set(result.getIndex(), result);
+        }
+        response.setSucceeded(stuck.size());
+        response.setFailed(results.size() - stuck.size());
+        return response;
+    }
+
+    private InventoryDTO ledgerStockOut(StockOperationRequest item, Long userId) {
+        return reservationService.holdDuring(item.getProductId(), item.getWarehouseId(), item.getQuantity(),
+                () -> stockLedger.stockOut(item, userId));
+    }
+
+    private BatchStockOperationResponse batchResponse(BatchStockOperationRequest.Mode mode,
+            List<BatchStockOperationResponse.ItemResult> results) {
+        int failed = (int) results.stream().filter(r -> !r.isSuccess()).count();
+        if (failed > 0 && mode == BatchStockOperationRequest.Mode.ALL_OR_NOTHING) {
+            for (BatchStockOperationResponse.ItemResult result : results) {
+                if (result.isSuccess()) {
+                    result.setSuccess(false);
+                    result.setInventory(null);
+                    result.setError("Not applied: batch rolled back");
+                }
+            }
+            return new BatchStockOperationResponse(mode, 0, results.size(), results);
+        }
+        return new BatchStockOperationResponse(mode, results.size() - failed, failed, results);
+    }
+
+    /**
+     * Give a receipt without a zone the zone the putaway engine picks, and
+     * count its units against that zone for the rest of the receipt.
+     */
+    private void putaway(StockOperationRequest item, ZoneType storageType, Map<Long, Integer> zoneIntake) {
+        if (item.getZoneId() != null) {
+            return;
+        }
+        Long zoneId = putawayEngine.chooseZone(item.getWarehouseId(), item.getProductId(), storageType,
+                item.getQuantity(), zoneIntake);
+        item.setZoneId(zoneId);
+    }
+
+    private void publishMovement(Inventory inventory, TransactionType type, int quantity, Long userId,
+            String notes) {
+        StockMovementEvent event = StockMovementEvent.of(inventory, type, quantity, userId);
+        event.setNotes(notes);
+        eventPublisher.publishEvent(event);
+    }
+
+    private List<Inventory> findWithDetails(List<Long> ids) {
+        List<Inventory> rows = new ArrayList<>(ids.size());
+        for (int from = 0; from < ids.size(); from += ID_CHUNK_SIZE) {
+            List<Long> chunk = ids.subList(from, Math.min(from + ID_CHUNK_SIZE, ids.size()));
+            rows.addAll(inventoryRepository.findAllWithDetailsByIdIn(chunk));
+        }
+        rows.sort(Comparator.comparing(Inventory::getId));
+        return rows;
+    }
+
+    private int incrementLot(StockOperationRequest request) {
+        return inventoryRepository.incrementLot(
+                request.getProductId(),
+                request.getWarehouseId(),
+                request.getZoneId(),
+                request.getBatchNumber(),
+                request.getQuantity());
+    }
+
+    private Inventory findLot(StockOperationRequest request) {
+        return inventoryRepository.findLot(
+                        request.getProductId(),
+                        request.getWarehouseId(),
+                        request.getZoneId(),
+                        request.getBatchNumber())
+                .orElseThrow(() -> new ResourceNotFoundException("Inventory not found"));
+    }
+
+    private StorageZone resolveZone(Long zoneId, Long warehouseId) {
+        if (zoneId == null) {
+            return null;
+        }
+        StorageZone zone = storageZoneRepository.findById(zoneId)
+                .orElseThrow(() -> new ResourceNotFoundException("StorageZone", "id", zoneId));
+        if (!zone.getWarehouse().getId().equals(warehouseId)) {
+            throw new ResourceNotFoundException("StorageZone", "id", zoneId);
+        }
+        return zone;
+    }
+
+    private static List<Object> lotKey(Long productId, Long warehouseId, Long zoneId, String batchNumber) {
+        return Arrays.asList(productId, warehouseId, zoneId, batchNumber);
+    }
+
     private InventoryDTO convertToDTO(Inventory inventory) {
         InventoryDTO dto = new InventoryDTO();
         dto.setId(inventory.getId());
@@ -130,4 +849,18 @@ public class InventoryService {
 
         return dto;
     }
+
+    private InventoryTransactionDTO convertTransactionToDTO(InventoryTransaction transaction) {
+        InventoryTransactionDTO dto = new InventoryTransactionDTO();
+        dto.setId(transaction.getId());
+        dto.setInventoryId(transaction.getInventory().getId());
+        dto.setTransactionType(transaction.getTransactionType());
+        dto.setQuantity(transaction.getQuantity());
+        dto.setReasonCode(transaction.getReasonCode());
+        dto.setPerformedById(transaction.getPerformedBy().getId());
+        dto.setPerformedByName(transaction.getPerformedBy().getFullName());
+        dto.setTimestamp(transaction.getTimestamp());
+        dto.setNotes(transaction.getNotes());
+        return dto;
+    }
 }
@@ -0,0 +1,171 @@
+package com.warehouse.service;
+
+import com.warehouse.dto.StockAllocationRequest;
+import com.warehouse.event.StockMovementEvent;
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * Ordered in-memory view of the lots with stock for each (product, warehouse),
+ * used to pick lots for allocated stock-outs without sorting on every call.
+ * <p>
+ * A product's lots are loaded on first use and kept in both FEFO and FIFO
+ * order, then maintained from stock movements. The view only nominates
+ * candidates: quantities held here are hints, and callers re-check them
+ * against the locked rows (or the ledger) before taking stock. A caller that
+ * finds the view stale calls {@link #evict} and asks again. A lot's receipt
+ * time always comes from its {@code received_at} column, whether the lot was
+ * loaded or joined the view from a movement, so FIFO order does not depend on
+ * how the lot was first seen.
+ */
+@Service
+public class LotAllocator {
+
+    private static final String LOAD_SQL =
+            "SELECT id, zone_id, batch_number, expiry_date, received_at, quantity FROM inventory "
+                    + "WHERE product_id = ? AND warehouse_id = ? AND quantity > 0";
+
+    // Ledger mode: row quantities may be stale, so every lot is read and the ledger decides
+    private static final String LOAD_ALL_SQL =
+            "SELECT id, zone_id, batch_number, expiry_date, received_at, quantity FROM inventory "
+                    + "WHERE product_id = ? AND warehouse_id = ?";
+
+    private static final String RECEIVED_AT_SQL = "SELECT received_at FROM inventory WHERE id = ?";
+
+    private static final Comparator<Lot> FIFO = Comparator
+            .comparing(Lot::getReceivedAt, Comparator.nullsFirst(Comparator.naturalOrder()))
+            .thenComparing(Lot::getInventoryId);
+
+    private static final Comparator<Lot> FEFO = Comparator
+            .comparing(Lot::getExpiryDate, Comparator.nullsLast(Comparator.naturalOrder()))
+            .thenComparing(FIFO);
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired(required = false)
+    private StockLedger stockLedger;
+
+    @Value("${inventory.allocation.policy:FEFO}")
+    private StockAllocationRequest.Policy defaultPolicy;
+
+    private final Map<BookKey, LotBook> books = new ConcurrentHashMap<>();
+
+    public StockAllocationRequest.Policy resolvePolicy(StockAllocationRequest.Policy policy) {
+        return policy != null ? policy : defaultPolicy;
+    }
+
+    /**
+     * Lots of a product in a warehouse that had stock when last seen, in the
+     * order the policy picks them.
+     */
+    public List<Lot> candidates(Long productId, Long warehouseId, StockAllocationRequest.Policy policy) {
+        LotBook book = books.computeIfAbsent(new BookKey(productId, warehouseId), this::load);
+        return new ArrayList<>(policy == StockAllocationRequest.Policy.FIFO ? book.fifo : book.fefo);
+    }
+
+    public void evict(Long productId, Long warehouseId) {
+        books.remove(new BookKey(productId, warehouseId));
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onStockMovement(StockMovementEvent event) {
+        LotBook book = books.get(new BookKey(event.getProductId(), event.getWarehouseId()));
+        if (book == null) {
+            return;
+        }
+        if (event.getResultingQuantity() > 0) {
+            Lot lot = book.lots.get(event.getInventoryId());
+            if (lot == null) {
+                // New to the view: read the receipt time outside the map, as load() does
+                List<Timestamp> receivedAt = jdbcTemplate.queryForList(RECEIVED_AT_SQL, Timestamp.class,
+                        event.getInventoryId());
+                if (receivedAt.isEmpty()) {
+                    return; // Deleted since
+                }
+                Lot created = new Lot(event.getInventoryId(), event.getZoneId(), event.getBatchNumber(),
+                        event.getExpiryDate(), toLocalDateTime(receivedAt.get(0)));
+                Lot existing = book.lots.putIfAbsent(created.inventoryId, created);
+                lot = existing != null ? existing : created;
+            }
+            lot.quantity = event.getResultingQuantity();
+            book.fefo.add(lot);
+            book.fifo.add(lot);
+        } else {
+            Lot lot = book.lots.remove(event.getInventoryId());
+            if (lot != null) {
+                book.fefo.remove(lot);
+                book.fifo.remove(lot);
+            }
+        }
+    }
+
+    private LotBook load(BookKey key) {
+        LotBook book = new LotBook();
+        Map<Long, Integer> ledger = stockLedger != null
+                ? stockLedger.lotQuantities(key.productId(), key.warehouseId()) : null;
+        jdbcTemplate.query(ledger != null ? LOAD_ALL_SQL : LOAD_SQL, rs -> {
+            long id = rs.getLong("id");
+            int quantity = ledger != null ? ledger.getOrDefault(id, 0) : rs.getInt("quantity");
+            if (quantity <= 0) {
+                return;
+            }
+            Date expiryDate = rs.getDate("expiry_date");
+            Lot lot = new Lot(id, rs.getObject("zone_id", Long.class), rs.getString("batch_number"),
+                    expiryDate != null ? expiryDate.toLocalDate() : null,
+                    toLocalDateTime(rs.getTimestamp("received_at")));
+            lot.quantity = quantity;
+            book.lots.put(lot.inventoryId, lot);
+            book.fefo.add(lot);
+            book.fifo.add(lot);
+        }, key.productId(), key.warehouseId());
+        return book;
+    }
+
+    private static LocalDateTime toLocalDateTime(Timestamp timestamp) {
+        return timestamp != null ? timestamp.toLocalDateTime() : null;
+    }
+
+    private record BookKey(Long productId, Long warehouseId) {
+    }
+
+    private static final class LotBook {
+        final Map<Long, Lot> lots = new ConcurrentHashMap<>();
+        final Set<Lot> fefo = new ConcurrentSkipListSet<>(FEFO);
+        final Set<Lot> fifo = new ConcurrentSkipListSet<>(FIFO);
+    }
+
+    /**
+     * A lot as last seen. Everything except the quantity hint is fixed for
+     * the lifetime of the row, so the sort order never changes under a set.
+     */
+    @Getter
+    public static final class Lot {
+        private final Long inventoryId;
+        private final Long zoneId;
+        private final String batchNumber;
+        private final LocalDate expiryDate;
+        private final LocalDateTime receivedAt;
+        private volatile int quantity;
+
+        Lot(Long inventoryId, Long zoneId, String batchNumber, LocalDate expiryDate, LocalDateTime receivedAt) {
+            this.inventoryId = inventoryId;
+            this.zoneId = zoneId;
+            this.batchNumber = batchNumber;
+            this.expiryDate = expiryDate;
+            this.receivedAt = receivedAt;
+        }
+    }
+}
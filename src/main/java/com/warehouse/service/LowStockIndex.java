@@ -0,0 +1,160 @@
+package com.warehouse.service;
+
+import com.warehouse.event.StockMovementEvent;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory index of low-stock inventory rows (quantity at or below
+ * minStockLevel), held per warehouse and per organization.
+ * <p>
+ * The index is built from the table once on startup and then kept current by
+ * stock movements as lots cross their threshold, so alert queries cost time
+ * proportional to the number of alerts rather than the size of the inventory.
+ * After-commit events can arrive out of order, so a movement that would move
+ * a row into or out of the index is checked against the row's current
+ * quantity first; movements that leave its membership unchanged cost nothing.
+ * The stock ledger publishes the movements of a lot in order from its shard
+ * thread, so with the ledger enabled events are applied as they come.
+ */
+@Service
+public class LowStockIndex {
+
+    private static final String REBUILD_SQL =
+            "SELECT i.id, i.warehouse_id, w.organization_id FROM inventory i "
+                    + "JOIN warehouses w ON w.id = i.warehouse_id "
+                    + "WHERE i.quantity <= i.min_stock_level";
+
+    private static final String REINDEX_SQL =
+            "SELECT i.id, i.warehouse_id, w.organization_id, "
+                    + "CASE WHEN i.quantity <= i.min_stock_level THEN 1 ELSE 0 END AS low_stock FROM inventory i "
+                    + "JOIN warehouses w ON w.id = i.warehouse_id "
+                    + "WHERE i.product_id IN (:productIds)";
+
+    private static final String CURRENT_SQL = "SELECT quantity, min_stock_level FROM inventory WHERE id = ?";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+    @Autowired(required = false)
+    private StockLedger stockLedger;
+
+    private final Map<Long, Set<Long>> byWarehouse = new ConcurrentHashMap<>();
+    private final Map<Long, Set<Long>> byOrganization = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void rebuild() {
+        byWarehouse.clear();
+        byOrganization.clear();
+        jdbcTemplate.query(REBUILD_SQL, rs -> {
+            add(rs.getLong("id"), rs.getLong("warehouse_id"), rs.getLong("organization_id"));
+        });
+    }
+
+    /**
+     * Re-read the membership of every row of these products from the table,
+     * after their thresholds were changed outside a stock movement.
+     */
+    public void reindexProducts(Collection<Long> productIds) {
+        if (productIds.isEmpty()) {
+            return;
+        }
+        namedParameterJdbcTemplate.query(REINDEX_SQL, Map.of("productIds", productIds), rs -> {
+            update(rs.getLong("id"), rs.getLong("warehouse_id"), rs.getLong("organization_id"),
+                    rs.getInt("low_stock") == 1);
+        });
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onStockMovement(StockMovementEvent event) {
+        boolean lowStock = event.getResultingQuantity() <= event.getMinStockLevel();
+        if (lowStock == contains(event.getInventoryId(), event.getWarehouseId())) {
+            return;
+        }
+        if (stockLedger != null) {
+            update(event.getInventoryId(), event.getWarehouseId(), event.getOrganizationId(), lowStock);
+            return;
+        }
+        // A crossing: the event may be older than one already applied, so decide from the
+        // row as it is now. The lock keeps each read together with the change it leads to.
+        synchronized (this) {
+            update(event.getInventoryId(), event.getWarehouseId(), event.getOrganizationId(),
+                    isLowStockNow(event.getInventoryId()));
+        }
+    }
+
+    /**
+     * Set a row's membership. Returns true when the row crossed its threshold
+     * (entered or left the index).
+     */
+    public boolean update(Long inventoryId, Long warehouseId, Long organizationId, boolean lowStock) {
+        if (lowStock) {
+            return add(inventoryId, warehouseId, organizationId);
+        }
+        return remove(inventoryId, warehouseId, organizationId);
+    }
+
+    public boolean contains(Long inventoryId, Long warehouseId) {
+        Set<Long> ids = byWarehouse.get(warehouseId);
+        return ids != null && ids.contains(inventoryId);
+    }
+
+    public List<Long> findByWarehouse(Long warehouseId) {
+        return snapshot(byWarehouse.get(warehouseId));
+    }
+
+    public List<Long> findByOrganization(Long organizationId) {
+        return snapshot(byOrganization.get(organizationId));
+    }
+
+    public List<Long> findAll() {
+        List<Long> ids = new ArrayList<>();
+        byWarehouse.values().forEach(ids::addAll);
+        return ids;
+    }
+
+    private boolean isLowStockNow(Long inventoryId) {
+        List<Map<String, Object>> rows = jdbcTemplate.queryForList(CURRENT_SQL, inventoryId);
+        if (rows.isEmpty()) {
+            return false; // Deleted
+        }
+        Map<String, Object> row = rows.get(0);
+        return ((Number) row.get("quantity")).intValue() <= ((Number) row.get("min_stock_level")).intValue();
+    }
+
+    private boolean add(Long inventoryId, Long warehouseId, Long organizationId) {
+        boolean added = byWarehouse.computeIfAbsent(warehouseId, k -> ConcurrentHashMap.newKeySet()).add(inventoryId);
+        if (organizationId != null) {
+            byOrganization.computeIfAbsent(organizationId, k -> ConcurrentHashMap.newKeySet()).add(inventoryId);
+        }
+        return added;
+    }
+
+    private boolean remove(Long inventoryId, Long warehouseId, Long organizationId) {
+        Set<Long> warehouseIds = byWarehouse.get(warehouseId);
+        boolean removed = warehouseIds != null && warehouseIds.remove(inventoryId);
+        Set<Long> organizationIds = organizationId != null ? byOrganization.get(organizationId) : null;
+        if (organizationIds != null) {
+            organizationIds.remove(inventoryId);
+        }
+        return removed;
+    }
+
+    private static List<Long> snapshot(Set<Long> ids) {
+        return ids != null ? new ArrayList<>(ids) : new ArrayList<>();
+    }
+}
@@ -0,0 +1,400 @@
+package com.warehouse.service;
+
+import com.warehouse.event.ProductChangedEvent;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory inverted index over the SKU, name, category and description of
+ * every active product, one per organization.
+ * <p>
+ * Each organization's terms are kept sorted, so a query term matches every
+ * indexed term it is a prefix of with one range lookup. A product must match
+ * all query terms; it scores the weight of the fields each term was found in,
+ * doubled for whole-term matches, plus a bonus when the query is its SKU.
+ * Candidates come from the query term with the fewest postings and only the
+ * top {@code limit} are kept in a heap. Committed product changes are applied
+ * incrementally, and the index is rebuilt from the table periodically.
+ */
+@Slf4j
+@Service
+public class ProductSearchIndex {
+
+    private static final String REBUILD_SQL =
+            "SELECT p.id, p.sku, p.name, p.description, p.category, v.organization_id FROM products p "
+                    + "JOIN vendors v ON v.id = p.vendor_id WHERE p.active = TRUE";
+
+    static final int SKU = 1;
+    static final int NAME = 2;
+    static final int CATEGORY = 4;
+    static final int DESCRIPTION = 8;
+
+    private static final int MAX_QUERY_TERMS = 8;
+    private static final int SKU_MATCH_BONUS = 100;
+
+    // Best first: score, then the shorter name, then the older product
+    private static final Comparator<Hit> RANK = Comparator.comparingInt(Hit::score).reversed()
+            .thenComparingInt(hit -> hit.doc().nameLength)
+            .thenComparingLong(hit -> hit.doc().productId);
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${inventory.product-search.max-results:100}")
+    private int maxResults;
+
+    private volatile Map<Long, Catalog> catalogs = new ConcurrentHashMap<>();
+    private final Object writeLock = new Object();
+    private List<ProductChangedEvent> replay; // Guarded by writeLock; non-null while rebuilding
+
+    @PostConstruct
+    @Scheduled(fixedDelayString = "${inventory.product-search.rebuild-interval-ms:21600000}",
+            initialDelayString = "${inventory.product-search.rebuild-interval-ms:21600000}")
+    public void rebuild() {
+        synchronized (writeLock) {
+            replay = new ArrayList<>();
+        }
+        Map<Long, Catalog> fresh = new ConcurrentHashMap<>();
+        int[] count = new int[1];
+        boolean loaded = false;
+        try {
+            jdbcTemplate.query(REBUILD_SQL, rs -> {
+                fresh.computeIfAbsent(rs.getLong("organization_id"), k -> new Catalog())
+                        .put(rs.getLong("id"), rs.getString("sku"), rs.getString("name"),
+                                rs.getString("description"), rs.getString("category"));
+                count[0]++;
+            });
+            loaded = true;
+        } finally {
+            synchronized (writeLock) {
+                if (loaded) {
+                    // Changes committed while the table was read may be missing from it
+                    replay.forEach(event -> apply(fresh, event));
+                    catalogs = fresh;
+                }
+                replay = null;
+            }
+        }
+        log.info("Indexed {} products of {} organizations for search", count[0], fresh.size());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        synchronized (writeLock) {
+            if (replay != null) {
+                replay.add(event);
+            }
+            apply(catalogs, event);
+        }
+    }
+
+    /**
+     * Ids of the best matching active products of an organization, best
+     * first. Every term of the query must be a prefix of a term in the
+     * product's SKU, name, category or description.
+     */
+    public List<Long> search(Long organizationId, String query, int limit) {
+        if (organizationId == null) {
+            throw new IllegalArgumentException("organizationId is required");
+        }
+        if (limit < 1 || limit > maxResults) {
+            throw new IllegalArgumentException("limit must be between 1 and " + maxResults);
+        }
+        List<String> terms = tokenize(query);
+        if (terms.isEmpty()) {
+            throw new IllegalArgumentException("Search query must contain a letter or digit");
+        }
+        if (terms.size() > MAX_QUERY_TERMS) {
+            terms = terms.subList(0, MAX_QUERY_TERMS);
+        }
+        Catalog catalog = catalogs.get(organizationId);
+        return catalog != null ? catalog.search(terms, query.trim().toLowerCase(Locale.ROOT), limit) : List.of();
+    }
+
+    public int size(Long organizationId) {
+        Catalog catalog = catalogs.get(organizationId);
+        return catalog != null ? catalog.size() : 0;
+    }
+
+    private static void apply(Map<Long, Catalog> catalogs, ProductChangedEvent event) {
+        Long previous = event.getPreviousOrganizationId();
+        if (previous != null && !previous.equals(event.getOrganizationId())) {
+            Catalog former = catalogs.get(previous);
+            if (former != null) {
+                former.remove(event.getProductId());
+            }
+        }
+        if (event.isActive()) {
+            catalogs.computeIfAbsent(event.getOrganizationId(), k -> new Catalog()).put(event.getProductId(),
+                    event.getSku(), event.getName(), event.getDescription(), event.getCategory());
+        } else {
+            Catalog catalog = catalogs.get(event.getOrganizationId());
+            if (catalog != null) {
+                catalog.remove(event.getProductId());
+            }
+        }
+    }
+
+    /**
+     * Lowercased runs of letters and digits, without duplicates.
+     */
+    static List<String> tokenize(String text) {
+        if (text == null) {
+            return List.of();
+        }
+        Set<String> terms = new LinkedHashSet<>();
+        String lower = text.toLowerCase(Locale.ROOT);
+        int start = -1;
+        for (int i = 0; i <= lower.length(); i++) {
+            boolean part = i < lower.length() && Character.isLetterOrDigit(lower.charAt(i));
+            if (part && start < 0) {
+                start = i;
+            } else if (!part && start >= 0) {
+                terms.add(lower.substring(start, i));
+                start = -1;
+            }
+        }
+        return new ArrayList<>(terms);
+    }
+
+    static int weight(int fields) {
+        int weight = 0;
+        if ((fields & SKU) != 0) {
+            weight += 8;
+        }
+        if ((fields & NAME) != 0) {
+            weight += 4;
+        }
+        if ((fields & CATEGORY) != 0) {
+            weight += 2;
+        }
+        if ((fields & DESCRIPTION) != 0) {
+            weight += 1;
+        }
+        return weight;
+    }
+
+    /**
+     * Index of one organization's products. Searches share the read lock;
+     * changes take the write lock.
+     */
+    private static final class Catalog {
+        private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        private final Map<Long, Doc> docs = new HashMap<>();
+        private final TreeMap<String, Postings> terms = new TreeMap<>();
+
+        void put(long productId, String sku, String name, String description, String category) {
+            Map<String, Integer> fields = new LinkedHashMap<>();
+            addTerms(fields, sku, SKU);
+            if (sku != null) {
+                // The whole SKU too, so "ELEC-001" matches as one term
+                fields.merge(sku.toLowerCase(Locale.ROOT), SKU, (a, b) -> a | b);
+            }
+            addTerms(fields, name, NAME);
+            addTerms(fields, category, CATEGORY);
+            addTerms(fields, description, DESCRIPTION);
+
+            lock.writeLock().lock();
+            try {
+                removeLocked(productId);
+                Doc doc = new Doc(productId, sku != null ? sku.toLowerCase(Locale.ROOT) : "",
+                        name != null ? name.length() : 0, fields.size());
+                int i = 0;
+                for (Map.Entry<String, Integer> field : fields.entrySet()) {
+                    Postings postings = terms.computeIfAbsent(field.getKey(), Postings::new);
+                    postings.add(doc, field.getValue().byteValue());
+                    doc.terms[i] = postings.term; // Share the indexed string
+                    doc.fields[i++] = field.getValue().byteValue();
+                }
+                docs.put(productId, doc);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        void remove(long productId) {
+            lock.writeLock().lock();
+            try {
+                removeLocked(productId);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        int size() {
+            lock.readLock().lock();
+            try {
+                return docs.size();
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        List<Long> search(List<String> query, String wholeQuery, int limit) {
+            lock.readLock().lock();
+            try {
+                // Gather candidates from the most selective term, then check the others per product
+                String rarest = null;
+                long fewest = Long.MAX_VALUE;
+                for (String term : query) {
+                    long postings = 0;
+                    for (Postings matching : prefixed(term).values()) {
+                        postings += matching.size;
+                    }
+                    if (postings < fewest) {
+                        fewest = postings;
+                        rarest = term;
+                    }
+                }
+                if (fewest == 0) {
+                    return List.of();
+                }
+
+                Map<Doc, Integer> candidates = new HashMap<>();
+                for (Postings matching : prefixed(rarest).values()) {
+                    int whole = matching.term.length() == rarest.length() ? 2 : 1;
+                    for (int i = 0; i < matching.size; i++) {
+                        candidates.merge(matching.docs[i], weight(matching.fields[i]) * whole, Math::max);
+                    }
+                }
+
+                PriorityQueue<Hit> top = new PriorityQueue<>(limit + 1, RANK.reversed());
+                for (Map.Entry<Doc, Integer> candidate : candidates.entrySet()) {
+                    Doc doc = candidate.getKey();
+                    int score = candidate.getValue();
+                    for (String term : query) {
+                        if (term.equals(rarest)) {
+                            continue;
+                        }
+                        int match = doc.match(term);
+                        if (match == 0) {
+                            score = 0;
+                            break;
+                        }
+                        score += match;
+                    }
+                    if (score == 0) {
+                        continue;
+                    }
+                    if (doc.sku.equals(wholeQuery)) {
+                        score += SKU_MATCH_BONUS;
+                    }
+                    top.offer(new Hit(doc, score));
+                    if (top.size() > limit) {
+                        top.poll();
+                    }
+                }
+
+                List<Hit> hits = new ArrayList<>(top);
+                hits.sort(RANK);
+                List<Long> ids = new ArrayList<>(hits.size());
+                hits.forEach(hit -> ids.add(hit.doc().productId));
+                return ids;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        private SortedMap<String, Postings> prefixed(String prefix) {
+            return terms.subMap(prefix, prefix + Character.MAX_VALUE);
+        }
+
+        private void removeLocked(long productId) {
+            Doc doc = docs.remove(productId);
+            if (doc == null) {
+                return;
+            }
+            for (String term : doc.terms) {
+                Postings postings = terms.get(term);
+                if (postings != null && postings.remove(doc) && postings.size == 0) {
+                    terms.remove(term);
+                }
+            }
+        }
+
+        private static void addTerms(Map<String, Integer> fields, String text, int field) {
+            for (String term : tokenize(text)) {
+                fields.merge(term, field, (a, b) -> a | b);
+            }
+        }
+    }
+
+    /**
+     * Products containing one term, with the fields it occurs in.
+     */
+    private static final class Postings {
+        final String term;
+        Doc[] docs = new Doc[2];
+        byte[] fields = new byte[2];
+        int size;
+
+        Postings(String term) {
+            this.term = term;
+        }
+
+        void add(Doc doc, byte field) {
+            if (size == docs.length) {
+                docs = Arrays.copyOf(docs, size * 2);
+                fields = Arrays.copyOf(fields, size * 2);
+            }
+            docs[size] = doc;
+            fields[size++] = field;
+        }
+
+        boolean remove(Doc doc) {
+            for (int i = 0; i < size; i++) {
+                if (docs[i] == doc) {
+                    size--;
+                    docs[i] = docs[size];
+                    fields[i] = fields[size];
+                    docs[size] = null;
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private static final class Doc {
+        final long productId;
+        final String sku;
+        final int nameLength;
+        final String[] terms;
+        final byte[] fields;
+
+        Doc(long productId, String sku, int nameLength, int termCount) {
+            this.productId = productId;
+            this.sku = sku;
+            this.nameLength = nameLength;
+            this.terms = new String[termCount];
+            this.fields = new byte[termCount];
+        }
+
+        /**
+         * Best score of a query term against this product's terms, or 0.
+         */
+        int match(String prefix) {
+            int best = 0;
+            for (int i = 0; i < terms.length; i++) {
+                if (terms[i].startsWith(prefix)) {
+                    int score = weight(fields[i]) * (terms[i].length() == prefix.length() ? 2 : 1);
+                    best = Math.max(best, score);
+                }
+            }
+            return best;
+        }
+    }
+
+    private record Hit(Doc doc, int score) {
+    }
+}
@@ -3,14 +3,20 @@ package com.warehouse.service;
 import com.warehouse.dto.ProductDTO;
 import com.warehouse.entity.Product;
 import com.warehouse.entity.Vendor;
+import com.warehouse.event.ProductChangedEvent;
+import com.warehouse.exception.DuplicateResourceException;
 import com.warehouse.exception.ResourceNotFoundException;
 import com.warehouse.repository.ProductRepository;
 import com.warehouse.repository.VendorRepository;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
@@ -19,19 +25,39 @@ public class ProductService {
 
     private final ProductRepository productRepository;
     private final VendorRepository vendorRepository;
+    private final ProductSearchIndex productSearchIndex;
+    private final ApplicationEventPublisher eventPublisher;
 
     public List<ProductDTO> getAllProducts() {
-        return productRepository.findAll().stream()
+        return productRepository.findAllWithVendor().stream()
                 .map(this::mapToDTO)
                 .collect(Collectors.toList());
     }
 
     public ProductDTO getProductById(Long id) {
-        Product product = productRepository.findById(id)
+        Product product = productRepository.findWithVendorById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Product not found with id: " + id));
         return mapToDTO(product);
     }
 
+    /**
+     * Best matching active products of an organization for a search box,
+     * ranked by the in-memory {@link ProductSearchIndex}.
+     */
+    public List<ProductDTO> searchProducts(Long organizationId, String query, int limit) {
+        List<Long> ids = productSearchIndex.search(organizationId, query, limit);
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        Map<Long, Product> products = productRepository.findAllWithVendorByIdIn(ids).stream()
+                .collect(Collectors.toMap(Product::getId, Function.identity()));
+        return ids.stream()
+                .map(products::get)
+                .filter(Objects::nonNull)
+                .map(this::mapToDTO)
+                .collect(Collectors.toList());
+    }
+
     @Transactional
     public ProductDTO createProduct(ProductDTO dto, Long userId) {
         Vendor vendor = vendorRepository.findById(dto.getVendorId())
@@ -43,14 +69,51 @@ public class ProductService {
         product.setDescription(dto.getDescription());
         product.setVendor(vendor);
         product.setCategory(dto.getCategory());
+        product.setStorageType(dto.getStorageType());
         product.setUnitPrice(dto.getUnitPrice());
         product.setActive(true);
         // createdAt/updatedAt handled by JPA auditing
 
         Product saved = productRepository.save(product);
+        publishChange(saved, null);
         return mapToDTO(saved);
     }
 
+    @Transactional
+    public ProductDTO updateProduct(Long id, ProductDTO dto, Long userId) {
+        Product product = productRepository.findWithVendorById(id)
+                .orElseThrow(() -> new ResourceNotFoundException("Product not found with id: " + id));
+        Long previousOrganizationId = product.getVendor().getOrganization().getId();
+
+        if (!product.getSku().equals(dto.getSku()) && productRepository.existsBySku(dto.getSku())) {
+            throw new DuplicateResourceException("Product", "sku", dto.getSku());
+        }
+        if (dto.getVendorId() != null && !dto.getVendorId().equals(product.getVendor().getId())) {
+            product.setVendor(vendorRepository.findById(dto.getVendorId())
+                    .orElseThrow(() -> new ResourceNotFoundException("Vendor not found with id: " + dto.getVendorId())));
+        }
+        product.setSku(dto.getSku());
+        product.setName(dto.getName());
+        product.setDescription(dto.getDescription());
+        product.setCategory(dto.getCategory());
+        product.setStorageType(dto.getStorageType());
+        product.setUnitPrice(dto.getUnitPrice());
+        if (dto.getActive() != null) {
+            product.setActive(dto.getActive());
+        }
+
+        Product saved = productRepository.save(product);
+        publishChange(saved, previousOrganizationId);
+        return mapToDTO(saved);
+    }
+
+    private void publishChange(Product product, Long previousOrganizationId) {
+        eventPublisher.publishEvent(new ProductChangedEvent(product.getId(),
+                product.getVendor().getOrganization().getId(), previousOrganizationId, product.getSku(),
+                product.getName(), product.getDescription(), product.getCategory(),
+                Boolean.TRUE.equals(product.getActive())));
+    }
+
     private ProductDTO mapToDTO(Product product) {
         return new ProductDTO(
                 product.getId(),
@@ -61,6 +124,7 @@ public class ProductService {
                 product.getVendor().getName(),
                 product.getCategory(),
                 product.getUnitPrice(),
-                product.getActive());
+                product.getActive(),
+                product.getStorageType());
     }
 }
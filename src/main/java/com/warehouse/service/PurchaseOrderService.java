@@ -71,7 +71,7 @@ public class PurchaseOrderService {
 
     @Transactional
     public PurchaseOrderDTO approvePurchaseOrder(Long poId, Long userId) {
-        PurchaseOrder po = purchaseOrderRepository.findById(poId)
+        PurchaseOrder po = purchaseOrderRepository.findWithDetailsById(poId)
                 .orElseThrow(() -> new ResourceNotFoundException("PurchaseOrder", "id", poId));
 
         User user = userRepository.findById(userId)
@@ -91,13 +91,13 @@ public class PurchaseOrderService {
     }
 
     public List<PurchaseOrderDTO> getPurchaseOrdersByOrganization(Long organizationId) {
-        return purchaseOrderRepository.findByOrganizationId(organizationId).stream()
+        return purchaseOrderRepository.findWithDetailsByOrganizationId(organizationId).stream()
                 .map(this::convertToDTO)
                 .collect(Collectors.toList());
     }
 
     public PurchaseOrderDTO getPurchaseOrderById(Long id) {
-        PurchaseOrder po = purchaseOrderRepository.findById(id)
+        PurchaseOrder po = purchaseOrderRepository.findWithDetailsById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("PurchaseOrder", "id", id));
         return convertToDTO(po);
     }
@@ -0,0 +1,162 @@
+package com.warehouse.service;
+
+import com.warehouse.entity.ZoneType;
+import com.warehouse.event.ProductChangedEvent;
+import com.warehouse.event.StockMovementEvent;
+import com.warehouse.exception.CapacityExceededException;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Chooses the storage zone for receipts that arrive without one.
+ * <p>
+ * Only zones of the product's storage type qualify (GENERAL when the product
+ * has none). Among those with room for the receipt, a zone that already holds
+ * the product wins, the one holding most of it first, so lots of a SKU stay
+ * together; otherwise the zone with the least room that still fits is used,
+ * keeping large free spaces for large receipts. Zones, product storage types
+ * and per-zone stock of each product are held in memory and free capacity
+ * comes from {@link ZoneUtilizationTracker}, so choosing a zone never
+ * touches the database.
+ */
+@Service
+public class PutawayEngine {
+
+    private static final String ZONES_SQL = "SELECT id, warehouse_id, zone_type FROM storage_zones ORDER BY id";
+
+    private static final String STOCK_SQL =
+            "SELECT warehouse_id, product_id, zone_id, SUM(quantity) AS units FROM inventory "
+                    + "WHERE zone_id IS NOT NULL GROUP BY warehouse_id, product_id, zone_id HAVING SUM(quantity) > 0";
+
+    private static final String STORAGE_TYPE_SQL = "SELECT storage_type FROM products WHERE id = ?";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ZoneUtilizationTracker zoneUtilizationTracker;
+
+    private final Map<Long, List<Zone>> warehouseZones = new ConcurrentHashMap<>();
+    private final Map<StockKey, Map<Long, AtomicLong>> stock = new ConcurrentHashMap<>();
+    private final Map<Long, ZoneType> storageTypes = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void rebuild() {
+        warehouseZones.clear();
+        stock.clear();
+        storageTypes.clear();
+        jdbcTemplate.query(ZONES_SQL, rs -> {
+            registerZone(rs.getLong("warehouse_id"), rs.getLong("id"), ZoneType.valueOf(rs.getString("zone_type")));
+        });
+        jdbcTemplate.query(STOCK_SQL, rs -> {
+            units(rs.getLong("warehouse_id"), rs.getLong("product_id"), rs.getLong("zone_id"))
+                    .addAndGet(rs.getLong("units"));
+        });
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onStockMovement(StockMovementEvent event) {
+        if (event.getZoneId() != null && event.getQuantity() != 0) {
+            units(event.getWarehouseId(), event.getProductId(), event.getZoneId()).addAndGet(event.getQuantity());
+        }
+    }
+
+    public void registerZone(Long warehouseId, Long zoneId, ZoneType zoneType) {
+        warehouseZones.computeIfAbsent(warehouseId, k -> new CopyOnWriteArrayList<>()).add(new Zone(zoneId, zoneType));
+    }
+
+    /**
+     * Storage type a product needs, cached after the first lookup.
+     */
+    public ZoneType getStorageType(Long productId) {
+        ZoneType cached = storageTypes.get(productId);
+        if (cached != null) {
+            return cached;
+        }
+        List<String> types = jdbcTemplate.queryForList(STORAGE_TYPE_SQL, String.class, productId);
+        if (types.isEmpty()) {
+            return ZoneType.GENERAL; // Unknown product; the stock-in itself reports it
+        }
+        ZoneType type = types.get(0) != null ? ZoneType.valueOf(types.get(0)) : ZoneType.GENERAL;
+        storageTypes.put(productId, type);
+        return type;
+    }
+
+    public void evictProduct(Long productId) {
+        storageTypes.remove(productId);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        evictProduct(event.getProductId());
+    }
+
+    /**
+     * Zone to receive {@code quantity} units of a product into, or null when
+     * the warehouse has no zones at all. {@code pending} holds units already
+     * promised to zones by earlier lines of the same receipt.
+     *
+     * @throws CapacityExceededException when no zone of the right type has room
+     */
+    public Long chooseZone(Long warehouseId, Long productId, ZoneType storageType, int quantity,
+            Map<Long, Integer> pending) {
+        List<Zone> zones = warehouseZones.get(warehouseId);
+        if (zones == null || zones.isEmpty()) {
+            return null;
+        }
+        ZoneType required = storageType != null ? storageType : ZoneType.GENERAL;
+        Map<Long, AtomicLong> held = stock.getOrDefault(new StockKey(warehouseId, productId), Map.of());
+
+        Long consolidated = null;
+        long consolidatedUnits = 0;
+        Long bestFit = null;
+        long bestFitFree = Long.MAX_VALUE;
+        for (Zone zone : zones) {
+            if (zone.type() != required) {
+                continue;
+            }
+            long free = zoneUtilizationTracker.getFreeCapacity(zone.id()) - pending.getOrDefault(zone.id(), 0);
+            if (free < quantity) {
+                continue;
+            }
+            AtomicLong units = held.get(zone.id());
+            if (units != null && units.get() > consolidatedUnits) {
+                consolidated = zone.id();
+                consolidatedUnits = units.get();
+            }
+            if (free < bestFitFree) {
+                bestFit = zone.id();
+                bestFitFree = free;
+            }
+        }
+
+        if (consolidated != null) {
+            return consolidated;
+        }
+        if (bestFit != null) {
+            return bestFit;
+        }
+        throw new CapacityExceededException("No " + required + " zone in warehouse " + warehouseId
+                + " has room for " + quantity + " units");
+    }
+
+    private AtomicLong units(Long warehouseId, Long productId, Long zoneId) {
+        return stock.computeIfAbsent(new StockKey(warehouseId, productId), k -> new ConcurrentHashMap<>())
+                .computeIfAbsent(zoneId, k -> new AtomicLong());
+    }
+
+    private record Zone(Long id, ZoneType type) {
+    }
+
+    private record StockKey(Long warehouseId, Long productId) {
+    }
+}
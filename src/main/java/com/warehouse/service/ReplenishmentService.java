@@ -0,0 +1,232 @@
+package com.warehouse.service;
+
+import com.warehouse.dto.ReplenishmentRunDTO;
+import com.warehouse.entity.PurchaseOrderStatus;
+import com.warehouse.exception.ResourceNotFoundException;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * Generates DRAFT purchase orders for stock at or below its reorder point.
+ * <p>
+ * A run reads every (product, warehouse) pair of an organization whose
+ * on-hand stock is at or below {@code minStockLevel} in one grouped query,
+ * together with the product's vendor and price, and needs
+ * {@code maxStockLevel - onHand} of it. Quantities already on open purchase
+ * orders (DRAFT through SHIPPED) are netted out per product, so running again
+ * before the orders are received orders nothing twice. The remainder becomes
+ * one DRAFT order per vendor, inserted with batched statements. Runs of an
+ * organization are serialized by a lock on its row.
+ */
+@Slf4j
+@Service
+public class ReplenishmentService {
+
+    private static final String LOCK_ORGANIZATION_SQL = "SELECT id FROM organizations WHERE id = ? FOR UPDATE";
+
+    private static final String ORGANIZATIONS_SQL = "SELECT id FROM organizations ORDER BY id";
+
+    private static final String BUYER_SQL =
+            "SELECT id FROM users WHERE organization_id = ? AND role IN ('COMPANY_ADMIN', 'OPS_MANAGER') "
+                    + "ORDER BY CASE role WHEN 'COMPANY_ADMIN' THEN 0 ELSE 1 END, id";
+
+    private static final String LOW_STOCK_SQL =
+            "SELECT i.product_id, p.vendor_id, p.unit_price, SUM(i.quantity) AS on_hand, "
+                    + "MAX(i.max_stock_level) AS max_level FROM inventory i "
+                    + "JOIN warehouses w ON w.id = i.warehouse_id JOIN products p ON p.id = i.product_id "
+                    + "WHERE w.organization_id = ? AND p.active = TRUE "
+                    + "GROUP BY i.product_id, i.warehouse_id, p.vendor_id, p.unit_price "
+                    + "HAVING SUM(i.quantity) <= MAX(i.min_stock_level)";
+
+    private static final String ON_ORDER_SQL =
+            "SELECT it.product_id, SUM(it.quantity) AS on_order FROM purchase_order_items it "
+                    + "JOIN purchase_orders po ON po.id = it.purchase_order_id "
+                    + "WHERE po.organization_id = ? AND po.status IN ('DRAFT', 'PENDING_APPROVAL', 'APPROVED', 'SHIPPED') "
+                    + "GROUP BY it.product_id";
+
+    private static final String INSERT_ORDER_SQL =
+            "INSERT INTO purchase_orders (po_number, vendor_id, organization_id, created_by, status, total_amount, "
+                    + "created_at, expected_delivery_date) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String ORDER_IDS_SQL = "SELECT id, po_number FROM purchase_orders WHERE po_number IN (:poNumbers)";
+
+    private static final String INSERT_ITEM_SQL =
+            "INSERT INTO purchase_order_items (purchase_order_id, product_id, quantity, unit_price, total_price) "
+                    + "VALUES (?, ?, ?, ?, ?)";
+
+    private static final int ID_CHUNK_SIZE = 1000;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${inventory.replenishment.batch-size:1000}")
+    private int batchSize;
+
+    @Value("${inventory.forecast.lead-time-days:7}")
+    private double leadTimeDays;
+
+    private TransactionTemplate transactionTemplate;
+
+    @PostConstruct
+    public void init() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Replenish every organization, with its first admin (or else operations
+     * manager) as the buyer. Organizations without one are skipped, and one
+     * organization's failure is logged without stopping the others.
+     */
+    @Scheduled(cron = "${inventory.replenishment.cron:0 30 1 * * *}")
+    public void replenishAll() {
+        for (Long organizationId : jdbcTemplate.queryForList(ORGANIZATIONS_SQL, Long.class)) {
+            try {
+                List<Long> buyers = jdbcTemplate.queryForList(BUYER_SQL, Long.class, organizationId);
+                if (buyers.isEmpty()) {
+                    log.warn("Organization {} has no admin or operations manager to own replenishment orders",
+                            organizationId);
+                    continue;
+                }
+                ReplenishmentRunDTO run = replenish(organizationId, buyers.get(0));
+                if (!run.getPurchaseOrders().isEmpty()) {
+                    log.info("Replenishment created {} purchase orders for organization {}",
+                            run.getPurchaseOrders().size(), organizationId);
+                }
+            } catch (RuntimeException ex) {
+                log.error("Replenishment failed for organization {}", organizationId, ex);
+            }
+        }
+    }
+
+    public ReplenishmentRunDTO replenish(Long organizationId, Long userId) {
+        return transactionTemplate.execute(status -> run(organizationId, userId));
+    }
+
+    private ReplenishmentRunDTO run(Long organizationId, Long userId) {
+        if (jdbcTemplate.queryForList(LOCK_ORGANIZATION_SQL, Long.class, organizationId).isEmpty()) {
+            throw new ResourceNotFoundException("Organization", "id", organizationId);
+        }
+        LocalDateTime runAt = LocalDateTime.now();
+        ReplenishmentRunDTO result = new ReplenishmentRunDTO();
+        result.setOrganizationId(organizationId);
+        result.setRunAt(runAt);
+
+        // Needed quantity per product, summed over its warehouses
+        Map<Long, Line> needs = new HashMap<>();
+        jdbcTemplate.query(LOW_STOCK_SQL, rs -> {
+            long productId = rs.getLong("product_id");
+            long vendorId = rs.getLong("vendor_id");
+            BigDecimal unitPrice = rs.getBigDecimal("unit_price");
+            long need = Math.max(rs.getLong("max_level") - rs.getLong("on_hand"), 0);
+            needs.computeIfAbsent(productId, k -> new Line(productId, vendorId, unitPrice)).quantity += need;
+            result.setLowStockLines(result.getLowStockLines() + 1);
+        }, organizationId);
+
+        jdbcTemplate.query(ON_ORDER_SQL, rs -> {
+            Line line = needs.get(rs.getLong("product_id"));
+            if (line != null) {
+                line.quantity -= rs.getLong("on_order");
+            }
+        }, organizationId);
+
+        Map<Long, List<Line>> byVendor = new TreeMap<>();
+        for (Line line : needs.values()) {
+            if (line.quantity > 0) {
+                byVendor.computeIfAbsent(line.vendorId, k -> new ArrayList<>()).add(line);
+            } else {
+                result.setProductsCoveredByOpenOrders(result.getProductsCoveredByOpenOrders() + 1);
+            }
+        }
+        if (byVendor.isEmpty()) {
+            return result;
+        }
+
+        List<Object[]> orders = new ArrayList<>();
+        Timestamp createdAt = Timestamp.valueOf(runAt);
+        Date expectedDelivery = Date.valueOf(LocalDate.now().plusDays((long) Math.ceil(leadTimeDays)));
+        long stamp = System.currentTimeMillis();
+        Map<String, Long> vendorsByPoNumber = new LinkedHashMap<>();
+        for (Map.Entry<Long, List<Line>> vendor : byVendor.entrySet()) {
+            List<Line> lines = vendor.getValue();
+            lines.sort(Comparator.comparingLong(line -> line.productId));
+            BigDecimal total = BigDecimal.ZERO;
+            for (Line line : lines) {
+                total = total.add(line.totalPrice());
+            }
+            String poNumber = "PO-R" + stamp + "-" + vendor.getKey();
+            vendorsByPoNumber.put(poNumber, vendor.getKey());
+            orders.add(new Object[] { poNumber, vendor.getKey(), organizationId, userId,
+                    PurchaseOrderStatus.DRAFT.name(), total, createdAt, expectedDelivery });
+            result.getPurchaseOrders().add(new ReplenishmentRunDTO.Order(null, poNumber, vendor.getKey(),
+                    lines.size(), total));
+            result.setProductsOrdered(result.getProductsOrdered() + lines.size());
+        }
+        jdbcTemplate.batchUpdate(INSERT_ORDER_SQL, orders);
+
+        Map<String, Long> orderIds = new HashMap<>();
+        List<String> poNumbers = new ArrayList<>(vendorsByPoNumber.keySet());
+        for (int from = 0; from < poNumbers.size(); from += ID_CHUNK_SIZE) {
+            List<String> chunk = poNumbers.subList(from, Math.min(from + ID_CHUNK_SIZE, poNumbers.size()));
+            namedParameterJdbcTemplate.query(ORDER_IDS_SQL, Map.of("poNumbers", chunk),
+                    rs -> {
+                        orderIds.put(rs.getString("po_number"), rs.getLong("id"));
+                    });
+        }
+
+        List<Object[]> items = new ArrayList<>();
+        for (ReplenishmentRunDTO.Order order : result.getPurchaseOrders()) {
+            Long orderId = orderIds.get(order.getPoNumber());
+            order.setPurchaseOrderId(orderId);
+            for (Line line : byVendor.get(order.getVendorId())) {
+                items.add(new Object[] { orderId, line.productId, line.orderQuantity(), line.unitPrice,
+                        line.totalPrice() });
+            }
+        }
+        for (int from = 0; from < items.size(); from += batchSize) {
+            jdbcTemplate.batchUpdate(INSERT_ITEM_SQL, items.subList(from, Math.min(from + batchSize, items.size())));
+        }
+        return result;
+    }
+
+    private static final class Line {
+        final long productId;
+        final long vendorId;
+        final BigDecimal unitPrice;
+        long quantity;
+
+        Line(long productId, long vendorId, BigDecimal unitPrice) {
+            this.productId = productId;
+            this.vendorId = vendorId;
+            this.unitPrice = unitPrice;
+        }
+
+        int orderQuantity() {
+            return (int) Math.min(quantity, Integer.MAX_VALUE);
+        }
+
+        BigDecimal totalPrice() {
+            return unitPrice.multiply(BigDecimal.valueOf(orderQuantity()));
+        }
+    }
+}
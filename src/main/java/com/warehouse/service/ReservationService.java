@@ -0,0 +1,390 @@
+package com.warehouse.service;
+
+import com.warehouse.dto.AvailableToPromiseDTO;
+import com.warehouse.dto.ReservationDTO;
+import com.warehouse.dto.ReservationRequest;
+import com.warehouse.dto.StockAllocationRequest;
+import com.warehouse.dto.StockAllocationResponse;
+import com.warehouse.event.StockMovementEvent;
+import com.warehouse.exception.InsufficientStockException;
+import com.warehouse.exception.ResourceNotFoundException;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * Soft allocation of stock for orders that are still being confirmed.
+ * <p>
+ * Each (product, warehouse) has an available-to-promise counter holding the
+ * on-hand quantity and the reserved quantity in one atomic word, so a
+ * reservation is a single compare-and-set and ATP reads are O(1). On-hand
+ * quantities are loaded on first use, follow stock movements, and are
+ * reconciled with the table periodically. Holds are released after their TTL
+ * by a timer wheel, or converted into an allocated stock-out on commit.
+ * Every other stock-out holds its quantity on the same counter first, so it
+ * can never take units that are reserved for someone else. Reservations live
+ * in memory only and do not survive a restart.
+ */
+@Service
+public class ReservationService {
+
+    private static final String ON_HAND_SQL =
+            "SELECT COALESCE(SUM(quantity), 0) FROM inventory WHERE product_id = ? AND warehouse_id = ?";
+
+    private static final String ON_HAND_ALL_SQL =
+            "SELECT product_id, warehouse_id, SUM(quantity) AS on_hand FROM inventory GROUP BY product_id, warehouse_id";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    // Lazy because InventoryService checks its stock-outs against the counters here
+    @Lazy
+    @Autowired
+    private InventoryService inventoryService;
+
+    @Autowired(required = false)
+    private StockLedger stockLedger;
+
+    @Value("${inventory.reservation.default-ttl-seconds:900}")
+    private int defaultTtlSeconds;
+
+    @Value("${inventory.reservation.max-ttl-seconds:86400}")
+    private int maxTtlSeconds;
+
+    @Value("${inventory.reservation.timer-tick-ms:100}")
+    private long timerTickMs;
+
+    @Value("${inventory.reservation.timer-wheel-size:512}")
+    private int timerWheelSize;
+
+    private final Map<AtpKey, AtpCounter> counters = new ConcurrentHashMap<>();
+    private final Map<String, Reservation> reservations = new ConcurrentHashMap<>();
+    private HashedTimerWheel timers;
+
+    @PostConstruct
+    public void start() {
+        timers = new HashedTimerWheel("reservation-expiry", timerTickMs, TimeUnit.MILLISECONDS, timerWheelSize);
+    }
+
+    @PreDestroy
+    public void stop() {
+        timers.stop();
+    }
+
+    public ReservationDTO reserve(ReservationRequest request) {
+        int ttlSeconds = request.getTtlSeconds() != null
+                ? Math.min(request.getTtlSeconds(), maxTtlSeconds)
+                : defaultTtlSeconds;
+
+        AtpCounter counter = counter(request.getProductId(), request.getWarehouseId());
+        if (!counter.tryReserve(request.getQuantity())) {
+            throw new InsufficientStockException(counter.available());
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        Reservation reservation = new Reservation(UUID.randomUUID().toString(), request.getProductId(),
+                request.getWarehouseId(), request.getQuantity(), request.getReference(), now,
+                now.plusSeconds(ttlSeconds));
+        // Registered before its timeout exists, so an expiry always finds it to remove
+        reservations.put(reservation.id, reservation);
+        reservation.timeout = timers.schedule(() -> finish(reservation, ReservationDTO.Status.EXPIRED),
+                ttlSeconds, TimeUnit.SECONDS);
+        return toDTO(reservation, null);
+    }
+
+    public ReservationDTO getReservation(String id) {
+        return toDTO(find(id), null);
+    }
+
+    public ReservationDTO release(String id) {
+        Reservation reservation = find(id);
+        if (!finish(reservation, ReservationDTO.Status.RELEASED)) {
+            throw new IllegalStateException("Only ACTIVE reservations can be released");
+        }
+        return toDTO(reservation, null);
+    }
+
+    /**
+     * Convert a reservation into a stock-out allocated across lots. The hold
+     * is kept if the stock-out fails, until it is retried or its TTL passes.
+     */
+    public ReservationDTO commit(String id, Long userId) {
+        Reservation reservation = find(id);
+        if (!reservation.status.compareAndSet(ReservationDTO.Status.ACTIVE, ReservationDTO.Status.COMMITTED)) {
+            throw new IllegalStateException("Only ACTIVE reservations can be committed");
+        }
+        reservation.timeout.cancel();
+
+        StockAllocationResponse allocation;
+        try {
+            String notes = "Reservation " + reservation.id
+                    + (reservation.reference != null ? " (" + reservation.reference + ")" : "");
+            allocation = inventoryService.allocateReservedStockOut(new StockAllocationRequest(reservation.productId,
+                    reservation.warehouseId, reservation.quantity, null, notes), userId);
+        } catch (RuntimeException ex) {
+            reservation.status.set(ReservationDTO.Status.ACTIVE);
+            long remainingMs = Math.max(0, Duration.between(LocalDateTime.now(), reservation.expiresAt).toMillis());
+            reservation.timeout = timers.schedule(() -> finish(reservation, ReservationDTO.Status.EXPIRED),
+                    remainingMs, TimeUnit.MILLISECONDS);
+            throw ex;
+        }
+
+        reservations.remove(reservation.id);
+        counter(reservation.productId, reservation.warehouseId).release(reservation.quantity);
+        return toDTO(reservation, allocation);
+    }
+
+    /**
+     * Hold {@code quantity} units for a stock-out that does not draw on a
+     * reservation, failing when reservations leave too little. The hold lasts
+     * until the current transaction completes, by which time the stock-out's
+     * own movement has reached the counter.
+     */
+    public void holdForTransaction(Long productId, Long warehouseId, int quantity) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            throw new IllegalStateException("A stock-out hold needs an active transaction");
+        }
+        AtpCounter counter = hold(productId, warehouseId, quantity);
+        // Lowest precedence by default, so the release follows the after-commit movement listeners
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                counter.release(quantity);
+            }
+        });
+    }
+
+    /**
+     * Like {@link #holdForTransaction}, for stock ledger operations: the
+     * ledger publishes a movement before it returns, so the hold only lasts
+     * while the operation runs.
+     */
+    public <T> T holdDuring(Long productId, Long warehouseId, int quantity, Supplier<T> stockOut) {
+        AtpCounter counter = hold(productId, warehouseId, quantity);
+        try {
+            return stockOut.get();
+        } finally {
+            counter.release(quantity);
+        }
+    }
+
+    private AtpCounter hold(Long productId, Long warehouseId, int quantity) {
+        AtpCounter counter = counter(productId, warehouseId);
+        if (!counter.tryReserve(quantity)) {
+            throw new InsufficientStockException(counter.available());
+        }
+        return counter;
+    }
+
+    public AvailableToPromiseDTO getAvailableToPromise(Long productId, Long warehouseId) {
+        long state = counter(productId, warehouseId).state.get();
+        return new AvailableToPromiseDTO(productId, warehouseId, onHand(state), reserved(state),
+                onHand(state) - reserved(state));
+    }
+
+    /**
+     * Quantity held by active reservations of a product in a warehouse. Never
+     * loads a counter, so it is free to call on hot read paths.
+     */
+    public int getReserved(Long productId, Long warehouseId) {
+        AtpCounter counter = counters.get(new AtpKey(productId, warehouseId));
+        return counter != null ? reserved(counter.state.get()) : 0;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onStockMovement(StockMovementEvent event) {
+        AtpCounter counter = counters.get(new AtpKey(event.getProductId(), event.getWarehouseId()));
+        if (counter != null) {
+            counter.addOnHand(event.getQuantity());
+        }
+    }
+
+    /**
+     * Correct any drift between the on-hand counters and the table, e.g. from
+     * a movement that raced with a counter being loaded. A counter that moved
+     * while the totals were read is left alone until the next run, so a
+     * movement applied meanwhile is never overwritten by an older total.
+     */
+    @Scheduled(fixedDelayString = "${inventory.reservation.reconcile-interval-ms:300000}")
+    public void reconcile() {
+        if (counters.isEmpty()) {
+            return;
+        }
+        Map<AtpKey, Long> versions = new HashMap<>();
+        counters.forEach((key, counter) -> versions.put(key, counter.version.get()));
+        if (stockLedger != null) {
+            // The table trails the ledger, so reconcile against the ledger itself
+            List<StockLedger.ProductWarehouse> keys = versions.keySet().stream()
+                    .map(key -> new StockLedger.ProductWarehouse(key.productId(), key.warehouseId()))
+                    .toList();
+            stockLedger.onHand(keys).forEach((key, onHand) ->
+                    reconcile(new AtpKey(key.productId(), key.warehouseId()), Math.toIntExact(onHand), versions));
+            return;
+        }
+        jdbcTemplate.query(ON_HAND_ALL_SQL, rs -> {
+            reconcile(new AtpKey(rs.getLong("product_id"), rs.getLong("warehouse_id")), rs.getInt("on_hand"),
+                    versions);
+        });
+    }
+
+    private void reconcile(AtpKey key, int onHand, Map<AtpKey, Long> versions) {
+        AtpCounter counter = counters.get(key);
+        Long version = versions.get(key);
+        if (counter != null && version != null) {
+            counter.setOnHandIfUnchanged(onHand, version);
+        }
+    }
+
+    private boolean finish(Reservation reservation, ReservationDTO.Status status) {
+        if (!reservation.status.compareAndSet(ReservationDTO.Status.ACTIVE, status)) {
+            return false;
+        }
+        if (reservation.timeout != null) {
+            reservation.timeout.cancel();
+        }
+        reservations.remove(reservation.id);
+        counter(reservation.productId, reservation.warehouseId).release(reservation.quantity);
+        return true;
+    }
+
+    private Reservation find(String id) {
+        Reservation reservation = reservations.get(id);
+        if (reservation == null) {
+            throw new ResourceNotFoundException("Reservation", "id", id);
+        }
+        return reservation;
+    }
+
+    private AtpCounter counter(Long productId, Long warehouseId) {
+        AtpKey key = new AtpKey(productId, warehouseId);
+        AtpCounter counter = counters.get(key);
+        if (counter != null) {
+            return counter;
+        }
+        // Loaded outside the map so the query never runs under its bin lock
+        int onHand = stockLedger != null ? Math.toIntExact(stockLedger.onHand(productId, warehouseId))
+                : jdbcTemplate.queryForObject(ON_HAND_SQL, Integer.class, productId, warehouseId);
+        AtpCounter loaded = new AtpCounter(onHand);
+        AtpCounter existing = counters.putIfAbsent(key, loaded);
+        return existing != null ? existing : loaded;
+    }
+
+    private ReservationDTO toDTO(Reservation reservation, StockAllocationResponse allocation) {
+        return new ReservationDTO(reservation.id, reservation.productId, reservation.warehouseId,
+                reservation.quantity, reservation.reference, reservation.status.get(), reservation.createdAt,
+                reservation.expiresAt, allocation);
+    }
+
+    private static int onHand(long state) {
+        return (int) (state >> 32);
+    }
+
+    private static int reserved(long state) {
+        return (int) state;
+    }
+
+    private static long pack(int onHand, int reserved) {
+        return ((long) onHand << 32) | (reserved & 0xFFFFFFFFL);
+    }
+
+    private record AtpKey(Long productId, Long warehouseId) {
+    }
+
+    /**
+     * On-hand and reserved quantities packed into one word so that the
+     * availability check and the reservation are a single atomic step.
+     */
+    private static final class AtpCounter {
+        final AtomicLong state;
+        final AtomicLong version = new AtomicLong(); // Bumped by every movement
+
+        AtpCounter(int onHand) {
+            this.state = new AtomicLong(pack(onHand, 0));
+        }
+
+        boolean tryReserve(int quantity) {
+            while (true) {
+                long current = state.get();
+                if (onHand(current) - reserved(current) < quantity) {
+                    return false;
+                }
+                if (state.compareAndSet(current, pack(onHand(current), reserved(current) + quantity))) {
+                    return true;
+                }
+            }
+        }
+
+        void release(int quantity) {
+            state.updateAndGet(s -> pack(onHand(s), reserved(s) - quantity));
+        }
+
+        void addOnHand(int delta) {
+            version.incrementAndGet(); // Before the update, so reconcile() cannot overwrite it unseen
+            state.updateAndGet(s -> pack(onHand(s) + delta, reserved(s)));
+        }
+
+        /**
+         * Replace the on-hand quantity unless a movement was applied since
+         * {@code seenVersion} was read.
+         */
+        boolean setOnHandIfUnchanged(int onHand, long seenVersion) {
+            while (true) {
+                long current = state.get();
+                if (version.get() != seenVersion) {
+                    return false;
+                }
+                if (state.compareAndSet(current, pack(onHand, reserved(current)))) {
+                    return true;
+                }
+            }
+        }
+
+        int available() {
+            long current = state.get();
+            return Math.max(0, onHand(current) - reserved(current));
+        }
+    }
+
+    private static final class Reservation {
+        final String id;
+        final Long productId;
+        final Long warehouseId;
+        final int quantity;
+        final String reference;
+        final LocalDateTime createdAt;
+        final LocalDateTime expiresAt;
+        final AtomicReference<ReservationDTO.Status> status = new AtomicReference<>(ReservationDTO.Status.ACTIVE);
+        volatile HashedTimerWheel.Timeout timeout;
+
+        Reservation(String id, Long productId, Long warehouseId, int quantity, String reference,
+                LocalDateTime createdAt, LocalDateTime expiresAt) {
+            this.id = id;
+            this.productId = productId;
+            this.warehouseId = warehouseId;
+            this.quantity = quantity;
+            this.reference = reference;
+            this.createdAt = createdAt;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.warehouse.service;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Open-addressing hash table from SKU bytes to product id. Lookups hash and
+ * compare bytes straight out of a buffer, so resolving a SKU read from a file
+ * allocates nothing.
+ */
+final class SkuTable {
+
+    private static final long MISSING = -1;
+
+    private final byte[][] keys;
+    private final long[] values;
+    private final int mask;
+
+    SkuTable(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(expectedSize * 2, 16) - 1) << 1;
+        this.keys = new byte[capacity][];
+        this.values = new long[capacity];
+        this.mask = capacity - 1;
+    }
+
+    void put(String sku, long productId) {
+        byte[] key = sku.getBytes(StandardCharsets.UTF_8);
+        int slot = hash(ByteBuffer.wrap(key), 0, key.length) & mask;
+        while (keys[slot] != null) {
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        values[slot] = productId;
+    }
+
+    /**
+     * Product id of the SKU stored in {@code buffer[offset, offset + length)},
+     * or -1 when the SKU is unknown.
+     */
+    long get(ByteBuffer buffer, int offset, int length) {
+        int slot = hash(buffer, offset, length) & mask;
+        byte[] key;
+        while ((key = keys[slot]) != null) {
+            if (matches(key, buffer, offset, length)) {
+                return values[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return MISSING;
+    }
+
+    private static boolean matches(byte[] key, ByteBuffer buffer, int offset, int length) {
+        if (key.length != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (key[i] != buffer.get(offset + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int hash(ByteBuffer buffer, int offset, int length) {
+        int h = 0x811c9dc5;
+        for (int i = 0; i < length; i++) {
+            h = (h ^ buffer.get(offset + i)) * 0x01000193;
+        }
+        return h ^ (h >>> 16);
+    }
+}
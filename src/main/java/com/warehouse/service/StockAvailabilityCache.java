@@ -0,0 +1,268 @@
+package com.warehouse.service;
+
+import com.warehouse.dto.StockSummaryDTO;
+import com.warehouse.event.ProductChangedEvent;
+import com.warehouse.event.StockMovementEvent;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Bounded in-memory cache of on-hand stock per product and warehouse, for
+ * "how many do we have" lookups that must not reach the database.
+ * <p>
+ * Each cached product holds an immutable map of its per-warehouse totals that
+ * stock movements replace with a compare-and-set, so reads never lock. Misses
+ * of a bulk lookup are loaded together in one query. Reserved quantities come
+ * from the {@link ReservationService} counters. When the cache is over
+ * {@code max-entries} a CLOCK sweep evicts products that were not read since
+ * the hand last passed them. Cached totals are reconciled with the table
+ * periodically, like the reservation counters, to repair a movement that
+ * raced with its product being loaded.
+ */
+@Service
+public class StockAvailabilityCache {
+
+    private static final String LOAD_SQL =
+            "SELECT p.id, p.sku, i.warehouse_id, w.organization_id, SUM(i.quantity) AS on_hand FROM products p "
+                    + "LEFT JOIN inventory i ON i.product_id = p.id LEFT JOIN warehouses w ON w.id = i.warehouse_id "
+                    + "WHERE %s IN (:keys) GROUP BY p.id, p.sku, i.warehouse_id, w.organization_id";
+
+    private static final int LOAD_CHUNK_SIZE = 1000;
+
+    @Autowired
+    private NamedParameterJdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ReservationService reservationService;
+
+    @Autowired(required = false)
+    private StockLedger stockLedger;
+
+    @Value("${inventory.stock-cache.max-entries:100000}")
+    private int maxEntries;
+
+    private final Map<Long, Entry> entries = new ConcurrentHashMap<>();
+    private final Map<String, Long> skuIds = new ConcurrentHashMap<>();
+    private final Object evictionLock = new Object();
+    private Iterator<Entry> hand; // Guarded by evictionLock
+
+    /**
+     * Stock of each known product, in the order asked for, limited to one
+     * organization's warehouses when {@code organizationId} is given.
+     * Unknown products and SKUs are left out.
+     */
+    public List<StockSummaryDTO> lookup(Collection<Long> productIds, Collection<String> skus, Long organizationId) {
+        Map<Long, Entry> found = new LinkedHashMap<>();
+        List<Long> missingIds = new ArrayList<>();
+        List<String> missingSkus = new ArrayList<>();
+        for (Long productId : productIds) {
+            Entry entry = entries.get(productId);
+            if (entry != null) {
+                found.put(productId, entry);
+            } else {
+                found.put(productId, null);
+                missingIds.add(productId);
+            }
+        }
+        for (String sku : skus) {
+            Long productId = skuIds.get(sku);
+            Entry entry = productId != null ? entries.get(productId) : null;
+            if (entry != null) {
+                found.putIfAbsent(productId, entry);
+            } else {
+                missingSkus.add(sku);
+            }
+        }
+
+        if (!missingIds.isEmpty() || !missingSkus.isEmpty()) {
+            Map<Long, Entry> loaded = new HashMap<>();
+            load("p.id", missingIds, loaded);
+            load("p.sku", missingSkus, loaded);
+            for (Entry entry : loaded.values()) {
+                Entry cached = entries.putIfAbsent(entry.productId, entry);
+                if (cached == null) {
+                    skuIds.put(entry.sku, entry.productId);
+                }
+                found.put(entry.productId, cached != null ? cached : entry);
+            }
+            evictIfFull();
+        }
+
+        List<StockSummaryDTO> summaries = new ArrayList<>(found.size());
+        for (Entry entry : found.values()) {
+            if (entry != null) {
+                entry.referenced = true;
+                summaries.add(summarize(entry, organizationId));
+            }
+        }
+        return summaries;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onStockMovement(StockMovementEvent event) {
+        Entry entry = entries.get(event.getProductId());
+        if (entry != null && event.getQuantity() != 0) {
+            entry.add(event.getWarehouseId(), event.getOrganizationId(), event.getQuantity());
+        }
+    }
+
+    /**
+     * Forget a product whose SKU or status changed; it is reloaded on the
+     * next lookup.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        Entry entry = entries.remove(event.getProductId());
+        if (entry != null) {
+            skuIds.remove(entry.sku, entry.productId);
+        }
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Reload the totals of every cached product and replace those that
+     * drifted, skipping products that moved while the table was read.
+     */
+    @Scheduled(fixedDelayString = "${inventory.stock-cache.reconcile-interval-ms:300000}")
+    public void reconcile() {
+        Map<Long, Snapshot> snapshots = new HashMap<>();
+        entries.forEach((id, entry) -> {
+            long version = entry.version.get();
+            snapshots.put(id, new Snapshot(entry, version, entry.warehouses.get()));
+        });
+        Map<Long, Entry> loaded = new HashMap<>();
+        load("p.id", new ArrayList<>(snapshots.keySet()), loaded);
+        for (Entry fresh : loaded.values()) {
+            Snapshot snapshot = snapshots.get(fresh.productId);
+            Entry entry = snapshot.entry();
+            // Every movement replaces the map, so the swap fails if one landed since the snapshot
+            if (entries.get(fresh.productId) == entry && entry.version.get() == snapshot.version()) {
+                entry.warehouses.compareAndSet(snapshot.warehouses(), fresh.warehouses.get());
+            }
+        }
+    }
+
+    private void load(String column, List<?> keys, Map<Long, Entry> loaded) {
+        String sql = String.format(LOAD_SQL, column);
+        for (int from = 0; from < keys.size(); from += LOAD_CHUNK_SIZE) {
+            List<?> chunk = keys.subList(from, Math.min(from + LOAD_CHUNK_SIZE, keys.size()));
+            Map<Long, Map<Long, Stock>> stock = new HashMap<>();
+            jdbcTemplate.query(sql, Map.of("keys", chunk), rs -> {
+                long productId = rs.getLong("id");
+                String sku = rs.getString("sku");
+                Map<Long, Stock> warehouses = stock.computeIfAbsent(productId, k -> new HashMap<>());
+                loaded.computeIfAbsent(productId, k -> new Entry(productId, sku));
+                long warehouseId = rs.getLong("warehouse_id");
+                if (!rs.wasNull()) {
+                    warehouses.put(warehouseId, new Stock(rs.getLong("organization_id"), rs.getLong("on_hand")));
+                }
+            });
+            if (stockLedger != null) {
+                overrideFromLedger(stock);
+            }
+            stock.forEach((productId, warehouses) -> loaded.get(productId).warehouses.set(Map.copyOf(warehouses)));
+        }
+    }
+
+    /**
+     * Replace table totals with the ledger's, which the table trails by up
+     * to one flush. Every lot has a row from the moment it is created, so the
+     * table still lists every (product, warehouse) pair.
+     */
+    private void overrideFromLedger(Map<Long, Map<Long, Stock>> stock) {
+        List<StockLedger.ProductWarehouse> keys = new ArrayList<>();
+        stock.forEach((productId, warehouses) -> warehouses.keySet()
+                .forEach(warehouseId -> keys.add(new StockLedger.ProductWarehouse(productId, warehouseId))));
+        stockLedger.onHand(keys).forEach((key, onHand) -> stock.get(key.productId()).computeIfPresent(
+                key.warehouseId(), (warehouseId, table) -> new Stock(table.organizationId(), onHand)));
+    }
+
+    /**
+     * Second-chance eviction: a product read since the hand last passed it
+     * loses its mark and stays, an unmarked one is dropped.
+     */
+    private void evictIfFull() {
+        if (entries.size() <= maxEntries) {
+            return;
+        }
+        synchronized (evictionLock) {
+            int budget = 2 * entries.size();
+            while (entries.size() > maxEntries && budget-- > 0) {
+                if (hand == null || !hand.hasNext()) {
+                    hand = entries.values().iterator();
+                }
+                Entry entry = hand.next();
+                if (entry.referenced) {
+                    entry.referenced = false;
+                } else if (entries.remove(entry.productId, entry)) {
+                    skuIds.remove(entry.sku, entry.productId);
+                }
+            }
+        }
+    }
+
+    private StockSummaryDTO summarize(Entry entry, Long organizationId) {
+        StockSummaryDTO summary = new StockSummaryDTO();
+        summary.setProductId(entry.productId);
+        summary.setSku(entry.sku);
+        summary.setOrganizationId(organizationId);
+        long total = 0;
+        long reserved = 0;
+        for (Map.Entry<Long, Stock> warehouse : new TreeMap<>(entry.warehouses.get()).entrySet()) {
+            Stock stock = warehouse.getValue();
+            if (organizationId != null && !organizationId.equals(stock.organizationId())) {
+                continue;
+            }
+            long held = reservationService.getReserved(entry.productId, warehouse.getKey());
+            summary.getWarehouses().add(new StockSummaryDTO.WarehouseStock(warehouse.getKey(), stock.onHand(),
+                    held, Math.max(0, stock.onHand() - held)));
+            total += stock.onHand();
+            reserved += held;
+        }
+        summary.setTotal(total);
+        summary.setReserved(reserved);
+        summary.setAvailable(Math.max(0, total - reserved));
+        return summary;
+    }
+
+    private record Stock(Long organizationId, long onHand) {
+    }
+
+    private record Snapshot(Entry entry, long version, Map<Long, Stock> warehouses) {
+    }
+
+    private static final class Entry {
+        final Long productId;
+        final String sku;
+        final AtomicReference<Map<Long, Stock>> warehouses = new AtomicReference<>(Map.of());
+        final AtomicLong version = new AtomicLong();
+        volatile boolean referenced = true;
+
+        Entry(Long productId, String sku) {
+            this.productId = productId;
+            this.sku = sku;
+        }
+
+        void add(Long warehouseId, Long organizationId, int delta) {
+            version.incrementAndGet(); // Before the update, so reconcile() cannot overwrite it unseen
+            warehouses.updateAndGet(current -> {
+                Map<Long, Stock> next = new HashMap<>(current);
+                Stock stock = next.get(warehouseId);
+                next.put(warehouseId, new Stock(organizationId, (stock != null ? stock.onHand() : 0) + delta));
+                return Map.copyOf(next);
+            });
+        }
+    }
+}
@@ -0,0 +1,784 @@
+package com.warehouse.service;
+
+import com.warehouse.dto.InventoryDTO;
+import com.warehouse.dto.StockAllocationRequest;
+import com.warehouse.dto.StockAllocationResponse;
+import com.warehouse.dto.StockOperationRequest;
+import com.warehouse.dto.StockTransferRequest;
+import com.warehouse.dto.StockTransferResponse;
+import com.warehouse.entity.*;
+import com.warehouse.event.StockMovementEvent;
+import com.warehouse.exception.InsufficientStockException;
+import com.warehouse.exception.ResourceNotFoundException;
+import com.warehouse.repository.InventoryRepository;
+import com.warehouse.repository.LedgerCheckpointRepository;
+import com.warehouse.repository.ProductRepository;
+import com.warehouse.repository.WarehouseRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * In-memory stock ledger used when {@code inventory.ledger.enabled} is set.
+ * <p>
+ * Current quantities for every (product, warehouse, zone, batch) lot are held
+ * in memory, sharded by warehouse id. Each shard has exactly one writer thread,
+ * so availability checks and updates never race and stock can never be
+ * oversold. Every change is appended to the shard's journal before it is
+ * acknowledged, and coalesced per inventory row into batched delta updates
+ * against the {@code inventory} table in the background. On startup, journal
+ * records newer than the shard's checkpoint are replayed into the table before
+ * the ledger is loaded from it. Capacity is checked on the shard thread too:
+ * every change moves the zone and warehouse counters before it is applied, so
+ * a stock-in past capacity fails like any other refused change. The shard
+ * thread never waits on the database or on listeners: a new lot's row is
+ * inserted by the caller before the shard takes the lot over, and movement
+ * events are handed to a dispatcher thread per shard, which publishes them in
+ * shard order while the caller waits for its own. Because the table trails the ledger, services that load quantities from it read
+ * {@link #lotQuantities} or {@link #onHand} instead while the ledger is
+ * enabled.
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(name = "inventory.ledger.enabled", havingValue = "true")
+public class StockLedger {
+
+    private static final String APPLY_DELTA_SQL =
+            "UPDATE inventory SET quantity = quantity + ?, last_updated = ? WHERE id = ?";
+
+    private static final String LOAD_SQL =
+            "SELECT i.id, i.product_id, i.warehouse_id, i.zone_id, i.batch_number, i.quantity, i.expiry_date, "
+                    + "i.min_stock_level, i.max_stock_level, i.last_updated, "
+                    + "p.name AS product_name, p.sku, w.name AS warehouse_name, w.organization_id, "
+                    + "z.name AS zone_name "
+                    + "FROM inventory i "
+                    + "JOIN products p ON p.id = i.product_id "
+                    + "JOIN warehouses w ON w.id = i.warehouse_id "
+                    + "LEFT JOIN storage_zones z ON z.id = i.zone_id";
+
+    @Autowired
+    private InventoryRepository inventoryRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private WarehouseRepository warehouseRepository;
+
+    @Autowired
+    private LedgerCheckpointRepository checkpointRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private ZoneUtilizationTracker zoneUtilizationTracker;
+
+    @Autowired
+    private WarehouseOccupancyTracker warehouseOccupancyTracker;
+
+    @Value("${inventory.ledger.shards:8}")
+    private int shardCount;
+
+    @Value("${inventory.ledger.flush-interval-ms:200}")
+    private long flushIntervalMs;
+
+    @Value("${inventory.ledger.flush-batch-size:500}")
+    private int flushBatchSize;
+
+    @Value("${inventory.ledger.journal-dir:./data/ledger}")
+    private String journalDir;
+
+    @Value("${inventory.ledger.journal-fsync:false}")
+    private boolean journalFsync;
+
+    @Value("${inventory.ledger.operation-timeout-ms:5000}")
+    private long operationTimeoutMs;
+
+    private static final int QUEUED = 0;
+    private static final int STARTED = 1;
+    private static final int ABANDONED = 2;
+
+    private final Map<Long, String[]> productNames = new ConcurrentHashMap<>();
+    private final Map<Long, String> warehouseNames = new ConcurrentHashMap<>();
+    private final Map<Long, Long> warehouseOrganizations = new ConcurrentHashMap<>();
+    private final Map<Long, String> zoneNames = new ConcurrentHashMap<>();
+
+    private TransactionTemplate transactionTemplate;
+    private TransactionTemplate lotTemplate;
+    private ScheduledExecutorService flusher;
+    private Shard[] shards;
+
+    @PostConstruct
+    public void start() throws IOException {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        // A new lot's row must be committed before its first delta is journaled, whatever the caller's transaction
+        lotTemplate = new TransactionTemplate(transactionManager);
+        lotTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        Path directory = Paths.get(journalDir);
+        Files.createDirectories(directory);
+
+        Set<Integer> shardIndexes = new TreeSet<>(StockLedgerJournal.shardsWithSegments(directory));
+        for (int i = 0; i < shardCount; i++) {
+            shardIndexes.add(i);
+        }
+        Map<Integer, Long> sequences = new HashMap<>();
+        for (Integer index : shardIndexes) {
+            sequences.put(index, recover(directory, index));
+        }
+
+        shards = new Shard[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new Shard(i, new StockLedgerJournal(directory, i, journalFsync), sequences.get(i));
+        }
+        load();
+        // The trackers read the table before the journals were replayed into it
+        zoneUtilizationTracker.rebuild();
+        warehouseOccupancyTracker.rebuild();
+
+        flusher = Executors.newSingleThreadScheduledExecutor(r -> daemon(r, "stock-ledger-flusher"));
+        flusher.scheduleWithFixedDelay(this::flushAll, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(operationTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        flushAll();
+        for (Shard shard : shards) {
+            shard.writer.shutdown();
+            shard.dispatcher.shutdown();
+            try {
+                shard.journal.close();
+            } catch (IOException ex) {
+                log.warn("Failed to close journal of ledger shard {}", shard.index, ex);
+            }
+        }
+    }
+
+    public InventoryDTO stockIn(StockOperationRequest request, Long userId) {
+        return adjust(request, request.getQuantity(), TransactionType.STOCK_IN, userId);
+    }
+
+    public InventoryDTO stockOut(StockOperationRequest request, Long userId) {
+        return adjust(request, -request.getQuantity(), TransactionType.STOCK_OUT, userId);
+    }
+
+    /**
+     * Transfers can span two shards, so each one is applied as a source
+     * decrement followed by a destination increment, and every step already
+     * applied is compensated in reverse order if a later one fails.
+     */
+    public List<StockTransferResponse> transfer(List<StockTransferRequest> items, Long userId) {
+        Deque<Runnable> undo = new ArrayDeque<>();
+        List<StockTransferResponse> responses = new ArrayList<>();
+        try {
+            for (StockTransferRequest item : items) {
+                StockOperationRequest source = new StockOperationRequest(item.getProductId(),
+                        item.getFromWarehouseId(), item.getFromZoneId(), item.getQuantity(), item.getBatchNumber(),
+                        null, item.getNotes());
+                InventoryDTO from = adjust(source, -item.getQuantity(), TransactionType.TRANSFER, userId);
+                undo.push(() -> adjust(source, item.getQuantity(), TransactionType.TRANSFER, userId));
+
+                StockOperationRequest destination = new StockOperationRequest(item.getProductId(),
+                        item.getToWarehouseId(), item.getToZoneId(), item.getQuantity(), item.getBatchNumber(),
+                        from.getExpiryDate(), item.getNotes());
+                InventoryDTO to = adjust(destination, item.getQuantity(), TransactionType.TRANSFER, userId);
+                undo.push(() -> adjust(destination, -item.getQuantity(), TransactionType.TRANSFER, userId));
+
+                responses.add(new StockTransferResponse(from, to));
+            }
+        } catch (RuntimeException ex) {
+            while (!undo.isEmpty()) {
+                undo.pop().run();
+            }
+            throw ex;
+        }
+        return responses;
+    }
+
+    /**
+     * Apply a signed quantity change to one lot on its shard. A positive
+     * change to a lot the ledger does not know yet creates the lot: its row
+     * is inserted on the calling thread and the change is then tried again
+     * with the new lot.
+     */
+    private InventoryDTO adjust(StockOperationRequest request, int delta, TransactionType type, Long userId) {
+        Shard shard = shardFor(request.getWarehouseId());
+        LedgerKey key = LedgerKey.of(request);
+        InventoryDTO dto = shard.call(() -> apply(shard, key, null, delta, type, userId, request.getNotes()));
+        if (dto != null) {
+            return dto;
+        }
+        LedgerEntry created = createLot(request, key);
+        return shard.call(() -> apply(shard, key, created, delta, type, userId, request.getNotes()));
+    }
+
+    /**
+     * Runs on the shard thread. Returns null when the lot is new and no
+     * {@code created} entry was given for it.
+     */
+    private InventoryDTO apply(Shard shard, LedgerKey key, LedgerEntry created, int delta, TransactionType type,
+            Long userId, String notes) {
+        LedgerEntry entry = shard.entries.get(key);
+        if (entry == null) {
+            if (delta < 0) {
+                throw new ResourceNotFoundException("Inventory not found");
+            }
+            if (created == null) {
+                return null;
+            }
+            entry = created;
+            shard.add(entry);
+        }
+        if (entry.quantity + delta < 0) {
+            throw new InsufficientStockException(entry.quantity);
+        }
+        reserveCapacity(key, delta);
+        try {
+            shard.apply(entry, delta, Math.addExact(entry.quantity, delta));
+        } catch (RuntimeException ex) {
+            releaseCapacity(key, delta);
+            throw ex;
+        }
+        publishMovement(shard, entry, type, delta, userId, notes);
+        return toDTO(entry);
+    }
+
+    /**
+     * Take the requested quantity from the candidate lots in the given order.
+     * Both checks and updates run on the warehouse's shard thread, so the
+     * chosen lots are decremented together or not at all.
+     */
+    public StockAllocationResponse allocate(StockAllocationRequest request, StockAllocationRequest.Policy policy,
+            List<LotAllocator.Lot> candidates, Long userId) {
+        Shard shard = shardFor(request.getWarehouseId());
+        return shard.call(() -> {
+            List<LedgerEntry> picked = new ArrayList<>();
+            List<StockAllocationResponse.LotAllocation> allocations = new ArrayList<>();
+            int remaining = request.getQuantity();
+            int available = 0;
+            for (LotAllocator.Lot lot : candidates) {
+                LedgerEntry entry = shard.entries.get(new LedgerKey(request.getProductId(), request.getWarehouseId(),
+                        lot.getZoneId(), lot.getBatchNumber()));
+                if (entry == null || entry.quantity <= 0) {
+                    continue;
+                }
+                available += entry.quantity;
+                if (remaining == 0) {
+                    continue;
+                }
+                int taken = Math.min(remaining, entry.quantity);
+                remaining -= taken;
+                picked.add(entry);
+                allocations.add(new StockAllocationResponse.LotAllocation(entry.inventoryId, entry.key.zoneId(),
+                        entry.key.batchNumber(), entry.expiryDate, taken, entry.quantity - taken));
+            }
+            if (remaining > 0) {
+                throw new InsufficientStockException(available);
+            }
+
+            for (int i = 0; i < picked.size(); i++) {
+                LedgerEntry entry = picked.get(i);
+                StockAllocationResponse.LotAllocation allocation = allocations.get(i);
+                shard.apply(entry, -allocation.getQuantity(), allocation.getRemainingQuantity());
+                reserveCapacity(entry.key, -allocation.getQuantity());
+                publishMovement(shard, entry, TransactionType.STOCK_OUT, -allocation.getQuantity(), userId,
+                        request.getNotes());
+            }
+            return new StockAllocationResponse(request.getProductId(), request.getWarehouseId(), policy,
+                    request.getQuantity(), allocations);
+        });
+    }
+
+    /**
+     * Current quantity of each lot of a product in a warehouse, by inventory
+     * id. The table lags the ledger by up to one flush, so services that load
+     * quantities read them here while the ledger is enabled.
+     */
+    public Map<Long, Integer> lotQuantities(Long productId, Long warehouseId) {
+        Shard shard = shardFor(warehouseId);
+        return shard.call(() -> {
+            Map<Long, Integer> quantities = new HashMap<>();
+            for (LedgerEntry entry : shard.lots.getOrDefault(new ProductWarehouse(productId, warehouseId), List.of())) {
+                quantities.put(entry.inventoryId, entry.quantity);
+            }
+            return quantities;
+        });
+    }
+
+    /**
+     * Current on-hand total of each (product, warehouse), one call per shard.
+     */
+    public Map<ProductWarehouse, Long> onHand(Collection<ProductWarehouse> keys) {
+        Map<Shard, List<ProductWarehouse>> byShard = new HashMap<>();
+        for (ProductWarehouse key : keys) {
+            byShard.computeIfAbsent(shardFor(key.warehouseId()), k -> new ArrayList<>()).add(key);
+        }
+        Map<ProductWarehouse, Long> totals = new HashMap<>();
+        byShard.forEach((shard, shardKeys) -> totals.putAll(shard.call(() -> {
+            Map<ProductWarehouse, Long> shardTotals = new HashMap<>();
+            for (ProductWarehouse key : shardKeys) {
+                long total = 0;
+                for (LedgerEntry entry : shard.lots.getOrDefault(key, List.of())) {
+                    total += entry.quantity;
+                }
+                shardTotals.put(key, total);
+            }
+            return shardTotals;
+        })));
+        return totals;
+    }
+
+    public long onHand(Long productId, Long warehouseId) {
+        ProductWarehouse key = new ProductWarehouse(productId, warehouseId);
+        return onHand(List.of(key)).get(key);
+    }
+
+    /**
+     * Replay journal records newer than the shard checkpoint into the
+     * inventory table. Returns the last sequence number used by the shard.
+     */
+    private long recover(Path directory, int index) throws IOException {
+        LedgerCheckpoint checkpoint = checkpointRepository.findById(index)
+                .orElseGet(() -> checkpointRepository.save(new LedgerCheckpoint(index, 0L)));
+
+        long lastSequence = checkpoint.getLastSequence();
+        Map<Long, Integer> deltas = new HashMap<>();
+        for (long[] record : StockLedgerJournal.readAll(directory, index)) {
+            if (record[0] > checkpoint.getLastSequence()) {
+                deltas.merge(record[1], (int) record[2], Integer::sum);
+                lastSequence = Math.max(lastSequence, record[0]);
+            }
+        }
+
+        if (!deltas.isEmpty()) {
+            persist(index, deltas, lastSequence);
+            log.info("Recovered {} unflushed inventory rows from ledger shard {}", deltas.size(), index);
+        }
+        StockLedgerJournal.deleteAll(directory, index);
+        return lastSequence;
+    }
+
+    private void load() {
+        jdbcTemplate.query(LOAD_SQL, rs -> {
+            Long productId = rs.getLong("product_id");
+            Long warehouseId = rs.getLong("warehouse_id");
+            Long zoneId = rs.getObject("zone_id", Long.class);
+
+            productNames.putIfAbsent(productId, new String[] { rs.getString("product_name"), rs.getString("sku") });
+            warehouseNames.putIfAbsent(warehouseId, rs.getString("warehouse_name"));
+            warehouseOrganizations.putIfAbsent(warehouseId, rs.getLong("organization_id"));
+            if (zoneId != null) {
+                zoneNames.putIfAbsent(zoneId, rs.getString("zone_name"));
+            }
+
+            LedgerEntry entry = new LedgerEntry();
+            entry.inventoryId = rs.getLong("id");
+            entry.key = new LedgerKey(productId, warehouseId, zoneId, rs.getString("batch_number"));
+            entry.quantity = rs.getInt("quantity");
+            Date expiryDate = rs.getDate("expiry_date");
+            entry.expiryDate = expiryDate != null ? expiryDate.toLocalDate() : null;
+            entry.minStockLevel = rs.getInt("min_stock_level");
+            entry.maxStockLevel = rs.getInt("max_stock_level");
+            entry.lastUpdated = rs.getTimestamp("last_updated").toLocalDateTime();
+
+            // Shards are not serving yet, so their maps can be filled directly
+            shardFor(warehouseId).add(entry);
+        });
+    }
+
+    /**
+     * Insert a new lot with no stock, in a transaction of its own on the
+     * calling thread, so every ledger entry has a row id before its first
+     * change is journaled. The product is locked and the lot looked up again
+     * first, as for a first receipt in {@link InventoryService#stockIn}, so
+     * concurrent first receipts insert the lot once and share its row.
+     */
+    private LedgerEntry createLot(StockOperationRequest request, LedgerKey key) {
+        Inventory inventory = lotTemplate.execute(status -> {
+            Product product = productRepository.findByIdForUpdate(request.getProductId())
+                    .orElseThrow(() -> new ResourceNotFoundException("Product", "id", request.getProductId()));
+            Optional<Inventory> existing = inventoryRepository.findLot(request.getProductId(),
+                    request.getWarehouseId(), request.getZoneId(), request.getBatchNumber());
+            if (existing.isPresent()) {
+                return existing.get();
+            }
+
+            Warehouse warehouse = warehouseRepository.findById(request.getWarehouseId())
+                    .orElseThrow(() -> new ResourceNotFoundException("Warehouse", "id", request.getWarehouseId()));
+
+            Inventory created = new Inventory();
+            created.setProduct(product);
+            created.setWarehouse(warehouse);
+            if (request.getZoneId() != null) {
+                StorageZone zone = warehouse.getZones().stream()
+                        .filter(z -> z.getId().equals(request.getZoneId()))
+                        .findFirst()
+                        .orElseThrow(() -> new ResourceNotFoundException("StorageZone", "id", request.getZoneId()));
+                created.setZone(zone);
+                zoneNames.putIfAbsent(zone.getId(), zone.getName());
+            }
+            created.setQuantity(0);
+            created.setBatchNumber(request.getBatchNumber());
+            created.setExpiryDate(request.getExpiryDate());
+
+            productNames.putIfAbsent(product.getId(), new String[] { product.getName(), product.getSku() });
+            warehouseNames.putIfAbsent(warehouse.getId(), warehouse.getName());
+            warehouseOrganizations.putIfAbsent(warehouse.getId(), warehouse.getOrganization().getId());
+            return inventoryRepository.save(created);
+        });
+
+        LedgerEntry entry = new LedgerEntry();
+        entry.inventoryId = inventory.getId();
+        entry.key = key;
+        entry.quantity = inventory.getQuantity();
+        entry.expiryDate = inventory.getExpiryDate();
+        entry.minStockLevel = inventory.getMinStockLevel();
+        entry.maxStockLevel = inventory.getMaxStockLevel();
+        entry.lastUpdated = inventory.getLastUpdated();
+        return entry;
+    }
+
+    /**
+     * Move the warehouse and zone counters by a change about to be applied,
+     * refusing an increase past either capacity. Decreases always succeed.
+     */
+    private void reserveCapacity(LedgerKey key, int delta) {
+        warehouseOccupancyTracker.reserve(key.warehouseId(), delta);
+        if (key.zoneId() == null) {
+            return;
+        }
+        try {
+            zoneUtilizationTracker.reserve(key.zoneId(), delta);
+        } catch (RuntimeException ex) {
+            warehouseOccupancyTracker.release(key.warehouseId(), delta);
+            throw ex;
+        }
+    }
+
+    private void releaseCapacity(LedgerKey key, int delta) {
+        warehouseOccupancyTracker.release(key.warehouseId(), delta);
+        if (key.zoneId() != null) {
+            zoneUtilizationTracker.release(key.zoneId(), delta);
+        }
+    }
+
+    private void flushAll() {
+        for (Shard shard : shards) {
+            flush(shard);
+        }
+    }
+
+    private void flush(Shard shard) {
+        if (!shard.flushing.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            Drain drain = shard.call(shard::drain);
+            if (drain.deltas.isEmpty()) {
+                return;
+            }
+            try {
+                persist(shard.index, drain.deltas, drain.lastSequence);
+            } catch (RuntimeException ex) {
+                log.error("Failed to flush ledger shard {}, will retry", shard.index, ex);
+                shard.writer.execute(() -> shard.restore(drain.deltas));
+                return;
+            }
+            shard.writer.execute(() -> shard.discardThrough(drain.lastSequence));
+        } catch (RuntimeException ex) {
+            log.error("Failed to drain ledger shard {}", shard.index, ex);
+        } finally {
+            shard.flushing.set(false);
+        }
+    }
+
+    private void persist(int shard, Map<Long, Integer> deltas, long lastSequence) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<Map.Entry<Long, Integer>> rows = new ArrayList<>(deltas.entrySet());
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.batchUpdate(APPLY_DELTA_SQL, rows, flushBatchSize, (ps, row) -> {
+                ps.setInt(1, row.getValue());
+                ps.setTimestamp(2, now);
+                ps.setLong(3, row.getKey());
+            });
+            checkpointRepository.advance(shard, lastSequence);
+        });
+    }
+
+    private Shard shardFor(Long warehouseId) {
+        return shards[Math.floorMod(warehouseId.hashCode(), shards.length)];
+    }
+
+    /**
+     * Queue a movement on the shard thread. It is published by the shard's
+     * dispatcher, outside any transaction, so after-commit listeners are
+     * invoked immediately but can no longer hold up the shard.
+     */
+    private void publishMovement(Shard shard, LedgerEntry entry, TransactionType type, int quantity, Long userId,
+            String notes) {
+        StockMovementEvent event = new StockMovementEvent();
+        event.setInventoryId(entry.inventoryId);
+        event.setProductId(entry.key.productId());
+        event.setWarehouseId(entry.key.warehouseId());
+        event.setOrganizationId(warehouseOrganizations.get(entry.key.warehouseId()));
+        event.setZoneId(entry.key.zoneId());
+        event.setBatchNumber(entry.key.batchNumber());
+        event.setExpiryDate(entry.expiryDate);
+        event.setTransactionType(type);
+        event.setQuantity(quantity);
+        event.setResultingQuantity(entry.quantity);
+        event.setMinStockLevel(entry.minStockLevel);
+        event.setPerformedBy(userId);
+        event.setNotes(notes);
+        event.setTimestamp(entry.lastUpdated);
+        shard.unpublished.add(event);
+    }
+
+    private InventoryDTO toDTO(LedgerEntry entry) {
+        String[] product = productNames.get(entry.key.productId());
+
+        InventoryDTO dto = new InventoryDTO();
+        dto.setId(entry.inventoryId);
+        dto.setProductId(entry.key.productId());
+        dto.setProductName(product[0]);
+        dto.setProductSku(product[1]);
+        dto.setWarehouseId(entry.key.warehouseId());
+        dto.setWarehouseName(warehouseNames.get(entry.key.warehouseId()));
+
+        if (entry.key.zoneId() != null) {
+            dto.setZoneId(entry.key.zoneId());
+            dto.setZoneName(zoneNames.get(entry.key.zoneId()));
+        }
+
+        dto.setQuantity(entry.quantity);
+        dto.setBatchNumber(entry.key.batchNumber());
+        dto.setExpiryDate(entry.expiryDate);
+        dto.setMinStockLevel(entry.minStockLevel);
+        dto.setMaxStockLevel(entry.maxStockLevel);
+        dto.setLastUpdated(entry.lastUpdated);
+        dto.setIsLowStock(entry.quantity <= entry.minStockLevel);
+        dto.setIsExpiringSoon(entry.expiryDate != null && entry.expiryDate.isBefore(LocalDate.now().plusDays(30)));
+        return dto;
+    }
+
+    private static RuntimeException unwrap(ExecutionException ex) {
+        return ex.getCause() instanceof RuntimeException cause ? cause : new IllegalStateException(ex.getCause());
+    }
+
+    private static Thread daemon(Runnable runnable, String name) {
+        Thread thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    public record ProductWarehouse(Long productId, Long warehouseId) {
+    }
+
+    private record LedgerKey(Long productId, Long warehouseId, Long zoneId, String batchNumber) {
+
+        static LedgerKey of(StockOperationRequest request) {
+            return new LedgerKey(request.getProductId(), request.getWarehouseId(),
+                    request.getZoneId(), request.getBatchNumber());
+        }
+    }
+
+    private static final class LedgerEntry {
+        long inventoryId;
+        LedgerKey key;
+        int quantity;
+        LocalDate expiryDate;
+        int minStockLevel;
+        int maxStockLevel;
+        LocalDateTime lastUpdated;
+    }
+
+    private record Drain(Map<Long, Integer> deltas, long lastSequence) {
+    }
+
+    private record Outcome<T>(T result, Future<?> published) {
+    }
+
+    /**
+     * One partition of the ledger. All fields except {@code flushing} are only
+     * touched from the shard's writer thread.
+     */
+    private final class Shard {
+
+        final int index;
+        final ExecutorService writer;
+        final ExecutorService dispatcher;
+        final StockLedgerJournal journal;
+        final Map<LedgerKey, LedgerEntry> entries = new HashMap<>();
+        final Map<ProductWarehouse, List<LedgerEntry>> lots = new HashMap<>();
+        final AtomicBoolean flushing = new AtomicBoolean();
+        List<StockMovementEvent> unpublished = new ArrayList<>();
+        Map<Long, Integer> pending = new HashMap<>();
+        long sequence;
+
+        Shard(int index, StockLedgerJournal journal, long sequence) {
+            this.index = index;
+            this.journal = journal;
+            this.sequence = sequence;
+            this.writer = Executors.newSingleThreadExecutor(r -> daemon(r, "stock-ledger-shard-" + index));
+            this.dispatcher = Executors.newSingleThreadExecutor(r -> daemon(r, "stock-ledger-events-" + index));
+        }
+
+        /**
+         * Run a task on the shard thread. A task still queued when the
+         * timeout passes is abandoned and never runs, so a caller told that
+         * its operation failed can retry it safely; one that already started
+         * is waited for, since its effects cannot be withdrawn. Either way the
+         * caller returns only once the movements of its task are published.
+         */
+        <T> T call(Callable<T> task) {
+            AtomicInteger state = new AtomicInteger(QUEUED);
+            Future<Outcome<T>> future = writer.submit(() -> state.compareAndSet(QUEUED, STARTED) ? run(task) : null);
+            try {
+                return published(future.get(operationTimeoutMs, TimeUnit.MILLISECONDS));
+            } catch (ExecutionException ex) {
+                throw unwrap(ex);
+            } catch (TimeoutException ex) {
+                if (state.compareAndSet(QUEUED, ABANDONED)) {
+                    future.cancel(false);
+                    throw new IllegalStateException("Stock ledger shard " + index + " did not respond in time");
+                }
+                return published(awaitStarted(future));
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                if (state.compareAndSet(QUEUED, ABANDONED)) {
+                    future.cancel(false);
+                    throw new IllegalStateException("Interrupted while waiting for stock ledger shard " + index);
+                }
+                return published(awaitStarted(future));
+            }
+        }
+
+        private <T> Outcome<T> run(Callable<T> task) throws Exception {
+            try {
+                T result = task.call();
+                return new Outcome<>(result, dispatch());
+            } catch (Exception ex) {
+                // Movements applied before the failure are published all the same
+                dispatch();
+                throw ex;
+            }
+        }
+
+        /**
+         * Hand the movements queued by the current task, in order, to the
+         * dispatcher.
+         */
+        private Future<?> dispatch() {
+            if (unpublished.isEmpty()) {
+                return null;
+            }
+            List<StockMovementEvent> events = unpublished;
+            unpublished = new ArrayList<>();
+            return dispatcher.submit(() -> events.forEach(eventPublisher::publishEvent));
+        }
+
+        private <T> T published(Outcome<T> outcome) {
+            if (outcome == null) {
+                return null;
+            }
+            if (outcome.published() != null) {
+                awaitStarted(outcome.published());
+            }
+            return outcome.result();
+        }
+
+        private <T> T awaitStarted(Future<T> future) {
+            boolean interrupted = Thread.interrupted();
+            try {
+                while (true) {
+                    try {
+                        return future.get();
+                    } catch (InterruptedException ex) {
+                        interrupted = true;
+                    } catch (ExecutionException ex) {
+                        throw unwrap(ex);
+                    }
+                }
+            } finally {
+                if (interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+
+        void apply(LedgerEntry entry, int delta, int quantity) {
+            try {
+                journal.append(++sequence, entry.inventoryId, delta);
+            } catch (IOException ex) {
+                throw new UncheckedIOException("Failed to journal stock operation", ex);
+            }
+            entry.quantity = quantity;
+            entry.lastUpdated = LocalDateTime.now();
+            pending.merge(entry.inventoryId, delta, Integer::sum);
+
+            if (pending.size() >= flushBatchSize && !flushing.get() && !flusher.isShutdown()) {
+                flusher.execute(() -> flush(this));
+            }
+        }
+
+        void add(LedgerEntry entry) {
+            entries.put(entry.key, entry);
+            lots.computeIfAbsent(new ProductWarehouse(entry.key.productId(), entry.key.warehouseId()),
+                    k -> new ArrayList<>()).add(entry);
+        }
+
+        Drain drain() throws IOException {
+            Map<Long, Integer> deltas = pending;
+            pending = new HashMap<>();
+            journal.seal();
+            return new Drain(deltas, sequence);
+        }
+
+        void restore(Map<Long, Integer> deltas) {
+            deltas.forEach((id, delta) -> pending.merge(id, delta, Integer::sum));
+        }
+
+        void discardThrough(long lastSequence) {
+            try {
+                journal.discardThrough(lastSequence);
+            } catch (IOException ex) {
+                log.warn("Failed to discard journal segments of ledger shard {}", index, ex);
+            }
+        }
+    }
+}
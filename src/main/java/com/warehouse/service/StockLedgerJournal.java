@@ -0,0 +1,149 @@
+package com.warehouse.service;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Append-only journal of stock ledger operations for a single shard.
+ * Records are fixed-size (sequence, inventory id, quantity delta), so a torn
+ * write at the tail of a segment is simply ignored on replay. Not thread-safe:
+ * each instance is owned by its shard's writer thread.
+ */
+public class StockLedgerJournal implements Closeable {
+
+    private static final int RECORD_SIZE = Long.BYTES + Long.BYTES + Integer.BYTES;
+    private static final String SUFFIX = ".journal";
+
+    private final Path directory;
+    private final int shard;
+    private final boolean fsync;
+    private final ByteBuffer buffer = ByteBuffer.allocate(RECORD_SIZE);
+    private final Map<Path, Long> sealedSegments = new TreeMap<>();
+
+    private FileChannel channel;
+    private Path activeSegment;
+    private long activeLastSequence;
+
+    public StockLedgerJournal(Path directory, int shard, boolean fsync) {
+        this.directory = directory;
+        this.shard = shard;
+        this.fsync = fsync;
+    }
+
+    public void append(long sequence, long inventoryId, int delta) throws IOException {
+        if (channel == null) {
+            activeSegment = directory.resolve(segmentPrefix(shard) + sequence + SUFFIX);
+            channel = FileChannel.open(activeSegment,
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        }
+
+        buffer.clear();
+        buffer.putLong(sequence).putLong(inventoryId).putInt(delta).flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        if (fsync) {
+            channel.force(false);
+        }
+        activeLastSequence = sequence;
+    }
+
+    /**
+     * Close the active segment so that everything written so far can be
+     * discarded once it has been persisted. The next append opens a new segment.
+     */
+    public void seal() throws IOException {
+        if (channel == null) {
+            return;
+        }
+        channel.close();
+        sealedSegments.put(activeSegment, activeLastSequence);
+        channel = null;
+        activeSegment = null;
+    }
+
+    /**
+     * Delete sealed segments whose records are all covered by the given
+     * persisted sequence.
+     */
+    public void discardThrough(long sequence) throws IOException {
+        Iterator<Map.Entry<Path, Long>> it = sealedSegments.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Path, Long> segment = it.next();
+            if (segment.getValue() <= sequence) {
+                Files.deleteIfExists(segment.getKey());
+                it.remove();
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+    }
+
+    /**
+     * Read every complete record left behind for a shard, in sequence order.
+     */
+    public static List<long[]> readAll(Path directory, int shard) throws IOException {
+        List<long[]> records = new ArrayList<>();
+        for (Path segment : segments(directory, shard)) {
+            ByteBuffer data = ByteBuffer.wrap(Files.readAllBytes(segment));
+            while (data.remaining() >= RECORD_SIZE) {
+                records.add(new long[] { data.getLong(), data.getLong(), data.getInt() });
+            }
+        }
+        records.sort((a, b) -> Long.compare(a[0], b[0]));
+        return records;
+    }
+
+    public static void deleteAll(Path directory, int shard) throws IOException {
+        for (Path segment : segments(directory, shard)) {
+            Files.deleteIfExists(segment);
+        }
+    }
+
+    /**
+     * Shard indexes that have journal segments in the directory, including
+     * shards beyond the currently configured shard count.
+     */
+    public static List<Integer> shardsWithSegments(Path directory) throws IOException {
+        List<Integer> shards = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "shard-*" + SUFFIX)) {
+            for (Path segment : stream) {
+                String name = segment.getFileName().toString();
+                int shard = Integer.parseInt(name.substring("shard-".length(), name.indexOf('-', "shard-".length())));
+                if (!shards.contains(shard)) {
+                    shards.add(shard);
+                }
+            }
+        }
+        return shards;
+    }
+
+    private static List<Path> segments(Path directory, int shard) throws IOException {
+        List<Path> segments = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, segmentPrefix(shard) + "*" + SUFFIX)) {
+            stream.forEach(segments::add);
+        }
+        return segments;
+    }
+
+    private static String segmentPrefix(int shard) {
+        return "shard-" + shard + "-";
+    }
+}
@@ -0,0 +1,352 @@
+package com.warehouse.service;
+
+import com.warehouse.dto.StockHistoryDTO;
+import com.warehouse.entity.RollupResolution;
+import com.warehouse.entity.StockRollup;
+import com.warehouse.event.StockMovementEvent;
+import com.warehouse.repository.StockRollupRepository;
+import com.warehouse.service.StockLedger.ProductWarehouse;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Maintains hourly and daily stock level rollups from stock movements.
+ * <p>
+ * Committed movements are added to in-memory buckets and written behind
+ * every {@code flush-interval-ms}, one transaction per flush. A bucket's
+ * closing balance is the previous bucket's closing balance plus its net
+ * change, so a movement that arrives after later buckets were written (a
+ * late or corrected movement) updates its own bucket and shifts the closing
+ * balance of every later bucket of the series by the same amount. A series
+ * (product, warehouse, resolution) that has no buckets yet is seeded from the
+ * on-hand quantity in the table when it is first written, less the movements
+ * still waiting to be written. History queries read the rollups only, never
+ * the movements.
+ * <p>
+ * Buckets waiting to be written are held in memory only, so a crash loses up
+ * to one flush interval of movements. Every {@code reconcile-interval-ms} the
+ * latest closing balance of each series is compared with on-hand stock; a
+ * series that is off by the same amount on two runs in a row, with no
+ * movement in between, has all its closing balances shifted by that amount.
+ * This also corrects a seed that raced with a movement. The stock in and out
+ * totals of lost movements are not recovered.
+ */
+@Slf4j
+@Service
+public class StockRollupService {
+
+    private static final String UPDATE_BUCKET_SQL =
+            "UPDATE stock_rollups SET stock_in = stock_in + ?, stock_out = stock_out + ?, "
+                    + "net_change = net_change + ?, closing_balance = closing_balance + ? "
+                    + "WHERE product_id = ? AND warehouse_id = ? AND resolution = ? AND bucket_start = ?";
+
+    private static final String INSERT_BUCKET_SQL =
+            "INSERT INTO stock_rollups (product_id, warehouse_id, resolution, bucket_start, stock_in, stock_out, "
+                    + "net_change, closing_balance) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String SHIFT_LATER_SQL =
+            "UPDATE stock_rollups SET closing_balance = closing_balance + ? "
+                    + "WHERE product_id = ? AND warehouse_id = ? AND resolution = ? AND bucket_start > ?";
+
+    private static final String CLOSING_BEFORE_SQL =
+            "SELECT closing_balance FROM stock_rollups "
+                    + "WHERE product_id = ? AND warehouse_id = ? AND resolution = ? AND bucket_start < ? "
+                    + "ORDER BY bucket_start DESC LIMIT 1";
+
+    private static final String OPENING_AFTER_SQL =
+            "SELECT closing_balance - net_change FROM stock_rollups "
+                    + "WHERE product_id = ? AND warehouse_id = ? AND resolution = ? AND bucket_start > ? "
+                    + "ORDER BY bucket_start ASC LIMIT 1";
+
+    private static final String ON_HAND_SQL =
+            "SELECT COALESCE(SUM(quantity), 0) FROM inventory WHERE product_id = ? AND warehouse_id = ?";
+
+    private static final String ALL_ON_HAND_SQL =
+            "SELECT product_id, warehouse_id, SUM(quantity) FROM inventory GROUP BY product_id, warehouse_id";
+
+    private static final String LATEST_CLOSING_SQL =
+            "SELECT r.product_id, r.warehouse_id, r.resolution, r.closing_balance FROM stock_rollups r "
+                    + "WHERE r.bucket_start = (SELECT MAX(l.bucket_start) FROM stock_rollups l "
+                    + "WHERE l.product_id = r.product_id AND l.warehouse_id = r.warehouse_id "
+                    + "AND l.resolution = r.resolution)";
+
+    private static final String SHIFT_SERIES_SQL =
+            "UPDATE stock_rollups SET closing_balance = closing_balance + ? "
+                    + "WHERE product_id = ? AND warehouse_id = ? AND resolution = ?";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private StockRollupRepository stockRollupRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired(required = false)
+    private StockLedger stockLedger;
+
+    @Value("${inventory.rollup.max-hourly-range-days:93}")
+    private int maxHourlyRangeDays;
+
+    private final Map<BucketKey, Delta> pending = new ConcurrentHashMap<>();
+    // Movements seen per product and warehouse, so reconcile can tell a series that moved between runs
+    private final Map<ProductWarehouse, AtomicLong> movements = new ConcurrentHashMap<>();
+    private Map<Series, Drift> drifts = new HashMap<>();
+    private TransactionTemplate transactionTemplate;
+
+    @PostConstruct
+    public void init() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onStockMovement(StockMovementEvent event) {
+        int quantity = event.getQuantity();
+        if (quantity == 0) {
+            return;
+        }
+        LocalDateTime at = event.getTimestamp() != null ? event.getTimestamp() : LocalDateTime.now();
+        Delta delta = quantity > 0 ? new Delta(quantity, 0) : new Delta(0, -quantity);
+        for (RollupResolution resolution : RollupResolution.values()) {
+            BucketKey key = new BucketKey(event.getProductId(), event.getWarehouseId(), resolution,
+                    bucketStart(at, resolution));
+            pending.merge(key, delta, Delta::plus);
+        }
+        movements.computeIfAbsent(new ProductWarehouse(event.getProductId(), event.getWarehouseId()),
+                k -> new AtomicLong()).incrementAndGet();
+    }
+
+    @Scheduled(fixedDelayString = "${inventory.rollup.flush-interval-ms:1000}")
+    public synchronized void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        Map<BucketKey, Delta> drained = new HashMap<>();
+        for (BucketKey key : new ArrayList<>(pending.keySet())) {
+            Delta delta = pending.remove(key);
+            if (delta != null) {
+                drained.put(key, delta);
+            }
+        }
+
+        Map<Series, TreeMap<LocalDateTime, Delta>> bySeries = new HashMap<>();
+        drained.forEach((key, delta) -> bySeries.computeIfAbsent(key.series(), k -> new TreeMap<>())
+                .put(key.bucketStart(), delta));
+        try {
+            transactionTemplate.executeWithoutResult(status -> bySeries.forEach(this::write));
+        } catch (RuntimeException ex) {
+            log.warn("Failed to write {} stock rollup buckets, retrying on the next flush", drained.size(), ex);
+            drained.forEach((key, delta) -> pending.merge(key, delta, Delta::plus));
+        }
+    }
+
+    /**
+     * Shift every series whose latest closing balance has stayed off on-hand
+     * stock by the same amount since the previous run. A difference seen once
+     * may be a movement that is committed but not yet written, so it is only
+     * recorded.
+     */
+    @Scheduled(fixedDelayString = "${inventory.rollup.reconcile-interval-ms:300000}")
+    public synchronized void reconcile() {
+        flush();
+        List<Object[]> latest = jdbcTemplate.query(LATEST_CLOSING_SQL, (rs, rowNum) -> new Object[] {
+                new Series(rs.getLong(1), rs.getLong(2), RollupResolution.valueOf(rs.getString(3))), rs.getLong(4) });
+        Map<ProductWarehouse, Long> onHand = onHand(latest);
+
+        Map<Series, Drift> seen = new HashMap<>();
+        List<Map.Entry<Series, Long>> shifts = new ArrayList<>();
+        for (Object[] row : latest) {
+            Series series = (Series) row[0];
+            ProductWarehouse stock = new ProductWarehouse(series.productId(), series.warehouseId());
+            long drift = onHand.getOrDefault(stock, 0L) - (Long) row[1];
+            if (drift == 0) {
+                continue;
+            }
+            // Read after the balances, so a movement racing the reads shows up as a new count
+            AtomicLong moved = movements.get(stock);
+            Drift current = new Drift(drift, moved != null ? moved.get() : 0);
+            if (current.equals(drifts.get(series))) {
+                shifts.add(Map.entry(series, drift));
+            } else {
+                seen.put(series, current);
+            }
+        }
+        drifts = seen;
+        if (shifts.isEmpty()) {
+            return;
+        }
+
+        transactionTemplate.executeWithoutResult(status -> shifts.forEach(shift -> jdbcTemplate.update(
+                SHIFT_SERIES_SQL, shift.getValue(), shift.getKey().productId(), shift.getKey().warehouseId(),
+                shift.getKey().resolution().name())));
+        shifts.forEach(shift -> log.warn("Stock rollups of product {} in warehouse {} ({}) were {} units off "
+                + "on-hand stock; shifted", shift.getKey().productId(), shift.getKey().warehouseId(),
+                shift.getKey().resolution(), shift.getValue()));
+    }
+
+    @PreDestroy
+    public void stop() {
+        flush();
+    }
+
+    /**
+     * On-hand history of a product between {@code from} (inclusive) and
+     * {@code to} (exclusive), in one warehouse or summed over all of them.
+     */
+    public StockHistoryDTO getHistory(Long productId, Long warehouseId, RollupResolution resolution,
+            LocalDateTime from, LocalDateTime to) {
+        if (!from.isBefore(to)) {
+            throw new IllegalArgumentException("The start of the range must be before its end");
+        }
+        if (resolution == RollupResolution.HOUR && Duration.between(from, to).toDays() > maxHourlyRangeDays) {
+            throw new IllegalArgumentException("Hourly history is limited to " + maxHourlyRangeDays
+                    + " days; use DAY resolution for longer ranges");
+        }
+        LocalDateTime start = bucketStart(from, resolution);
+
+        // Running closing balance per warehouse, starting from its last bucket before the range
+        Map<Long, Long> balances = new HashMap<>();
+        for (StockRollup before : stockRollupRepository.findLatestBefore(productId, warehouseId, resolution, start)) {
+            balances.put(before.getWarehouseId(), before.getClosingBalance());
+        }
+        List<StockRollup> rows = stockRollupRepository.findRange(productId, warehouseId, resolution, start, to);
+        for (StockRollup row : rows) {
+            balances.putIfAbsent(row.getWarehouseId(), row.getClosingBalance() - row.getNetChange());
+        }
+        long opening = balances.values().stream().mapToLong(Long::longValue).sum();
+
+        List<StockHistoryDTO.Point> points = new ArrayList<>();
+        StockHistoryDTO.Point point = null;
+        for (StockRollup row : rows) {
+            if (point == null || !point.getBucketStart().equals(row.getBucketStart())) {
+                point = new StockHistoryDTO.Point(row.getBucketStart(), 0, 0, 0, 0);
+                points.add(point);
+            }
+            balances.put(row.getWarehouseId(), row.getClosingBalance());
+            point.setStockIn(point.getStockIn() + row.getStockIn());
+            point.setStockOut(point.getStockOut() + row.getStockOut());
+            point.setNetChange(point.getNetChange() + row.getNetChange());
+            point.setClosingBalance(balances.values().stream().mapToLong(Long::longValue).sum());
+        }
+        return new StockHistoryDTO(productId, warehouseId, resolution, start, to, opening, points);
+    }
+
+    /**
+     * Write one series' buckets, oldest first.
+     */
+    private void write(Series series, TreeMap<LocalDateTime, Delta> buckets) {
+        long batchNet = buckets.values().stream().mapToLong(Delta::net).sum();
+        for (Map.Entry<LocalDateTime, Delta> bucket : buckets.entrySet()) {
+            Timestamp start = Timestamp.valueOf(bucket.getKey());
+            Delta delta = bucket.getValue();
+            long net = delta.net();
+            int updated = jdbcTemplate.update(UPDATE_BUCKET_SQL, delta.in(), delta.out(), net, net,
+                    series.productId(), series.warehouseId(), series.resolution().name(), start);
+            if (updated == 0) {
+                long opening = opening(series, start, batchNet);
+                jdbcTemplate.update(INSERT_BUCKET_SQL, series.productId(), series.warehouseId(),
+                        series.resolution().name(), start, delta.in(), delta.out(), net, opening + net);
+            }
+            jdbcTemplate.update(SHIFT_LATER_SQL, net, series.productId(), series.warehouseId(),
+                    series.resolution().name(), start);
+            batchNet -= net;
+        }
+    }
+
+    /**
+     * Balance just before a new bucket: the previous bucket's closing, else
+     * the next bucket's opening, else (a brand-new series) on-hand stock less
+     * everything this flush is about to add and every movement of the series
+     * that arrived since it was drained.
+     */
+    private long opening(Series series, Timestamp start, long remainingBatchNet) {
+        Object[] args = { series.productId(), series.warehouseId(), series.resolution().name(), start };
+        List<Long> before = jdbcTemplate.queryForList(CLOSING_BEFORE_SQL, Long.class, args);
+        if (!before.isEmpty()) {
+            return before.get(0);
+        }
+        List<Long> after = jdbcTemplate.queryForList(OPENING_AFTER_SQL, Long.class, args);
+        if (!after.isEmpty()) {
+            return after.get(0);
+        }
+        // The table trails the ledger, so read the ledger's total when it is enabled
+        Long onHand = stockLedger != null ? stockLedger.onHand(series.productId(), series.warehouseId())
+                : jdbcTemplate.queryForObject(ON_HAND_SQL, Long.class, series.productId(), series.warehouseId());
+        return (onHand != null ? onHand : 0) - remainingBatchNet - pendingNet(series);
+    }
+
+    private long pendingNet(Series series) {
+        long net = 0;
+        for (Map.Entry<BucketKey, Delta> entry : pending.entrySet()) {
+            if (entry.getKey().series().equals(series)) {
+                net += entry.getValue().net();
+            }
+        }
+        return net;
+    }
+
+    /**
+     * On-hand stock of every (product, warehouse) with rollups: from the
+     * ledger when it is enabled, else from the table.
+     */
+    private Map<ProductWarehouse, Long> onHand(List<Object[]> latest) {
+        if (stockLedger != null) {
+            Set<ProductWarehouse> keys = new HashSet<>();
+            for (Object[] row : latest) {
+                Series series = (Series) row[0];
+                keys.add(new ProductWarehouse(series.productId(), series.warehouseId()));
+            }
+            return stockLedger.onHand(keys);
+        }
+        Map<ProductWarehouse, Long> onHand = new HashMap<>();
+        jdbcTemplate.query(ALL_ON_HAND_SQL, rs -> {
+            onHand.put(new ProductWarehouse(rs.getLong(1), rs.getLong(2)), rs.getLong(3));
+        });
+        return onHand;
+    }
+
+    static LocalDateTime bucketStart(LocalDateTime at, RollupResolution resolution) {
+        return at.truncatedTo(resolution == RollupResolution.HOUR ? ChronoUnit.HOURS : ChronoUnit.DAYS);
+    }
+
+    private record Series(Long productId, Long warehouseId, RollupResolution resolution) {
+    }
+
+    private record BucketKey(Long productId, Long warehouseId, RollupResolution resolution,
+            LocalDateTime bucketStart) {
+        Series series() {
+            return new Series(productId, warehouseId, resolution);
+        }
+    }
+
+    private record Drift(long amount, long movements) {
+    }
+
+    private record Delta(long in, long out) {
+        Delta plus(Delta other) {
+            return new Delta(in + other.in, out + other.out);
+        }
+
+        long net() {
+            return in - out;
+        }
+    }
+}
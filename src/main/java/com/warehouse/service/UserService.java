@@ -55,13 +55,13 @@ public class UserService {
     }
 
     public List<UserDTO> getUsersByOrganization(Long organizationId) {
-        return userRepository.findByOrganizationId(organizationId).stream()
+        return userRepository.findWithOrganizationByOrganizationId(organizationId).stream()
                 .map(this::convertToDTO)
                 .collect(Collectors.toList());
     }
 
     public UserDTO getUserById(Long id) {
-        User user = userRepository.findById(id)
+        User user = userRepository.findWithOrganizationById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("User", "id", id));
         return convertToDTO(user);
     }
@@ -0,0 +1,205 @@
+package com.warehouse.service;
+
+import com.warehouse.dto.ValuationReportDTO;
+import com.warehouse.event.StockMovementEvent;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Values an organization's inventory at quantity × {@code Product.unitPrice}.
+ * <p>
+ * Each warehouse is a partition. Partitions are read in parallel, each
+ * through its own forward-only cursor over quantities already summed per
+ * product by the database, so the heap holds one partial result per
+ * warehouse rather than the inventory rows. Partials are merged into totals
+ * by warehouse, category and vendor. A report can be served from a cache
+ * that is valid until the next stock movement of the organization.
+ */
+@Service
+public class ValuationReportService {
+
+    private static final String WAREHOUSES_SQL = "SELECT id, name FROM warehouses WHERE organization_id = ? ORDER BY id";
+
+    private static final String PARTITION_SQL =
+            "SELECT p.category, p.vendor_id, v.name AS vendor_name, p.unit_price, SUM(i.quantity) AS quantity "
+                    + "FROM inventory i JOIN products p ON p.id = i.product_id JOIN vendors v ON v.id = p.vendor_id "
+                    + "WHERE i.warehouse_id = ? "
+                    + "GROUP BY p.id, p.category, p.vendor_id, v.name, p.unit_price HAVING SUM(i.quantity) <> 0";
+
+    private static final String UNCATEGORIZED = "Uncategorized";
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${inventory.valuation.parallelism:4}")
+    private int parallelism;
+
+    @Value("${inventory.export.fetch-size:" + Integer.MIN_VALUE + "}")
+    private int fetchSize;
+
+    private final Map<Long, AtomicLong> stockVersions = new ConcurrentHashMap<>();
+    private final Map<Long, Cached> reports = new ConcurrentHashMap<>();
+    private ExecutorService pool;
+    private JdbcTemplate streamingTemplate;
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger count = new AtomicInteger();
+        pool = Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "inventory-valuation-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        streamingTemplate = new JdbcTemplate(dataSource);
+        streamingTemplate.setFetchSize(fetchSize);
+    }
+
+    @PreDestroy
+    public void stop() {
+        pool.shutdownNow();
+    }
+
+    public ValuationReportDTO getValuation(Long organizationId, boolean useCache) {
+        long version = stockVersion(organizationId).get();
+        Cached cached = reports.get(organizationId);
+        if (useCache && cached != null && cached.version() == version) {
+            ValuationReportDTO report = cached.report();
+            return new ValuationReportDTO(report.getOrganizationId(), report.getGeneratedAt(),
+                    report.getTotalQuantity(), report.getTotalValue(), report.getWarehouses(),
+                    report.getCategories(), report.getVendors(), true);
+        }
+
+        ValuationReportDTO report = compute(organizationId);
+        // Keyed by the version read before computing: a movement during the run makes it stale at once
+        reports.put(organizationId, new Cached(version, report));
+        return report;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onStockMovement(StockMovementEvent event) {
+        if (event.getQuantity() != 0) {
+            stockVersion(event.getOrganizationId()).incrementAndGet();
+        }
+    }
+
+    private ValuationReportDTO compute(Long organizationId) {
+        LocalDateTime generatedAt = LocalDateTime.now();
+        List<Future<Partial>> futures = new ArrayList<>();
+        jdbcTemplate.query(WAREHOUSES_SQL, rs -> {
+            long warehouseId = rs.getLong("id");
+            String name = rs.getString("name");
+            futures.add(pool.submit(() -> valuate(warehouseId, name)));
+        }, organizationId);
+
+        Partial total = new Partial(null, null);
+        List<ValuationReportDTO.Group> warehouses = new ArrayList<>();
+        try {
+            for (Future<Partial> future : futures) {
+                Partial partial = future.get();
+                warehouses.add(partial.warehouse.toGroup(partial.warehouseId, partial.warehouseName));
+                total.merge(partial);
+            }
+        } catch (InterruptedException ex) {
+            futures.forEach(future -> future.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Valuation was interrupted", ex);
+        } catch (ExecutionException ex) {
+            futures.forEach(future -> future.cancel(true));
+            throw ex.getCause() instanceof RuntimeException runtime ? runtime
+                    : new IllegalStateException("Valuation failed", ex.getCause());
+        }
+
+        List<ValuationReportDTO.Group> categories = new ArrayList<>();
+        total.categories.forEach((category, sum) -> categories.add(sum.toGroup(null, category)));
+        List<ValuationReportDTO.Group> vendors = new ArrayList<>();
+        total.vendors.forEach((vendorId, sum) -> vendors.add(sum.toGroup(vendorId, total.vendorNames.get(vendorId))));
+        Comparator<ValuationReportDTO.Group> byValue = Comparator.comparing(ValuationReportDTO.Group::getValue)
+                .reversed();
+        warehouses.sort(byValue);
+        categories.sort(byValue);
+        vendors.sort(byValue);
+
+        return new ValuationReportDTO(organizationId, generatedAt, total.warehouse.quantity, total.warehouse.value,
+                warehouses, categories, vendors, false);
+    }
+
+    private Partial valuate(long warehouseId, String warehouseName) {
+        Partial partial = new Partial(warehouseId, warehouseName);
+        streamingTemplate.query(PARTITION_SQL, rs -> {
+            long quantity = rs.getLong("quantity");
+            BigDecimal value = rs.getBigDecimal("unit_price").multiply(BigDecimal.valueOf(quantity));
+            String category = rs.getString("category");
+            long vendorId = rs.getLong("vendor_id");
+
+            partial.warehouse.add(quantity, value);
+            partial.categories.computeIfAbsent(category != null ? category : UNCATEGORIZED, k -> new Sum())
+                    .add(quantity, value);
+            partial.vendors.computeIfAbsent(vendorId, k -> new Sum()).add(quantity, value);
+            partial.vendorNames.putIfAbsent(vendorId, rs.getString("vendor_name"));
+        }, warehouseId);
+        return partial;
+    }
+
+    private AtomicLong stockVersion(Long organizationId) {
+        return stockVersions.computeIfAbsent(organizationId, k -> new AtomicLong());
+    }
+
+    private record Cached(long version, ValuationReportDTO report) {
+    }
+
+    private static final class Sum {
+        long quantity;
+        BigDecimal value = BigDecimal.ZERO;
+
+        void add(long quantity, BigDecimal value) {
+            this.quantity += quantity;
+            this.value = this.value.add(value);
+        }
+
+        ValuationReportDTO.Group toGroup(Long id, String name) {
+            return new ValuationReportDTO.Group(id, name, quantity, value);
+        }
+    }
+
+    /**
+     * Totals of one warehouse, or of the whole organization once merged.
+     */
+    private static final class Partial {
+        final Long warehouseId;
+        final String warehouseName;
+        final Sum warehouse = new Sum();
+        final Map<String, Sum> categories = new HashMap<>();
+        final Map<Long, Sum> vendors = new HashMap<>();
+        final Map<Long, String> vendorNames = new HashMap<>();
+
+        Partial(Long warehouseId, String warehouseName) {
+            this.warehouseId = warehouseId;
+            this.warehouseName = warehouseName;
+        }
+
+        void merge(Partial other) {
+            warehouse.add(other.warehouse.quantity, other.warehouse.value);
+            other.categories.forEach((key, sum) -> categories.computeIfAbsent(key, k -> new Sum())
+                    .add(sum.quantity, sum.value));
+            other.vendors.forEach((key, sum) -> vendors.computeIfAbsent(key, k -> new Sum())
+                    .add(sum.quantity, sum.value));
+            vendorNames.putAll(other.vendorNames);
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package com.warehouse.service;
+
+import com.warehouse.entity.TransactionType;
+import com.warehouse.event.StockMovementEvent;
+import com.warehouse.exception.CapacityExceededException;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Live occupancy of every warehouse against {@code Warehouse.capacity}.
+ * <p>
+ * Works like {@link ZoneUtilizationTracker} one level up: counters are built
+ * from the inventory on startup and moved by stock movements inside their
+ * transaction, rejecting intake past capacity and giving units back on
+ * rollback; with the stock ledger enabled the ledger moves them through
+ * {@link #reserve} and {@link #release} instead. A periodic reconciliation
+ * compares each counter with
+ * {@code SUM(quantity)} and corrects drift, but only for warehouses that had
+ * no movement in flight while it read the table.
+ */
+@Slf4j
+@Service
+public class WarehouseOccupancyTracker {
+
+    private static final String OCCUPANCY_SQL =
+            "SELECT w.id, w.capacity, COALESCE(SUM(i.quantity), 0) AS used FROM warehouses w "
+                    + "LEFT JOIN inventory i ON i.warehouse_id = w.id GROUP BY w.id, w.capacity";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${inventory.ledger.enabled:false}")
+    private boolean ledgerEnabled;
+
+    private final CapacityCounters warehouses = new CapacityCounters();
+    private final Map<Long, AtomicInteger> inFlight = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void rebuild() {
+        warehouses.clear();
+        jdbcTemplate.query(OCCUPANCY_SQL, rs -> {
+            warehouses.register(rs.getLong("id"), rs.getLong("capacity"), rs.getLong("used"));
+        });
+    }
+
+    /**
+     * Runs synchronously inside the movement's transaction. Ledger movements
+     * were already counted by the ledger, so they are ignored here.
+     */
+    @EventListener
+    public void onStockMovement(StockMovementEvent event) {
+        Long warehouseId = event.getWarehouseId();
+        int quantity = event.getQuantity();
+        if (warehouseId == null || quantity == 0 || ledgerEnabled) {
+            return;
+        }
+
+        // An adjustment records stock that is physically there, so it is counted but never refused
+        if (event.getTransactionType() == TransactionType.ADJUSTMENT) {
+            warehouses.add(warehouseId, quantity);
+        } else {
+            reserve(warehouseId, quantity);
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        AtomicInteger pending = inFlight.computeIfAbsent(warehouseId, k -> new AtomicInteger());
+        pending.incrementAndGet();
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_COMMITTED) {
+                    warehouses.add(warehouseId, -quantity);
+                }
+                pending.decrementAndGet();
+            }
+        });
+    }
+
+    /**
+     * Count a change of {@code quantity} units against a warehouse, refusing
+     * an increase that would take it past its capacity.
+     */
+    public void reserve(Long warehouseId, int quantity) {
+        if (!warehouses.tryAdd(warehouseId, quantity)) {
+            throw new CapacityExceededException("Warehouse", warehouseId, warehouses.capacity(warehouseId),
+                    warehouses.used(warehouseId), quantity);
+        }
+    }
+
+    /**
+     * Undo a {@link #reserve} whose change was not applied.
+     */
+    public void release(Long warehouseId, int quantity) {
+        warehouses.add(warehouseId, -quantity);
+    }
+
+    public void register(Long warehouseId, int capacity) {
+        warehouses.register(warehouseId, capacity, 0);
+    }
+
+    public void updateCapacity(Long warehouseId, int capacity) {
+        warehouses.setCapacity(warehouseId, capacity);
+    }
+
+    /**
+     * Whether the warehouse can take {@code quantity} more units right now.
+     */
+    public boolean hasRoom(Long warehouseId, int quantity) {
+        return warehouses.hasRoom(warehouseId, quantity);
+    }
+
+    /**
+     * Units currently stored in a warehouse, or null when it is not tracked.
+     */
+    public Long getOccupancy(Long warehouseId) {
+        return warehouses.contains(warehouseId) ? warehouses.used(warehouseId) : null;
+    }
+
+    @Scheduled(fixedDelayString = "${inventory.warehouse-occupancy.reconcile-interval-ms:300000}")
+    public void reconcile() {
+        if (ledgerEnabled) {
+            return; // The ledger writes the table behind its counters, so the table lags by design
+        }
+        // Versions are read before the table so any movement overlapping the query shows up as a change
+        Map<Long, Long> versions = warehouses.versions();
+        Map<Long, Long> totals = new HashMap<>();
+        jdbcTemplate.query(OCCUPANCY_SQL, rs -> {
+            totals.put(rs.getLong("id"), rs.getLong("used"));
+        });
+
+        int corrected = 0;
+        for (Map.Entry<Long, Long> total : totals.entrySet()) {
+            Long id = total.getKey();
+            AtomicInteger pending = inFlight.get(id);
+            boolean quiet = (pending == null || pending.get() == 0)
+                    && warehouses.version(id) == versions.getOrDefault(id, 0L);
+            long drift = total.getValue() - warehouses.used(id);
+            if (quiet && drift != 0) {
+                warehouses.add(id, drift);
+                corrected++;
+                log.warn("Warehouse {} occupancy was off by {} units", id, drift);
+            }
+        }
+        if (corrected > 0) {
+            log.info("Occupancy reconciliation corrected {} warehouses", corrected);
+        }
+    }
+}
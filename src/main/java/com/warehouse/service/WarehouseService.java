@@ -5,11 +5,14 @@ import com.warehouse.dto.WarehouseDTO;
 import com.warehouse.entity.*;
 import com.warehouse.exception.ResourceNotFoundException;
 import com.warehouse.repository.OrganizationRepository;
+import com.warehouse.repository.StorageZoneRepository;
 import com.warehouse.repository.UserRepository;
 import com.warehouse.repository.WarehouseRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.util.List;
 import java.util.stream.Collectors;
@@ -29,6 +32,18 @@ public class WarehouseService {
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private StorageZoneRepository storageZoneRepository;
+
+    @Autowired
+    private ZoneUtilizationTracker zoneUtilizationTracker;
+
+    @Autowired
+    private PutawayEngine putawayEngine;
+
+    @Autowired
+    private WarehouseOccupancyTracker warehouseOccupancyTracker;
+
     @Transactional
     public WarehouseDTO createWarehouse(WarehouseDTO dto, Long userId) {
         Organization organization = organizationRepository.findById(dto.getOrganizationId())
@@ -48,6 +63,9 @@ public class WarehouseService {
         }
 
         warehouse = warehouseRepository.save(warehouse);
+        Long warehouseId = warehouse.getId();
+        Integer capacity = warehouse.getCapacity();
+        afterCommit(() -> warehouseOccupancyTracker.register(warehouseId, capacity));
 
         return convertToDTO(warehouse);
     }
@@ -64,27 +82,35 @@ public class WarehouseService {
         zone.setCurrentUtilization(0);
         zone.setZoneType(dto.getZoneType());
 
+        zone = storageZoneRepository.save(zone);
         warehouse.getZones().add(zone);
-        warehouseRepository.save(warehouse);
+        Long zoneId = zone.getId();
+        Integer capacity = zone.getCapacity();
+        ZoneType zoneType = zone.getZoneType();
+        // Tracked before putaway can choose it, so it never looks unlimited
+        afterCommit(() -> {
+            zoneUtilizationTracker.register(zoneId, capacity);
+            putawayEngine.registerZone(warehouseId, zoneId, zoneType);
+        });
 
         return convertZoneToDTO(zone);
     }
 
     public List<WarehouseDTO> getWarehousesByOrganization(Long organizationId) {
-        return warehouseRepository.findByOrganizationId(organizationId).stream()
+        return warehouseRepository.findWithDetailsByOrganizationId(organizationId).stream()
                 .map(this::convertToDTO)
                 .collect(Collectors.toList());
     }
 
     public WarehouseDTO getWarehouseById(Long id) {
-        Warehouse warehouse = warehouseRepository.findById(id)
+        Warehouse warehouse = warehouseRepository.findWithDetailsById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Warehouse", "id", id));
         return convertToDTO(warehouse);
     }
 
     @Transactional
     public WarehouseDTO updateWarehouse(Long id, WarehouseDTO dto, Long userId) {
-        Warehouse warehouse = warehouseRepository.findById(id)
+        Warehouse warehouse = warehouseRepository.findWithDetailsById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Warehouse", "id", id));
 
         warehouse.setName(dto.getName());
@@ -98,10 +124,31 @@ public class WarehouseService {
         }
 
         warehouse = warehouseRepository.save(warehouse);
+        Long warehouseId = warehouse.getId();
+        Integer capacity = warehouse.getCapacity();
+        afterCommit(() -> warehouseOccupancyTracker.updateCapacity(warehouseId, capacity));
 
         return convertToDTO(warehouse);
     }
 
+    /**
+     * Update the in-memory trackers only once the row they describe is
+     * committed, so a rolled-back warehouse or zone is never offered to
+     * putaway or checked against.
+     */
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
     private WarehouseDTO convertToDTO(Warehouse warehouse) {
         WarehouseDTO dto = new WarehouseDTO();
         dto.setId(warehouse.getId());
@@ -113,6 +160,13 @@ public class WarehouseService {
         dto.setActive(warehouse.getActive());
         dto.setCreatedAt(warehouse.getCreatedAt());
 
+        Long occupancy = warehouseOccupancyTracker.getOccupancy(warehouse.getId());
+        if (occupancy != null) {
+            dto.setOccupancy(occupancy);
+            dto.setOccupancyPercentage(warehouse.getCapacity() > 0
+                    ? occupancy * 100.0 / warehouse.getCapacity() : 0.0);
+        }
+
         if (warehouse.getManager() != null) {
             dto.setManagerId(warehouse.getManager().getId());
             dto.setManagerName(warehouse.getManager().getFullName());
@@ -131,9 +185,15 @@ public class WarehouseService {
         dto.setName(zone.getName());
         dto.setWarehouseId(zone.getWarehouse().getId());
         dto.setCapacity(zone.getCapacity());
-        dto.setCurrentUtilization(zone.getCurrentUtilization());
         dto.setZoneType(zone.getZoneType());
-        dto.setUtilizationPercentage(zone.getUtilizationPercentage());
+
+        // Live counter when tracked; the stored column lags it by up to one flush interval
+        Integer utilization = zoneUtilizationTracker.getUtilization(zone.getId());
+        if (utilization == null) {
+            utilization = zone.getCurrentUtilization();
+        }
+        dto.setCurrentUtilization(utilization);
+        dto.setUtilizationPercentage(zone.getCapacity() > 0 ? utilization * 100.0 / zone.getCapacity() : 0.0);
         return dto;
     }
 }
@@ -0,0 +1,165 @@
+package com.warehouse.service;
+
+import com.warehouse.entity.TransactionType;
+import com.warehouse.event.StockMovementEvent;
+import com.warehouse.exception.CapacityExceededException;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Live utilization of storage zones, kept in per-zone atomic counters.
+ * <p>
+ * Counters are rebuilt from the inventory on startup and then moved by every
+ * stock movement inside the movement's transaction, so a stock-in that would
+ * overfill its zone fails and rolls back, and a rolled-back movement gives its
+ * units back. With the stock ledger enabled there is no transaction, so the
+ * ledger moves the counters itself through {@link #reserve} and
+ * {@link #release} on its shard thread before it applies a change.
+ * {@code storage_zones.current_utilization} is written behind on a fixed
+ * interval.
+ */
+@Slf4j
+@Service
+public class ZoneUtilizationTracker {
+
+    private static final String REBUILD_SQL =
+            "SELECT z.id, z.capacity, COALESCE(SUM(i.quantity), 0) AS used FROM storage_zones z "
+                    + "LEFT JOIN inventory i ON i.zone_id = z.id GROUP BY z.id, z.capacity";
+
+    private static final String FLUSH_SQL = "UPDATE storage_zones SET current_utilization = ? WHERE id = ?";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${inventory.ledger.enabled:false}")
+    private boolean ledgerEnabled;
+
+    private final CapacityCounters zones = new CapacityCounters();
+
+    @PostConstruct
+    public void rebuild() {
+        zones.clear();
+        jdbcTemplate.query(REBUILD_SQL, rs -> {
+            zones.register(rs.getLong("id"), rs.getLong("capacity"), rs.getLong("used"));
+        });
+    }
+
+    /**
+     * Runs synchronously inside the movement's transaction. Ledger movements
+     * were already counted by the ledger, so they are ignored here.
+     */
+    @EventListener
+    public void onStockMovement(StockMovementEvent event) {
+        Long zoneId = event.getZoneId();
+        int quantity = event.getQuantity();
+        if (zoneId == null || quantity == 0 || ledgerEnabled) {
+            return;
+        }
+
+        // An adjustment records stock that is physically there, so it is counted but never refused
+        if (event.getTransactionType() == TransactionType.ADJUSTMENT) {
+            zones.add(zoneId, quantity);
+        } else {
+            reserve(zoneId, quantity);
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_COMMITTED) {
+                    zones.add(zoneId, -quantity);
+                }
+            }
+        });
+    }
+
+    /**
+     * Count a change of {@code quantity} units against a zone, refusing an
+     * increase that would take it past its capacity.
+     */
+    public void reserve(Long zoneId, int quantity) {
+        if (!zones.tryAdd(zoneId, quantity)) {
+            throw new CapacityExceededException("Storage zone", zoneId, zones.capacity(zoneId), zones.used(zoneId),
+                    quantity);
+        }
+    }
+
+    /**
+     * Undo a {@link #reserve} whose change was not applied.
+     */
+    public void release(Long zoneId, int quantity) {
+        zones.add(zoneId, -quantity);
+    }
+
+    /**
+     * Start tracking a newly created zone.
+     */
+    public void register(Long zoneId, int capacity) {
+        zones.register(zoneId, capacity, 0);
+    }
+
+    /**
+     * Whether the zone can take {@code quantity} more units right now.
+     */
+    public boolean hasRoom(Long zoneId, int quantity) {
+        return zones.hasRoom(zoneId, quantity);
+    }
+
+    /**
+     * Live utilization of a zone, or null when the zone is not tracked.
+     */
+    public Integer getUtilization(Long zoneId) {
+        return zones.contains(zoneId) ? (int) zones.used(zoneId) : null;
+    }
+
+    public long getCapacity(Long zoneId) {
+        return zones.capacity(zoneId);
+    }
+
+    /**
+     * Units the zone can still take; Long.MAX_VALUE for zones without a capacity.
+     */
+    public long getFreeCapacity(Long zoneId) {
+        long capacity = zones.capacity(zoneId);
+        return capacity == CapacityCounters.UNLIMITED ? capacity : capacity - zones.used(zoneId);
+    }
+
+    @Scheduled(fixedDelayString = "${inventory.zone-utilization.flush-interval-ms:5000}")
+    public void flush() {
+        Map<Long, Long> changed = zones.drainDirty();
+        if (changed.isEmpty()) {
+            return;
+        }
+        List<Object[]> args = new ArrayList<>(changed.size());
+        changed.forEach((zoneId, used) -> args.add(new Object[] { used, zoneId }));
+        try {
+            jdbcTemplate.batchUpdate(FLUSH_SQL, args);
+        } catch (DataAccessException ex) {
+            zones.markDirty(changed.keySet());
+            log.warn("Could not flush storage zone utilization, will retry", ex);
+            return;
+        }
+        log.debug("Flushed utilization of {} storage zones", changed.size());
+    }
+
+    @PreDestroy
+    public void stop() {
+        flush();
+    }
+}
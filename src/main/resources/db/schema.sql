@@ -85,6 +85,7 @@ CREATE TABLE IF NOT EXISTS products (
     description VARCHAR(1000),
     vendor_id BIGINT NOT NULL,
     category VARCHAR(50),
+    storage_type VARCHAR(20),
     unit_price DECIMAL(10,2) NOT NULL,
     active BOOLEAN NOT NULL DEFAULT TRUE,
     created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
@@ -101,25 +102,40 @@ CREATE TABLE IF NOT EXISTS inventory (
     warehouse_id BIGINT NOT NULL,
     zone_id BIGINT,
     quantity INT NOT NULL DEFAULT 0,
+    movement_seq BIGINT NOT NULL DEFAULT 0,
     batch_number VARCHAR(50),
     expiry_date DATE,
     min_stock_level INT NOT NULL DEFAULT 0,
     max_stock_level INT NOT NULL DEFAULT 1000,
+    received_at TIMESTAMP NULL DEFAULT CURRENT_TIMESTAMP,
     last_updated TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
     FOREIGN KEY (product_id) REFERENCES products(id) ON DELETE CASCADE,
     FOREIGN KEY (warehouse_id) REFERENCES warehouses(id) ON DELETE CASCADE,
     FOREIGN KEY (zone_id) REFERENCES storage_zones(id) ON DELETE SET NULL,
     UNIQUE KEY unique_inventory (product_id, warehouse_id, zone_id, batch_number),
     INDEX idx_inventory_warehouse (warehouse_id),
-    INDEX idx_inventory_product (product_id)
+    INDEX idx_inventory_product (product_id),
+    INDEX idx_inventory_expiry (expiry_date)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
 
+-- Inventory id sequence (pooled, allocation size 50) so inventory inserts can be batched.
+-- Seeded past existing AUTO_INCREMENT ids for databases created before the switch;
+-- InventorySequenceInitializer re-checks this on every startup (ddl-auto creates it starting at 1).
+CREATE TABLE IF NOT EXISTS inventory_seq (
+    next_val BIGINT
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
+
+INSERT INTO inventory_seq (next_val)
+SELECT COALESCE(MAX(id), 0) + 51 FROM inventory
+WHERE NOT EXISTS (SELECT 1 FROM inventory_seq);
+
 -- Inventory transactions table
 CREATE TABLE IF NOT EXISTS inventory_transactions (
     id BIGINT AUTO_INCREMENT PRIMARY KEY,
     inventory_id BIGINT NOT NULL,
     transaction_type VARCHAR(20) NOT NULL,
     quantity INT NOT NULL,
+    movement_seq BIGINT,
     reason_code VARCHAR(50),
     performed_by BIGINT NOT NULL,
     timestamp TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
@@ -130,6 +146,51 @@ CREATE TABLE IF NOT EXISTS inventory_transactions (
     INDEX idx_transaction_timestamp (timestamp)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
 
+-- Stock ledger checkpoints table
+CREATE TABLE IF NOT EXISTS inventory_ledger_checkpoints (
+    shard INT PRIMARY KEY,
+    last_sequence BIGINT NOT NULL DEFAULT 0
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
+
+-- Stored responses of mutating requests sent with an Idempotency-Key, replayed to retries
+CREATE TABLE IF NOT EXISTS idempotency_keys (
+    idempotency_key VARCHAR(64) PRIMARY KEY,
+    fingerprint VARCHAR(64) NOT NULL,
+    status INT NOT NULL,
+    content_type VARCHAR(100),
+    body MEDIUMBLOB,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    expires_at TIMESTAMP NOT NULL,
+    INDEX idx_idempotency_expires (expires_at)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
+
+-- Bulk inventory import checkpoints: one row per committed slice of an import file
+CREATE TABLE IF NOT EXISTS inventory_import_batches (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    job_id VARCHAR(36) NOT NULL,
+    start_offset BIGINT NOT NULL,
+    end_offset BIGINT NOT NULL,
+    end_line BIGINT NOT NULL,
+    imported_rows INT NOT NULL,
+    failed_rows INT NOT NULL,
+    UNIQUE KEY unique_import_batch (job_id, start_offset)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
+
+-- Hourly and daily stock level rollups per product and warehouse, maintained from stock movements
+CREATE TABLE IF NOT EXISTS stock_rollups (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    product_id BIGINT NOT NULL,
+    warehouse_id BIGINT NOT NULL,
+    resolution VARCHAR(5) NOT NULL,
+    bucket_start DATETIME NOT NULL,
+    stock_in BIGINT NOT NULL,
+    stock_out BIGINT NOT NULL,
+    net_change BIGINT NOT NULL,
+    closing_balance BIGINT NOT NULL,
+    UNIQUE KEY unique_rollup_bucket (product_id, warehouse_id, resolution, bucket_start),
+    INDEX idx_rollup_product_range (product_id, resolution, bucket_start)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
+
 -- Purchase orders table
 CREATE TABLE IF NOT EXISTS purchase_orders (
     id BIGINT AUTO_INCREMENT PRIMARY KEY,
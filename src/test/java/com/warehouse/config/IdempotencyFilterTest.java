@@ -0,0 +1,261 @@
+package com.warehouse.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.warehouse.service.IdempotencyStore;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for IdempotencyFilter and IdempotencyStore.
+ * Tests replay of retries, key reuse, concurrent duplicates, the persistent fallback
+ * and keys claimed in the table by another instance.
+ */
+@ExtendWith(MockitoExtension.class)
+class IdempotencyFilterTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    private IdempotencyFilter filter;
+    private final AtomicInteger executions = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        filter = filterWithNewStore();
+    }
+
+    @Test
+    void retry_ReplaysFirstResponse() throws Exception {
+        MockHttpServletResponse first = send("key-1", "{\"quantity\":5}", created());
+        MockHttpServletResponse retry = send("key-1", "{\"quantity\":5}", created());
+
+        assertEquals(1, executions.get());
+        assertEquals(201, retry.getStatus());
+        assertEquals(first.getContentAsString(), retry.getContentAsString());
+        assertEquals("true", retry.getHeader(IdempotencyFilter.REPLAYED_HEADER));
+        verify(jdbcTemplate).update(startsWith("INSERT INTO idempotency_keys"), any(), any(), any(), any(), any(),
+                any(), any());
+    }
+
+    @Test
+    void sameKey_DifferentBody_Rejected() throws Exception {
+        send("key-1", "{\"quantity\":5}", created());
+
+        MockHttpServletResponse reused = send("key-1", "{\"quantity\":6}", created());
+
+        assertEquals(422, reused.getStatus());
+        assertEquals(1, executions.get());
+    }
+
+    @Test
+    void serverError_NotStored() throws Exception {
+        send("key-1", "{}", (request, response) -> {
+            executions.incrementAndGet();
+            ((HttpServletResponse) response).setStatus(500);
+        });
+
+        send("key-1", "{}", created());
+
+        assertEquals(2, executions.get());
+        String key = recordedKey();
+        verify(jdbcTemplate).update(startsWith("DELETE FROM idempotency_keys"), eq(key));
+    }
+
+    @Test
+    void asyncRead_BodyDeliveredToReadListener() throws Exception {
+        ByteArrayOutputStream read = new ByteArrayOutputStream();
+        AtomicInteger allRead = new AtomicInteger();
+        send("key-1", "{\"quantity\":5}", (request, response) -> {
+            ServletInputStream in = request.getInputStream();
+            in.setReadListener(new ReadListener() {
+                @Override
+                public void onDataAvailable() throws IOException {
+                    while (in.isReady() && !in.isFinished()) {
+                        read.write(in.read());
+                    }
+                }
+
+                @Override
+                public void onAllDataRead() {
+                    allRead.incrementAndGet();
+                }
+
+                @Override
+                public void onError(Throwable t) {
+                    fail(t);
+                }
+            });
+            ((HttpServletResponse) response).setStatus(201);
+        });
+
+        assertEquals("{\"quantity\":5}", read.toString(StandardCharsets.UTF_8));
+        assertEquals(1, allRead.get());
+    }
+
+    @Test
+    void firstRequest_ClaimsKeyInTableThenCompletesIt() throws Exception {
+        send("key-1", "{}", created());
+
+        String key = recordedKey();
+        verify(jdbcTemplate).update(startsWith("UPDATE idempotency_keys SET fingerprint = ?, status = ?"), any(),
+                eq(201), eq("application/json"), any(), any(), any(), eq(key));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void claimedOnAnotherInstance_WaitsForItsResponse() throws Exception {
+        MockHttpServletResponse first = send("key-1", "{}", created());
+        String fingerprint = fingerprintOf();
+        IdempotencyStore.Response pending = new IdempotencyStore.Response(fingerprint, 0, null, null,
+                LocalDateTime.now().plusMinutes(10));
+        IdempotencyStore.Response done = new IdempotencyStore.Response(fingerprint, 201, "application/json",
+                first.getContentAsByteArray(), LocalDateTime.now().plusHours(1));
+        when(jdbcTemplate.query(startsWith("SELECT"), any(RowMapper.class), any(), any()))
+                .thenReturn(List.of(pending), List.of(pending), List.of(done));
+
+        filter = filterWithNewStore();
+        MockHttpServletResponse retry = send("key-1", "{}", created());
+
+        assertEquals(1, executions.get());
+        assertEquals("true", retry.getHeader(IdempotencyFilter.REPLAYED_HEADER));
+        assertEquals(first.getContentAsString(), retry.getContentAsString());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void claimedOnAnotherInstance_StillRunning_Conflict() throws Exception {
+        IdempotencyStore.Response pending = new IdempotencyStore.Response("other", 0, null, null,
+                LocalDateTime.now().plusMinutes(10));
+        when(jdbcTemplate.query(startsWith("SELECT"), any(RowMapper.class), any(), any()))
+                .thenReturn(List.of(pending));
+        ReflectionTestUtils.setField(filter, "waitTimeoutMs", 250L);
+
+        MockHttpServletResponse duplicate = send("key-1", "{}", created());
+
+        assertEquals(409, duplicate.getStatus());
+        assertEquals(0, executions.get());
+        verify(jdbcTemplate, never()).update(startsWith("INSERT"), any(), any(), any(), any());
+    }
+
+    @Test
+    void concurrentDuplicate_WaitsForFirstResult() throws Exception {
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        FilterChain slow = (request, response) -> {
+            running.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            created().doFilter(request, response);
+        };
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            Future<MockHttpServletResponse> first = pool.submit(() -> send("key-1", "{}", slow));
+            running.await();
+            Future<MockHttpServletResponse> duplicate = pool.submit(() -> send("key-1", "{}", slow));
+            Thread.sleep(100);
+            release.countDown();
+
+            assertEquals(201, first.get(5, TimeUnit.SECONDS).getStatus());
+            assertEquals("true", duplicate.get(5, TimeUnit.SECONDS).getHeader(IdempotencyFilter.REPLAYED_HEADER));
+            assertEquals(1, executions.get());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void afterRestart_ReplaysFromTable() throws Exception {
+        MockHttpServletResponse first = send("key-1", "{}", created());
+        // What the INSERT wrote, as the table would return it
+        when(jdbcTemplate.query(startsWith("SELECT"), any(RowMapper.class), any(), any())).thenAnswer(invocation -> {
+            IdempotencyStore.Response row = new IdempotencyStore.Response(fingerprintOf(), 201,
+                    "application/json", first.getContentAsByteArray(), LocalDateTime.now().plusHours(1));
+            return List.of(row);
+        });
+
+        filter = filterWithNewStore();
+        MockHttpServletResponse retry = send("key-1", "{}", created());
+
+        assertEquals(1, executions.get());
+        assertEquals(first.getContentAsString(), retry.getContentAsString());
+    }
+
+    private String recordedKey() {
+        // Claimed by the first request's pending row
+        ArgumentCaptor<Object> captor = ArgumentCaptor.forClass(Object.class);
+        verify(jdbcTemplate, atLeastOnce()).update(startsWith("INSERT"), captor.capture(), any(), any(), any());
+        return (String) captor.getValue();
+    }
+
+    private String fingerprintOf() {
+        // Recorded by the first request's INSERT
+        ArgumentCaptor<Object> captor = ArgumentCaptor.forClass(Object.class);
+        verify(jdbcTemplate).update(startsWith("INSERT"), any(), captor.capture(), any(), any(), any(), any(),
+                any());
+        return (String) captor.getValue();
+    }
+
+    private IdempotencyFilter filterWithNewStore() {
+        IdempotencyStore store = new IdempotencyStore();
+        ReflectionTestUtils.setField(store, "jdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(store, "maxEntries", 100);
+        ReflectionTestUtils.setField(store, "ttlHours", 24L);
+        ReflectionTestUtils.setField(store, "claimTtlMs", 600_000L);
+        IdempotencyFilter idempotencyFilter = new IdempotencyFilter();
+        ReflectionTestUtils.setField(idempotencyFilter, "idempotencyStore", store);
+        ReflectionTestUtils.setField(idempotencyFilter, "objectMapper", new ObjectMapper().findAndRegisterModules());
+        ReflectionTestUtils.setField(idempotencyFilter, "waitTimeoutMs", 5000L);
+        return idempotencyFilter;
+    }
+
+    private FilterChain created() {
+        return (request, response) -> {
+            int execution = executions.incrementAndGet();
+            String body = new String(request.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+            HttpServletResponse http = (HttpServletResponse) response;
+            http.setStatus(201);
+            http.setContentType("application/json");
+            http.getWriter().write("{\"execution\":" + execution + ",\"echo\":" + body + "}");
+        };
+    }
+
+    private MockHttpServletResponse send(String key, String body, FilterChain chain) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/inventory/stock-in");
+        request.setContextPath("/api");
+        request.setContentType("application/json");
+        request.setContent(body.getBytes(StandardCharsets.UTF_8));
+        request.addHeader(IdempotencyFilter.HEADER, key);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, chain);
+        return response;
+    }
+}
@@ -0,0 +1,57 @@
+package com.warehouse.config;
+
+import com.warehouse.entity.*;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import static com.warehouse.support.TestEntities.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests that the inventory id sequence is moved past ids inserted before
+ * it existed.
+ */
+@DataJpaTest
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(InventorySequenceInitializer.class)
+class InventorySequenceInitializerTest {
+
+    @Autowired
+    private InventorySequenceInitializer initializer;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void afterSingletonsInstantiated_ExistingIds_NewLotsGetFreshIds() {
+        Organization organization = entityManager.persist(organization());
+        Vendor vendor = entityManager.persist(vendor(organization, "ABC Suppliers"));
+        Product product = entityManager.persist(product(vendor, "SKU-1", "9.99"));
+        Warehouse warehouse = entityManager.persist(warehouse(organization, "North"));
+        entityManager.flush();
+        // A row written with an AUTO_INCREMENT id before the switch to the sequence
+        jdbcTemplate.update("INSERT INTO inventory (id, product_id, warehouse_id, quantity, "
+                + "min_stock_level, max_stock_level, last_updated) VALUES (500, ?, ?, 5, 0, 0, CURRENT_TIMESTAMP)",
+                product.getId(), warehouse.getId());
+
+        initializer.afterSingletonsInstantiated();
+
+        Inventory lot = entityManager.persistFlushFind(stock(product, warehouse, "B1", 10));
+        assertTrue(lot.getId() > 500, "new lot reused an existing id: " + lot.getId());
+
+        // Running again leaves an already advanced sequence alone
+        initializer.afterSingletonsInstantiated();
+        Inventory next = entityManager.persistFlushFind(stock(product, warehouse, "B2", 10));
+        assertEquals(lot.getId() + 1, next.getId());
+    }
+}
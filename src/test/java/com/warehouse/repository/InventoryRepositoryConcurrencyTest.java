@@ -0,0 +1,148 @@
+package com.warehouse.repository;
+
+import com.warehouse.entity.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.warehouse.support.TestEntities.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Concurrency stress tests for the atomic stock movement queries.
+ * Many threads hammer a single inventory row, each movement in its own
+ * transaction, and the final quantity must account for every movement.
+ */
+@DataJpaTest
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class InventoryRepositoryConcurrencyTest {
+
+    private static final int THREADS = 16;
+    private static final int INITIAL_STOCK = 1000;
+
+    @Autowired
+    private InventoryRepository inventoryRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private WarehouseRepository warehouseRepository;
+
+    @Autowired
+    private VendorRepository vendorRepository;
+
+    @Autowired
+    private OrganizationRepository organizationRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate transactionTemplate;
+    private Inventory inventory;
+
+    @BeforeEach
+    void setUp() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        inventoryRepository.deleteAll();
+        productRepository.deleteAll();
+        warehouseRepository.deleteAll();
+        vendorRepository.deleteAll();
+        organizationRepository.deleteAll();
+
+        Organization organization = organizationRepository.save(organization());
+        Vendor vendor = vendorRepository.save(vendor(organization, "ABC Suppliers"));
+        Product product = productRepository.save(product(vendor, "SKU-HOT-1", "9.99"));
+        Warehouse warehouse = warehouseRepository.save(warehouse(organization, "Main DC"));
+        inventory = inventoryRepository.save(stock(product, warehouse, "BATCH-1", INITIAL_STOCK));
+    }
+
+    @Test
+    void concurrentDecrements_NeverOversell() throws Exception {
+        AtomicInteger accepted = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        int pickSize = 7;
+        int attemptsPerThread = 20; // 16 * 20 * 7 = 2240 units requested against 1000
+
+        runConcurrently(() -> {
+            for (int i = 0; i < attemptsPerThread; i++) {
+                if (decrement(pickSize) == 1) {
+                    accepted.incrementAndGet();
+                } else {
+                    rejected.incrementAndGet();
+                }
+            }
+        });
+
+        int remaining = currentQuantity();
+        assertEquals(THREADS * attemptsPerThread, accepted.get() + rejected.get());
+        assertEquals(INITIAL_STOCK - accepted.get() * pickSize, remaining);
+        assertTrue(remaining >= 0);
+        assertTrue(remaining < pickSize, "stock left over although picks were rejected");
+    }
+
+    @Test
+    void concurrentIncrementsAndDecrements_LoseNoUpdates() throws Exception {
+        AtomicInteger decremented = new AtomicInteger();
+        int movementsPerThread = 50;
+
+        runConcurrently(() -> {
+            for (int i = 0; i < movementsPerThread; i++) {
+                increment(3);
+                if (decrement(2) == 1) {
+                    decremented.incrementAndGet();
+                }
+            }
+        });
+
+        int received = THREADS * movementsPerThread * 3;
+        assertEquals(THREADS * movementsPerThread, decremented.get());
+        assertEquals(INITIAL_STOCK + received - decremented.get() * 2, currentQuantity());
+    }
+
+    private int decrement(int quantity) {
+        return transactionTemplate.execute(status -> inventoryRepository.decrementLotIfAvailable(
+                inventory.getProduct().getId(), inventory.getWarehouse().getId(), null, "BATCH-1", quantity));
+    }
+
+    private int increment(int quantity) {
+        return transactionTemplate.execute(status -> inventoryRepository.incrementLot(
+                inventory.getProduct().getId(), inventory.getWarehouse().getId(), null, "BATCH-1", quantity));
+    }
+
+    private int currentQuantity() {
+        return inventoryRepository.findById(inventory.getId()).orElseThrow().getQuantity();
+    }
+
+    private void runConcurrently(Runnable work) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                work.run();
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,125 @@
+package com.warehouse.repository;
+
+import com.warehouse.dto.InventoryDTO;
+import com.warehouse.entity.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.warehouse.support.TestEntities.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the keyset-paginated inventory projection query.
+ */
+@DataJpaTest
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+class InventoryRepositoryPageTest {
+
+    @Autowired
+    private InventoryRepository inventoryRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private WarehouseRepository warehouseRepository;
+
+    @Autowired
+    private StorageZoneRepository storageZoneRepository;
+
+    @Autowired
+    private VendorRepository vendorRepository;
+
+    @Autowired
+    private OrganizationRepository organizationRepository;
+
+    private Warehouse warehouse;
+    private StorageZone coldZone;
+    private LocalDate today;
+
+    @BeforeEach
+    void setUp() {
+        today = LocalDate.now();
+
+        Organization organization = organizationRepository.save(organization());
+        Vendor vendor = vendorRepository.save(vendor(organization, "ABC Suppliers"));
+        warehouse = warehouseRepository.save(warehouse(organization, "Main DC"));
+
+        coldZone = new StorageZone();
+        coldZone.setName("Cold A");
+        coldZone.setWarehouse(warehouse);
+        coldZone.setCapacity(10_000);
+        coldZone.setZoneType(ZoneType.COLD_STORAGE);
+        coldZone = storageZoneRepository.save(coldZone);
+
+        Product dairy = productRepository.save(product(vendor, "SKU-MILK", "9.99", "Dairy"));
+        Product hardware = productRepository.save(product(vendor, "SKU-BOLT", "9.99", "Hardware"));
+
+        // 5 dairy lots in the cold zone, expiring on consecutive days; 5 hardware lots without a zone
+        for (int i = 0; i < 5; i++) {
+            Inventory milk = stock(dairy, warehouse, "MILK-" + i, 20);
+            milk.setZone(coldZone);
+            milk.setExpiryDate(today.plusDays(i));
+            inventoryRepository.saveAndFlush(milk);
+            inventoryRepository.saveAndFlush(stock(hardware, warehouse, "BOLT-" + i, i == 0 ? 0 : 500));
+        }
+    }
+
+    @Test
+    void findPage_WalksAllRowsInIdOrder() {
+        List<InventoryDTO> seen = new ArrayList<>();
+        long afterId = 0;
+        while (true) {
+            List<InventoryDTO> page = page(afterId, null, null, null, false, null, 3);
+            if (page.isEmpty()) {
+                break;
+            }
+            seen.addAll(page);
+            afterId = page.get(page.size() - 1).getId();
+        }
+
+        assertEquals(10, seen.size());
+        for (int i = 1; i < seen.size(); i++) {
+            assertTrue(seen.get(i - 1).getId() < seen.get(i).getId());
+        }
+        assertEquals("Main DC", seen.get(0).getWarehouseName());
+    }
+
+    @Test
+    void findPage_FiltersByZoneTypeAndCategory() {
+        List<InventoryDTO> cold = page(0, null, ZoneType.COLD_STORAGE, null, false, null, 50);
+        List<InventoryDTO> hardware = page(0, null, null, "Hardware", false, null, 50);
+
+        assertEquals(5, cold.size());
+        assertTrue(cold.stream().allMatch(dto -> "Cold A".equals(dto.getZoneName())));
+        assertEquals(5, hardware.size());
+        assertTrue(hardware.stream().allMatch(dto -> dto.getZoneId() == null));
+    }
+
+    @Test
+    void findPage_FiltersLowStockAndExpiring() {
+        List<InventoryDTO> lowStock = page(0, null, null, null, true, null, 50);
+        List<InventoryDTO> expiring = page(0, coldZone.getId(), null, null, false, today.plusDays(2), 50);
+
+        assertEquals(1, lowStock.size());
+        assertTrue(lowStock.get(0).getIsLowStock());
+        assertEquals(3, expiring.size());
+        assertTrue(expiring.stream().allMatch(InventoryDTO::getIsExpiringSoon));
+    }
+
+    private List<InventoryDTO> page(long afterId, Long zoneId, ZoneType zoneType, String category, boolean lowStock,
+            LocalDate expiringBefore, int size) {
+        return inventoryRepository.findPage(warehouse.getId(), afterId, zoneId, zoneType, category, lowStock,
+                expiringBefore, today.plusDays(30), PageRequest.ofSize(size));
+    }
+}
@@ -0,0 +1,212 @@
+package com.warehouse.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.warehouse.dto.StockAlertDTO;
+import com.warehouse.event.LotsExpiredEvent;
+import com.warehouse.event.StockMovementEvent;
+import com.warehouse.support.TestEntities;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.lang.reflect.Proxy;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for AlertBroadcaster.
+ * Tests threshold crossing detection, subscriber scoping, the subscriber limit and
+ * fan-out past a subscriber that stopped reading.
+ */
+@ExtendWith(MockitoExtension.class)
+class AlertBroadcasterTest {
+
+    @Spy
+    private ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+
+    @InjectMocks
+    private AlertBroadcaster broadcaster;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(broadcaster, "emitterTimeoutMs", 60_000L);
+        ReflectionTestUtils.setField(broadcaster, "maxSubscribers", 2);
+        ReflectionTestUtils.setField(broadcaster, "senderThreads", 2);
+        ReflectionTestUtils.setField(broadcaster, "subscriberQueue", 16);
+        ReflectionTestUtils.setField(broadcaster, "sendTimeoutMs", 60_000L);
+        broadcaster.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        broadcaster.stop();
+    }
+
+    @Test
+    void onStockMovement_CrossingThreshold_PublishesOnce() throws Exception {
+        broadcaster.subscribe(1L, null);
+
+        broadcaster.onStockMovement(movement(10L, -3, 7, 5)); // 10 -> 7, still above 5
+        broadcaster.onStockMovement(movement(10L, -3, 4, 5)); // 7 -> 4, crosses
+        broadcaster.onStockMovement(movement(10L, -1, 3, 5)); // already low
+        broadcaster.onStockMovement(movement(10L, 10, 13, 5)); // restocked
+
+        ArgumentCaptor<StockAlertDTO> alerts = ArgumentCaptor.forClass(StockAlertDTO.class);
+        verify(objectMapper, times(2)).writeValueAsString(alerts.capture());
+        assertEquals(List.of(StockAlertDTO.Type.LOW_STOCK, StockAlertDTO.Type.RESTOCKED),
+                alerts.getAllValues().stream().map(StockAlertDTO::getType).toList());
+        assertEquals(4, alerts.getAllValues().get(0).getQuantity());
+    }
+
+    @Test
+    void onStockMovement_NoSubscriberInScope_SkipsSerialization() throws Exception {
+        broadcaster.subscribe(null, 99L);
+        broadcaster.subscribe(2L, null);
+
+        broadcaster.onStockMovement(movement(10L, -3, 4, 5));
+
+        verify(objectMapper, never()).writeValueAsString(any());
+    }
+
+    @Test
+    void onLotsExpired_WarehouseSubscriber_Publishes() throws Exception {
+        broadcaster.subscribe(null, 10L);
+
+        broadcaster.onLotsExpired(new LotsExpiredEvent(10L, 1L, LocalDate.now(), List.of(5L, 6L)));
+
+        ArgumentCaptor<StockAlertDTO> alert = ArgumentCaptor.forClass(StockAlertDTO.class);
+        verify(objectMapper).writeValueAsString(alert.capture());
+        assertEquals(StockAlertDTO.Type.EXPIRED, alert.getValue().getType());
+        assertEquals(List.of(5L, 6L), alert.getValue().getInventoryIds());
+    }
+
+    @Test
+    void subscribe_OverLimitOrUnscoped_Rejected() {
+        broadcaster.subscribe(1L, null);
+        broadcaster.subscribe(1L, 10L);
+
+        assertThrows(IllegalStateException.class, () -> broadcaster.subscribe(1L, null));
+        assertThrows(IllegalArgumentException.class, () -> broadcaster.subscribe(null, null));
+        assertEquals(2, broadcaster.getSubscriberCount());
+    }
+
+    @Test
+    void publish_StalledSubscriber_OthersStillReceive() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        Client stalled = new Client(release);
+        Client healthy = new Client(null);
+        stalled.connect(broadcaster.subscribe(1L, null));
+        healthy.connect(broadcaster.subscribe(1L, null));
+        stalled.stall = true;
+
+        broadcaster.onStockMovement(movement(10L, -3, 4, 5));
+        broadcaster.onStockMovement(movement(10L, 10, 14, 5));
+
+        assertTrue(healthy.alerts.await(5, TimeUnit.SECONDS));
+        assertTrue(stalled.blocked.await(5, TimeUnit.SECONDS));
+
+        // Still stuck in its first write past send-timeout-ms: dropped without waiting for the write
+        ReflectionTestUtils.setField(broadcaster, "sendTimeoutMs", 0L);
+        broadcaster.heartbeat();
+        assertEquals(1, broadcaster.getSubscriberCount());
+        release.countDown();
+        assertTrue(stalled.completed.await(5, TimeUnit.SECONDS));
+        assertFalse(healthy.completed.await(100, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void publish_SubscriberFallsBehind_Dropped() throws Exception {
+        ReflectionTestUtils.setField(broadcaster, "subscriberQueue", 1);
+        CountDownLatch release = new CountDownLatch(1);
+        Client stalled = new Client(release);
+        stalled.connect(broadcaster.subscribe(1L, null));
+        stalled.stall = true;
+
+        broadcaster.onStockMovement(movement(10L, -3, 4, 5)); // Being written
+        assertTrue(stalled.blocked.await(5, TimeUnit.SECONDS));
+        broadcaster.onStockMovement(movement(10L, 10, 14, 5)); // Queued
+        broadcaster.onStockMovement(movement(10L, -10, 4, 5)); // No room
+
+        assertEquals(0, broadcaster.getSubscriberCount());
+        release.countDown();
+        assertTrue(stalled.completed.await(5, TimeUnit.SECONDS));
+        // Only the frame that was in flight reached it
+        assertEquals(1, stalled.alerts.getCount());
+    }
+
+    private static StockMovementEvent movement(Long warehouseId, int quantity, int resulting, int minStockLevel) {
+        StockMovementEvent event = TestEntities.movement(42L, 7L, warehouseId, quantity, resulting);
+        event.setOrganizationId(1L);
+        event.setMinStockLevel(minStockLevel);
+        return event;
+    }
+
+    /**
+     * Stands in for the servlet response Spring MVC attaches to a returned
+     * emitter, counting the alert frames written to it. Once {@code stall} is
+     * set, a write blocks until {@code release} opens, like a client that
+     * stopped reading.
+     */
+    private static final class Client {
+        final CountDownLatch alerts = new CountDownLatch(2);
+        final CountDownLatch blocked = new CountDownLatch(1);
+        final CountDownLatch completed = new CountDownLatch(1);
+        final CountDownLatch release;
+        volatile boolean stall;
+
+        Client(CountDownLatch release) {
+            this.release = release;
+        }
+
+        void connect(SseEmitter emitter) throws Exception {
+            Class<?> handlerType = Class.forName(ResponseBodyEmitter.class.getName() + "$Handler");
+            Object handler = Proxy.newProxyInstance(handlerType.getClassLoader(), new Class<?>[] { handlerType },
+                    (proxy, method, args) -> {
+                        switch (method.getName()) {
+                            case "send" -> write(args[0]);
+                            case "complete", "completeWithError" -> completed.countDown();
+                            case "hashCode" -> {
+                                return System.identityHashCode(proxy);
+                            }
+                            case "equals" -> {
+                                return proxy == args[0];
+                            }
+                            case "toString" -> {
+                                return "Client";
+                            }
+                            default -> {
+                            }
+                        }
+                        return null;
+                    });
+            ReflectionTestUtils.invokeMethod(emitter, "initialize", handler);
+        }
+
+        private void write(Object frame) throws InterruptedException {
+            if (stall) {
+                blocked.countDown();
+                release.await();
+            }
+            boolean alert = ((Set<?>) frame).stream().anyMatch(part -> String.valueOf(
+                    ((ResponseBodyEmitter.DataWithMediaType) part).getData()).contains("event:alert"));
+            if (alert) {
+                alerts.countDown();
+            }
+        }
+    }
+}
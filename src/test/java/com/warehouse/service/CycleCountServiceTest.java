@@ -0,0 +1,234 @@
+package com.warehouse.service;
+
+import com.warehouse.dto.CycleCountRequest;
+import com.warehouse.dto.CycleCountResponse;
+import com.warehouse.entity.*;
+import com.warehouse.event.StockMovementEvent;
+import com.warehouse.repository.InventoryRepository;
+import com.warehouse.repository.InventoryTransactionRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for CycleCountService.
+ * Tests count-time snapshots, waiting for the movement log, line errors,
+ * per-warehouse and per-product batching, and which lots are locked.
+ */
+@ExtendWith(MockitoExtension.class)
+class CycleCountServiceTest {
+
+    @Mock
+    private InventoryRepository inventoryRepository;
+
+    @Mock
+    private InventoryTransactionRepository inventoryTransactionRepository;
+
+    @Mock
+    private InventoryMovementLog inventoryMovementLog;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @InjectMocks
+    private CycleCountService cycleCountService;
+
+    private final LocalDateTime countedAt = LocalDateTime.now().minusHours(2);
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(cycleCountService, "parallelism", 2);
+        ReflectionTestUtils.setField(cycleCountService, "batchSize", 500);
+        cycleCountService.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        cycleCountService.stop();
+    }
+
+    @Test
+    void reconcile_StockMovedSinceCount_AdjustsAgainstSnapshot() throws Exception {
+        // 110 units at count time, 30 picked since, 100 counted: 10 missing
+        Inventory lot = lot(7L, 1L, 1L, 80);
+        lot.setMovementSeq(12L);
+        when(inventoryRepository.findLotKeys(anyCollection(), eq(List.of(1L)))).thenReturn(keys(lot));
+        when(inventoryRepository.findAllByIdInForUpdate(anyCollection())).thenReturn(List.of(lot));
+        when(inventoryTransactionRepository.findMovementSeqAt(List.of(7L), countedAt))
+                .thenReturn(List.<Object[]>of(new Object[] { 7L, 10L }));
+        when(inventoryTransactionRepository.summarizeMovementsSince(List.of(7L), countedAt))
+                .thenReturn(List.<Object[]>of(new Object[] { 7L, 2L, -30L }));
+
+        CycleCountResponse response = cycleCountService.reconcile(request(line(1L, 1L, 100)), 9L);
+
+        assertEquals(1, response.getLotsAdjusted());
+        assertEquals(-10, response.getNetAdjustment());
+        CycleCountResponse.Variance variance = response.getVariances().get(0);
+        assertEquals(110, variance.getExpectedQuantity());
+        assertEquals(-10, variance.getAdjustment());
+        assertEquals(70, lot.getQuantity());
+
+        ArgumentCaptor<StockMovementEvent> event = ArgumentCaptor.forClass(StockMovementEvent.class);
+        verify(eventPublisher).publishEvent(event.capture());
+        assertEquals(TransactionType.ADJUSTMENT, event.getValue().getTransactionType());
+        assertEquals(-10, event.getValue().getQuantity());
+        assertEquals("CYCLE_COUNT", event.getValue().getReasonCode());
+        assertEquals(13L, event.getValue().getMovementSeq());
+        // Both movements since the count were logged, so there was nothing to wait for
+        verify(inventoryMovementLog, never()).awaitWritten(anyLong());
+    }
+
+    @Test
+    void reconcile_MovementNotLoggedYet_RetriedOnceLogCatchesUp() throws Exception {
+        // 30 picked since the count in two movements; the second reaches the log only later
+        Inventory lot = lot(7L, 1L, 1L, 80);
+        lot.setMovementSeq(12L);
+        when(inventoryRepository.findLotKeys(anyCollection(), eq(List.of(1L)))).thenReturn(keys(lot));
+        when(inventoryRepository.findAllByIdInForUpdate(anyCollection())).thenReturn(List.of(lot));
+        when(inventoryTransactionRepository.findMovementSeqAt(List.of(7L), countedAt))
+                .thenReturn(List.<Object[]>of(new Object[] { 7L, 10L }));
+        when(inventoryTransactionRepository.summarizeMovementsSince(List.of(7L), countedAt))
+                .thenReturn(List.<Object[]>of(new Object[] { 7L, 1L, -20L }))
+                .thenReturn(List.<Object[]>of(new Object[] { 7L, 2L, -30L }));
+
+        CycleCountResponse response = cycleCountService.reconcile(request(line(1L, 1L, 100)), 9L);
+
+        assertEquals(110, response.getVariances().get(0).getExpectedQuantity());
+        assertEquals(70, lot.getQuantity());
+        verify(inventoryMovementLog).awaitWritten(anyLong());
+        verify(inventoryRepository, times(2)).findAllByIdInForUpdate(anyCollection());
+        verify(eventPublisher).publishEvent(any(StockMovementEvent.class));
+    }
+
+    @Test
+    void reconcile_LogNeverCatchesUp_LineReportedAsError() {
+        Inventory lot = lot(7L, 1L, 1L, 80);
+        lot.setMovementSeq(12L);
+        when(inventoryRepository.findLotKeys(anyCollection(), eq(List.of(1L)))).thenReturn(keys(lot));
+        when(inventoryRepository.findAllByIdInForUpdate(anyCollection())).thenReturn(List.of(lot));
+
+        CycleCountResponse response = cycleCountService.reconcile(request(line(1L, 1L, 100)), 9L);
+
+        assertEquals(0, response.getLotsAdjusted());
+        assertEquals(List.of(0), response.getErrors().stream().map(CycleCountResponse.LineError::getIndex).toList());
+        assertEquals(80, lot.getQuantity());
+        verify(eventPublisher, never()).publishEvent(any());
+    }
+
+    @Test
+    void reconcile_UnknownAndDuplicateLines_ReportedAsErrors() {
+        Inventory lot = lot(7L, 1L, 1L, 50);
+        when(inventoryRepository.findLotKeys(anyCollection(), eq(List.of(1L)))).thenReturn(keys(lot));
+        when(inventoryRepository.findAllByIdInForUpdate(anyCollection())).thenReturn(List.of(lot));
+
+        CycleCountResponse response = cycleCountService.reconcile(
+                request(line(1L, 1L, 50), line(2L, 1L, 5), line(1L, 1L, 40)), 9L);
+
+        assertEquals(0, response.getLotsAdjusted());
+        assertEquals(List.of(1, 2), response.getErrors().stream().map(CycleCountResponse.LineError::getIndex).toList());
+        verify(eventPublisher, never()).publishEvent(any());
+    }
+
+    @Test
+    void reconcile_SheetSpanningWarehouses_ReconcilesEachBatchSeparately() {
+        ReflectionTestUtils.setField(cycleCountService, "batchSize", 1);
+        when(inventoryRepository.findLotKeys(anyCollection(), anyCollection())).thenReturn(List.of());
+
+        CycleCountResponse response = cycleCountService.reconcile(
+                request(line(1L, 1L, 5), line(2L, 1L, 5), line(1L, 2L, 5)), 9L);
+
+        assertEquals(3, response.getErrors().size());
+        verify(inventoryRepository, times(2)).findLotKeys(anyCollection(), eq(List.of(1L)));
+        verify(inventoryRepository).findLotKeys(anyCollection(), eq(List.of(2L)));
+        verify(inventoryRepository, never()).findAllByIdInForUpdate(anyCollection());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void reconcile_LargeWarehouseSheet_SplitsByProductAndLocksOnlyCountedLots() {
+        ReflectionTestUtils.setField(cycleCountService, "batchSize", 2);
+        Inventory bolt = lot(7L, 1L, 1L, 10);
+        Inventory nutA = lot(8L, 2L, 1L, 10, "A");
+        Inventory nutB = lot(9L, 2L, 1L, 10, "B");
+        Inventory nutC = lot(10L, 2L, 1L, 10, "C"); // Not on the sheet
+        when(inventoryRepository.findLotKeys(eq(Set.of(1L)), eq(List.of(1L)))).thenReturn(keys(bolt));
+        when(inventoryRepository.findLotKeys(eq(Set.of(2L)), eq(List.of(1L)))).thenReturn(keys(nutA, nutB, nutC));
+        when(inventoryRepository.findAllByIdInForUpdate(anyCollection())).thenAnswer(invocation -> {
+            Collection<Long> ids = invocation.getArgument(0);
+            return Stream.of(bolt, nutA, nutB, nutC).filter(lot -> ids.contains(lot.getId())).toList();
+        });
+
+        // Two lines of product 2 around one of product 1: the cut falls between the products
+        CycleCountResponse response = cycleCountService.reconcile(request(line(2L, 1L, "A", 10),
+                line(1L, 1L, 10), line(2L, 1L, "B", 12)), 9L);
+
+        assertEquals(1, response.getLotsAdjusted());
+        assertEquals(2, response.getNetAdjustment());
+        ArgumentCaptor<Collection<Long>> locked = ArgumentCaptor.forClass(Collection.class);
+        verify(inventoryRepository, times(2)).findAllByIdInForUpdate(locked.capture());
+        assertEquals(Set.of(Set.of(7L), Set.of(8L, 9L)), locked.getAllValues().stream()
+                .map(HashSet::new).collect(Collectors.toSet()));
+    }
+
+    private CycleCountRequest request(CycleCountRequest.Line... lines) {
+        CycleCountRequest request = new CycleCountRequest();
+        request.setCountedAt(countedAt);
+        request.setLines(new ArrayList<>(List.of(lines)));
+        return request;
+    }
+
+    private static CycleCountRequest.Line line(Long productId, Long warehouseId, int counted) {
+        return line(productId, warehouseId, null, counted);
+    }
+
+    private static CycleCountRequest.Line line(Long productId, Long warehouseId, String batchNumber, int counted) {
+        return new CycleCountRequest.Line(productId, warehouseId, null, batchNumber, counted);
+    }
+
+    private static List<Object[]> keys(Inventory... lots) {
+        return Stream.of(lots).map(lot -> new Object[] { lot.getId(), lot.getProduct().getId(),
+                lot.getWarehouse().getId(), null, lot.getBatchNumber() }).toList();
+    }
+
+    private static Inventory lot(Long id, Long productId, Long warehouseId, int quantity) {
+        return lot(id, productId, warehouseId, quantity, null);
+    }
+
+    private static Inventory lot(Long id, Long productId, Long warehouseId, int quantity, String batchNumber) {
+        Organization organization = new Organization();
+        organization.setId(1L);
+        Warehouse warehouse = new Warehouse();
+        warehouse.setId(warehouseId);
+        warehouse.setOrganization(organization);
+        Product product = new Product();
+        product.setId(productId);
+
+        Inventory inventory = new Inventory();
+        inventory.setId(id);
+        inventory.setProduct(product);
+        inventory.setWarehouse(warehouse);
+        inventory.setQuantity(quantity);
+        inventory.setBatchNumber(batchNumber);
+        return inventory;
+    }
+}
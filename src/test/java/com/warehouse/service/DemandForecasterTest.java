@@ -0,0 +1,135 @@
+package com.warehouse.service;
+
+import com.warehouse.entity.TransactionType;
+import com.warehouse.event.StockMovementEvent;
+import com.warehouse.support.TestEntities;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for DemandForecaster.
+ * Tests the smoothed forecast, idle-period decay and batched level write-back.
+ */
+@ExtendWith(MockitoExtension.class)
+class DemandForecasterTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private LowStockIndex lowStockIndex;
+
+    @InjectMocks
+    private DemandForecaster forecaster;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(forecaster, "periodHours", 24);
+        ReflectionTestUtils.setField(forecaster, "alpha", 0.2);
+        ReflectionTestUtils.setField(forecaster, "serviceLevelZ", 1.65);
+        ReflectionTestUtils.setField(forecaster, "leadTimeDays", 7.0);
+        ReflectionTestUtils.setField(forecaster, "reviewDays", 14.0);
+        ReflectionTestUtils.setField(forecaster, "warmupPeriods", 7);
+        ReflectionTestUtils.setField(forecaster, "batchSize", 1000);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void flush_SteadyDemand_WritesReorderPointAndMaxLevel() {
+        LocalDateTime day = LocalDateTime.of(2024, 7, 1, 10, 0);
+        for (int i = 0; i <= 7; i++) {
+            forecaster.onStockMovement(stockOut(1L, 2L, 4, day.plusDays(i)));
+            forecaster.onStockMovement(stockOut(1L, 2L, 6, day.plusDays(i).plusHours(3)));
+        }
+
+        forecaster.flush();
+
+        ArgumentCaptor<List<Object[]>> batch = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate).batchUpdate(anyString(), batch.capture());
+        // 10 a day, no variance: 7 days of lead time, 14 more of review period
+        assertArrayEquals(new Object[] { 70, 210, 1L, 2L }, batch.getValue().get(0));
+        verify(lowStockIndex).reindexProducts(Set.of(1L));
+
+        forecaster.flush();
+        verifyNoMoreInteractions(jdbcTemplate);
+    }
+
+    @Test
+    void flush_BeforeWarmup_WritesNothing() {
+        LocalDateTime day = LocalDateTime.of(2024, 7, 1, 10, 0);
+        for (int i = 0; i < 3; i++) {
+            forecaster.onStockMovement(stockOut(1L, 2L, 10, day.plusDays(i)));
+        }
+
+        forecaster.flush();
+
+        verifyNoInteractions(jdbcTemplate);
+    }
+
+    @Test
+    void onStockMovement_IgnoresReceiptsAndTransfers() {
+        StockMovementEvent receipt = stockOut(1L, 2L, 10, LocalDateTime.now());
+        receipt.setTransactionType(TransactionType.STOCK_IN);
+        receipt.setQuantity(10);
+        StockMovementEvent transfer = stockOut(1L, 2L, 10, LocalDateTime.now());
+        transfer.setTransactionType(TransactionType.TRANSFER);
+
+        forecaster.onStockMovement(receipt);
+        forecaster.onStockMovement(transfer);
+
+        assertNull(forecaster.forecast(1L, 2L));
+    }
+
+    @Test
+    void record_IdlePeriods_DecayLikeZeroDemandPeriods() {
+        long start = 20_000;
+        for (long period = start; period < start + 5; period++) {
+            forecaster.record(1L, 1L, 10 + period % 3, period);
+            forecaster.record(1L, 2L, 10 + period % 3, period);
+        }
+        // Pair 1 sees every empty period, pair 2 jumps over them
+        for (long period = start + 5; period < start + 30; period++) {
+            forecaster.record(1L, 1L, 0, period);
+        }
+        forecaster.record(1L, 2L, 0, start + 29);
+
+        double[] stepped = forecaster.forecast(1L, 1L);
+        double[] jumped = forecaster.forecast(1L, 2L);
+        assertEquals(stepped[0], jumped[0], 1e-9);
+        assertEquals(stepped[1], jumped[1], 1e-9);
+        assertEquals(29, jumped[2]);
+    }
+
+    @Test
+    void record_ManyPairs_SurvivesResize() {
+        for (long product = 1; product <= 20_000; product++) {
+            forecaster.record(product, 7L, product, 100);
+            forecaster.record(product, 7L, 0, 101);
+        }
+
+        for (long product = 1; product <= 20_000; product += 997) {
+            assertEquals(product, forecaster.forecast(product, 7L)[0], 1e-9);
+        }
+    }
+
+    private static StockMovementEvent stockOut(Long productId, Long warehouseId, int quantity, LocalDateTime at) {
+        StockMovementEvent event = TestEntities.movement(null, productId, warehouseId, -quantity, 0);
+        event.setTimestamp(at);
+        return event;
+    }
+}
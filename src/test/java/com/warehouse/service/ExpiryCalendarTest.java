@@ -0,0 +1,154 @@
+package com.warehouse.service;
+
+import com.warehouse.event.StockMovementEvent;
+import com.warehouse.support.TestEntities;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for ExpiryCalendar.
+ * Tests date-ordered merging across warehouses, paging, scoping, bucket cleanup and
+ * out-of-order movements.
+ */
+@ExtendWith(MockitoExtension.class)
+class ExpiryCalendarTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @InjectMocks
+    private ExpiryCalendar calendar;
+
+    private final LocalDate today = LocalDate.now();
+
+    // Quantity and expiry of each lot as last committed, as the table returns them
+    private final Map<Long, Map<String, Object>> table = new HashMap<>();
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(jdbcTemplate.queryForList(anyString(), anyLong())).thenAnswer(invocation -> {
+            Map<String, Object> row = table.get(invocation.<Long>getArgument(1));
+            return row != null ? List.of(row) : List.of();
+        });
+    }
+
+    @Test
+    void findExpiring_MergesWarehousesInDateOrder() {
+        calendar.onStockMovement(movement(1L, 10L, 100L, today.plusDays(3), 5));
+        calendar.onStockMovement(movement(2L, 20L, 100L, today.plusDays(1), 5));
+        calendar.onStockMovement(movement(3L, 10L, 100L, today, 5));
+        calendar.onStockMovement(movement(4L, 20L, 100L, today.plusDays(30), 5));
+
+        assertEquals(List.of(3L, 2L, 1L), calendar.findExpiring(null, 100L, 7, false, 0, 10));
+        assertEquals(List.of(2L, 1L), calendar.findExpiring(null, 100L, 7, false, 1, 10));
+        assertEquals(List.of(3L), calendar.findExpiring(null, 100L, 7, false, 0, 1));
+        assertEquals(List.of(3L, 1L), calendar.findExpiring(10L, null, 7, false, 0, 10));
+        assertEquals(List.of(), calendar.findExpiring(null, 200L, 7, false, 0, 10));
+    }
+
+    @Test
+    void findExpiring_IncludeExpired_ListsPastLotsFirst() {
+        calendar.onStockMovement(movement(1L, 10L, 100L, today.plusDays(2), 5));
+        calendar.onStockMovement(movement(2L, 10L, 100L, today.minusDays(4), 5));
+
+        assertEquals(List.of(1L), calendar.findExpiring(10L, null, 7, false, 0, 10));
+        assertEquals(List.of(2L, 1L), calendar.findExpiring(10L, null, 7, true, 0, 10));
+    }
+
+    @Test
+    void onStockMovement_LastLotOfDayEmptied_BucketRemoved() {
+        calendar.onStockMovement(movement(1L, 10L, 100L, today.plusDays(2), 5));
+        calendar.onStockMovement(movement(2L, 10L, 100L, today.plusDays(2), 5));
+        calendar.onStockMovement(movement(3L, 10L, 100L, today.minusDays(1), 5));
+        assertEquals(2, calendar.bucketCount(10L));
+
+        calendar.onStockMovement(movement(1L, 10L, 100L, today.plusDays(2), 0));
+        assertEquals(2, calendar.bucketCount(10L));
+        calendar.onStockMovement(movement(2L, 10L, 100L, today.plusDays(2), 0));
+        calendar.onStockMovement(movement(3L, 10L, 100L, today.minusDays(1), 0));
+
+        assertEquals(0, calendar.bucketCount(10L));
+        assertEquals(List.of(), calendar.findExpiring(10L, null, 7, true, 0, 10));
+    }
+
+    @Test
+    void onStockMovement_NoExpiryDate_Ignored() {
+        calendar.onStockMovement(movement(1L, 10L, 100L, null, 5));
+
+        assertEquals(0, calendar.bucketCount(10L));
+    }
+
+    @Test
+    void onStockMovement_StaleEventAfterNewer_KeepsCurrentState() {
+        // Commits: a pick empties lot 1, then a restock refills it. Events arrive in reverse order.
+        calendar.onStockMovement(movement(1L, 10L, 100L, today.plusDays(2), 5));
+        StockMovementEvent pick = movement(1L, 10L, 100L, today.plusDays(2), 0);
+        StockMovementEvent restock = movement(1L, 10L, 100L, today.plusDays(2), 5);
+        calendar.onStockMovement(restock);
+        calendar.onStockMovement(pick);
+
+        assertEquals(List.of(1L), calendar.findExpiring(10L, null, 7, false, 0, 10));
+
+        // And the other way round: a restock of an empty lot, then a pick that empties it again
+        StockMovementEvent refill = movement(2L, 10L, 100L, today.plusDays(3), 5);
+        StockMovementEvent empty = movement(2L, 10L, 100L, today.plusDays(3), 0);
+        calendar.onStockMovement(empty);
+        calendar.onStockMovement(refill);
+
+        assertEquals(List.of(1L), calendar.findExpiring(10L, null, 7, false, 0, 10));
+    }
+
+    @Test
+    void onStockMovement_NoChangeInMembership_SkipsTable() {
+        calendar.onStockMovement(movement(1L, 10L, 100L, today.plusDays(2), 5));
+        calendar.onStockMovement(movement(1L, 10L, 100L, today.plusDays(2), 3));
+        calendar.onStockMovement(movement(2L, 10L, 100L, today.plusDays(2), 0));
+
+        verify(jdbcTemplate, times(1)).queryForList(anyString(), anyLong());
+    }
+
+    @Test
+    void rollForward_NothingPast_PublishesNothing() {
+        calendar.onStockMovement(movement(1L, 10L, 100L, today, 5));
+
+        calendar.rollForward();
+
+        verifyNoInteractions(eventPublisher);
+        assertEquals(List.of(1L), calendar.findExpiring(10L, null, 0, false, 0, 10));
+    }
+
+    /**
+     * Event of a movement that has just committed, leaving the lot's row at
+     * {@code resultingQuantity}.
+     */
+    private StockMovementEvent movement(Long inventoryId, Long warehouseId, Long organizationId,
+            LocalDate expiryDate, int resultingQuantity) {
+        Map<String, Object> row = new HashMap<>();
+        row.put("quantity", resultingQuantity);
+        row.put("expiry_date", expiryDate != null ? Date.valueOf(expiryDate) : null);
+        table.put(inventoryId, row);
+        StockMovementEvent event = TestEntities.movement(inventoryId, null, warehouseId, 0, resultingQuantity);
+        event.setOrganizationId(organizationId);
+        event.setExpiryDate(expiryDate);
+        return event;
+    }
+}
@@ -0,0 +1,136 @@
+package com.warehouse.service;
+
+import com.warehouse.entity.*;
+import com.warehouse.repository.*;
+import com.warehouse.support.TestEntities;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.ByteArrayOutputStream;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the streaming inventory export against an H2 database.
+ * Tests CSV quoting, organization scoping and resuming after an id.
+ */
+@DataJpaTest(properties = "inventory.export.fetch-size=100")
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import(InventoryExportService.class)
+class InventoryExportServiceTest {
+
+    private static final String HEADER = "id,sku,productName,warehouseId,warehouseName,zoneName,batchNumber,"
+            + "quantity,expiryDate,minStockLevel,maxStockLevel,lastUpdated";
+
+    @Autowired
+    private InventoryExportService exportService;
+
+    @Autowired
+    private InventoryRepository inventoryRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private WarehouseRepository warehouseRepository;
+
+    @Autowired
+    private VendorRepository vendorRepository;
+
+    @Autowired
+    private OrganizationRepository organizationRepository;
+
+    private Organization organization;
+    private Inventory first;
+    private Inventory second;
+
+    @BeforeEach
+    void setUp() {
+        inventoryRepository.deleteAll();
+        productRepository.deleteAll();
+        warehouseRepository.deleteAll();
+        vendorRepository.deleteAll();
+        organizationRepository.deleteAll();
+
+        organization = organizationRepository.save(TestEntities.organization());
+        Vendor vendor = vendorRepository.save(TestEntities.vendor(organization, "Acme"));
+        Product product = TestEntities.product(vendor, "BOLT-1", "0.10");
+        product.setName("Bolt, \"hex\" 10mm");
+        product = productRepository.save(product);
+        Warehouse warehouse = warehouseRepository.save(TestEntities.warehouse(organization, "North"));
+        first = inventoryRepository.save(TestEntities.stock(product, warehouse, "A", 7));
+        second = inventoryRepository.save(TestEntities.stock(product, warehouse, "B", 3));
+
+        // Another organization's stock never appears
+        Organization other = organizationRepository.save(TestEntities.organization("Other Corp"));
+        Vendor otherVendor = vendorRepository.save(TestEntities.vendor(other, "Globex"));
+        Product otherProduct = productRepository.save(TestEntities.product(otherVendor, "NUT-1", "0.05"));
+        Warehouse otherWarehouse = warehouseRepository.save(TestEntities.warehouse(other, "South"));
+        inventoryRepository.save(TestEntities.stock(otherProduct, otherWarehouse, "A", 50));
+    }
+
+    @Test
+    void export_Csv_HeaderThenQuotedRows() throws Exception {
+        List<String> lines = csv(0);
+
+        assertEquals(3, lines.size());
+        assertEquals(HEADER, lines.get(0));
+        assertTrue(lines.get(1).startsWith(first.getId() + ",BOLT-1,\"Bolt, \"\"hex\"\" 10mm\","));
+        assertTrue(lines.get(1).contains(",North,,A,7,"));
+        assertTrue(lines.get(2).startsWith(second.getId() + ","));
+    }
+
+    @Test
+    void export_CsvResumed_LeavesOutHeader() throws Exception {
+        List<String> lines = csv(first.getId());
+
+        assertEquals(1, lines.size());
+        assertTrue(lines.get(0).startsWith(second.getId() + ",BOLT-1,"));
+    }
+
+    @Test
+    void export_Ndjson_OneObjectPerLot() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        exportService.export(organization.getId(), InventoryExportService.Format.NDJSON, 0, out);
+
+        List<String> lines = out.toString(StandardCharsets.UTF_8).lines().toList();
+        assertEquals(2, lines.size());
+        assertTrue(lines.get(0).startsWith("{\"id\":" + first.getId() + ",\"sku\":\"BOLT-1\","));
+        assertTrue(lines.get(0).contains("\"productName\":\"Bolt, \\\"hex\\\" 10mm\""));
+        assertTrue(lines.get(1).contains("\"quantity\":3"));
+    }
+
+    @Test
+    void writeCsvField_QuotesOnlyWhenNeeded() throws Exception {
+        assertEquals("", csvField(null));
+        assertEquals("plain", csvField("plain"));
+        assertEquals("\"a,b\"", csvField("a,b"));
+        assertEquals("\"say \"\"hi\"\"\"", csvField("say \"hi\""));
+        assertEquals("\"two\nlines\"", csvField("two\nlines"));
+        assertEquals("\"cr\r\"", csvField("cr\r"));
+    }
+
+    private List<String> csv(long afterId) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        exportService.export(organization.getId(), InventoryExportService.Format.CSV, afterId, out);
+        return out.toString(StandardCharsets.UTF_8).lines().toList();
+    }
+
+    private static String csvField(String value) throws Exception {
+        StringWriter writer = new StringWriter();
+        InventoryExportService.writeCsvField(writer, value);
+        return writer.toString();
+    }
+}
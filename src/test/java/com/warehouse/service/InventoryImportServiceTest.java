@@ -0,0 +1,279 @@
+package com.warehouse.service;
+
+import com.warehouse.dto.ImportJobDTO;
+import com.warehouse.entity.*;
+import com.warehouse.event.StockMovementEvent;
+import com.warehouse.exception.CapacityExceededException;
+import com.warehouse.repository.*;
+import com.warehouse.support.TestEntities;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.context.event.EventListener;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the bulk CSV import against an H2 database.
+ * Tests the parser's edge cases, the row-by-row fallback and resuming a
+ * failed job from its checkpoints.
+ */
+@DataJpaTest
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import({ InventoryImportService.class, InventoryImportServiceTest.FailingListener.class })
+class InventoryImportServiceTest {
+
+    private static final String HEADER = "sku,quantity,batchNumber,expiryDate,zone\r\n";
+
+    @Autowired
+    private InventoryImportService importService;
+
+    @Autowired
+    private InventoryImportBatchRepository importBatchRepository;
+
+    @Autowired
+    private InventoryRepository inventoryRepository;
+
+    @Autowired
+    private StorageZoneRepository storageZoneRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private WarehouseRepository warehouseRepository;
+
+    @Autowired
+    private VendorRepository vendorRepository;
+
+    @Autowired
+    private OrganizationRepository organizationRepository;
+
+    @TempDir
+    Path importDir;
+
+    private Warehouse warehouse;
+    private StorageZone zone;
+
+    @BeforeEach
+    void setUp() {
+        importBatchRepository.deleteAll();
+        inventoryRepository.deleteAll();
+        storageZoneRepository.deleteAll();
+        productRepository.deleteAll();
+        warehouseRepository.deleteAll();
+        vendorRepository.deleteAll();
+        organizationRepository.deleteAll();
+        FailingListener.failures.clear();
+
+        Organization organization = organizationRepository.save(TestEntities.organization());
+        Vendor vendor = vendorRepository.save(TestEntities.vendor(organization, "Acme"));
+        productRepository.save(TestEntities.product(vendor, "BOLT-1", "0.10"));
+        productRepository.save(TestEntities.product(vendor, "NUT-1", "0.05"));
+        warehouse = warehouseRepository.save(TestEntities.warehouse(organization, "North"));
+        zone = new StorageZone();
+        zone.setName("Cold \"A\"");
+        zone.setWarehouse(warehouse);
+        zone.setCapacity(1000);
+        zone.setZoneType(ZoneType.COLD_STORAGE);
+        zone = storageZoneRepository.save(zone);
+
+        ReflectionTestUtils.setField(importService, "importDir", importDir.toString());
+        ReflectionTestUtils.setField(importService, "workers", 1);
+        ReflectionTestUtils.setField(importService, "batchSize", 1000);
+        ReflectionTestUtils.setField(importService, "retainFinishedMs", 3_600_000L);
+    }
+
+    @Test
+    void start_QuotedFieldsAndCrlf_Parsed() throws Exception {
+        ImportJobDTO job = importAndWait(HEADER
+                + "\"BOLT-1\",\"5\",\"L1,east\",2027-01-31,\r\n"
+                + "NUT-1,3,\"say \"\"hi\"\"\",,\"Cold \"\"A\"\"\"\r\n"
+                + "\r\n"
+                + "\"BOLT-1,4,L3,,\r\n"
+                + "BOLT-1,\"4\"x,L4,,\r\n"
+                + "BOLT-1,2,L5,2027-02-30,\r\n"
+                + "BOLT-1,2,L6,,,\r\n"
+                + "NUT-1,7,L7,,");
+
+        assertEquals(ImportJobDTO.Status.COMPLETED, job.getStatus());
+        assertEquals(3, job.getImportedRows());
+        assertEquals(List.of("5: Quoted field is not closed on its line",
+                "6: Unexpected character after a quoted field",
+                "7: Expiry date must be yyyy-MM-dd",
+                "8: Expected 5 fields"), errors(job));
+
+        Map<String, Inventory> lots = lots();
+        assertEquals(Set.of("L1,east", "say \"hi\"", "L7"), lots.keySet());
+        assertEquals(LocalDate.of(2027, 1, 31), lots.get("L1,east").getExpiryDate());
+        assertEquals(5, lots.get("L1,east").getQuantity());
+        assertEquals(zone.getId(), lots.get("say \"hi\"").getZone().getId());
+        assertEquals(7, lots.get("L7").getQuantity());
+    }
+
+    @Test
+    void start_RowsAcrossMapWindowsAndSlices_AllImported() throws Exception {
+        // Windows end inside lines, so those lines are remapped from their start
+        ReflectionTestUtils.setField(importService, "mapWindowBytes", 48L);
+        ReflectionTestUtils.setField(importService, "batchSize", 3);
+        StringBuilder csv = new StringBuilder("sku,quantity,batchNumber,expiryDate,zone\r\n");
+        for (int i = 1; i <= 10; i++) {
+            csv.append("BOLT-1,").append(i).append(",LOT-").append(i).append(",,\r\n");
+        }
+
+        ImportJobDTO job = importAndWait(csv.toString());
+
+        assertEquals(ImportJobDTO.Status.COMPLETED, job.getStatus());
+        assertEquals(10, job.getImportedRows());
+        assertEquals(0, job.getFailedRows());
+        Map<String, Inventory> lots = lots();
+        assertEquals(10, lots.size());
+        for (int i = 1; i <= 10; i++) {
+            assertEquals(i, lots.get("LOT-" + i).getQuantity());
+        }
+        assertEquals(List.of(4L, 7L, 10L, 11L), importBatchRepository.findAll().stream()
+                .map(InventoryImportBatch::getEndLine).sorted().toList());
+    }
+
+    @Test
+    void resume_FailedSlice_ImportsRemainingRowsOnce() throws Exception {
+        ReflectionTestUtils.setField(importService, "batchSize", 2);
+        FailingListener.failures.put("L4", new IllegalStateException("Listener down"));
+
+        ImportJobDTO failed = importAndWait(HEADER
+                + "BOLT-1,1,L1,,\n"
+                + "BOLT-1,2,L2,,\n"
+                + "BOLT-1,3,L3,,\n"
+                + "BOLT-1,4,L4,,\n"
+                + "BOLT-1,5,L5,,\n");
+        assertEquals(ImportJobDTO.Status.FAILED, failed.getStatus());
+        assertEquals(Set.of("L1", "L2"), lots().keySet());
+
+        FailingListener.failures.clear();
+        ImportJobDTO job = await(importService.resume(failed.getId(), 1L).getId());
+
+        assertEquals(ImportJobDTO.Status.COMPLETED, job.getStatus());
+        assertEquals(5, job.getImportedRows());
+        assertEquals(Set.of("L1", "L2", "L3", "L4", "L5"), lots().keySet());
+        assertEquals(5, inventoryRepository.count());
+    }
+
+    @Test
+    void resume_InterruptedRowByRowFallback_ContinuesAfterLastRow() throws Exception {
+        ReflectionTestUtils.setField(importService, "batchSize", 5);
+        // A full zone sends the slice down the row-by-row path, which then fails part way
+        FailingListener.failures.put("L2", new CapacityExceededException("Storage zone is full"));
+        FailingListener.failures.put("L4", new IllegalStateException("Listener down"));
+
+        ImportJobDTO failed = importAndWait(HEADER
+                + "BOLT-1,1,L1,,\n"
+                + "BOLT-1,2,L2,,\n"
+                + "BOLT-1,3,L3,,\n"
+                + "BOLT-1,4,L4,,\n"
+                + "BOLT-1,5,L5,,\n"
+                + "BOLT-1,6,L6,,\n");
+        assertEquals(ImportJobDTO.Status.FAILED, failed.getStatus());
+        assertEquals(Set.of("L1", "L3"), lots().keySet());
+        InventoryImportBatch checkpoint = importBatchRepository.findByJobIdOrderByStartOffset(failed.getId()).get(0);
+        assertEquals(4L, checkpoint.getEndLine());
+        assertEquals(2, checkpoint.getImportedRows());
+        assertEquals(1, checkpoint.getFailedRows());
+
+        FailingListener.failures.clear();
+        ImportJobDTO job = await(importService.resume(failed.getId(), 1L).getId());
+
+        assertEquals(ImportJobDTO.Status.COMPLETED, job.getStatus());
+        assertEquals(5, job.getImportedRows());
+        assertEquals(1, job.getFailedRows());
+        assertEquals(Set.of("L1", "L3", "L4", "L5", "L6"), lots().keySet());
+        // The rest of the first slice and the second slice, cut where the first run cut them
+        assertEquals(List.of(4L, 6L, 7L), importBatchRepository.findByJobIdOrderByStartOffset(failed.getId())
+                .stream().map(InventoryImportBatch::getEndLine).toList());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void evictFinished_DropsJobFromMemory_StillServedFromItsFiles() throws Exception {
+        ImportJobDTO job = importAndWait(HEADER + "BOLT-1,1,L1,,\n");
+        Map<String, ?> jobs = (Map<String, ?>) ReflectionTestUtils.getField(importService, "jobs");
+
+        importService.evictFinished();
+        assertTrue(jobs.containsKey(job.getId()));
+
+        ReflectionTestUtils.setField(importService, "retainFinishedMs", 0L);
+        Thread.sleep(5);
+        importService.evictFinished();
+        assertFalse(jobs.containsKey(job.getId()));
+
+        ImportJobDTO reloaded = importService.getJob(job.getId());
+        assertEquals(ImportJobDTO.Status.COMPLETED, reloaded.getStatus());
+        assertEquals(1, reloaded.getImportedRows());
+    }
+
+    private ImportJobDTO importAndWait(String csv) throws Exception {
+        ImportJobDTO job = importService.start(warehouse.getId(),
+                new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)), 1L);
+        return await(job.getId());
+    }
+
+    private ImportJobDTO await(String jobId) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        ImportJobDTO job = importService.getJob(jobId);
+        while ((job.getStatus() == ImportJobDTO.Status.QUEUED || job.getStatus() == ImportJobDTO.Status.RUNNING)
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+            job = importService.getJob(jobId);
+        }
+        return job;
+    }
+
+    private Map<String, Inventory> lots() {
+        return inventoryRepository.findAll().stream()
+                .collect(Collectors.toMap(Inventory::getBatchNumber, inventory -> inventory));
+    }
+
+    private static List<String> errors(ImportJobDTO job) {
+        return job.getErrors().stream()
+                .sorted(Comparator.comparingLong(ImportJobDTO.RowError::getLine))
+                .map(error -> error.getLine() + ": " + error.getMessage())
+                .toList();
+    }
+
+    /**
+     * Fails the stock-in event of chosen batch numbers, inside the import's
+     * transaction.
+     */
+    static class FailingListener {
+
+        static final Map<String, RuntimeException> failures = new ConcurrentHashMap<>();
+
+        @EventListener
+        public void onStockMovement(StockMovementEvent event) {
+            RuntimeException failure = failures.get(event.getBatchNumber());
+            if (failure != null) {
+                throw failure;
+            }
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.warehouse.service;
+
+import com.warehouse.event.StockMovementEvent;
+import com.warehouse.support.TestEntities;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.sql.PreparedStatement;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for InventoryMovementLog.
+ * Tests group commit, nullable columns and isolation of rows that cannot be written.
+ */
+@ExtendWith(MockitoExtension.class)
+class InventoryMovementLogTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @InjectMocks
+    private InventoryMovementLog movementLog;
+
+    // Inventory ids of every batch the database accepted, in order
+    private final List<List<Long>> committed = Collections.synchronizedList(new ArrayList<>());
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(movementLog, "flushIntervalMs", 50L);
+        ReflectionTestUtils.setField(movementLog, "batchSize", 500);
+        ReflectionTestUtils.setField(movementLog, "capacity", 1000);
+        ReflectionTestUtils.setField(movementLog, "maxAttempts", 3);
+        ReflectionTestUtils.setField(movementLog, "retryBackoffMs", 1L);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        movementLog.stop();
+    }
+
+    @Test
+    void onStockMovement_ConcurrentMovements_WrittenAsOneBatch() throws Exception {
+        acceptAllExcept(Set.of());
+        movementLog.start();
+
+        for (long id = 1; id <= 20; id++) {
+            movementLog.onStockMovement(movement(id, 7L));
+        }
+        movementLog.awaitWritten(5_000);
+
+        assertEquals(1, committed.size());
+        assertEquals(20, committed.get(0).size());
+    }
+
+    @Test
+    void write_NullableColumns_BoundAsNull() throws Exception {
+        acceptAllExcept(Set.of());
+        movementLog.start();
+        PreparedStatement ps = mock(PreparedStatement.class);
+
+        movementLog.onStockMovement(movement(1L, null));
+        movementLog.awaitWritten(5_000);
+
+        @SuppressWarnings("unchecked")
+        ParameterizedPreparedStatementSetter<StockMovementEvent> setter = mockingDetails(jdbcTemplate)
+                .getInvocations().iterator().next().getArgument(3);
+        setter.setValues(ps, movement(1L, null));
+        verify(ps).setObject(4, null, Types.BIGINT);
+        verify(ps).setObject(6, null, Types.BIGINT);
+        verify(ps).setObject(5, null, Types.VARCHAR);
+    }
+
+    @Test
+    void writeWithRetry_PoisonRow_IsolatedAndOthersWritten() throws Exception {
+        acceptAllExcept(Set.of(13L));
+        movementLog.start();
+
+        for (long id = 1; id <= 20; id++) {
+            movementLog.onStockMovement(movement(id, 7L));
+        }
+        movementLog.awaitWritten(5_000);
+
+        List<Long> written = committed.stream().flatMap(List::stream).sorted().toList();
+        assertEquals(19, written.size());
+        assertFalse(written.contains(13L));
+        assertEquals(1, movementLog.getDeadLetterCount());
+
+        // The queue keeps moving afterwards
+        movementLog.onStockMovement(movement(21L, 7L));
+        movementLog.awaitWritten(5_000);
+        assertTrue(committed.get(committed.size() - 1).contains(21L));
+    }
+
+    /**
+     * Batches are atomic: one containing a rejected inventory id fails as a
+     * whole, anything else is recorded as committed.
+     */
+    @SuppressWarnings("unchecked")
+    private void acceptAllExcept(Set<Long> rejected) {
+        when(jdbcTemplate.batchUpdate(anyString(), anyCollection(), anyInt(), any(ParameterizedPreparedStatementSetter.class)))
+                .thenAnswer(invocation -> {
+                    Collection<StockMovementEvent> batch = invocation.getArgument(1);
+                    List<Long> ids = batch.stream().map(StockMovementEvent::getInventoryId).toList();
+                    if (ids.stream().anyMatch(rejected::contains)) {
+                        throw new DataIntegrityViolationException("FK violation");
+                    }
+                    committed.add(ids);
+                    return new int[][] { new int[ids.size()] };
+                });
+    }
+
+    private static StockMovementEvent movement(Long inventoryId, Long performedBy) {
+        StockMovementEvent event = TestEntities.movement(inventoryId, null, null, 5, 0);
+        event.setPerformedBy(performedBy);
+        return event;
+    }
+}
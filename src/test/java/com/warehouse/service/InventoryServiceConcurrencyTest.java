@@ -0,0 +1,238 @@
+package com.warehouse.service;
+
+import com.warehouse.dto.BatchStockOperationRequest;
+import com.warehouse.dto.BatchStockTransferRequest;
+import com.warehouse.dto.ReservationRequest;
+import com.warehouse.dto.StockOperationRequest;
+import com.warehouse.dto.StockTransferRequest;
+import com.warehouse.entity.*;
+import com.warehouse.exception.InsufficientStockException;
+import com.warehouse.repository.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.warehouse.support.TestEntities.*;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.when;
+
+/**
+ * Concurrency tests for InventoryService against an H2 database: first
+ * receipts of a lot, singly and in batches, lock ordering of transfers, and stock-outs
+ * against reservations. Every operation commits in its own transaction, as it does behind the API.
+ */
+@DataJpaTest
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import({ InventoryService.class, ReservationService.class })
+class InventoryServiceConcurrencyTest {
+
+    private static final int THREADS = 8;
+
+    @Autowired
+    private InventoryService inventoryService;
+
+    @Autowired
+    private ReservationService reservationService;
+
+    @Autowired
+    private InventoryRepository inventoryRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private WarehouseRepository warehouseRepository;
+
+    @Autowired
+    private VendorRepository vendorRepository;
+
+    @Autowired
+    private OrganizationRepository organizationRepository;
+
+    @MockBean
+    private LowStockIndex lowStockIndex;
+
+    @MockBean
+    private ExpiryCalendar expiryCalendar;
+
+    @MockBean
+    private LotAllocator lotAllocator;
+
+    @MockBean
+    private ZoneUtilizationTracker zoneUtilizationTracker;
+
+    @MockBean
+    private WarehouseOccupancyTracker warehouseOccupancyTracker;
+
+    @MockBean
+    private PutawayEngine putawayEngine;
+
+    private Product product;
+    private Warehouse warehouse;
+
+    @BeforeEach
+    void setUp() {
+        inventoryRepository.deleteAll();
+        productRepository.deleteAll();
+        warehouseRepository.deleteAll();
+        vendorRepository.deleteAll();
+        organizationRepository.deleteAll();
+
+        Organization organization = organizationRepository.save(organization());
+        Vendor vendor = vendorRepository.save(vendor(organization, "ABC Suppliers"));
+        product = productRepository.save(product(vendor, "SKU-1", "9.99"));
+        warehouse = warehouseRepository.save(warehouse(organization, "Main DC"));
+        // Receipts stay out of any zone
+        when(putawayEngine.chooseZone(any(), any(), any(), anyInt(), any())).thenReturn(null);
+    }
+
+    @Test
+    void stockIn_ConcurrentFirstReceipts_CreateOneLot() throws Exception {
+        // No zone and no batch: the unique key cannot tell the inserts apart
+        runConcurrently(() -> inventoryService.stockIn(receipt(null, 5), 1L));
+        // A named batch: the unique key would reject the losing insert
+        runConcurrently(() -> inventoryService.stockIn(receipt("B1", 3), 1L));
+
+        List<Inventory> lots = inventoryRepository.findByProductId(product.getId());
+        assertEquals(2, lots.size());
+        assertEquals(THREADS * 5, quantity(lots, null));
+        assertEquals(THREADS * 3, quantity(lots, "B1"));
+    }
+
+    @Test
+    void stockInBatch_ConcurrentFirstReceipts_CreateOneLot() throws Exception {
+        when(warehouseOccupancyTracker.hasRoom(any(), anyInt())).thenReturn(true);
+
+        runConcurrently(() -> inventoryService.stockInBatch(new BatchStockOperationRequest(
+                List.of(receipt(null, 5), receipt("B1", 3)), BatchStockOperationRequest.Mode.ALL_OR_NOTHING), 1L));
+
+        List<Inventory> lots = inventoryRepository.findByProductId(product.getId());
+        assertEquals(2, lots.size());
+        assertEquals(THREADS * 5, quantity(lots, null));
+        assertEquals(THREADS * 3, quantity(lots, "B1"));
+    }
+
+    @Test
+    void transfer_OppositeDirections_NoDeadlockAndNothingLost() throws Exception {
+        Warehouse south = warehouseRepository.save(warehouse(warehouse.getOrganization(), "South DC"));
+        Inventory northLot = inventoryRepository.save(stock(product, warehouse, "B1", 1000));
+        Inventory southLot = inventoryRepository.save(stock(product, south, "B1", 1000));
+        AtomicInteger turn = new AtomicInteger();
+
+        // Half the threads move north to south, half south to north, each locking both rows
+        runConcurrently(() -> {
+            boolean northbound = turn.getAndIncrement() % 2 == 0;
+            for (int i = 0; i < 25; i++) {
+                inventoryService.transfer(northbound ? transfer(south, warehouse, 2) : transfer(warehouse, south, 3),
+                        1L);
+            }
+        });
+
+        int north = quantity(northLot.getId());
+        int southQuantity = quantity(southLot.getId());
+        assertEquals(2000, north + southQuantity);
+        // 4 threads moved 50 north, 4 moved 75 south
+        assertEquals(1000 + 4 * 50 - 4 * 75, north);
+    }
+
+    @Test
+    void transfer_ToMissingLotConcurrently_CreatesItOnce() throws Exception {
+        Warehouse south = warehouseRepository.save(warehouse(warehouse.getOrganization(), "South DC"));
+        Inventory northLot = inventoryRepository.save(stock(product, warehouse, "B1", 1000));
+
+        runConcurrently(() -> inventoryService.transfer(transfer(warehouse, south, 10), 1L));
+
+        List<Inventory> southLots = inventoryRepository.findByProductId(product.getId()).stream()
+                .filter(lot -> lot.getWarehouse().getId().equals(south.getId()))
+                .toList();
+        assertEquals(1, southLots.size());
+        assertEquals(THREADS * 10, southLots.get(0).getQuantity());
+        assertEquals(1000 - THREADS * 10, quantity(northLot.getId()));
+    }
+
+    @Test
+    void transferBatch_OneLineShort_MovesNothing() {
+        Warehouse south = warehouseRepository.save(warehouse(warehouse.getOrganization(), "South DC"));
+        Inventory northLot = inventoryRepository.save(stock(product, warehouse, "B1", 5));
+        Inventory southLot = inventoryRepository.save(stock(product, south, "B1", 5));
+        BatchStockTransferRequest batch = new BatchStockTransferRequest();
+        batch.setItems(List.of(transfer(warehouse, south, 4), transfer(south, warehouse, 20)));
+
+        assertThrows(InsufficientStockException.class, () -> inventoryService.transferBatch(batch, 1L));
+
+        assertEquals(5, quantity(northLot.getId()));
+        assertEquals(5, quantity(southLot.getId()));
+    }
+
+    @Test
+    void stockOut_StockHeldByReservation_Refused() {
+        Inventory lot = inventoryRepository.save(stock(product, warehouse, "B1", 10));
+        reservationService.reserve(new ReservationRequest(product.getId(), warehouse.getId(), 8, null, "order-1"));
+
+        assertThrows(InsufficientStockException.class, () -> inventoryService.stockOut(pick(5), 1L));
+        assertEquals(10, quantity(lot.getId()));
+
+        inventoryService.stockOut(pick(2), 1L);
+        assertEquals(8, quantity(lot.getId()));
+        assertEquals(0, reservationService.getAvailableToPromise(product.getId(), warehouse.getId()).getAvailable());
+    }
+
+    private StockOperationRequest pick(int quantity) {
+        return new StockOperationRequest(product.getId(), warehouse.getId(), null, quantity, "B1", null, null);
+    }
+
+    private StockTransferRequest transfer(Warehouse from, Warehouse to, int quantity) {
+        return new StockTransferRequest(product.getId(), from.getId(), null, to.getId(), null, "B1", quantity, null);
+    }
+
+    private int quantity(Long inventoryId) {
+        return inventoryRepository.findById(inventoryId).orElseThrow().getQuantity();
+    }
+
+    private StockOperationRequest receipt(String batchNumber, int quantity) {
+        return new StockOperationRequest(product.getId(), warehouse.getId(), null, quantity, batchNumber, null, null);
+    }
+
+    private static int quantity(List<Inventory> lots, String batchNumber) {
+        return lots.stream()
+                .filter(lot -> batchNumber == null ? lot.getBatchNumber() == null
+                        : batchNumber.equals(lot.getBatchNumber()))
+                .mapToInt(Inventory::getQuantity)
+                .sum();
+    }
+
+    private void runConcurrently(Runnable work) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CyclicBarrier start = new CyclicBarrier(THREADS);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                work.run();
+                return null;
+            }));
+        }
+        try {
+            for (Future<?> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.warehouse.service;
+
+import com.warehouse.dto.BatchStockOperationRequest;
+import com.warehouse.dto.BatchStockOperationResponse;
+import com.warehouse.dto.InventoryDTO;
+import com.warehouse.dto.StockOperationRequest;
+import com.warehouse.exception.CapacityExceededException;
+import com.warehouse.exception.InsufficientStockException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for InventoryService with the stock ledger enabled.
+ * Tests how all-or-nothing batches are rolled back through the ledger.
+ */
+@ExtendWith(MockitoExtension.class)
+class InventoryServiceTest {
+
+    @Mock
+    private StockLedger stockLedger;
+
+    @Mock
+    private PutawayEngine putawayEngine;
+
+    @Mock
+    private ReservationService reservationService;
+
+    @InjectMocks
+    private InventoryService inventoryService;
+
+    @BeforeEach
+    void setUp() {
+        // No reservations: every stock-out simply runs
+        lenient().when(reservationService.holdDuring(anyLong(), anyLong(), anyInt(), any()))
+                .thenAnswer(invocation -> invocation.<Supplier<?>>getArgument(3).get());
+    }
+
+    @Test
+    void stockOutBatch_LedgerItemFails_AppliedItemsRolledBack() {
+        StockOperationRequest first = item(1L);
+        StockOperationRequest second = item(2L);
+        when(stockLedger.stockOut(first, 7L)).thenReturn(new InventoryDTO());
+        when(stockLedger.stockOut(second, 7L)).thenThrow(new InsufficientStockException(0));
+
+        BatchStockOperationResponse response = inventoryService.stockOutBatch(batch(first, second), 7L);
+
+        verify(stockLedger).stockIn(first, 7L);
+        assertEquals(0, response.getSucceeded());
+        assertEquals(2, response.getFailed());
+        assertEquals("Not applied: batch rolled back", response.getResults().get(0).getError());
+    }
+
+    @Test
+    void stockOutBatch_RollbackRefused_ReportsItemStillApplied() {
+        StockOperationRequest first = item(1L);
+        StockOperationRequest second = item(2L);
+        StockOperationRequest third = item(3L);
+        InventoryDTO firstLot = new InventoryDTO();
+        when(stockLedger.stockOut(first, 7L)).thenReturn(firstLot);
+        when(stockLedger.stockOut(second, 7L)).thenReturn(new InventoryDTO());
+        when(stockLedger.stockOut(third, 7L)).thenThrow(new InsufficientStockException(0));
+        when(stockLedger.stockIn(second, 7L)).thenReturn(new InventoryDTO());
+        // The first lot's zone filled up in the meantime, so its units cannot go back
+        when(stockLedger.stockIn(first, 7L)).thenThrow(new CapacityExceededException("Storage zone", 4L, 10, 10, 5));
+
+        BatchStockOperationResponse response = inventoryService.stockOutBatch(batch(first, second, third), 7L);
+
+        assertEquals(1, response.getSucceeded());
+        assertEquals(2, response.getFailed());
+        BatchStockOperationResponse.ItemResult stuck = response.getResults().get(0);
+        assertTrue(stuck.isSuccess());
+        assertSame(firstLot, stuck.getInventory());
+        assertTrue(stuck.getError().startsWith("Applied, could not be rolled back"));
+        assertFalse(response.getResults().get(1).isSuccess());
+    }
+
+    private static StockOperationRequest item(Long productId) {
+        return new StockOperationRequest(productId, 2L, 4L, 5, "B1", null, null);
+    }
+
+    private static BatchStockOperationRequest batch(StockOperationRequest... items) {
+        return new BatchStockOperationRequest(List.of(items), BatchStockOperationRequest.Mode.ALL_OR_NOTHING);
+    }
+}
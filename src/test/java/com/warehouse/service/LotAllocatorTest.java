@@ -0,0 +1,145 @@
+package com.warehouse.service;
+
+import com.warehouse.dto.StockAllocationRequest.Policy;
+import com.warehouse.event.StockMovementEvent;
+import com.warehouse.support.TestEntities;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for LotAllocator.
+ * Tests FEFO and FIFO ordering, movements into and out of a loaded book, and ledger quantities.
+ */
+@ExtendWith(MockitoExtension.class)
+class LotAllocatorTest {
+
+    private static final LocalDate TODAY = LocalDate.of(2024, 7, 1);
+    private static final LocalDateTime T0 = TODAY.atStartOfDay();
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private StockLedger stockLedger;
+
+    @InjectMocks
+    private LotAllocator allocator;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(allocator, "defaultPolicy", Policy.FEFO);
+        ReflectionTestUtils.setField(allocator, "stockLedger", null);
+    }
+
+    @Test
+    void candidates_OrderedByPolicy() throws Exception {
+        lots(row(1L, TODAY.plusDays(10), T0.plusHours(1), 5),
+                row(2L, TODAY.plusDays(5), T0.plusHours(2), 5),
+                row(3L, null, T0, 5));
+
+        assertEquals(List.of(2L, 1L, 3L), ids(allocator.candidates(1L, 2L, Policy.FEFO)));
+        assertEquals(List.of(3L, 1L, 2L), ids(allocator.candidates(1L, 2L, Policy.FIFO)));
+        assertEquals(Policy.FEFO, allocator.resolvePolicy(null));
+        // Loaded once, then served from memory
+        allocator.candidates(1L, 2L, Policy.FIFO);
+        verify(jdbcTemplate, times(1)).query(anyString(), any(RowCallbackHandler.class), eq(1L), eq(2L));
+    }
+
+    @Test
+    void onStockMovement_NewLot_OrderedByReceivedAtColumn() throws Exception {
+        lots(row(1L, null, T0.plusHours(1), 5));
+        allocator.candidates(1L, 2L, Policy.FIFO);
+        // Received before lot 1, but its movement is only published now
+        when(jdbcTemplate.queryForList(anyString(), eq(Timestamp.class), eq(9L)))
+                .thenReturn(List.of(Timestamp.valueOf(T0)));
+
+        allocator.onStockMovement(movement(9L, 4, LocalDateTime.now()));
+
+        List<LotAllocator.Lot> fifo = allocator.candidates(1L, 2L, Policy.FIFO);
+        assertEquals(List.of(9L, 1L), ids(fifo));
+        assertEquals(T0, fifo.get(0).getReceivedAt());
+        assertEquals(4, fifo.get(0).getQuantity());
+    }
+
+    @Test
+    void onStockMovement_LotEmptied_LeavesBook() throws Exception {
+        lots(row(1L, null, T0, 5), row(2L, null, T0.plusHours(1), 5));
+        allocator.candidates(1L, 2L, Policy.FIFO);
+
+        allocator.onStockMovement(movement(1L, 0, T0.plusDays(1)));
+        allocator.onStockMovement(movement(2L, 3, T0.plusDays(1)));
+
+        List<LotAllocator.Lot> fifo = allocator.candidates(1L, 2L, Policy.FIFO);
+        assertEquals(List.of(2L), ids(fifo));
+        assertEquals(3, fifo.get(0).getQuantity());
+    }
+
+    @Test
+    void onStockMovement_BookNotLoaded_Ignored() {
+        allocator.onStockMovement(movement(1L, 5, T0));
+
+        verifyNoInteractions(jdbcTemplate);
+    }
+
+    @Test
+    void candidates_LedgerMode_QuantitiesFromLedger() throws Exception {
+        ReflectionTestUtils.setField(allocator, "stockLedger", stockLedger);
+        when(stockLedger.lotQuantities(1L, 2L)).thenReturn(Map.of(1L, 0, 2L, 8));
+        // The table still shows the quantities before the last flush
+        lots(row(1L, null, T0, 5), row(2L, null, T0.plusHours(1), 0));
+
+        List<LotAllocator.Lot> fifo = allocator.candidates(1L, 2L, Policy.FIFO);
+
+        assertEquals(List.of(2L), ids(fifo));
+        assertEquals(8, fifo.get(0).getQuantity());
+    }
+
+    private void lots(ResultSet... rows) throws Exception {
+        doAnswer(invocation -> {
+            RowCallbackHandler handler = invocation.getArgument(1);
+            for (ResultSet row : rows) {
+                handler.processRow(row);
+            }
+            return null;
+        }).when(jdbcTemplate).query(anyString(), any(RowCallbackHandler.class), eq(1L), eq(2L));
+    }
+
+    private static ResultSet row(Long id, LocalDate expiryDate, LocalDateTime receivedAt, int quantity)
+            throws Exception {
+        ResultSet rs = mock(ResultSet.class);
+        lenient().when(rs.getLong("id")).thenReturn(id);
+        lenient().when(rs.getInt("quantity")).thenReturn(quantity);
+        lenient().when(rs.getDate("expiry_date")).thenReturn(expiryDate != null ? Date.valueOf(expiryDate) : null);
+        lenient().when(rs.getTimestamp("received_at")).thenReturn(Timestamp.valueOf(receivedAt));
+        return rs;
+    }
+
+    private static StockMovementEvent movement(Long inventoryId, int resultingQuantity, LocalDateTime at) {
+        StockMovementEvent event = TestEntities.movement(inventoryId, 1L, 2L, 0, resultingQuantity);
+        event.setTimestamp(at);
+        return event;
+    }
+
+    private static List<Long> ids(List<LotAllocator.Lot> lots) {
+        return lots.stream().map(LotAllocator.Lot::getInventoryId).toList();
+    }
+}
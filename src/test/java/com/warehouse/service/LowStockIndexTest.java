@@ -0,0 +1,116 @@
+package com.warehouse.service;
+
+import com.warehouse.event.StockMovementEvent;
+import com.warehouse.support.TestEntities;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+
+import java.sql.ResultSet;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for LowStockIndex.
+ * Tests threshold crossings, out-of-order movements and the startup rebuild.
+ */
+@ExtendWith(MockitoExtension.class)
+class LowStockIndexTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+    @InjectMocks
+    private LowStockIndex index;
+
+    @Test
+    void onStockMovement_Crossings_AddAndRemoveRow() {
+        currentRow(10L, 3, 5);
+        index.onStockMovement(movement(10L, 3, 5));
+        assertEquals(List.of(10L), index.findByWarehouse(2L));
+        assertEquals(List.of(10L), index.findByOrganization(1L));
+
+        currentRow(10L, 40, 5);
+        index.onStockMovement(movement(10L, 40, 5));
+        assertEquals(List.of(), index.findByWarehouse(2L));
+        assertEquals(List.of(), index.findByOrganization(1L));
+    }
+
+    @Test
+    void onStockMovement_NoCrossing_SkipsTable() {
+        index.onStockMovement(movement(10L, 40, 5));
+
+        assertFalse(index.contains(10L, 2L));
+        verifyNoInteractions(jdbcTemplate);
+    }
+
+    @Test
+    void onStockMovement_StaleEventAfterNewer_KeepsCurrentState() {
+        // Commits: a restock to 40, then a pick down to 3. Events arrive in reverse order.
+        currentRow(10L, 3, 5);
+        index.onStockMovement(movement(10L, 3, 5));
+        index.onStockMovement(movement(10L, 40, 5));
+
+        assertTrue(index.contains(10L, 2L));
+
+        // And the other way round: a pick down to 3, then a restock to 40
+        currentRow(11L, 40, 5);
+        index.onStockMovement(movement(11L, 40, 5));
+        index.onStockMovement(movement(11L, 3, 5));
+
+        assertFalse(index.contains(11L, 2L));
+    }
+
+    @Test
+    void onStockMovement_DeletedRow_Removed() {
+        currentRow(10L, 3, 5);
+        index.onStockMovement(movement(10L, 3, 5));
+        when(jdbcTemplate.queryForList(anyString(), eq(10L))).thenReturn(List.of());
+
+        index.onStockMovement(movement(10L, 40, 5));
+
+        assertFalse(index.contains(10L, 2L));
+    }
+
+    @Test
+    void rebuild_LoadsLowRowsFromTable() throws Exception {
+        ResultSet row = mock(ResultSet.class);
+        when(row.getLong("id")).thenReturn(7L);
+        when(row.getLong("warehouse_id")).thenReturn(2L);
+        when(row.getLong("organization_id")).thenReturn(1L);
+        doAnswer(invocation -> {
+            invocation.getArgument(1, RowCallbackHandler.class).processRow(row);
+            return null;
+        }).when(jdbcTemplate).query(anyString(), any(RowCallbackHandler.class));
+
+        index.rebuild();
+
+        assertEquals(List.of(7L), index.findAll());
+        assertEquals(List.of(7L), index.findByOrganization(1L));
+        assertEquals(List.of(), index.findByWarehouse(3L));
+    }
+
+    private void currentRow(Long inventoryId, int quantity, int minStockLevel) {
+        lenient().when(jdbcTemplate.queryForList(anyString(), eq(inventoryId)))
+                .thenReturn(List.of(Map.of("quantity", quantity, "min_stock_level", minStockLevel)));
+    }
+
+    private static StockMovementEvent movement(Long inventoryId, int resultingQuantity, int minStockLevel) {
+        StockMovementEvent event = TestEntities.movement(inventoryId, null, 2L, 0, resultingQuantity);
+        event.setOrganizationId(1L);
+        event.setMinStockLevel(minStockLevel);
+        return event;
+    }
+}
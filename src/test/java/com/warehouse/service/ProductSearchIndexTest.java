@@ -0,0 +1,115 @@
+package com.warehouse.service;
+
+import com.warehouse.event.ProductChangedEvent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.sql.ResultSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for ProductSearchIndex.
+ * Tests prefix matching, ranking, organization scoping and incremental updates.
+ */
+@ExtendWith(MockitoExtension.class)
+class ProductSearchIndexTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @InjectMocks
+    private ProductSearchIndex index;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(index, "maxResults", 100);
+        index.onProductChanged(product(1L, 1L, "ELEC-001", "Wireless Mouse", "Ergonomic, optical", "Electronics"));
+        index.onProductChanged(product(2L, 1L, "ELEC-002", "Mouse Pad", "Cloth pad", "Electronics"));
+        index.onProductChanged(product(3L, 1L, "CABL-010", "USB Cable", "Works with any wireless mouse receiver",
+                "Cables"));
+        index.onProductChanged(product(4L, 2L, "ELEC-001X", "Wireless Mouse", null, "Electronics"));
+    }
+
+    @Test
+    void search_PrefixTerms_RankedByField() {
+        // Name matches before description matches; the shorter name first on a tie
+        assertEquals(List.of(2L, 1L, 3L), index.search(1L, "mou", 10));
+        // Every term must match, so the mouse pad drops out
+        assertEquals(List.of(1L, 3L), index.search(1L, "Wire MOU", 10));
+        assertEquals(List.of(2L), index.search(1L, "mou", 1));
+    }
+
+    @Test
+    void search_WholeSku_RanksFirst() {
+        assertEquals(1L, index.search(1L, "elec-001", 10).get(0));
+        assertEquals(List.of(3L), index.search(1L, "cabl", 10));
+    }
+
+    @Test
+    void search_ScopedToOrganization() {
+        assertEquals(List.of(4L), index.search(2L, "wireless", 10));
+        assertEquals(List.of(), index.search(3L, "wireless", 10));
+        assertEquals(List.of(), index.search(1L, "keyboard", 10));
+    }
+
+    @Test
+    void onProductChanged_RenameMoveAndDeactivate_UpdatesIndex() {
+        index.onProductChanged(product(2L, 1L, "ELEC-002", "Desk Mat", "Cloth pad", "Office"));
+        assertEquals(List.of(1L, 3L), index.search(1L, "mouse", 10));
+        assertEquals(List.of(2L), index.search(1L, "desk", 10));
+
+        ProductChangedEvent moved = product(1L, 2L, "ELEC-001", "Wireless Mouse", null, "Electronics");
+        moved.setPreviousOrganizationId(1L);
+        index.onProductChanged(moved);
+        assertEquals(List.of(3L), index.search(1L, "wireless", 10));
+        assertEquals(List.of(1L, 4L), index.search(2L, "wireless", 10));
+
+        ProductChangedEvent deactivated = product(3L, 1L, "CABL-010", "USB Cable", null, "Cables");
+        deactivated.setActive(false);
+        index.onProductChanged(deactivated);
+        assertEquals(List.of(), index.search(1L, "usb", 10));
+        assertEquals(1, index.size(1L));
+    }
+
+    @Test
+    void rebuild_ReplacesIndexFromTable() throws Exception {
+        ResultSet row = mock(ResultSet.class);
+        when(row.getLong("organization_id")).thenReturn(1L);
+        when(row.getLong("id")).thenReturn(9L);
+        when(row.getString("sku")).thenReturn("TOOL-100");
+        when(row.getString("name")).thenReturn("Cordless Drill");
+        doAnswer(invocation -> {
+            invocation.getArgument(1, RowCallbackHandler.class).processRow(row);
+            return null;
+        }).when(jdbcTemplate).query(anyString(), any(RowCallbackHandler.class));
+
+        index.rebuild();
+
+        assertEquals(List.of(9L), index.search(1L, "dri", 10));
+        assertEquals(List.of(), index.search(1L, "mouse", 10));
+        assertEquals(0, index.size(2L));
+    }
+
+    @Test
+    void search_InvalidArguments_Rejected() {
+        assertThrows(IllegalArgumentException.class, () -> index.search(1L, " - ", 10));
+        assertThrows(IllegalArgumentException.class, () -> index.search(1L, "mouse", 0));
+        assertThrows(IllegalArgumentException.class, () -> index.search(1L, "mouse", 101));
+    }
+
+    private static ProductChangedEvent product(Long id, Long organizationId, String sku, String name,
+            String description, String category) {
+        return new ProductChangedEvent(id, organizationId, null, sku, name, description, category, true);
+    }
+}
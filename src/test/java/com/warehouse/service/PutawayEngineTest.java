@@ -0,0 +1,83 @@
+package com.warehouse.service;
+
+import com.warehouse.entity.ZoneType;
+import com.warehouse.event.StockMovementEvent;
+import com.warehouse.exception.CapacityExceededException;
+import com.warehouse.support.TestEntities;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for PutawayEngine.
+ * Tests zone type matching, consolidation and best-fit placement.
+ */
+@ExtendWith(MockitoExtension.class)
+class PutawayEngineTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private ZoneUtilizationTracker zoneUtilizationTracker;
+
+    @InjectMocks
+    private PutawayEngine putawayEngine;
+
+    @BeforeEach
+    void setUp() {
+        // Warehouse 1: two general zones with 500 and 200 units free, one cold zone with 1000 free
+        putawayEngine.registerZone(1L, 10L, ZoneType.GENERAL);
+        putawayEngine.registerZone(1L, 11L, ZoneType.GENERAL);
+        putawayEngine.registerZone(1L, 20L, ZoneType.COLD_STORAGE);
+        lenient().when(zoneUtilizationTracker.getFreeCapacity(10L)).thenReturn(500L);
+        lenient().when(zoneUtilizationTracker.getFreeCapacity(11L)).thenReturn(200L);
+        lenient().when(zoneUtilizationTracker.getFreeCapacity(20L)).thenReturn(1000L);
+    }
+
+    @Test
+    void chooseZone_NoExistingStock_PicksTightestFit() {
+        assertEquals(11L, putawayEngine.chooseZone(1L, 5L, null, 150, Map.of()));
+        assertEquals(10L, putawayEngine.chooseZone(1L, 5L, null, 300, Map.of()));
+    }
+
+    @Test
+    void chooseZone_ProductAlreadyStored_ConsolidatesIntoItsZone() {
+        putawayEngine.onStockMovement(movement(5L, 10L, 40));
+
+        assertEquals(10L, putawayEngine.chooseZone(1L, 5L, ZoneType.GENERAL, 150, Map.of()));
+    }
+
+    @Test
+    void chooseZone_PendingIntake_CountsAgainstFreeCapacity() {
+        assertEquals(10L, putawayEngine.chooseZone(1L, 5L, null, 150, Map.of(11L, 100)));
+    }
+
+    @Test
+    void chooseZone_StorageType_OnlyMatchingZones() {
+        assertEquals(20L, putawayEngine.chooseZone(1L, 5L, ZoneType.COLD_STORAGE, 50, Map.of()));
+        assertThrows(CapacityExceededException.class,
+                () -> putawayEngine.chooseZone(1L, 5L, ZoneType.HAZMAT, 50, Map.of()));
+    }
+
+    @Test
+    void chooseZone_WarehouseWithoutZones_ReturnsNull() {
+        assertNull(putawayEngine.chooseZone(2L, 5L, null, 50, Map.of()));
+        verifyNoInteractions(jdbcTemplate);
+    }
+
+    private static StockMovementEvent movement(Long productId, Long zoneId, int quantity) {
+        StockMovementEvent event = TestEntities.movement(null, productId, 1L, quantity, 0);
+        event.setZoneId(zoneId);
+        return event;
+    }
+}
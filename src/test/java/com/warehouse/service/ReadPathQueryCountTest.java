@@ -0,0 +1,190 @@
+package com.warehouse.service;
+
+import com.warehouse.entity.*;
+import com.warehouse.repository.*;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.function.IntConsumer;
+import java.util.function.Supplier;
+
+import static com.warehouse.support.TestEntities.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Counts the SQL statements each list read path issues, and fails when the
+ * count grows with the number of rows returned.
+ */
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({ PurchaseOrderService.class, WarehouseService.class, ProductService.class, UserService.class })
+class ReadPathQueryCountTest {
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private PurchaseOrderService purchaseOrderService;
+
+    @Autowired
+    private WarehouseService warehouseService;
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private UserService userService;
+
+    @MockBean
+    private PasswordEncoder passwordEncoder;
+
+    @MockBean
+    private ZoneUtilizationTracker zoneUtilizationTracker;
+
+    @MockBean
+    private PutawayEngine putawayEngine;
+
+    @MockBean
+    private WarehouseOccupancyTracker warehouseOccupancyTracker;
+
+    @MockBean
+    private ProductSearchIndex productSearchIndex;
+
+    private Statistics statistics;
+    private Organization organization;
+    private Vendor vendor;
+    private User manager;
+    private int sequence;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        organization = entityManager.persist(organization());
+        vendor = entityManager.persist(vendor(organization, "ABC Suppliers"));
+
+        manager = seedUser();
+    }
+
+    @Test
+    void getPurchaseOrdersByOrganization_QueryCountIndependentOfRows() {
+        assertConstantStatements(1, count -> {
+            for (int i = 0; i < count; i++) {
+                seedPurchaseOrder(i % 2 == 0);
+            }
+        }, () -> purchaseOrderService.getPurchaseOrdersByOrganization(organization.getId()));
+    }
+
+    @Test
+    void getWarehousesByOrganization_QueryCountIndependentOfRows() {
+        assertConstantStatements(1, count -> {
+            for (int i = 0; i < count; i++) {
+                seedWarehouse();
+            }
+        }, () -> warehouseService.getWarehousesByOrganization(organization.getId()));
+    }
+
+    @Test
+    void getAllProducts_QueryCountIndependentOfRows() {
+        assertConstantStatements(1, count -> {
+            for (int i = 0; i < count; i++) {
+                seedProduct();
+            }
+        }, () -> productService.getAllProducts());
+    }
+
+    @Test
+    void getUsersByOrganization_QueryCountIndependentOfRows() {
+        assertConstantStatements(1, count -> {
+            for (int i = 0; i < count; i++) {
+                seedUser();
+            }
+        }, () -> userService.getUsersByOrganization(organization.getId()));
+    }
+
+    /**
+     * Run the read path against one seeded row and again against five, with
+     * a cleared persistence context each time so every lazy load reaches the
+     * database, and require the same, expected statement count both times.
+     */
+    private void assertConstantStatements(long expected, IntConsumer seed, Supplier<List<?>> read) {
+        seed.accept(1);
+        long one = statements(read, 1);
+        seed.accept(4);
+        long five = statements(read, 5);
+
+        assertEquals(one, five, "statement count grows with the number of rows");
+        assertEquals(expected, five);
+    }
+
+    private long statements(Supplier<List<?>> read, int expectedRows) {
+        entityManager.flush();
+        entityManager.clear();
+        statistics.clear();
+        List<?> rows = read.get();
+        long statements = statistics.getPrepareStatementCount();
+        assertTrue(rows.size() >= expectedRows);
+        return statements;
+    }
+
+    private void seedPurchaseOrder(boolean approved) {
+        PurchaseOrder po = new PurchaseOrder();
+        po.setPoNumber("PO-" + (++sequence));
+        po.setVendor(vendor);
+        po.setOrganization(organization);
+        po.setCreatedBy(manager);
+        if (approved) {
+            po.setApprovedBy(seedUser());
+        }
+        for (int i = 0; i < 2; i++) {
+            PurchaseOrderItem item = new PurchaseOrderItem();
+            item.setPurchaseOrder(po);
+            item.setProduct(seedProduct());
+            item.setQuantity(10);
+            item.setUnitPrice(new BigDecimal("9.99"));
+            po.getItems().add(item);
+        }
+        entityManager.persist(po);
+    }
+
+    private void seedWarehouse() {
+        Warehouse warehouse = warehouse(organization, "DC " + (++sequence));
+        warehouse.setManager(seedUser());
+        entityManager.persist(warehouse);
+        for (int i = 0; i < 2; i++) {
+            StorageZone zone = new StorageZone();
+            zone.setName("Zone " + i);
+            zone.setWarehouse(warehouse);
+            zone.setCapacity(1_000);
+            zone.setZoneType(ZoneType.GENERAL);
+            entityManager.persist(zone);
+        }
+    }
+
+    private Product seedProduct() {
+        Vendor owner = entityManager.persist(vendor(organization, "Vendor " + (++sequence)));
+        return entityManager.persist(product(owner, "SKU-" + sequence, "9.99"));
+    }
+
+    private User seedUser() {
+        return entityManager.persist(
+                user(organization, "user" + (++sequence) + "@testcorp.com", UserRole.OPS_MANAGER));
+    }
+}
@@ -0,0 +1,146 @@
+package com.warehouse.service;
+
+import com.warehouse.dto.ReplenishmentRunDTO;
+import com.warehouse.entity.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static com.warehouse.support.TestEntities.*;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.doThrow;
+
+/**
+ * Tests for replenishment purchase orders against an H2 database.
+ * Tests grouping by vendor, netting of open orders, repeated runs and the
+ * scheduled run over all organizations.
+ */
+@DataJpaTest
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(ReplenishmentService.class)
+class ReplenishmentServiceTest {
+
+    @Autowired
+    private ReplenishmentService replenishmentService;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @SpyBean
+    private JdbcTemplate jdbcTemplate;
+
+    private Organization organization;
+    private User buyer;
+    private Vendor acme;
+    private Vendor globex;
+    private Product laptop;
+    private Product cable;
+
+    @BeforeEach
+    void setUp() {
+        organization = entityManager.persist(organization());
+        buyer = entityManager.persist(user(organization, "buyer@testcorp.com", UserRole.COMPANY_ADMIN));
+
+        acme = entityManager.persist(vendor(organization, "Acme"));
+        globex = entityManager.persist(vendor(organization, "Globex"));
+        laptop = entityManager.persist(product(acme, "LAPTOP-1", "999.99"));
+        cable = entityManager.persist(product(acme, "CABLE-1", "4.50"));
+        Product milk = entityManager.persist(product(globex, "MILK-1", "1.25"));
+
+        Warehouse north = entityManager.persist(warehouse(organization, "North"));
+        Warehouse south = entityManager.persist(warehouse(organization, "South"));
+        // Laptop low in both warehouses (two lots in north), cable low, milk well stocked
+        entityManager.persist(stock(laptop, north, "A", 1, 5, 20));
+        entityManager.persist(stock(laptop, north, "B", 2, 5, 20));
+        entityManager.persist(stock(laptop, south, null, 0, 2, 10));
+        entityManager.persist(stock(cable, north, null, 10, 50, 200));
+        entityManager.persist(stock(milk, south, null, 500, 100, 1000));
+        entityManager.flush();
+    }
+
+    @Test
+    void replenish_OneDraftOrderPerVendor() {
+        ReplenishmentRunDTO run = replenishmentService.replenish(organization.getId(), buyer.getId());
+
+        assertEquals(3, run.getLowStockLines());
+        assertEquals(2, run.getProductsOrdered());
+        assertEquals(1, run.getPurchaseOrders().size());
+        ReplenishmentRunDTO.Order order = run.getPurchaseOrders().get(0);
+        assertEquals(acme.getId(), order.getVendorId());
+        // Laptop: (20 - 3) + (10 - 0), cable: 200 - 10
+        assertEquals(Map.of(laptop.getId(), 27, cable.getId(), 190), orderedQuantities(order.getPurchaseOrderId()));
+        assertEquals(new BigDecimal("27854.73"), order.getTotalAmount());
+        assertEquals("DRAFT", jdbcTemplate.queryForObject(
+                "SELECT status FROM purchase_orders WHERE id = ?", String.class, order.getPurchaseOrderId()));
+    }
+
+    @Test
+    void replenish_Again_OrdersNothingTwice() {
+        replenishmentService.replenish(organization.getId(), buyer.getId());
+
+        ReplenishmentRunDTO second = replenishmentService.replenish(organization.getId(), buyer.getId());
+
+        assertTrue(second.getPurchaseOrders().isEmpty());
+        assertEquals(2, second.getProductsCoveredByOpenOrders());
+    }
+
+    @Test
+    void replenish_PartlyOnOrder_OrdersTheRest() {
+        jdbcTemplate.update("INSERT INTO purchase_orders (po_number, vendor_id, organization_id, created_by, status, "
+                + "total_amount, created_at) VALUES ('PO-1', ?, ?, ?, 'APPROVED', 0, CURRENT_TIMESTAMP)",
+                acme.getId(), organization.getId(), buyer.getId());
+        Long poId = jdbcTemplate.queryForObject("SELECT id FROM purchase_orders WHERE po_number = 'PO-1'", Long.class);
+        jdbcTemplate.update("INSERT INTO purchase_order_items (purchase_order_id, product_id, quantity, unit_price, "
+                + "total_price) VALUES (?, ?, 20, 999.99, 0)", poId, laptop.getId());
+
+        ReplenishmentRunDTO run = replenishmentService.replenish(organization.getId(), buyer.getId());
+
+        assertEquals(Map.of(laptop.getId(), 7, cable.getId(), 190),
+                orderedQuantities(run.getPurchaseOrders().get(0).getPurchaseOrderId()));
+    }
+
+    @Test
+    void replenishAll_OneOrganizationFails_OthersStillRun() {
+        Organization other = entityManager.persist(organization("Other Corp"));
+        entityManager.persist(user(other, "ops@othercorp.com", UserRole.OPS_MANAGER));
+        Vendor initech = entityManager.persist(vendor(other, "Initech"));
+        Product stapler = entityManager.persist(product(initech, "STAPLER-1", "12.00"));
+        Warehouse east = entityManager.persist(warehouse(other, "East"));
+        entityManager.persistAndFlush(stock(stapler, east, null, 1, 5, 30));
+        // The first organization's run cannot lock its row
+        doThrow(new CannotAcquireLockException("Lock wait timeout exceeded")).when(jdbcTemplate)
+                .queryForList(startsWith("SELECT id FROM organizations WHERE id = ?"), eq(Long.class),
+                        eq(organization.getId()));
+
+        replenishmentService.replenishAll();
+
+        assertEquals(List.of(other.getId()), jdbcTemplate.queryForList(
+                "SELECT organization_id FROM purchase_orders", Long.class));
+        assertEquals(Map.of(stapler.getId(), 29), orderedQuantities(jdbcTemplate.queryForObject(
+                "SELECT id FROM purchase_orders", Long.class)));
+    }
+
+    private Map<Long, Integer> orderedQuantities(Long purchaseOrderId) {
+        List<Map<String, Object>> rows = jdbcTemplate.queryForList(
+                "SELECT product_id, quantity FROM purchase_order_items WHERE purchase_order_id = ?", purchaseOrderId);
+        return rows.stream().collect(Collectors.toMap(
+                row -> ((Number) row.get("PRODUCT_ID")).longValue(),
+                row -> ((Number) row.get("QUANTITY")).intValue()));
+    }
+}
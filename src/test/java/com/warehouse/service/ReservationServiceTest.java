@@ -0,0 +1,175 @@
+package com.warehouse.service;
+
+import com.warehouse.dto.ReservationDTO;
+import com.warehouse.dto.ReservationRequest;
+import com.warehouse.dto.StockAllocationRequest;
+import com.warehouse.dto.StockAllocationResponse;
+import com.warehouse.event.StockMovementEvent;
+import com.warehouse.exception.InsufficientStockException;
+import com.warehouse.exception.ResourceNotFoundException;
+import com.warehouse.support.TestEntities;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.sql.ResultSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for ReservationService.
+ * Tests available-to-promise accounting and the reservation lifecycle.
+ */
+@ExtendWith(MockitoExtension.class)
+class ReservationServiceTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private InventoryService inventoryService;
+
+    @InjectMocks
+    private ReservationService reservationService;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(reservationService, "defaultTtlSeconds", 900);
+        ReflectionTestUtils.setField(reservationService, "maxTtlSeconds", 86400);
+        ReflectionTestUtils.setField(reservationService, "timerTickMs", 10L);
+        ReflectionTestUtils.setField(reservationService, "timerWheelSize", 64);
+        reservationService.start();
+
+        when(jdbcTemplate.queryForObject(anyString(), eq(Integer.class), eq(1L), eq(1L))).thenReturn(10);
+    }
+
+    @AfterEach
+    void tearDown() {
+        reservationService.stop();
+    }
+
+    @Test
+    void reserve_WithinAvailable_HoldsStock() {
+        ReservationDTO result = reservationService.reserve(request(6, null));
+
+        assertEquals(ReservationDTO.Status.ACTIVE, result.getStatus());
+        assertEquals(4, reservationService.getAvailableToPromise(1L, 1L).getAvailable());
+        assertEquals(6, reservationService.getAvailableToPromise(1L, 1L).getReserved());
+    }
+
+    @Test
+    void reserve_BeyondAvailable_ThrowsException() {
+        reservationService.reserve(request(6, null));
+
+        assertThrows(InsufficientStockException.class, () -> reservationService.reserve(request(5, null)));
+        assertEquals(4, reservationService.getAvailableToPromise(1L, 1L).getAvailable());
+    }
+
+    @Test
+    void release_ActiveReservation_RestoresAvailable() {
+        ReservationDTO reservation = reservationService.reserve(request(6, null));
+
+        ReservationDTO result = reservationService.release(reservation.getId());
+
+        assertEquals(ReservationDTO.Status.RELEASED, result.getStatus());
+        assertEquals(10, reservationService.getAvailableToPromise(1L, 1L).getAvailable());
+        assertThrows(ResourceNotFoundException.class, () -> reservationService.getReservation(reservation.getId()));
+    }
+
+    @Test
+    void reserve_TtlElapsed_ReleasesHold() throws InterruptedException {
+        ReservationDTO reservation = reservationService.reserve(request(6, 1));
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (reservationService.getAvailableToPromise(1L, 1L).getReserved() > 0
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+
+        assertEquals(0, reservationService.getAvailableToPromise(1L, 1L).getReserved());
+        assertThrows(ResourceNotFoundException.class, () -> reservationService.getReservation(reservation.getId()));
+    }
+
+    @Test
+    void commit_ActiveReservation_AllocatesStockOut() {
+        ReservationDTO reservation = reservationService.reserve(request(6, null));
+        StockAllocationResponse allocation = new StockAllocationResponse(1L, 1L,
+                StockAllocationRequest.Policy.FEFO, 6, List.of());
+        when(inventoryService.allocateReservedStockOut(any(StockAllocationRequest.class), eq(7L))).thenAnswer(invocation -> {
+            reservationService.onStockMovement(movement(-6));
+            return allocation;
+        });
+
+        ReservationDTO result = reservationService.commit(reservation.getId(), 7L);
+
+        assertEquals(ReservationDTO.Status.COMMITTED, result.getStatus());
+        assertSame(allocation, result.getAllocation());
+        assertEquals(4, reservationService.getAvailableToPromise(1L, 1L).getOnHand());
+        assertEquals(0, reservationService.getAvailableToPromise(1L, 1L).getReserved());
+    }
+
+    @Test
+    void commit_StockOutFails_KeepsReservation() {
+        ReservationDTO reservation = reservationService.reserve(request(6, null));
+        when(inventoryService.allocateReservedStockOut(any(StockAllocationRequest.class), anyLong()))
+                .thenThrow(new InsufficientStockException(2));
+
+        assertThrows(InsufficientStockException.class, () -> reservationService.commit(reservation.getId(), 7L));
+        assertEquals(ReservationDTO.Status.ACTIVE, reservationService.getReservation(reservation.getId()).getStatus());
+        assertEquals(6, reservationService.getAvailableToPromise(1L, 1L).getReserved());
+    }
+
+    @Test
+    void reconcile_Drifted_SetsOnHandFromTable() throws Exception {
+        reservationService.reserve(request(6, null));
+        onHandRows(15, null);
+
+        reservationService.reconcile();
+
+        assertEquals(15, reservationService.getAvailableToPromise(1L, 1L).getOnHand());
+        assertEquals(6, reservationService.getAvailableToPromise(1L, 1L).getReserved());
+    }
+
+    @Test
+    void reconcile_MovementWhileReading_KeepsMovement() throws Exception {
+        reservationService.reserve(request(6, null));
+        // A pick is applied to the counter after the totals were read
+        onHandRows(10, () -> reservationService.onStockMovement(movement(-3)));
+
+        reservationService.reconcile();
+
+        assertEquals(7, reservationService.getAvailableToPromise(1L, 1L).getOnHand());
+    }
+
+    private void onHandRows(int onHand, Runnable beforeRow) throws Exception {
+        ResultSet row = mock(ResultSet.class);
+        when(row.getLong("product_id")).thenReturn(1L);
+        when(row.getLong("warehouse_id")).thenReturn(1L);
+        when(row.getInt("on_hand")).thenReturn(onHand);
+        doAnswer(invocation -> {
+            if (beforeRow != null) {
+                beforeRow.run();
+            }
+            invocation.getArgument(1, RowCallbackHandler.class).processRow(row);
+            return null;
+        }).when(jdbcTemplate).query(anyString(), any(RowCallbackHandler.class));
+    }
+
+    private ReservationRequest request(int quantity, Integer ttlSeconds) {
+        return new ReservationRequest(1L, 1L, quantity, ttlSeconds, "ORDER-1");
+    }
+
+    private StockMovementEvent movement(int quantity) {
+        return TestEntities.movement(null, 1L, 1L, quantity, 0);
+    }
+}
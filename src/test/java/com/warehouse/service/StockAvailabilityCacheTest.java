@@ -0,0 +1,149 @@
+package com.warehouse.service;
+
+import com.warehouse.dto.StockSummaryDTO;
+import com.warehouse.event.StockMovementEvent;
+import com.warehouse.support.TestEntities;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.sql.ResultSet;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for StockAvailabilityCache.
+ * Tests loading on miss, incremental updates, reservations, eviction and reconciling.
+ */
+@ExtendWith(MockitoExtension.class)
+class StockAvailabilityCacheTest {
+
+    @Mock
+    private NamedParameterJdbcTemplate jdbcTemplate;
+
+    @Mock
+    private ReservationService reservationService;
+
+    @InjectMocks
+    private StockAvailabilityCache cache;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(cache, "maxEntries", 100);
+    }
+
+    @Test
+    void lookup_Cached_ServedFromMemoryAndFollowsMovements() throws Exception {
+        // Product 1: 100 units in warehouse 10 (org 1), 50 in warehouse 20 (org 2); 30 reserved in warehouse 10
+        rows(new Object[] { 1L, "SKU-1", 10L, 1L, 100L }, new Object[] { 1L, "SKU-1", 20L, 2L, 50L });
+        when(reservationService.getReserved(1L, 10L)).thenReturn(30);
+
+        cache.lookup(List.of(1L), List.of(), null);
+        cache.onStockMovement(movement(1L, 10L, 1L, -20));
+        StockSummaryDTO summary = cache.lookup(List.of(), List.of("SKU-1"), null).get(0);
+
+        assertEquals(130, summary.getTotal());
+        assertEquals(30, summary.getReserved());
+        assertEquals(100, summary.getAvailable());
+        assertEquals(2, summary.getWarehouses().size());
+        verify(jdbcTemplate, times(1)).query(anyString(), anyMap(), any(RowCallbackHandler.class));
+    }
+
+    @Test
+    void lookup_ByOrganization_CountsOnlyItsWarehouses() throws Exception {
+        rows(new Object[] { 1L, "SKU-1", 10L, 1L, 100L }, new Object[] { 1L, "SKU-1", 20L, 2L, 50L });
+
+        StockSummaryDTO summary = cache.lookup(List.of(1L), List.of(), 2L).get(0);
+
+        assertEquals(50, summary.getTotal());
+        assertEquals(List.of(20L), summary.getWarehouses().stream()
+                .map(StockSummaryDTO.WarehouseStock::getWarehouseId).toList());
+    }
+
+    @Test
+    void lookup_UnknownProduct_LeftOut() throws Exception {
+        rows();
+
+        assertTrue(cache.lookup(List.of(99L), List.of("NOPE"), null).isEmpty());
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void lookup_OverMaxEntries_EvictsDownToBound() throws Exception {
+        ReflectionTestUtils.setField(cache, "maxEntries", 2);
+        rows(new Object[] { 1L, "SKU-1", 10L, 1L, 5L }, new Object[] { 2L, "SKU-2", 10L, 1L, 5L },
+                new Object[] { 3L, "SKU-3", 10L, 1L, 5L });
+
+        List<StockSummaryDTO> summaries = cache.lookup(List.of(1L, 2L, 3L), List.of(), null);
+
+        assertEquals(3, summaries.size());
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    void reconcile_Drifted_ReplacedWithTable() throws Exception {
+        rows(new Object[] { 1L, "SKU-1", 10L, 1L, 100L });
+        cache.lookup(List.of(1L), List.of(), null);
+
+        rows(new Object[] { 1L, "SKU-1", 10L, 1L, 80L });
+        cache.reconcile();
+
+        assertEquals(80, cache.lookup(List.of(1L), List.of(), null).get(0).getTotal());
+    }
+
+    @Test
+    void reconcile_MovementWhileLoading_Kept() throws Exception {
+        rows(new Object[] { 1L, "SKU-1", 10L, 1L, 100L });
+        cache.lookup(List.of(1L), List.of(), null);
+
+        doAnswer(invocation -> {
+            cache.onStockMovement(movement(1L, 10L, 1L, -5));
+            RowCallbackHandler handler = invocation.getArgument(2);
+            handler.processRow(resultSet(new Object[] { 1L, "SKU-1", 10L, 1L, 80L }));
+            return null;
+        }).when(jdbcTemplate).query(anyString(), anyMap(), any(RowCallbackHandler.class));
+        cache.reconcile();
+
+        // The reload is dropped rather than overwrite the movement; the next reconcile repairs the drift
+        assertEquals(95, cache.lookup(List.of(1L), List.of(), null).get(0).getTotal());
+    }
+
+    private void rows(Object[]... rows) throws Exception {
+        doAnswer(invocation -> {
+            RowCallbackHandler handler = invocation.getArgument(2);
+            Map<String, List<?>> params = invocation.getArgument(1);
+            for (Object[] row : rows) {
+                if (params.get("keys").contains(row[0]) || params.get("keys").contains(row[1])) {
+                    handler.processRow(resultSet(row));
+                }
+            }
+            return null;
+        }).when(jdbcTemplate).query(anyString(), anyMap(), any(RowCallbackHandler.class));
+    }
+
+    private static ResultSet resultSet(Object[] row) throws Exception {
+        ResultSet rs = mock(ResultSet.class);
+        when(rs.getLong("id")).thenReturn((Long) row[0]);
+        when(rs.getString("sku")).thenReturn((String) row[1]);
+        when(rs.getLong("warehouse_id")).thenReturn((Long) row[2]);
+        when(rs.getLong("organization_id")).thenReturn((Long) row[3]);
+        when(rs.getLong("on_hand")).thenReturn((Long) row[4]);
+        return rs;
+    }
+
+    private static StockMovementEvent movement(Long productId, Long warehouseId, Long organizationId, int quantity) {
+        StockMovementEvent event = TestEntities.movement(null, productId, warehouseId, quantity, 0);
+        event.setOrganizationId(organizationId);
+        return event;
+    }
+}
@@ -0,0 +1,303 @@
+package com.warehouse.service;
+
+import com.warehouse.dto.StockOperationRequest;
+import com.warehouse.entity.*;
+import com.warehouse.exception.CapacityExceededException;
+import com.warehouse.repository.InventoryRepository;
+import com.warehouse.repository.LedgerCheckpointRepository;
+import com.warehouse.repository.ProductRepository;
+import com.warehouse.repository.WarehouseRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for StockLedger and StockLedgerJournal.
+ * Tests journal replay on startup, segment discard, abandoned operations,
+ * capacity checks on the shard, and that lot creation and listeners stay off
+ * the shard thread.
+ */
+@ExtendWith(MockitoExtension.class)
+class StockLedgerTest {
+
+    @Mock
+    private InventoryRepository inventoryRepository;
+
+    @Mock
+    private ProductRepository productRepository;
+
+    @Mock
+    private WarehouseRepository warehouseRepository;
+
+    @Mock
+    private LedgerCheckpointRepository checkpointRepository;
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private ZoneUtilizationTracker zoneUtilizationTracker;
+
+    @Mock
+    private WarehouseOccupancyTracker warehouseOccupancyTracker;
+
+    @InjectMocks
+    private StockLedger ledger;
+
+    @TempDir
+    Path journalDir;
+
+    private boolean started;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(ledger, "shardCount", 2);
+        ReflectionTestUtils.setField(ledger, "flushIntervalMs", 60_000L);
+        ReflectionTestUtils.setField(ledger, "flushBatchSize", 500);
+        ReflectionTestUtils.setField(ledger, "journalDir", journalDir.toString());
+        ReflectionTestUtils.setField(ledger, "operationTimeoutMs", 200L);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (started) {
+            ledger.stop();
+        }
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void start_ReplaysUncheckpointedRecords() throws Exception {
+        try (StockLedgerJournal journal = new StockLedgerJournal(journalDir, 0, false)) {
+            journal.append(1, 100L, 5); // Already persisted
+            journal.seal();
+            journal.append(2, 100L, -2);
+            journal.append(3, 101L, 7);
+        }
+        // A torn record at the tail of the last segment
+        Path last = Files.list(journalDir).filter(p -> p.toString().endsWith("-2.journal")).findFirst().orElseThrow();
+        Files.write(last, new byte[] { 0, 0, 0, 0, 0, 0, 0, 4, 1 }, StandardOpenOption.APPEND);
+        // A shard left behind by a larger shard count
+        try (StockLedgerJournal journal = new StockLedgerJournal(journalDir, 5, false)) {
+            journal.append(1, 102L, 3);
+        }
+        when(checkpointRepository.findById(anyInt())).thenAnswer(invocation -> invocation.<Integer>getArgument(0) == 0
+                ? Optional.of(new LedgerCheckpoint(0, 1L)) : Optional.empty());
+        when(checkpointRepository.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        start();
+
+        ArgumentCaptor<Collection<Map.Entry<Long, Integer>>> rows = ArgumentCaptor.forClass(Collection.class);
+        verify(jdbcTemplate, times(2)).batchUpdate(startsWith("UPDATE inventory"), rows.capture(), eq(500),
+                any(ParameterizedPreparedStatementSetter.class));
+        assertEquals(Map.of(100L, -2, 101L, 7), toMap(rows.getAllValues().get(0)));
+        assertEquals(Map.of(102L, 3), toMap(rows.getAllValues().get(1)));
+        verify(checkpointRepository).advance(0, 3L);
+        verify(checkpointRepository).advance(5, 1L);
+        assertEquals(0, StockLedgerJournal.shardsWithSegments(journalDir).size());
+    }
+
+    @Test
+    void journal_DiscardsOnlySealedPersistedSegments() throws Exception {
+        try (StockLedgerJournal journal = new StockLedgerJournal(journalDir, 0, false)) {
+            journal.append(1, 100L, 5);
+            journal.append(2, 100L, 1);
+            journal.seal();
+            journal.append(3, 100L, -4);
+
+            journal.discardThrough(2);
+
+            assertEquals(List.of(3L), StockLedgerJournal.readAll(journalDir, 0).stream()
+                    .map(record -> record[0]).toList());
+        }
+    }
+
+    @Test
+    void call_TimedOutBeforeRunning_NeverApplied() throws Exception {
+        startWithoutJournal();
+        CountDownLatch applying = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        createsLot();
+        doAnswer(invocation -> {
+            applying.countDown();
+            release.await();
+            return null;
+        }).when(warehouseOccupancyTracker).reserve(2L, 10);
+
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        try {
+            // The first receipt runs on the shard thread and holds it
+            Future<?> first = pool.submit(() -> ledger.stockIn(request(10), 1L));
+            assertTrue(applying.await(5, TimeUnit.SECONDS));
+            // The second is still queued when its caller gives up
+            assertThrows(IllegalStateException.class, () -> ledger.stockIn(request(4), 1L));
+
+            release.countDown();
+            first.get(5, TimeUnit.SECONDS);
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertEquals(Map.of(50L, 10), ledger.lotQuantities(1L, 2L));
+        assertEquals(10L, ledger.onHand(1L, 2L));
+        verify(eventPublisher, times(1)).publishEvent(any(Object.class));
+    }
+
+    @Test
+    void call_AlreadyRunningPastTimeout_ReturnsResult() throws Exception {
+        startWithoutJournal();
+        createsLot();
+        doAnswer(invocation -> {
+            Thread.sleep(400); // Longer than the operation timeout
+            return null;
+        }).when(warehouseOccupancyTracker).reserve(2L, 10);
+
+        assertEquals(10, ledger.stockIn(request(10), 1L).getQuantity());
+        assertEquals(10L, ledger.onHand(1L, 2L));
+    }
+
+    @Test
+    void stockIn_PastWarehouseCapacity_RefusedOnShard() throws Exception {
+        WarehouseOccupancyTracker occupancy = new WarehouseOccupancyTracker();
+        ReflectionTestUtils.setField(occupancy, "jdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(occupancy, "ledgerEnabled", true);
+        ReflectionTestUtils.setField(ledger, "warehouseOccupancyTracker", occupancy);
+        startWithoutJournal();
+        occupancy.register(2L, 12);
+        createsLot();
+        ledger.stockIn(request(10), 1L);
+
+        assertThrows(CapacityExceededException.class, () -> ledger.stockIn(request(4), 1L));
+        ledger.stockOut(request(3), 1L);
+        ledger.stockIn(request(5), 1L);
+
+        assertEquals(12L, ledger.onHand(1L, 2L));
+        assertEquals(12L, occupancy.getOccupancy(2L));
+    }
+
+    @Test
+    void stockIn_NewLot_RowInsertedOffShardThread() throws Exception {
+        startWithoutJournal();
+        List<String> threads = new CopyOnWriteArrayList<>();
+        createsLot();
+        doAnswer(invocation -> {
+            threads.add(Thread.currentThread().getName());
+            Inventory inventory = invocation.getArgument(0);
+            inventory.setId(50L);
+            return inventory;
+        }).when(inventoryRepository).save(any());
+
+        assertEquals(10, ledger.stockIn(request(10), 1L).getQuantity());
+
+        assertEquals(List.of(Thread.currentThread().getName()), threads);
+        ArgumentCaptor<Inventory> inserted = ArgumentCaptor.forClass(Inventory.class);
+        verify(inventoryRepository).save(inserted.capture());
+        // The stock itself is journaled and written behind like any other change
+        assertEquals(0, inserted.getValue().getQuantity());
+        assertEquals(Map.of(50L, 10), ledger.lotQuantities(1L, 2L));
+    }
+
+    @Test
+    void stockIn_SlowListener_ShardKeepsServing() throws Exception {
+        startWithoutJournal();
+        createsLot();
+        CountDownLatch listening = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            listening.countDown();
+            release.await();
+            return null;
+        }).when(eventPublisher).publishEvent(any(Object.class));
+
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> receipt = pool.submit(() -> ledger.stockIn(request(10), 1L));
+            assertTrue(listening.await(5, TimeUnit.SECONDS));
+
+            // Well within the operation timeout, although the listener still blocks
+            assertEquals(10L, ledger.onHand(1L, 2L));
+            assertFalse(receipt.isDone(), "caller returned before its movement was published");
+
+            release.countDown();
+            receipt.get(5, TimeUnit.SECONDS);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private void createsLot() {
+        when(productRepository.findByIdForUpdate(1L)).thenReturn(Optional.of(product()));
+        when(warehouseRepository.findById(2L)).thenReturn(Optional.of(warehouse()));
+        lenient().when(inventoryRepository.save(any())).thenAnswer(invocation -> {
+            Inventory inventory = invocation.getArgument(0);
+            inventory.setId(50L);
+            return inventory;
+        });
+    }
+
+    private void startWithoutJournal() throws Exception {
+        when(checkpointRepository.findById(anyInt()))
+                .thenAnswer(invocation -> Optional.of(new LedgerCheckpoint(invocation.getArgument(0), 0L)));
+        start();
+    }
+
+    private void start() throws Exception {
+        ledger.start();
+        started = true;
+    }
+
+    private static StockOperationRequest request(int quantity) {
+        return new StockOperationRequest(1L, 2L, null, quantity, "B1", null, null);
+    }
+
+    private static Product product() {
+        Product product = new Product();
+        product.setId(1L);
+        product.setName("Widget");
+        product.setSku("WID-1");
+        return product;
+    }
+
+    private static Warehouse warehouse() {
+        Organization organization = new Organization();
+        organization.setId(3L);
+        Warehouse warehouse = new Warehouse();
+        warehouse.setId(2L);
+        warehouse.setName("Main");
+        warehouse.setOrganization(organization);
+        return warehouse;
+    }
+
+    private static Map<Long, Integer> toMap(Collection<Map.Entry<Long, Integer>> rows) {
+        Map<Long, Integer> map = new HashMap<>();
+        rows.forEach(row -> map.put(row.getKey(), row.getValue()));
+        return map;
+    }
+}
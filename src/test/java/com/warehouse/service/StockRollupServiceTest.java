@@ -0,0 +1,214 @@
+package com.warehouse.service;
+
+import com.warehouse.dto.StockHistoryDTO;
+import com.warehouse.entity.*;
+import com.warehouse.event.StockMovementEvent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static com.warehouse.support.TestEntities.*;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.doAnswer;
+
+/**
+ * Tests for the stock rollup pipeline against an H2 database.
+ * Tests bucket seeding, late movements, multi-warehouse history and
+ * reconciling against on-hand stock.
+ */
+@DataJpaTest
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(StockRollupService.class)
+class StockRollupServiceTest {
+
+    private static final LocalDateTime DAY = LocalDateTime.of(2024, 7, 1, 0, 0);
+
+    @Autowired
+    private StockRollupService stockRollupService;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @SpyBean
+    private JdbcTemplate jdbcTemplate;
+
+    private Product product;
+    private Warehouse north;
+    private Warehouse south;
+
+    @BeforeEach
+    void setUp() {
+        Organization organization = entityManager.persist(organization());
+        Vendor vendor = entityManager.persist(vendor(organization, "ABC Suppliers"));
+        product = entityManager.persist(product(vendor, "SKU-1", "9.99"));
+        north = entityManager.persist(warehouse(organization, "North"));
+        south = entityManager.persist(warehouse(organization, "South"));
+    }
+
+    @Test
+    void flush_NewSeries_SeededFromOnHand() {
+        // 50 on hand before: +100 at 09:10, -30 at 10:20, 120 on hand now
+        onHand(north, 120);
+        stockRollupService.onStockMovement(moved(north, 100, DAY.withHour(9).withMinute(10)));
+        stockRollupService.onStockMovement(moved(north, -30, DAY.withHour(10).withMinute(20)));
+        stockRollupService.flush();
+
+        StockHistoryDTO history = hourly(north.getId());
+
+        assertEquals(50, history.getOpeningBalance());
+        assertEquals(List.of(150L, 120L), closings(history));
+        assertEquals(100, history.getPoints().get(0).getStockIn());
+        assertEquals(30, history.getPoints().get(1).getStockOut());
+    }
+
+    @Test
+    void flush_MovementArrivingDuringFlush_LeftOutOfSeed() {
+        // 50 on hand before: +100 at 09:10 is drained, +20 at 09:30 is committed while the flush runs
+        onHand(north, 170);
+        stockRollupService.onStockMovement(moved(north, 100, DAY.withHour(9).withMinute(10)));
+        AtomicBoolean arrived = new AtomicBoolean();
+        doAnswer(invocation -> {
+            if (arrived.compareAndSet(false, true)) {
+                stockRollupService.onStockMovement(moved(north, 20, DAY.withHour(9).withMinute(30)));
+            }
+            return invocation.callRealMethod();
+        }).when(jdbcTemplate).queryForObject(startsWith("SELECT COALESCE(SUM(quantity)"), eq(Long.class),
+                any(Object[].class));
+        stockRollupService.flush();
+        stockRollupService.flush();
+
+        StockHistoryDTO history = hourly(north.getId());
+
+        assertTrue(arrived.get());
+        assertEquals(50, history.getOpeningBalance());
+        assertEquals(List.of(170L), closings(history));
+        assertEquals(120, history.getPoints().get(0).getStockIn());
+    }
+
+    @Test
+    void reconcile_SteadyDrift_ShiftedOnSecondRun() {
+        // Seeded at 120, then 15 units received whose buckets were lost in a crash
+        Inventory lot = onHand(north, 120);
+        stockRollupService.onStockMovement(moved(north, 100, DAY.withHour(9)));
+        stockRollupService.onStockMovement(moved(north, -30, DAY.withHour(10)));
+        stockRollupService.flush();
+        setQuantity(lot, 135);
+
+        reconcile();
+        assertEquals(List.of(150L, 120L), closings(hourly(north.getId())));
+
+        reconcile();
+        StockHistoryDTO history = hourly(north.getId());
+        assertEquals(65, history.getOpeningBalance());
+        assertEquals(List.of(165L, 135L), closings(history));
+        StockHistoryDTO daily = stockRollupService.getHistory(product.getId(), north.getId(), RollupResolution.DAY,
+                DAY, DAY.plusDays(1));
+        assertEquals(135, daily.getPoints().get(0).getClosingBalance());
+
+        reconcile();
+        assertEquals(List.of(165L, 135L), closings(hourly(north.getId())));
+    }
+
+    @Test
+    void reconcile_SeriesMovedBetweenRuns_NotShifted() {
+        Inventory lot = onHand(north, 40);
+        stockRollupService.onStockMovement(moved(north, 40, DAY.withHour(9)));
+        stockRollupService.flush();
+        setQuantity(lot, 45);
+        reconcile();
+
+        // A movement between the runs: the same difference could be its write still in flight
+        stockRollupService.onStockMovement(moved(north, 5, DAY.withHour(11)));
+        reconcile();
+        assertEquals(List.of(40L, 45L), closings(hourly(north.getId())));
+
+        setQuantity(lot, 50);
+        reconcile();
+        reconcile();
+        assertEquals(List.of(45L, 50L), closings(hourly(north.getId())));
+    }
+
+    @Test
+    void flush_LateMovement_ShiftsLaterBuckets() {
+        onHand(north, 150);
+        stockRollupService.onStockMovement(moved(north, 100, DAY.withHour(12)));
+        stockRollupService.flush();
+
+        // A pick made at 08:00 that is only recorded after the 12:00 bucket was written
+        stockRollupService.onStockMovement(moved(north, -10, DAY.withHour(8)));
+        stockRollupService.flush();
+
+        StockHistoryDTO history = hourly(north.getId());
+        assertEquals(50, history.getOpeningBalance());
+        assertEquals(List.of(40L, 140L), closings(history));
+
+        StockHistoryDTO daily = stockRollupService.getHistory(product.getId(), north.getId(), RollupResolution.DAY,
+                DAY, DAY.plusDays(1));
+        assertEquals(90, daily.getPoints().get(0).getNetChange());
+        assertEquals(140, daily.getPoints().get(0).getClosingBalance());
+    }
+
+    @Test
+    void getHistory_AllWarehouses_SumsBalances() {
+        onHand(north, 40);
+        onHand(south, 5);
+        stockRollupService.onStockMovement(moved(north, 40, DAY.withHour(9)));
+        stockRollupService.onStockMovement(moved(south, 5, DAY.withHour(11)));
+        stockRollupService.flush();
+
+        StockHistoryDTO history = hourly(null);
+
+        assertEquals(0, history.getOpeningBalance());
+        assertEquals(List.of(40L, 45L), closings(history));
+    }
+
+    @Test
+    void getHistory_HourlyOverLongRange_Rejected() {
+        assertThrows(IllegalArgumentException.class, () -> stockRollupService.getHistory(product.getId(), null,
+                RollupResolution.HOUR, DAY, DAY.plusYears(1)));
+    }
+
+    private StockHistoryDTO hourly(Long warehouseId) {
+        return stockRollupService.getHistory(product.getId(), warehouseId, RollupResolution.HOUR, DAY,
+                DAY.plusDays(1));
+    }
+
+    private static List<Long> closings(StockHistoryDTO history) {
+        return history.getPoints().stream().map(StockHistoryDTO.Point::getClosingBalance).toList();
+    }
+
+    // Shifts go through JDBC, behind the test's persistence context, so it is cleared afterwards
+    private void reconcile() {
+        stockRollupService.reconcile();
+        entityManager.clear();
+    }
+
+    private void setQuantity(Inventory lot, int quantity) {
+        lot.setQuantity(quantity);
+        entityManager.merge(lot);
+        entityManager.flush();
+    }
+
+    private Inventory onHand(Warehouse warehouse, int quantity) {
+        return entityManager.persistAndFlush(stock(product, warehouse, null, quantity));
+    }
+
+    private StockMovementEvent moved(Warehouse warehouse, int quantity, LocalDateTime at) {
+        StockMovementEvent event = movement(null, product.getId(), warehouse.getId(), quantity, 0);
+        event.setTimestamp(at);
+        return event;
+    }
+}
@@ -126,7 +126,7 @@ class UserServiceTest {
     void getUsersByOrganization_Success() {
         // Arrange
         List<User> users = Arrays.asList(testUser);
-        when(userRepository.findByOrganizationId(1L)).thenReturn(users);
+        when(userRepository.findWithOrganizationByOrganizationId(1L)).thenReturn(users);
 
         // Act
         List<UserDTO> result = userService.getUsersByOrganization(1L);
@@ -140,7 +140,7 @@ class UserServiceTest {
     @Test
     void getUserById_Success() {
         // Arrange
-        when(userRepository.findById(1L)).thenReturn(Optional.of(testUser));
+        when(userRepository.findWithOrganizationById(1L)).thenReturn(Optional.of(testUser));
 
         // Act
         UserDTO result = userService.getUserById(1L);
@@ -154,7 +154,7 @@ class UserServiceTest {
     @Test
     void getUserById_NotFound_ThrowsException() {
         // Arrange
-        when(userRepository.findById(1L)).thenReturn(Optional.empty());
+        when(userRepository.findWithOrganizationById(1L)).thenReturn(Optional.empty());
 
         // Act & Assert
         assertThrows(ResourceNotFoundException.class, () -> {
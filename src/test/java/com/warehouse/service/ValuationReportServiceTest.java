@@ -0,0 +1,110 @@
+package com.warehouse.service;
+
+import com.warehouse.dto.ValuationReportDTO;
+import com.warehouse.entity.*;
+import com.warehouse.event.StockMovementEvent;
+import com.warehouse.repository.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static com.warehouse.support.TestEntities.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the parallel inventory valuation report against an H2 database.
+ * Data is committed so the per-warehouse worker connections can read it.
+ */
+@DataJpaTest(properties = "inventory.export.fetch-size=100")
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import(ValuationReportService.class)
+class ValuationReportServiceTest {
+
+    @Autowired
+    private ValuationReportService valuationReportService;
+
+    @Autowired
+    private InventoryRepository inventoryRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private WarehouseRepository warehouseRepository;
+
+    @Autowired
+    private VendorRepository vendorRepository;
+
+    @Autowired
+    private OrganizationRepository organizationRepository;
+
+    private Organization organization;
+    private Warehouse north;
+
+    @BeforeEach
+    void setUp() {
+        inventoryRepository.deleteAll();
+        productRepository.deleteAll();
+        warehouseRepository.deleteAll();
+        vendorRepository.deleteAll();
+        organizationRepository.deleteAll();
+
+        organization = organizationRepository.save(organization());
+
+        Vendor acme = vendorRepository.save(vendor(organization, "Acme"));
+        Vendor globex = vendorRepository.save(vendor(organization, "Globex"));
+        Product laptop = productRepository.save(product(acme, "LAPTOP-1", "999.99", "Electronics"));
+        Product cable = productRepository.save(product(globex, "CABLE-1", "4.50", "Electronics"));
+        Product milk = productRepository.save(product(globex, "MILK-1", "1.25"));
+
+        north = warehouseRepository.save(warehouse(organization, "North"));
+        Warehouse south = warehouseRepository.save(warehouse(organization, "South"));
+        inventoryRepository.saveAll(List.of(
+                stock(laptop, north, "A", 3),
+                stock(laptop, north, "B", 2),
+                stock(cable, north, "A", 100),
+                stock(milk, south, "A", 40)));
+    }
+
+    @Test
+    void getValuation_GroupsByWarehouseCategoryAndVendor() {
+        ValuationReportDTO report = valuationReportService.getValuation(organization.getId(), false);
+
+        // 5 × 999.99 + 100 × 4.50 + 40 × 1.25
+        assertEquals(new BigDecimal("5499.95"), report.getTotalValue());
+        assertEquals(145, report.getTotalQuantity());
+        assertEquals(List.of("North", "South"), names(report.getWarehouses()));
+        assertEquals(new BigDecimal("5449.95"), report.getWarehouses().get(0).getValue());
+        assertEquals(List.of("Electronics", "Uncategorized"), names(report.getCategories()));
+        assertEquals(List.of("Acme", "Globex"), names(report.getVendors()));
+        assertEquals(new BigDecimal("500.00"), report.getVendors().get(1).getValue());
+        assertFalse(report.isCached());
+    }
+
+    @Test
+    void getValuation_CachedUntilStockMoves() {
+        valuationReportService.getValuation(organization.getId(), true);
+        assertTrue(valuationReportService.getValuation(organization.getId(), true).isCached());
+
+        StockMovementEvent sale = movement(null, null, north.getId(), -1, 0);
+        sale.setOrganizationId(organization.getId());
+        valuationReportService.onStockMovement(sale);
+
+        assertFalse(valuationReportService.getValuation(organization.getId(), true).isCached());
+    }
+
+    private static List<String> names(List<ValuationReportDTO.Group> groups) {
+        return groups.stream().map(ValuationReportDTO.Group::getName).toList();
+    }
+}
@@ -0,0 +1,116 @@
+package com.warehouse.service;
+
+import com.warehouse.event.StockMovementEvent;
+import com.warehouse.exception.CapacityExceededException;
+import com.warehouse.support.TestEntities;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.ResultSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for WarehouseOccupancyTracker.
+ * Tests capacity enforcement, rollback compensation and reconciliation.
+ */
+@ExtendWith(MockitoExtension.class)
+class WarehouseOccupancyTrackerTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @InjectMocks
+    private WarehouseOccupancyTracker tracker;
+
+    @BeforeEach
+    void setUp() {
+        tracker.register(1L, 1000);
+        TransactionSynchronizationManager.initSynchronization();
+    }
+
+    @AfterEach
+    void tearDown() {
+        TransactionSynchronizationManager.clearSynchronization();
+    }
+
+    @Test
+    void onStockMovement_BeyondCapacity_ThrowsAndKeepsCount() {
+        tracker.onStockMovement(movement(900));
+
+        assertThrows(CapacityExceededException.class, () -> tracker.onStockMovement(movement(200)));
+        assertEquals(900L, tracker.getOccupancy(1L));
+        assertTrue(tracker.hasRoom(1L, 100));
+        assertFalse(tracker.hasRoom(1L, 101));
+    }
+
+    @Test
+    void updateCapacity_KeepsOccupancy() {
+        tracker.onStockMovement(movement(900));
+        tracker.updateCapacity(1L, 2000);
+
+        assertEquals(900L, tracker.getOccupancy(1L));
+        assertTrue(tracker.hasRoom(1L, 1100));
+    }
+
+    @Test
+    void onStockMovement_RolledBack_GivesUnitsBack() {
+        tracker.onStockMovement(movement(400));
+
+        complete(TransactionSynchronization.STATUS_ROLLED_BACK);
+
+        assertEquals(0L, tracker.getOccupancy(1L));
+    }
+
+    @Test
+    void reconcile_QuietWarehouse_CorrectsDrift() throws Exception {
+        tracker.onStockMovement(movement(400));
+        complete(TransactionSynchronization.STATUS_COMMITTED);
+        tableHolds(350);
+
+        tracker.reconcile();
+
+        assertEquals(350L, tracker.getOccupancy(1L));
+    }
+
+    @Test
+    void reconcile_MovementInFlight_LeavesCounter() throws Exception {
+        tracker.onStockMovement(movement(400));
+        tableHolds(0); // The uncommitted movement is not in the table yet
+
+        tracker.reconcile();
+
+        assertEquals(400L, tracker.getOccupancy(1L));
+    }
+
+    private void complete(int status) {
+        TransactionSynchronizationManager.getSynchronizations().forEach(s -> s.afterCompletion(status));
+        TransactionSynchronizationManager.clearSynchronization();
+        TransactionSynchronizationManager.initSynchronization();
+    }
+
+    private void tableHolds(long units) throws Exception {
+        ResultSet rs = mock(ResultSet.class);
+        when(rs.getLong("id")).thenReturn(1L);
+        when(rs.getLong("used")).thenReturn(units);
+        doAnswer(invocation -> {
+            invocation.getArgument(1, RowCallbackHandler.class).processRow(rs);
+            return null;
+        }).when(jdbcTemplate).query(anyString(), any(RowCallbackHandler.class));
+    }
+
+    private static StockMovementEvent movement(int quantity) {
+        return TestEntities.movement(null, null, 1L, quantity, 0);
+    }
+}
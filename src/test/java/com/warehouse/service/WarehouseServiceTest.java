@@ -0,0 +1,117 @@
+package com.warehouse.service;
+
+import com.warehouse.dto.StorageZoneDTO;
+import com.warehouse.entity.Organization;
+import com.warehouse.entity.StorageZone;
+import com.warehouse.entity.Warehouse;
+import com.warehouse.entity.ZoneType;
+import com.warehouse.repository.OrganizationRepository;
+import com.warehouse.repository.StorageZoneRepository;
+import com.warehouse.repository.UserRepository;
+import com.warehouse.repository.WarehouseRepository;
+import com.warehouse.support.TestEntities;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Optional;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for WarehouseService.
+ * Tests that new zones reach putaway and the utilization tracker only once committed.
+ */
+@ExtendWith(MockitoExtension.class)
+class WarehouseServiceTest {
+
+    @Mock
+    private WarehouseRepository warehouseRepository;
+
+    @Mock
+    private OrganizationRepository organizationRepository;
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private StorageZoneRepository storageZoneRepository;
+
+    @Mock
+    private ZoneUtilizationTracker zoneUtilizationTracker;
+
+    @Mock
+    private PutawayEngine putawayEngine;
+
+    @Mock
+    private WarehouseOccupancyTracker warehouseOccupancyTracker;
+
+    @InjectMocks
+    private WarehouseService warehouseService;
+
+    @BeforeEach
+    void setUp() {
+        Organization organization = TestEntities.organization();
+        organization.setId(1L);
+        Warehouse warehouse = TestEntities.warehouse(organization, "North");
+        warehouse.setId(10L);
+        when(warehouseRepository.findById(10L)).thenReturn(Optional.of(warehouse));
+        when(storageZoneRepository.save(any(StorageZone.class))).thenAnswer(invocation -> {
+            StorageZone zone = invocation.getArgument(0);
+            zone.setId(100L);
+            return zone;
+        });
+        TransactionSynchronizationManager.initSynchronization();
+    }
+
+    @AfterEach
+    void tearDown() {
+        TransactionSynchronizationManager.clearSynchronization();
+    }
+
+    @Test
+    void addStorageZone_Committed_RegisteredAfterCommit() {
+        warehouseService.addStorageZone(10L, zone(), 1L);
+        verifyNoInteractions(putawayEngine);
+        verify(zoneUtilizationTracker, never()).register(any(), anyInt());
+
+        complete(TransactionSynchronization.STATUS_COMMITTED);
+
+        verify(zoneUtilizationTracker).register(100L, 500);
+        verify(putawayEngine).registerZone(10L, 100L, ZoneType.COLD_STORAGE);
+    }
+
+    @Test
+    void addStorageZone_RolledBack_NeverRegistered() {
+        warehouseService.addStorageZone(10L, zone(), 1L);
+
+        complete(TransactionSynchronization.STATUS_ROLLED_BACK);
+
+        verify(zoneUtilizationTracker, never()).register(any(), anyInt());
+        verifyNoInteractions(putawayEngine);
+    }
+
+    private static StorageZoneDTO zone() {
+        StorageZoneDTO dto = new StorageZoneDTO();
+        dto.setName("Cold A");
+        dto.setCapacity(500);
+        dto.setZoneType(ZoneType.COLD_STORAGE);
+        return dto;
+    }
+
+    private static void complete(int status) {
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            if (status == TransactionSynchronization.STATUS_COMMITTED) {
+                synchronization.afterCommit();
+            }
+            synchronization.afterCompletion(status);
+        }
+    }
+}
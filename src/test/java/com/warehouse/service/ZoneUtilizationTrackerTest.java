@@ -0,0 +1,119 @@
+package com.warehouse.service;
+
+import com.warehouse.entity.TransactionType;
+import com.warehouse.event.StockMovementEvent;
+import com.warehouse.exception.CapacityExceededException;
+import com.warehouse.support.TestEntities;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for ZoneUtilizationTracker.
+ * Tests capacity enforcement, rollback compensation and write-behind.
+ */
+@ExtendWith(MockitoExtension.class)
+class ZoneUtilizationTrackerTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @InjectMocks
+    private ZoneUtilizationTracker tracker;
+
+    @BeforeEach
+    void setUp() {
+        tracker.register(1L, 100);
+        TransactionSynchronizationManager.initSynchronization();
+    }
+
+    @AfterEach
+    void tearDown() {
+        TransactionSynchronizationManager.clearSynchronization();
+    }
+
+    @Test
+    void onStockMovement_WithinCapacity_CountsUnits() {
+        tracker.onStockMovement(movement(60));
+        tracker.onStockMovement(movement(-10));
+
+        assertEquals(50, tracker.getUtilization(1L));
+        assertTrue(tracker.hasRoom(1L, 50));
+        assertFalse(tracker.hasRoom(1L, 51));
+    }
+
+    @Test
+    void onStockMovement_BeyondCapacity_ThrowsAndKeepsCount() {
+        tracker.onStockMovement(movement(80));
+
+        assertThrows(CapacityExceededException.class, () -> tracker.onStockMovement(movement(30)));
+        assertEquals(80, tracker.getUtilization(1L));
+    }
+
+    @Test
+    void onStockMovement_Adjustment_CountedPastCapacity() {
+        tracker.onStockMovement(movement(80));
+        StockMovementEvent found = movement(30);
+        found.setTransactionType(TransactionType.ADJUSTMENT);
+
+        tracker.onStockMovement(found);
+
+        assertEquals(110, tracker.getUtilization(1L));
+    }
+
+    @Test
+    void onStockMovement_RolledBack_GivesUnitsBack() {
+        tracker.onStockMovement(movement(70));
+
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        synchronizations.forEach(s -> s.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+
+        assertEquals(0, tracker.getUtilization(1L));
+    }
+
+    @Test
+    void onStockMovement_LedgerEnabled_LeftToLedgerReserve() {
+        ReflectionTestUtils.setField(tracker, "ledgerEnabled", true);
+        tracker.reserve(1L, 80);
+
+        tracker.onStockMovement(movement(80));
+
+        assertEquals(80, tracker.getUtilization(1L));
+        assertThrows(CapacityExceededException.class, () -> tracker.reserve(1L, 30));
+        tracker.release(1L, 80);
+        assertEquals(0, tracker.getUtilization(1L));
+    }
+
+    @Test
+    void flush_WritesOnlyChangedZones() {
+        tracker.register(2L, 100);
+        tracker.flush();
+        tracker.onStockMovement(movement(5));
+
+        tracker.flush();
+
+        verify(jdbcTemplate, times(2)).batchUpdate(anyString(), anyList());
+        verify(jdbcTemplate).batchUpdate(anyString(), argThat((List<Object[]> args) ->
+                args.size() == 1 && args.get(0)[0].equals(5L) && args.get(0)[1].equals(1L)));
+    }
+
+    private static StockMovementEvent movement(int quantity) {
+        StockMovementEvent event = TestEntities.movement(null, null, null, quantity, 0);
+        event.setZoneId(1L);
+        return event;
+    }
+}
@@ -0,0 +1,107 @@
+package com.warehouse.support;
+
+import com.warehouse.entity.*;
+import com.warehouse.event.StockMovementEvent;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Factories for the entities the repository and service tests seed. Each
+ * returns a transient entity; the caller persists it through whichever
+ * repository or TestEntityManager the test uses.
+ */
+public final class TestEntities {
+
+    private TestEntities() {
+    }
+
+    public static Organization organization() {
+        return organization("Test Corp");
+    }
+
+    public static Organization organization(String name) {
+        Organization organization = new Organization();
+        organization.setName(name);
+        organization.setContactEmail("ops@" + name.toLowerCase().replace(" ", "") + ".com");
+        return organization;
+    }
+
+    public static Vendor vendor(Organization organization, String name) {
+        Vendor vendor = new Vendor();
+        vendor.setName(name);
+        vendor.setEmail(name.toLowerCase().replace(' ', '.') + "@example.com");
+        vendor.setOrganization(organization);
+        return vendor;
+    }
+
+    public static Product product(Vendor vendor, String sku, String unitPrice) {
+        Product product = new Product();
+        product.setSku(sku);
+        product.setName(sku);
+        product.setVendor(vendor);
+        product.setUnitPrice(new BigDecimal(unitPrice));
+        return product;
+    }
+
+    public static Product product(Vendor vendor, String sku, String unitPrice, String category) {
+        Product product = product(vendor, sku, unitPrice);
+        product.setCategory(category);
+        return product;
+    }
+
+    public static Warehouse warehouse(Organization organization, String name) {
+        Warehouse warehouse = new Warehouse();
+        warehouse.setName(name);
+        warehouse.setLocation(name + " dock");
+        warehouse.setCapacity(100_000);
+        warehouse.setOrganization(organization);
+        return warehouse;
+    }
+
+    public static User user(Organization organization, String email, UserRole role) {
+        User user = new User();
+        user.setEmail(email);
+        user.setPassword("hashed");
+        user.setFirstName("Test");
+        user.setLastName(email.substring(0, email.indexOf('@')));
+        user.setRole(role);
+        user.setOrganization(organization);
+        return user;
+    }
+
+    public static Inventory stock(Product product, Warehouse warehouse, String batchNumber, int quantity) {
+        Inventory inventory = new Inventory();
+        inventory.setProduct(product);
+        inventory.setWarehouse(warehouse);
+        inventory.setBatchNumber(batchNumber);
+        inventory.setQuantity(quantity);
+        return inventory;
+    }
+
+    public static Inventory stock(Product product, Warehouse warehouse, String batchNumber, int quantity,
+            int minStockLevel, int maxStockLevel) {
+        Inventory inventory = stock(product, warehouse, batchNumber, quantity);
+        inventory.setMinStockLevel(minStockLevel);
+        inventory.setMaxStockLevel(maxStockLevel);
+        return inventory;
+    }
+
+    /**
+     * A committed movement of {@code quantity} units, negative for stock
+     * leaving the lot, that left the lot holding {@code resultingQuantity}.
+     * Tests set whatever other fields their listener reads.
+     */
+    public static StockMovementEvent movement(Long inventoryId, Long productId, Long warehouseId, int quantity,
+            int resultingQuantity) {
+        StockMovementEvent event = new StockMovementEvent();
+        event.setInventoryId(inventoryId);
+        event.setProductId(productId);
+        event.setWarehouseId(warehouseId);
+        event.setTransactionType(quantity < 0 ? TransactionType.STOCK_OUT : TransactionType.STOCK_IN);
+        event.setQuantity(quantity);
+        event.setResultingQuantity(resultingQuantity);
+        event.setTimestamp(LocalDateTime.now());
+        return event;
+    }
+}
@@ -1,7 +1,8 @@
 import api from './client';
 
-export const getInventory = async (warehouseId) => {
-    const response = await api.get(`/inventory?warehouseId=${warehouseId}`);
+// Returns one page: { items, nextCursor, hasMore }. Pass nextCursor back as cursor for the next page.
+export const getInventory = async (warehouseId, { cursor, size, ...filters } = {}) => {
+    const response = await api.get('/inventory', { params: { warehouseId, cursor, size, ...filters } });
     return response.data;
 };
 
@@ -25,3 +26,52 @@ export const getExpiringItems = async (daysAhead = 30) => {
     const response = await api.get(`/inventory/alerts/expiring?daysAhead=${daysAhead}`);
     return response.data;
 };
+
+// Streams alert changes ({ type: LOW_STOCK | RESTOCKED | EXPIRED, ... }) for a warehouse, or an organization
+// when no warehouseId is given. Load the current alerts first with getLowStockAlerts/getExpiringItems.
+// fetch is used rather than EventSource so the bearer token goes in a header; reconnects until unsubscribed.
+export const subscribeToAlerts = ({ warehouseId, organizationId } = {}, onAlert) => {
+    const controller = new AbortController();
+    const params = new URLSearchParams();
+    if (warehouseId) params.set('warehouseId', warehouseId);
+    if (organizationId) params.set('organizationId', organizationId);
+
+    const connect = async (retryMs) => {
+        try {
+            const response = await fetch(`/api/inventory/alerts/stream?${params}`, {
+                headers: {
+                    Accept: 'text/event-stream',
+                    Authorization: `Bearer ${localStorage.getItem('token')}`,
+                },
+                signal: controller.signal,
+            });
+            if (!response.ok) throw new Error(`Alert stream failed: ${response.status}`);
+            retryMs = 1000;
+
+            const reader = response.body.pipeThrough(new TextDecoderStream()).getReader();
+            let buffer = '';
+            for (;;) {
+                const { value, done } = await reader.read();
+                if (done) break;
+                buffer += value;
+                let end;
+                while ((end = buffer.indexOf('\n\n')) >= 0) {
+                    const data = buffer.slice(0, end).split('\n')
+                        .filter((line) => line.startsWith('data:'))
+                        .map((line) => line.slice(5))
+                        .join('\n');
+                    buffer = buffer.slice(end + 2);
+                    if (data) onAlert(JSON.parse(data));
+                }
+            }
+        } catch (error) {
+            if (controller.signal.aborted) return;
+        }
+        if (!controller.signal.aborted) {
+            setTimeout(() => connect(Math.min(retryMs * 2, 30000)), retryMs);
+        }
+    };
+    connect(1000);
+
+    return () => controller.abort();
+};
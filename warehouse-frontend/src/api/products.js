@@ -14,3 +14,13 @@ export const createProduct = async (data) => {
     const response = await api.post('/products', data);
     return response.data;
 };
+
+export const updateProduct = async (id, data) => {
+    const response = await api.put(`/products/${id}`, data);
+    return response.data;
+};
+
+export const searchProducts = async (organizationId, q, limit = 20) => {
+    const response = await api.get('/products/search', { params: { organizationId, q, limit } });
+    return response.data;
+};
@@ -18,6 +18,8 @@ const InventoryList = () => {
     const [warehouses, setWarehouses] = useState([]);
     const [selectedWarehouse, setSelectedWarehouse] = useState('');
     const [loading, setLoading] = useState(true);
+    const [nextCursor, setNextCursor] = useState(null);
+    const [loadingMore, setLoadingMore] = useState(false);
     const [searchTerm, setSearchTerm] = useState('');
 
     useEffect(() => {
@@ -42,8 +44,9 @@ const InventoryList = () => {
 
             setLoading(true);
             try {
-                const data = await getInventory(selectedWarehouse);
-                setInventory(data);
+                const page = await getInventory(selectedWarehouse);
+                setInventory(page.items);
+                setNextCursor(page.hasMore ? page.nextCursor : null);
             } catch (error) {
                 toast.error('Failed to load inventory');
                 console.error(error);
@@ -55,6 +58,20 @@ const InventoryList = () => {
         fetchInventory();
     }, [selectedWarehouse]);
 
+    const loadMore = async () => {
+        setLoadingMore(true);
+        try {
+            const page = await getInventory(selectedWarehouse, { cursor: nextCursor });
+            setInventory(prev => [...prev, ...page.items]);
+            setNextCursor(page.hasMore ? page.nextCursor : null);
+        } catch (error) {
+            toast.error('Failed to load inventory');
+            console.error(error);
+        } finally {
+            setLoadingMore(false);
+        }
+    };
+
     const filteredInventory = inventory.filter(item =>
         item.productName.toLowerCase().includes(searchTerm.toLowerCase()) ||
         item.productSku.toLowerCase().includes(searchTerm.toLowerCase())
@@ -186,6 +203,14 @@ const InventoryList = () => {
                     isLoading={loading}
                     emptyMessage="No inventory found for this warehouse."
                 />
+
+                {nextCursor && !loading && (
+                    <div className="p-4 border-t border-slate-100 flex justify-center">
+                        <Button variant="secondary" onClick={loadMore} isLoading={loadingMore}>
+                            Load more
+                        </Button>
+                    </div>
+                )}
             </Card>
         </div>
     );